@@ -15,6 +15,8 @@
  */
 package com.android.launcher3.icons.cache
 
+import android.app.ActivityManager
+import android.content.ComponentCallbacks2
 import android.content.ComponentName
 import android.content.ContentValues
 import android.content.Context
@@ -52,8 +54,8 @@ import com.android.launcher3.icons.cache.CacheLookupFlag.Companion.DEFAULT_LOOKU
 import com.android.launcher3.util.ComponentKey
 import com.android.launcher3.util.FlagOp
 import com.android.launcher3.util.SQLiteCacheHelper
+import java.io.PrintWriter
 import java.util.function.Supplier
-import kotlin.collections.MutableMap.MutableEntry
 
 abstract class BaseIconCache
 @JvmOverloads
@@ -74,17 +76,8 @@ constructor(
 
     private val packageManager: PackageManager = context.packageManager
 
-    private val cache: MutableMap<ComponentKey, CacheEntry?> =
-        if (inMemoryCache) {
-            HashMap(INITIAL_ICON_CACHE_CAPACITY)
-        } else {
-            object : AbstractMutableMap<ComponentKey, CacheEntry?>() {
-                override fun put(key: ComponentKey, value: CacheEntry?): CacheEntry? = value
-
-                override val entries: MutableSet<MutableEntry<ComponentKey, CacheEntry?>> =
-                    mutableSetOf()
-            }
-        }
+    private val cache =
+        IconMemoryCache(if (inMemoryCache) getMemoryCacheMaxBytes(context) else 0)
 
     val iconUpdateToken = Any()
 
@@ -92,6 +85,8 @@ constructor(
 
     @JvmField protected var iconDb = IconDB(context, dbFileName, iconPixelSize)
 
+    private var journal = createJournal(iconPixelSize)
+
     private var defaultIcon: BitmapInfo? = null
     private val userFlagOpMap = SparseArray<FlagOp>()
     private val userFormatString = SparseArray<String?>()
@@ -131,6 +126,8 @@ constructor(
             iconDb.clear()
             iconDb.close()
             iconDb = IconDB(context, dbFileName, iconPixelSize)
+            journal?.clear()
+            journal = createJournal(iconPixelSize)
             cache.clear()
         } catch (e: SQLiteReadOnlyDatabaseException) {
             // This is known to happen during repeated backup and restores, if the Launcher is in
@@ -153,15 +150,17 @@ constructor(
 
     /** Remove any records for the supplied package name from memory. */
     private fun removeFromMemCacheLocked(packageName: String, user: UserHandle) =
-        cache.keys.removeIf { it.componentName.packageName == packageName && it.user == user }
+        cache.removeIf { it.componentName.packageName == packageName && it.user == user }
 
     /** Removes the entries related to the given package in memory and persistent DB. */
     @Synchronized
     fun removeIconsForPkg(packageName: String, user: UserHandle) {
         removeFromMemCacheLocked(packageName, user)
+        val userSerial = getSerialNumberForUser(user)
+        journal?.invalidate(packageName, userSerial)
         iconDb.delete(
             "$COLUMN_COMPONENT LIKE ? AND $COLUMN_USER = ?",
-            arrayOf("$packageName/%", getSerialNumberForUser(user).toString()),
+            arrayOf("$packageName/%", userSerial.toString()),
         )
     }
 
@@ -169,9 +168,12 @@ constructor(
         updateSystemState()
         // Remove all active icon update tasks.
         workerHandler.removeCallbacksAndMessages(iconUpdateToken)
-        return IconCacheUpdateHandler(this, iconDb, workerHandler)
+        return IconCacheUpdateHandler(this, iconDb, workerHandler, journal)
     }
 
+    private fun createJournal(iconPixelSize: Int): IconCacheJournal? =
+        dbFileName?.let { IconCacheJournal(context, it, IconDB.getVersion(iconPixelSize)) }
+
     /**
      * Refreshes the system state definition used to check the validity of the cache. It
      * incorporates all the properties that can affect the cache like the list of enabled locale and
@@ -275,7 +277,10 @@ constructor(
         assertWorkerThread()
         val cacheKey = ComponentKey(componentName, user)
         var entry = cache[cacheKey]
-        if (entry == null || entry.bitmap.matchingLookupFlag.isVisuallyLessThan(lookupFlags)) {
+        val isCacheHit =
+            entry != null && !entry.bitmap.matchingLookupFlag.isVisuallyLessThan(lookupFlags)
+        cache.recordLookup(isCacheHit)
+        if (entry == null || !isCacheHit) {
             val addToMemCache = entry != null || !lookupFlags.skipAddToMemCache()
             entry = CacheEntry()
             if (addToMemCache) cache[cacheKey] = entry
@@ -300,6 +305,8 @@ constructor(
             if (TextUtils.isEmpty(entry.title)) {
                 obj?.let { loadFallbackTitle(it, entry, cachingLogic, user) }
             }
+            // Put the entry again, so that the cache accounts for the loaded bitmap
+            if (addToMemCache) cache[cacheKey] = entry
         }
         return entry
     }
@@ -352,6 +359,24 @@ constructor(
         cache.clear()
     }
 
+    /**
+     * Sets the components which are currently bound to the UI (like workspace and hotseat items).
+     * These are not evicted from the in-memory cache when it exceeds its budget or memory is
+     * trimmed.
+     */
+    fun setPinnedComponents(keys: Set<ComponentKey>) =
+        workerHandler.post { synchronized(this) { cache.setPinnedKeys(keys) } }
+
+    /** Releases in-memory icons based on the provided [ComponentCallbacks2] level */
+    fun onTrimMemory(level: Int) =
+        workerHandler.post { synchronized(this) { cache.onTrimMemory(level) } }
+
+    @Synchronized
+    fun dump(prefix: String, writer: PrintWriter) {
+        writer.println("${prefix}BaseIconCache: iconDpi=$iconDpi")
+        cache.dump("$prefix  ", writer)
+    }
+
     /**
      * Adds a default package entry in the cache. This entry is not persisted and will be removed
      * when the cache is flushed.
@@ -411,8 +436,11 @@ constructor(
         assertWorkerThread()
         val cacheKey = getPackageKey(packageName, user)
         var entry = cache[cacheKey]
+        val isCacheHit =
+            entry != null && !entry.bitmap.matchingLookupFlag.isVisuallyLessThan(lookupFlags)
+        cache.recordLookup(isCacheHit)
 
-        if (entry == null || entry.bitmap.matchingLookupFlag.isVisuallyLessThan(lookupFlags)) {
+        if (entry == null || !isCacheHit) {
             entry = CacheEntry()
             var entryUpdated = true
 
@@ -603,12 +631,7 @@ constructor(
 
     /** Cache class to store the actual entries on disk */
     class IconDB(context: Context, dbFileName: String?, iconPixelSize: Int) :
-        SQLiteCacheHelper(
-            context,
-            dbFileName,
-            (RELEASE_VERSION shl 16) + iconPixelSize,
-            TABLE_NAME,
-        ) {
+        SQLiteCacheHelper(context, dbFileName, getVersion(iconPixelSize), TABLE_NAME) {
 
         override fun onCreateTable(db: SQLiteDatabase) {
             db.execSQL(
@@ -625,13 +648,20 @@ constructor(
                     ");")
             )
         }
+
+        companion object {
+            @JvmStatic fun getVersion(iconPixelSize: Int) = (RELEASE_VERSION shl 16) + iconPixelSize
+        }
     }
 
     companion object {
         protected const val TAG = "BaseIconCache"
         private const val DEBUG = false
 
-        private const val INITIAL_ICON_CACHE_CAPACITY = 50
+        // Fraction of the app memory class used by the icons kept in memory
+        private const val MEMORY_CACHE_FRACTION = 8
+        // Memory class used when it isn't available, like with test contexts
+        private const val DEFAULT_MEMORY_CLASS_MB = 256
 
         // A format string which returns the original string as is.
         private const val IDENTITY_FORMAT_STRING = "%1\$s"
@@ -639,6 +669,13 @@ constructor(
         // Empty class name is used for storing package default entry.
         const val EMPTY_CLASS_NAME: String = "."
 
+        private fun getMemoryCacheMaxBytes(context: Context): Long {
+            val memoryClassMb =
+                context.getSystemService(ActivityManager::class.java)?.memoryClass
+                    ?: DEFAULT_MEMORY_CLASS_MB
+            return memoryClassMb.toLong() * 1024 * 1024 / MEMORY_CACHE_FRACTION
+        }
+
         fun getPackageKey(packageName: String, user: UserHandle) =
             ComponentKey(ComponentName(packageName, packageName + EMPTY_CLASS_NAME), user)
 
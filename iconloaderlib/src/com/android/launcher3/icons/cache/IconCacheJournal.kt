@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.icons.cache
+
+import android.content.Context
+import android.content.SharedPreferences
+import android.provider.Settings
+import android.util.Log
+
+/**
+ * Persisted record of the packages whose icon DB rows were fully verified by the last
+ * [IconCacheUpdateHandler] run, per user and per update source (the caching logic of each
+ * [IconCacheUpdateHandler.updateIcons] call). It allows the next run to only read the DB rows of
+ * packages which changed since, instead of scanning the whole table.
+ *
+ * The journal is only trusted within the same boot and for the same DB version. Packages reported
+ * by [android.content.pm.PackageManager.getChangedPackages] since the journal was written are
+ * never trusted, irrespective of their recorded state.
+ */
+open class IconCacheJournal(context: Context, dbFileName: String, private val dbVersion: Int) {
+
+    private val prefs: SharedPreferences =
+        context.getSharedPreferences(dbFileName + JOURNAL_SUFFIX, Context.MODE_PRIVATE)
+    private val packageManager = context.packageManager
+    private val contentResolver = context.contentResolver
+
+    private var changedPackages: Set<String>? = null
+    private var isValid = false
+    private var sequenceNumber = 0
+
+    /**
+     * Returns the packages which were verified for the provided user and source and have not
+     * changed since, or null if the journal can't be used and a full scan is required.
+     */
+    open fun getVerifiedPackages(userSerial: Long, source: String): Map<String, PackageRecord>? {
+        val changed = getChangedPackages() ?: return null
+        val entries = prefs.getStringSet(getPackagesKey(userSerial, source), null) ?: return null
+        val result = HashMap<String, PackageRecord>(entries.size)
+        for (entry in entries) {
+            val parts = entry.split(SEPARATOR, limit = 3)
+            if (parts.size != 3) continue
+            val packageName = parts[0]
+            if (changed.contains(packageName)) continue
+            result[packageName] = PackageRecord(parts[1].toIntOrNull() ?: continue, parts[2])
+        }
+        return result
+    }
+
+    /**
+     * Replaces the journal with the provided records, by user and then by source. Packages which
+     * are not part of [records] will be treated as changed on the next run.
+     */
+    open fun write(records: Map<Long, Map<String, Map<String, PackageRecord>>>) {
+        // Make sure the sequence number is resolved before the records are persisted, so that
+        // any package changing after this point is reported on the next run.
+        getChangedPackages()
+        val editor = prefs.edit().clear()
+        editor.putInt(KEY_BOOT_COUNT, getBootCount())
+        editor.putInt(KEY_DB_VERSION, dbVersion)
+        editor.putInt(KEY_SEQUENCE_NUMBER, sequenceNumber)
+        records.forEach { (userSerial, sources) ->
+            sources.forEach { (source, packages) ->
+                editor.putStringSet(
+                    getPackagesKey(userSerial, source),
+                    packages.mapTo(HashSet(packages.size)) { (packageName, record) ->
+                        "$packageName$SEPARATOR${record.componentsHash}" +
+                            "$SEPARATOR${record.freshnessId}"
+                    },
+                )
+            }
+        }
+        editor.apply()
+    }
+
+    /**
+     * Removes the records of a single package for all sources, so that it is fully verified on
+     * the next run.
+     */
+    open fun invalidate(packageName: String, userSerial: Long) {
+        val userPrefix = getPackagesKey(userSerial, "")
+        val prefix = packageName + SEPARATOR
+        val editor = prefs.edit()
+        var changed = false
+        prefs.all.forEach { (key, value) ->
+            if (!key.startsWith(userPrefix) || value !is Set<*>) return@forEach
+            val entries = value.filterIsInstance<String>()
+            if (entries.any { it.startsWith(prefix) }) {
+                editor.putStringSet(key, entries.filterTo(HashSet()) { !it.startsWith(prefix) })
+                changed = true
+            }
+        }
+        if (changed) {
+            editor.apply()
+        }
+    }
+
+    /** Drops all records, used when the underlying DB is cleared. */
+    open fun clear() {
+        prefs.edit().clear().apply()
+        changedPackages = null
+        isValid = false
+    }
+
+    /**
+     * Returns the packages changed since the journal was written, or null if the journal is not
+     * valid anymore.
+     */
+    private fun getChangedPackages(): Set<String>? {
+        changedPackages?.let {
+            return if (isValid) it else null
+        }
+        isValid =
+            prefs.getInt(KEY_BOOT_COUNT, -1) == getBootCount() &&
+                prefs.getInt(KEY_DB_VERSION, -1) == dbVersion
+        val lastSequenceNumber = if (isValid) prefs.getInt(KEY_SEQUENCE_NUMBER, 0) else 0
+        val changed =
+            try {
+                packageManager.getChangedPackages(lastSequenceNumber)
+            } catch (e: Exception) {
+                Log.e(TAG, "Unable to query changed packages", e)
+                return null
+            }
+        sequenceNumber = changed?.sequenceNumber ?: lastSequenceNumber
+        changedPackages = changed?.packageNames?.toHashSet() ?: emptySet()
+        return if (isValid) changedPackages else null
+    }
+
+    private fun getPackagesKey(userSerial: Long, source: String) =
+        "$KEY_PACKAGES_PREFIX${userSerial}_$source"
+
+    private fun getBootCount() =
+        Settings.Global.getInt(contentResolver, Settings.Global.BOOT_COUNT, -1)
+
+    /**
+     * State of a package at the time it was verified.
+     *
+     * @property componentsHash order independent hash of all the cached component class names
+     * @property freshnessId freshness identifier shared by all the cached components
+     */
+    data class PackageRecord(val componentsHash: Int, val freshnessId: String)
+
+    companion object {
+        private const val TAG = "IconCacheJournal"
+
+        private const val JOURNAL_SUFFIX = "_journal"
+        private const val SEPARATOR = "/"
+
+        private const val KEY_BOOT_COUNT = "boot_count"
+        private const val KEY_DB_VERSION = "db_version"
+        private const val KEY_SEQUENCE_NUMBER = "sequence_number"
+        private const val KEY_PACKAGES_PREFIX = "packages_"
+    }
+}
@@ -17,12 +17,14 @@ package com.android.launcher3.icons.cache
 
 import android.content.ComponentName
 import android.content.pm.ApplicationInfo
+import android.database.Cursor
 import android.database.sqlite.SQLiteException
 import android.os.Handler
 import android.os.SystemClock
 import android.os.UserHandle
 import android.util.ArrayMap
 import android.util.Log
+import com.android.launcher3.icons.cache.IconCacheJournal.PackageRecord
 import com.android.launcher3.util.ComponentKey
 import com.android.launcher3.util.SQLiteCacheHelper
 import java.util.ArrayDeque
@@ -32,6 +34,7 @@ class IconCacheUpdateHandler(
     private val iconCache: BaseIconCache,
     private val cacheDb: SQLiteCacheHelper,
     private val workerHandler: Handler,
+    private val journal: IconCacheJournal? = null,
 ) {
 
     private val packagesToIgnore = ArrayMap<UserHandle, MutableSet<String>>()
@@ -40,10 +43,23 @@ class IconCacheUpdateHandler(
 
     private val itemsToDelete = HashSet<UpdateRow>()
 
+    // Package records verified by each pass, by user and source, persisted to the journal on
+    // finish
+    private val journalRecords = HashMap<Long, HashMap<String, HashMap<String, PackageRecord>>>()
+
+    // Users whose rows were all loaded by a pass, as the journal could not be used
+    private val fullyScannedUsers = HashSet<UserHandle>()
+    // Components verified by any pass so far, for the users which were not fully scanned. Their
+    // rows may be read again by a later pass, which must not delete them.
+    private val verifiedComponents = HashSet<ComponentKey>()
+
     // During the first pass, we load all the items from DB and add all invalid items to
     // mItemsToDelete. In follow up passes, we  go through the items in mItemsToDelete, and if the
     // item is valid, removes it from the list, or leave it there.
+    // When the journal is used, each pass only loads the rows of the packages which changed for
+    // its own source, in addition to going through the items in mItemsToDelete.
     private var firstPass = true
+    private var passCount = 0
 
     /** Sets a package to ignore for processing */
     fun addPackagesToIgnore(userHandle: UserHandle, packageName: String) {
@@ -73,92 +89,83 @@ class IconCacheUpdateHandler(
             packageAppInfoMap.getOrPut(packageKey) { cachingLogic.getApplicationInfo(app) }
         }
 
-        if (firstPass) {
-            userComponentMap.forEach { (user, componentMap) ->
-                updateIconsPerUserForFirstPass(user, componentMap, cachingLogic, onUpdateCallback)
-            }
-        } else {
-            userComponentMap.forEach { (user, componentMap) ->
-                updateIconsPerUserForSecondPass(user, componentMap, cachingLogic, onUpdateCallback)
-            }
+        val source = "${passCount}_${cachingLogic.javaClass.name}"
+        userComponentMap.forEach { (user, componentMap) ->
+            updateIconsPerUser(user, componentMap, source, cachingLogic, onUpdateCallback)
         }
 
         // From now on, clear every valid item from the global valid map.
         firstPass = false
+        passCount++
     }
 
     /**
      * During the first pass, all the items from the cache are verified one-by-one and any entry
-     * with no corresponding entry in {@code componentMap} is added to {@code itemsToDelete}
+     * with no corresponding entry in {@code componentMap} is added to {@code itemsToDelete}. During
+     * the following passes, the items in {@code itemsToDelete} with a corresponding entry in
+     * {@code componentMap} are removed from it.
+     *
+     * If the [journal] has a valid record for the user and [source], components of packages which
+     * did not change since the last run are assumed to be up-to-date. The rows of the remaining
+     * packages are loaded and verified by each pass, including the following ones, as the rows of
+     * their source were not loaded by the first pass.
      *
      * Also starts a SerializedIconUpdateTask for all updated entries
      */
-    private fun <T : Any> updateIconsPerUserForFirstPass(
+    private fun <T : Any> updateIconsPerUser(
         user: UserHandle,
         componentMap: MutableMap<ComponentName, T>,
+        source: String,
         cachingLogic: CachingLogic<T>,
         onUpdateCallback: OnUpdateCallback,
     ) {
         val appsToUpdate = ArrayDeque<T>()
 
         val userSerial = iconCache.getSerialNumberForUser(user)
+        val ignorePackages = packagesToIgnore[user] ?: emptySet()
+        val packageRecords = createPackageRecords(componentMap, cachingLogic)
+        val isFullyScanned = fullyScannedUsers.contains(user)
+        if (journal != null && !isFullyScanned) {
+            componentMap.keys.forEach { verifiedComponents.add(ComponentKey(it, user)) }
+        }
+        val changedPackages =
+            if (isFullyScanned) null
+            else removeVerifiedPackages(userSerial, source, componentMap, packageRecords)
+
+        if (changedPackages == null) {
+            // All the rows not verified yet are loaded in itemsToDelete, following passes only
+            // need to go through them
+            fullyScannedUsers.add(user)
+        }
+        // Packages whose rows are loaded, all packages if null
+        val queries: List<List<String>?> =
+            when {
+                isFullyScanned -> emptyList()
+                changedPackages == null -> listOf(null)
+                else -> {
+                    Log.d(TAG, "Verifying icons of changed packages, count=${changedPackages.size}")
+                    changedPackages.chunked(MAX_PACKAGES_PER_QUERY)
+                }
+            }
+
         try {
-            cacheDb
-                .query(
-                    arrayOf(
-                        BaseIconCache.COLUMN_ROWID,
-                        BaseIconCache.COLUMN_COMPONENT,
-                        BaseIconCache.COLUMN_FRESHNESS_ID,
-                    ),
-                    "${BaseIconCache.COLUMN_USER} = ? ",
-                    arrayOf(userSerial.toString()),
-                )
-                .use { c ->
-                    var ignorePackages = packagesToIgnore[user] ?: emptySet()
-
-                    val indexComponent = c.getColumnIndex(BaseIconCache.COLUMN_COMPONENT)
-                    val indexFreshnessId = c.getColumnIndex(BaseIconCache.COLUMN_FRESHNESS_ID)
-                    val rowIndex = c.getColumnIndex(BaseIconCache.COLUMN_ROWID)
-
-                    while (c.moveToNext()) {
-                        val rowId = c.getInt(rowIndex)
-                        val cn = c.getString(indexComponent)
-                        val freshnessId = c.getString(indexFreshnessId) ?: ""
-
-                        val component = ComponentName.unflattenFromString(cn)
-                        if (component == null) {
-                            // b/357725795
-                            Log.e(TAG, "Invalid component name while updating icon cache: $cn")
-                            itemsToDelete.add(
-                                UpdateRow(rowId, ComponentName("", ""), user, freshnessId)
-                            )
-                            continue
-                        }
-
-                        val app = componentMap.remove(component)
-                        if (app == null) {
-                            if (!ignorePackages.contains(component.packageName)) {
-                                iconCache.remove(component, user)
-                                itemsToDelete.add(UpdateRow(rowId, component, user, freshnessId))
-                            }
-                            continue
-                        }
-
-                        if (
-                            freshnessId ==
-                                cachingLogic.getFreshnessIdentifier(app, iconCache.iconProvider)
-                        ) {
-                            // Item is up-to-date
-                            continue
-                        }
-                        appsToUpdate.add(app)
-                    }
+            verifyItemsToDelete(user, componentMap, appsToUpdate, cachingLogic)
+            queries.forEach { packages ->
+                queryRows(userSerial, packages).use { c ->
+                    verifyRows(c, user, componentMap, appsToUpdate, cachingLogic, ignorePackages)
                 }
+            }
         } catch (e: SQLiteException) {
             Log.d(TAG, "Error reading icon cache", e)
             // Continue updating whatever we have read so far
         }
 
+        // Packages with pending updates or which are ignored are not verified yet
+        componentMap.keys.forEach { packageRecords.remove(it.packageName) }
+        appsToUpdate.forEach { packageRecords.remove(cachingLogic.getComponent(it).packageName) }
+        ignorePackages.forEach { packageRecords.remove(it) }
+        journalRecords.getOrPut(userSerial) { HashMap() }[source] = packageRecords
+
         // Insert remaining apps.
         if (componentMap.isNotEmpty() || appsToUpdate.isNotEmpty()) {
             val appsToAdd = ArrayDeque(componentMap.values)
@@ -175,23 +182,163 @@ class IconCacheUpdateHandler(
     }
 
     /**
-     * During the second pass, we go through the items in {@code itemsToDelete}, and remove any item
-     * with corresponding entry in {@code componentMap}.
+     * Returns the current [PackageRecord] for all packages in [componentMap]. Packages whose
+     * components don't share a single freshness identifier are skipped, so that they are always
+     * verified.
+     */
+    private fun <T : Any> createPackageRecords(
+        componentMap: Map<ComponentName, T>,
+        cachingLogic: CachingLogic<T>,
+    ): HashMap<String, PackageRecord> {
+        if (journal == null) return HashMap()
+        val records = HashMap<String, PackageRecord>()
+        val invalidPackages = HashSet<String>()
+        componentMap.forEach { (cn, app) ->
+            val packageName = cn.packageName
+            if (invalidPackages.contains(packageName)) return@forEach
+            val freshnessId = cachingLogic.getFreshnessIdentifier(app, iconCache.iconProvider)
+            val record = records[packageName]
+            if (freshnessId == null || (record != null && record.freshnessId != freshnessId)) {
+                records.remove(packageName)
+                invalidPackages.add(packageName)
+            } else {
+                records[packageName] =
+                    PackageRecord(
+                        (record?.componentsHash ?: 0) + cn.className.hashCode(),
+                        freshnessId,
+                    )
+            }
+        }
+        return records
+    }
+
+    /**
+     * Removes all components of packages which are unchanged since the last journal entry from
+     * [componentMap] and returns the packages which still need to be verified, or null if a full
+     * scan is required.
      */
-    private fun <T : Any> updateIconsPerUserForSecondPass(
+    private fun <T : Any> removeVerifiedPackages(
+        userSerial: Long,
+        source: String,
+        componentMap: MutableMap<ComponentName, T>,
+        packageRecords: Map<String, PackageRecord>,
+    ): Set<String>? {
+        val verifiedPackages = journal?.getVerifiedPackages(userSerial, source) ?: return null
+
+        val changedPackages = HashSet<String>()
+        // Packages which were removed since the last run
+        verifiedPackages.keys.filterTo(changedPackages) { !packageRecords.containsKey(it) }
+        // Packages which were added or updated since the last run
+        componentMap.keys.forEach { cn ->
+            val packageName = cn.packageName
+            val record = packageRecords[packageName]
+            if (record == null || record != verifiedPackages[packageName]) {
+                changedPackages.add(packageName)
+            }
+        }
+        if (changedPackages.size > MAX_CHANGED_PACKAGES) {
+            return null
+        }
+        componentMap.keys.removeIf { !changedPackages.contains(it.packageName) }
+        return changedPackages
+    }
+
+    /** Queries the rows for the user, optionally limited to the provided packages */
+    private fun queryRows(userSerial: Long, packages: List<String>?): Cursor {
+        val columns =
+            arrayOf(
+                BaseIconCache.COLUMN_ROWID,
+                BaseIconCache.COLUMN_COMPONENT,
+                BaseIconCache.COLUMN_FRESHNESS_ID,
+            )
+        if (packages == null) {
+            return cacheDb.query(
+                columns,
+                "${BaseIconCache.COLUMN_USER} = ? ",
+                arrayOf(userSerial.toString()),
+            )
+        }
+        // GLOB is used instead of LIKE, as it is case sensitive and '_' is not a wildcard
+        val selection =
+            packages.joinToString(
+                separator = " OR ",
+                prefix = "${BaseIconCache.COLUMN_USER} = ? AND (",
+                postfix = ")",
+            ) {
+                "${BaseIconCache.COLUMN_COMPONENT} GLOB ?"
+            }
+        val args = arrayOf(userSerial.toString()) + packages.map { "$it/*" }
+        return cacheDb.query(columns, selection, args)
+    }
+
+    private fun <T : Any> verifyRows(
+        c: Cursor,
         user: UserHandle,
         componentMap: MutableMap<ComponentName, T>,
+        appsToUpdate: ArrayDeque<T>,
         cachingLogic: CachingLogic<T>,
-        onUpdateCallback: OnUpdateCallback,
+        ignorePackages: Set<String>,
     ) {
-        val userSerial = iconCache.getSerialNumberForUser(user)
-        val appsToUpdate = ArrayDeque<T>()
+        val indexComponent = c.getColumnIndex(BaseIconCache.COLUMN_COMPONENT)
+        val indexFreshnessId = c.getColumnIndex(BaseIconCache.COLUMN_FRESHNESS_ID)
+        val rowIndex = c.getColumnIndex(BaseIconCache.COLUMN_ROWID)
+
+        while (c.moveToNext()) {
+            val rowId = c.getInt(rowIndex)
+            val cn = c.getString(indexComponent)
+            val freshnessId = c.getString(indexFreshnessId) ?: ""
+
+            val component = ComponentName.unflattenFromString(cn)
+            if (component == null) {
+                // b/357725795
+                Log.e(TAG, "Invalid component name while updating icon cache: $cn")
+                itemsToDelete.add(UpdateRow(rowId, ComponentName("", ""), user, freshnessId))
+                continue
+            }
+
+            val app = componentMap.remove(component)
+            if (app == null) {
+                if (verifiedComponents.contains(ComponentKey(component, user))) {
+                    // Verified by this or an earlier pass
+                    continue
+                }
+                if (!ignorePackages.contains(component.packageName)) {
+                    iconCache.remove(component, user)
+                    itemsToDelete.add(UpdateRow(rowId, component, user, freshnessId))
+                }
+                continue
+            }
 
+            if (freshnessId == cachingLogic.getFreshnessIdentifier(app, iconCache.iconProvider)) {
+                // Item is up-to-date
+                continue
+            }
+            appsToUpdate.add(app)
+        }
+    }
+
+    /**
+     * Goes through the items in {@code itemsToDelete} loaded by earlier passes, and removes any
+     * item with corresponding entry in {@code componentMap}, or which was verified using the
+     * journal.
+     */
+    private fun <T : Any> verifyItemsToDelete(
+        user: UserHandle,
+        componentMap: MutableMap<ComponentName, T>,
+        appsToUpdate: ArrayDeque<T>,
+        cachingLogic: CachingLogic<T>,
+    ) {
         val itr = itemsToDelete.iterator()
         while (itr.hasNext()) {
             val row = itr.next()
             if (user != row.user) continue
-            val app = componentMap.remove(row.componentName) ?: continue
+            val app = componentMap.remove(row.componentName)
+            if (app == null) {
+                if (verifiedComponents.contains(ComponentKey(row.componentName, user))) {
+                    itr.remove()
+                }
+                continue
+            }
 
             itr.remove()
             if (
@@ -200,21 +347,6 @@ class IconCacheUpdateHandler(
                 appsToUpdate.add(app)
             }
         }
-
-        // Insert remaining apps.
-        if (componentMap.isNotEmpty() || appsToUpdate.isNotEmpty()) {
-            val appsToAdd = ArrayDeque<T>()
-            appsToAdd.addAll(componentMap.values)
-            SerializedIconUpdateTask(
-                    userSerial,
-                    user,
-                    appsToAdd,
-                    appsToUpdate,
-                    cachingLogic,
-                    onUpdateCallback,
-                )
-                .scheduleNext()
-        }
     }
 
     /**
@@ -234,6 +366,10 @@ class IconCacheUpdateHandler(
             cacheDb.delete("${BaseIconCache.COLUMN_ROWID} IN ($r)", null)
             Log.d(TAG, "Deleting obsolete entries, count=" + itemsToDelete.size)
         }
+
+        if (!firstPass) {
+            journal?.write(journalRecords)
+        }
     }
 
     data class UpdateRow(
@@ -245,7 +381,8 @@ class IconCacheUpdateHandler(
 
     /**
      * A runnable that updates invalid icons and adds missing icons in the DB for the provided
-     * LauncherActivityInfo list. Items are updated/added one at a time, so that the worker thread
+     * LauncherActivityInfo list. Items are updated/added in small batches, each written in a single
+     * DB transaction. A batch ends once [BATCH_TIME_BUDGET_MS] is spent, so that the worker thread
      * doesn't get blocked.
      */
     private inner class SerializedIconUpdateTask<T : Any>(
@@ -258,26 +395,60 @@ class IconCacheUpdateHandler(
     ) : Runnable {
         private val updatedPackages = HashSet<String>()
 
-        override fun run() {
-            if (appsToUpdate.isNotEmpty()) {
-                val app = appsToUpdate.removeLast()
-                val pkg = cachingLogic.getComponent(app).packageName
+        private val startTime = SystemClock.uptimeMillis()
+        private var iconCount = 0
+        private var batchCount = 0
+        private var totalBatchTime = 0L
+        private var maxBatchTime = 0L
 
-                iconCache.addIconToDBAndMemCache(app, cachingLogic, userSerial)
-                updatedPackages.add(pkg)
+        override fun run() {
+            val batchStartTime = SystemClock.uptimeMillis()
+            var notifyUpdate = false
+            cacheDb.newTransaction().use { transaction ->
+                var batchSize = 0
+                do {
+                    if (appsToUpdate.isNotEmpty()) {
+                        val app = appsToUpdate.removeLast()
+                        val pkg = cachingLogic.getComponent(app).packageName
+
+                        iconCache.addIconToDBAndMemCache(app, cachingLogic, userSerial)
+                        updatedPackages.add(pkg)
+
+                        // No more app to update. Notify callback once the batch is committed.
+                        notifyUpdate = appsToUpdate.isEmpty() && updatedPackages.isNotEmpty()
+                    } else if (appsToAdd.isNotEmpty()) {
+                        iconCache.addIconToDBAndMemCache(
+                            appsToAdd.removeLast(),
+                            cachingLogic,
+                            userSerial,
+                        )
+                    } else {
+                        break
+                    }
+                    batchSize++
+                } while (
+                    !notifyUpdate &&
+                        batchSize < MAX_BATCH_SIZE &&
+                        SystemClock.uptimeMillis() - batchStartTime < BATCH_TIME_BUDGET_MS
+                )
+                transaction.commit()
+                iconCount += batchSize
+            }
 
-                if (appsToUpdate.isEmpty() && updatedPackages.isNotEmpty()) {
-                    // No more app to update. Notify callback.
-                    onUpdateCallback.onPackageIconsUpdated(updatedPackages, userHandle)
-                }
+            val batchTime = SystemClock.uptimeMillis() - batchStartTime
+            batchCount++
+            totalBatchTime += batchTime
+            maxBatchTime = maxOf(maxBatchTime, batchTime)
 
-                // Let it run one more time.
-                scheduleNext()
-            } else if (appsToAdd.isNotEmpty()) {
-                iconCache.addIconToDBAndMemCache(appsToAdd.removeLast(), cachingLogic, userSerial)
+            if (notifyUpdate) {
+                onUpdateCallback.onPackageIconsUpdated(updatedPackages, userHandle)
+            }
 
+            if (appsToUpdate.isNotEmpty() || appsToAdd.isNotEmpty()) {
                 // Let it run one more time.
                 scheduleNext()
+            } else {
+                logStats()
             }
         }
 
@@ -288,6 +459,17 @@ class IconCacheUpdateHandler(
                 SystemClock.uptimeMillis() + 1,
             )
         }
+
+        private fun logStats() {
+            val totalTime = SystemClock.uptimeMillis() - startTime
+            val iconsPerSec = if (totalTime > 0) iconCount * 1000 / totalTime else iconCount
+            Log.d(
+                TAG,
+                "Icon update complete for user=$userSerial: icons=$iconCount, " +
+                    "batches=$batchCount, iconsPerSec=$iconsPerSec, " +
+                    "avgBatchMs=${totalBatchTime / batchCount}, maxBatchMs=$maxBatchTime",
+            )
+        }
     }
 
     fun interface OnUpdateCallback {
@@ -296,5 +478,13 @@ class IconCacheUpdateHandler(
 
     companion object {
         private const val TAG = "IconCacheUpdateHandler"
+
+        // Above this, a single full scan is cheaper than multiple package specific queries
+        private const val MAX_CHANGED_PACKAGES = 100
+        private const val MAX_PACKAGES_PER_QUERY = 50
+
+        // Time spent writing a single batch of icons before yielding to the looper
+        private const val BATCH_TIME_BUDGET_MS = 8L
+        private const val MAX_BATCH_SIZE = 64
     }
 }
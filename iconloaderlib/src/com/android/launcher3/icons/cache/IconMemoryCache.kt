@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.icons.cache
+
+import android.content.ComponentCallbacks2.TRIM_MEMORY_MODERATE
+import android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+import android.content.ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN
+import com.android.launcher3.icons.BitmapInfo
+import com.android.launcher3.icons.cache.BaseIconCache.CacheEntry
+import com.android.launcher3.util.ComponentKey
+import java.io.PrintWriter
+
+/**
+ * In-memory cache of [CacheEntry] bounded by the total byte count of the cached bitmaps. When the
+ * budget is exceeded, least recently used entries are evicted first. Pinned entries, typically the
+ * ones bound to the workspace, are never evicted or downgraded. They are kept apart from the other
+ * entries, so that evicting never needs to skip them.
+ *
+ * This class is not thread safe and must be accessed with the [BaseIconCache] lock held.
+ */
+class IconMemoryCache(private var maxBytes: Long) {
+
+    private class Node(val entry: CacheEntry, val bytes: Int)
+
+    // Unpinned entries, from the least to the most recently used
+    private val nodes = LinkedHashMap<ComponentKey, Node>(INITIAL_CAPACITY, 0.75f, true)
+    private val pinnedNodes = HashMap<ComponentKey, Node>()
+    private var pinnedKeys: Set<ComponentKey> = emptySet()
+    private var totalBytes = 0L
+
+    private var hitCount = 0
+    private var missCount = 0
+    private var evictionCount = 0
+    private var downgradeCount = 0
+
+    operator fun get(key: ComponentKey): CacheEntry? = (pinnedNodes[key] ?: nodes[key])?.entry
+
+    operator fun set(key: ComponentKey, entry: CacheEntry) {
+        if (maxBytes <= 0) return
+        val node = Node(entry, getByteCount(entry))
+        val map = if (pinnedKeys.contains(key)) pinnedNodes else nodes
+        map.put(key, node)?.let { totalBytes -= it.bytes }
+        totalBytes += node.bytes
+        trimToSize(maxBytes)
+    }
+
+    fun remove(key: ComponentKey): CacheEntry? =
+        (pinnedNodes.remove(key) ?: nodes.remove(key))?.let {
+            totalBytes -= it.bytes
+            it.entry
+        }
+
+    fun removeIf(predicate: (ComponentKey) -> Boolean) {
+        removeIf(nodes, predicate)
+        removeIf(pinnedNodes, predicate)
+    }
+
+    private fun removeIf(
+        map: MutableMap<ComponentKey, Node>,
+        predicate: (ComponentKey) -> Boolean,
+    ) {
+        val itr = map.entries.iterator()
+        while (itr.hasNext()) {
+            val (key, node) = itr.next()
+            if (predicate(key)) {
+                itr.remove()
+                totalBytes -= node.bytes
+            }
+        }
+    }
+
+    fun clear() {
+        nodes.clear()
+        pinnedNodes.clear()
+        totalBytes = 0
+    }
+
+    /**
+     * Sets the entries which should not be evicted from the cache. Entries which are no longer
+     * pinned become the most recently used ones.
+     */
+    fun setPinnedKeys(keys: Set<ComponentKey>) {
+        pinnedKeys = keys
+        val itr = pinnedNodes.entries.iterator()
+        while (itr.hasNext()) {
+            val (key, node) = itr.next()
+            if (!keys.contains(key)) {
+                itr.remove()
+                nodes[key] = node
+            }
+        }
+        for (key in keys) {
+            nodes.remove(key)?.let { pinnedNodes[key] = it }
+        }
+        trimToSize(maxBytes)
+    }
+
+    /** Records the result of a lookup for [dump] */
+    fun recordLookup(hit: Boolean) {
+        if (hit) hitCount++ else missCount++
+    }
+
+    /**
+     * Releases memory based on the provided level:
+     * - while running low, the cache is trimmed to half of its budget
+     * - once the UI is hidden, unpinned entries are downgraded to low-res
+     * - at moderate or above, all unpinned entries are evicted
+     */
+    fun onTrimMemory(level: Int) {
+        when {
+            level >= TRIM_MEMORY_MODERATE -> trimToSize(0)
+            level >= TRIM_MEMORY_UI_HIDDEN -> downgradeUnpinnedEntries()
+            level >= TRIM_MEMORY_RUNNING_LOW -> trimToSize(maxBytes / 2)
+        }
+    }
+
+    private fun trimToSize(size: Long) {
+        // Every visited entry is evicted, as pinned entries are not in nodes
+        val itr = nodes.values.iterator()
+        while (totalBytes > size && itr.hasNext()) {
+            totalBytes -= itr.next().bytes
+            itr.remove()
+            evictionCount++
+        }
+    }
+
+    private fun downgradeUnpinnedEntries() {
+        for (mapEntry in nodes.entries) {
+            val node = mapEntry.value
+            if (node.bytes == 0) continue
+            val lowRes =
+                CacheEntry().apply {
+                    bitmap =
+                        BitmapInfo.of(BitmapInfo.LOW_RES_ICON, node.entry.bitmap.color).also {
+                            it.flags = node.entry.bitmap.flags
+                        }
+                    title = node.entry.title
+                    contentDescription = node.entry.contentDescription
+                }
+            // Use setValue, as put would count as an access and reorder the map while iterating
+            mapEntry.setValue(Node(lowRes, 0))
+            totalBytes -= node.bytes
+            downgradeCount++
+        }
+    }
+
+    fun dump(prefix: String, writer: PrintWriter) {
+        writer.println("${prefix}IconMemoryCache:")
+        writer.println(
+            "$prefix  entries=${nodes.size + pinnedNodes.size} pinned=${pinnedNodes.size}" +
+                " bytes=$totalBytes maxBytes=$maxBytes"
+        )
+        writer.println(
+            "$prefix  hits=$hitCount misses=$missCount evictions=$evictionCount" +
+                " downgrades=$downgradeCount"
+        )
+    }
+
+    companion object {
+        private const val INITIAL_CAPACITY = 50
+
+        private fun getByteCount(entry: CacheEntry): Int =
+            entry.bitmap.let { if (it.isNullOrLowRes) 0 else it.icon.allocationByteCount }
+    }
+}
@@ -66,6 +66,26 @@ public abstract class SQLiteCacheHelper {
         }
     }
 
+    /**
+     * Starts a new transaction, so that multiple writes can be committed together. Similar to
+     * other write operations, any failure is ignored and the writes are applied individually.
+     */
+    public Transaction newTransaction() {
+        if (mIgnoreWrites) {
+            return new Transaction(null);
+        }
+        try {
+            SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+            db.beginTransaction();
+            return new Transaction(db);
+        } catch (SQLiteFullException e) {
+            onDiskFull(e);
+        } catch (SQLiteException e) {
+            Log.d(TAG, "Ignoring sqlite exception", e);
+        }
+        return new Transaction(null);
+    }
+
     private void onDiskFull(SQLiteFullException e) {
         Log.e(TAG, "Disk full, all write operations will be ignored", e);
         mIgnoreWrites = true;
@@ -89,6 +109,42 @@ public abstract class SQLiteCacheHelper {
 
     protected abstract void onCreateTable(SQLiteDatabase db);
 
+    /**
+     * A transaction started using {@link #newTransaction()}. All the writes made before closing
+     * the transaction are rolled back, unless {@link #commit()} is called.
+     */
+    public class Transaction implements SafeCloseable {
+
+        private final SQLiteDatabase mDb;
+
+        private Transaction(SQLiteDatabase db) {
+            mDb = db;
+        }
+
+        /**
+         * Marks the transaction as successful
+         */
+        public void commit() {
+            if (mDb != null) {
+                mDb.setTransactionSuccessful();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (mDb == null) {
+                return;
+            }
+            try {
+                mDb.endTransaction();
+            } catch (SQLiteFullException e) {
+                onDiskFull(e);
+            } catch (SQLiteException e) {
+                Log.d(TAG, "Ignoring sqlite exception", e);
+            }
+        }
+    }
+
     /**
      * A private inner class to prevent direct DB access.
      */
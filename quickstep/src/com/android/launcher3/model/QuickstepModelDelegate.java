@@ -46,10 +46,10 @@ import android.content.pm.LauncherActivityInfo;
 import android.content.pm.LauncherApps;
 import android.content.pm.ShortcutInfo;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.os.UserHandle;
 import android.text.TextUtils;
 import android.util.Log;
-import android.util.StatsEvent;
 
 import androidx.annotation.AnyThread;
 import androidx.annotation.CallSuper;
@@ -69,14 +69,12 @@ import com.android.launcher3.logging.InstanceId;
 import com.android.launcher3.logging.InstanceIdSequence;
 import com.android.launcher3.model.BgDataModel.FixedContainerItems;
 import com.android.launcher3.model.data.AppInfo;
-import com.android.launcher3.model.data.CollectionInfo;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.pm.UserCache;
 import com.android.launcher3.shortcuts.ShortcutKey;
 import com.android.launcher3.util.ApiWrapper;
 import com.android.launcher3.util.Executors;
-import com.android.launcher3.util.IntSparseArrayMap;
 import com.android.launcher3.util.PackageManagerHelper;
 import com.android.launcher3.util.PersistedItemArray;
 import com.android.quickstep.logging.SettingsChangeLogger;
@@ -84,6 +82,8 @@ import com.android.quickstep.logging.StatsLogCompatManager;
 import com.android.quickstep.util.ContextualSearchStateManager;
 import com.android.systemui.shared.system.SysUiStatsLog;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -126,6 +126,10 @@ public class QuickstepModelDelegate extends ModelDelegate {
 
     protected boolean mActive = false;
 
+    // Protos of the items logged by the current snapshot pull, only used on the model thread
+    private final ArrayList<LauncherAtom.ItemInfo> mSnapshotProtos = new ArrayList<>();
+    private volatile long mLastSnapshotPullMs = -1;
+
     @Inject
     public QuickstepModelDelegate(@ApplicationContext Context context,
             InvariantDeviceProfile idp,
@@ -248,14 +252,11 @@ public class QuickstepModelDelegate extends ModelDelegate {
                         elapsedTime));
             }
         } else {
-            IntSparseArrayMap<ItemInfo> itemsIdMap;
-            synchronized (mDataModel) {
-                itemsIdMap = mDataModel.itemsIdMap.clone();
-            }
+            ArrayList<LauncherAtom.ItemInfo> protos = new ArrayList<>();
+            mDataModel.collectItemProtos(mContext, protos);
             InstanceId instanceId = new InstanceIdSequence().newInstanceId();
-            for (ItemInfo info : itemsIdMap) {
-                CollectionInfo parent = getContainer(info, itemsIdMap);
-                StatsLogCompatManager.writeSnapshot(info.buildProto(parent, mContext), instanceId);
+            for (LauncherAtom.ItemInfo itemInfo : protos) {
+                StatsLogCompatManager.writeSnapshot(itemInfo, instanceId);
             }
             additionalSnapshotEvents(instanceId);
             prefs.put(LAST_SNAPSHOT_TIME_MILLIS, now);
@@ -280,26 +281,26 @@ public class QuickstepModelDelegate extends ModelDelegate {
                     null /* PullAtomMetadata */,
                     MODEL_EXECUTOR,
                     (i, eventList) -> {
+                        long startTime = SystemClock.elapsedRealtime();
                         InstanceId instanceId = new InstanceIdSequence().newInstanceId();
-                        IntSparseArrayMap<ItemInfo> itemsIdMap;
-                        synchronized (mDataModel) {
-                            itemsIdMap = mDataModel.itemsIdMap.clone();
-                        }
-
-                        for (ItemInfo info : itemsIdMap) {
-                            CollectionInfo parent = getContainer(info, itemsIdMap);
-                            LauncherAtom.ItemInfo itemInfo = info.buildProto(parent, mContext);
-                            Log.d(TAG, itemInfo.toString());
-                            StatsEvent statsEvent = StatsLogCompatManager.buildStatsEvent(itemInfo,
-                                    instanceId);
-                            eventList.add(statsEvent);
+                        int builtCount = mDataModel.collectItemProtos(mContext, mSnapshotProtos);
+                        int itemCount = mSnapshotProtos.size();
+                        try {
+                            for (int j = 0; j < itemCount; j++) {
+                                eventList.add(StatsLogCompatManager.buildStatsEvent(
+                                        mSnapshotProtos.get(j), instanceId));
+                            }
+                        } finally {
+                            mSnapshotProtos.clear();
                         }
-                        Log.d(TAG,
-                                String.format(
-                                        "Successfully logged %d workspace items with instanceId=%d",
-                                        itemsIdMap.size(), instanceId.getId()));
                         additionalSnapshotEvents(instanceId);
                         SettingsChangeLogger.INSTANCE.get(mContext).logSnapshot(instanceId);
+
+                        mLastSnapshotPullMs = SystemClock.elapsedRealtime() - startTime;
+                        Log.d(TAG, String.format(
+                                "Successfully logged %d workspace items (%d protos built) in"
+                                        + " %dms with instanceId=%d",
+                                itemCount, builtCount, mLastSnapshotPullMs, instanceId.getId()));
                         return StatsManager.PULL_SUCCESS;
                     }
             );
@@ -310,23 +311,6 @@ public class QuickstepModelDelegate extends ModelDelegate {
         }
     }
 
-    private static CollectionInfo getContainer(
-            ItemInfo info, IntSparseArrayMap<ItemInfo> itemsIdMap) {
-        if (info.container > 0) {
-            ItemInfo containerInfo = itemsIdMap.get(info.container);
-
-            if (!(containerInfo instanceof CollectionInfo)) {
-                Log.e(TAG, String.format(
-                        "Item info: %s found with invalid container: %s",
-                        info,
-                        containerInfo));
-            }
-            // Allow crash to help debug b/173838775
-            return (CollectionInfo) containerInfo;
-        }
-        return null;
-    }
-
     @Override
     public void validateData() {
         super.validateData();
@@ -354,6 +338,13 @@ public class QuickstepModelDelegate extends ModelDelegate {
         destroyPredictors();
     }
 
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        writer.println(prefix + "QuickstepModelDelegate:");
+        writer.println(prefix + "\tlastSnapshotPullMs=" + mLastSnapshotPullMs);
+    }
+
     private void destroyPredictors() {
         mAllAppsState.destroyPredictor();
         mHotseatState.destroyPredictor();
@@ -360,6 +360,7 @@ public class RecentsModel implements RecentTasksDataSource, TaskStackChangeListe
     public void dump(String prefix, PrintWriter writer) {
         writer.println(prefix + "RecentsModel:");
         mTaskList.dump("  ", writer);
+        mThumbnailCache.dump("  ", writer);
     }
 
     /**
@@ -41,7 +41,7 @@ import com.android.launcher3.util.FlagOp
 import com.android.launcher3.util.Preconditions
 import com.android.quickstep.task.thumbnail.data.TaskIconDataSource
 import com.android.quickstep.util.IconLabelUtil.getBadgedContentDescription
-import com.android.quickstep.util.TaskKeyLruCache
+import com.android.quickstep.util.TaskKeyConcurrentLruCache
 import com.android.quickstep.util.TaskVisualsChangeListener
 import com.android.systemui.shared.recents.model.Task
 import com.android.systemui.shared.recents.model.Task.TaskKey
@@ -56,7 +56,7 @@ class TaskIconCache(
     displayController: DisplayController,
 ) : TaskIconDataSource, DisplayInfoChangeListener {
     private val iconCache =
-        TaskKeyLruCache<TaskCacheEntry>(
+        TaskKeyConcurrentLruCache<TaskCacheEntry>(
             context.resources.getInteger(R.integer.recentsIconCacheSize)
         )
     private val defaultIcons = SparseArray<BitmapInfo>()
@@ -16,6 +16,7 @@
 package com.android.quickstep
 
 import android.content.Context
+import android.os.SystemClock
 import androidx.annotation.VisibleForTesting
 import androidx.annotation.WorkerThread
 import com.android.launcher3.Flags.enableGridOnlyOverview
@@ -26,12 +27,15 @@ import com.android.launcher3.util.Preconditions
 import com.android.quickstep.task.thumbnail.data.TaskThumbnailDataSource
 import com.android.quickstep.util.TaskKeyByLastActiveTimeCache
 import com.android.quickstep.util.TaskKeyCache
+import com.android.quickstep.util.TaskKeyConcurrentLruCache
 import com.android.quickstep.util.TaskKeyLruCache
 import com.android.systemui.shared.recents.model.Task
 import com.android.systemui.shared.recents.model.Task.TaskKey
 import com.android.systemui.shared.recents.model.ThumbnailData
 import com.android.systemui.shared.system.ActivityManagerWrapper
+import java.io.PrintWriter
 import java.util.concurrent.Executor
+import java.util.concurrent.atomic.AtomicInteger
 import java.util.function.Consumer
 
 class TaskThumbnailCache
@@ -45,6 +49,19 @@ internal constructor(
     private val enableTaskSnapshotPreloading =
         context.resources.getBoolean(R.bool.config_enableTaskSnapshotPreloading)
 
+    // Thumbnails loaded ahead of their task being shown, which move to the cache when requested.
+    // They are kept apart so that prefetching never evicts the thumbnails of the visible tasks.
+    private val prefetchCache =
+        TaskKeyLruCache<ThumbnailData>(Int.MAX_VALUE, PREFETCH_CACHE_MAX_BYTES) {
+            it.thumbnail?.allocationByteCount ?: 0
+        }
+    private val prefetchRequests = HashMap<Int, CancellableTask<ThumbnailData>>()
+
+    private val prefetchCount = AtomicInteger()
+    private val prefetchHitCount = AtomicInteger()
+    private var thumbnailRequestCount = 0
+    private var thumbnailRequestTotalMs = 0L
+
     @JvmOverloads
     constructor(
         context: Context,
@@ -54,7 +71,7 @@ internal constructor(
         context,
         bgExecutor,
         if (enableGridOnlyOverview()) TaskKeyByLastActiveTimeCache(cacheSize)
-        else TaskKeyLruCache(cacheSize),
+        else TaskKeyConcurrentLruCache(cacheSize),
     )
 
     /**
@@ -77,6 +94,7 @@ internal constructor(
     fun updateTaskSnapShot(taskId: Int, thumbnail: ThumbnailData?) {
         Preconditions.assertUIThread()
         cache.updateIfAlreadyInCache(taskId, thumbnail)
+        prefetchCache.updateIfAlreadyInCache(taskId, thumbnail)
     }
 
     // TODO(b/387496731): Add ensureActive() calls if they show performance benefit
@@ -96,7 +114,7 @@ internal constructor(
         }
 
         // Check cache for thumbnail
-        val cachedThumbnail: ThumbnailData? = cache.getAndInvalidateIfModified(task.key)
+        val cachedThumbnail: ThumbnailData? = getCachedThumbnail(task.key)
         if (
             cachedThumbnail?.thumbnail != null &&
                 (!cachedThumbnail.reducedResolution || lowResolution)
@@ -150,7 +168,65 @@ internal constructor(
             return null
         }
 
-        return getThumbnailInBackground(task.key, !highResLoadingState.isEnabled, callback)
+        val requestTime = SystemClock.uptimeMillis()
+        return getThumbnailInBackground(task.key, !highResLoadingState.isEnabled) { thumbnailData ->
+            thumbnailRequestCount++
+            thumbnailRequestTotalMs += SystemClock.uptimeMillis() - requestTime
+            callback.accept(thumbnailData)
+        }
+    }
+
+    /**
+     * Loads the thumbnails of [tasks] in the background, ahead of the tasks being shown, and
+     * cancels the pending prefetch of other tasks.
+     */
+    fun prefetchThumbnails(tasks: List<Task>) {
+        Preconditions.assertUIThread()
+        val taskIds = tasks.mapTo(HashSet()) { it.key.id }
+        prefetchRequests.entries.removeIf { (taskId, request) ->
+            val isStale = taskId !in taskIds
+            if (isStale) request.cancel()
+            isStale
+        }
+
+        val lowResolution = !highResLoadingState.isEnabled
+        for (task in tasks) {
+            val key = task.key
+            if (
+                task.thumbnail?.thumbnail != null ||
+                    prefetchRequests.containsKey(key.id) ||
+                    cache.getAndInvalidateIfModified(key) != null ||
+                    prefetchCache.getAndInvalidateIfModified(key) != null
+            ) {
+                continue
+            }
+            val request =
+                CancellableTask(
+                    { ActivityManagerWrapper.getInstance().getTaskThumbnail(key.id, lowResolution) },
+                    Executors.MAIN_EXECUTOR,
+                    Consumer { result: ThumbnailData ->
+                        prefetchRequests.remove(key.id)
+                        if (result.thumbnail != null) {
+                            prefetchCache.put(key, result)
+                        }
+                    },
+                )
+            prefetchRequests[key.id] = request
+            prefetchCount.incrementAndGet()
+            bgExecutor.execute(request)
+        }
+    }
+
+    /** Returns the cached thumbnail for [key], moving it to the cache if it was prefetched. */
+    private fun getCachedThumbnail(key: TaskKey): ThumbnailData? {
+        cache.getAndInvalidateIfModified(key)?.let {
+            return it
+        }
+        val prefetchedThumbnail = prefetchCache.getAndInvalidateIfModified(key) ?: return null
+        prefetchCache.remove(key)
+        cache.put(key, prefetchedThumbnail)
+        prefetchHitCount.incrementAndGet()
+        return prefetchedThumbnail
     }
 
     /**
@@ -177,7 +253,7 @@ internal constructor(
     ): CancellableTask<ThumbnailData>? {
         Preconditions.assertUIThread()
 
-        val cachedThumbnail = cache.getAndInvalidateIfModified(key)
+        val cachedThumbnail = getCachedThumbnail(key)
         if (
             cachedThumbnail?.thumbnail != null &&
                 (!cachedThumbnail.reducedResolution || lowResolution)
@@ -223,11 +299,13 @@ internal constructor(
     /** Clears the cache. */
     fun clear() {
         cache.evictAll()
+        prefetchCache.evictAll()
     }
 
     /** Removes the cached thumbnail for the given task. */
     fun remove(key: TaskKey) {
         cache.remove(key)
+        prefetchCache.remove(key)
     }
 
     /** Returns The cache size. */
@@ -235,4 +313,24 @@ internal constructor(
 
     /** Returns Whether to enable background preloading of task thumbnails. */
     fun isPreloadingEnabled() = enableTaskSnapshotPreloading && highResLoadingState.visible
+
+    fun dump(prefix: String, writer: PrintWriter) {
+        writer.println("${prefix}TaskThumbnailCache:")
+        writer.println(
+            "$prefix  prefetchCount=${prefetchCount.get()}, " +
+                "prefetchHitCount=${prefetchHitCount.get()}, " +
+                "prefetchCacheBytes=${prefetchCache.sizeInBytes}"
+        )
+        val averageRequestMs =
+            if (thumbnailRequestCount == 0) 0 else thumbnailRequestTotalMs / thumbnailRequestCount
+        writer.println(
+            "$prefix  thumbnailRequestCount=$thumbnailRequestCount, " +
+                "averageTimeToThumbnailMs=$averageRequestMs"
+        )
+    }
+
+    companion object {
+        // Budget of the prefetched thumbnails, a few full screen thumbnails
+        private const val PREFETCH_CACHE_MAX_BYTES = 24L * 1024 * 1024
+    }
 }
@@ -1008,8 +1008,8 @@ public class TouchInteractionService extends Service {
                     break;
                 case ACTION_MOVE:
                     ActiveGestureProtoLogProxy.logOnInputEventActionMove(
-                            MotionEvent.actionToString(action),
-                            MotionEvent.classificationToString(event.getClassification()),
+                            action,
+                            event.getClassification(),
                             event.getPointerCount(),
                             displayId);
                     break;
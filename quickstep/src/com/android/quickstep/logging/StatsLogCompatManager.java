@@ -16,6 +16,7 @@
 
 package com.android.quickstep.logging;
 
+import static android.os.Process.THREAD_PRIORITY_BACKGROUND;
 import static android.view.Surface.ROTATION_180;
 import static android.view.Surface.ROTATION_270;
 import static android.view.Surface.ROTATION_90;
@@ -50,11 +51,11 @@ import android.view.View;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 import androidx.slice.SliceItem;
 
 import com.android.internal.jank.Cuj;
-import com.android.launcher3.LauncherAppState;
 import com.android.launcher3.Utilities;
 import com.android.launcher3.logger.LauncherAtom;
 import com.android.launcher3.logger.LauncherAtom.Attribute;
@@ -69,17 +70,15 @@ import com.android.launcher3.logger.LauncherAtomExtensions.DeviceSearchResultCon
 import com.android.launcher3.logger.LauncherAtomExtensions.ExtendedContainers;
 import com.android.launcher3.logging.InstanceId;
 import com.android.launcher3.logging.StatsLogManager;
-import com.android.launcher3.model.data.CollectionInfo;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.util.DisplayController;
-import com.android.launcher3.util.Executors;
 import com.android.launcher3.util.LogConfig;
+import com.android.launcher3.util.LooperExecutor;
 import com.android.launcher3.views.ActivityContext;
 import com.android.systemui.shared.system.InteractionJankMonitorWrapper;
 import com.android.systemui.shared.system.SysUiStatsLog;
 
-import java.util.Optional;
-import java.util.OptionalInt;
+import java.util.ArrayList;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
@@ -121,6 +120,27 @@ public class StatsLogCompatManager extends StatsLogManager {
     public static final CopyOnWriteArrayList<StatsLogConsumer> LOGS_CONSUMER =
             new CopyOnWriteArrayList<>();
 
+    /**
+     * Executor on which the logged events are built and written to StatsLog, in the order they
+     * were logged.
+     */
+    @VisibleForTesting
+    static final LooperExecutor LOG_EXECUTOR =
+            new LooperExecutor("StatsLogger", THREAD_PRIORITY_BACKGROUND);
+
+    // Maximum number of recycled events, more than the events usually logged in a frame.
+    private static final int MAX_POOLED_EVENTS = 16;
+
+    private static final Object sEventsLock = new Object();
+    // Events waiting to be written, guarded by sEventsLock
+    private static final ArrayList<StatsCompatEvent> sPendingEvents = new ArrayList<>();
+    // Events which can be reused, guarded by sEventsLock
+    private static final ArrayList<StatsCompatEvent> sEventPool = new ArrayList<>();
+    // Whether writing the pending events is scheduled on LOG_EXECUTOR, guarded by sEventsLock
+    private static boolean sIsWriteScheduled;
+    // Events being written, only accessed on LOG_EXECUTOR
+    private static final ArrayList<StatsCompatEvent> sWritingEvents = new ArrayList<>();
+
     public StatsLogCompatManager(Context context) {
         super(context);
     }
@@ -214,45 +234,330 @@ public class StatsLogCompatManager extends StatsLogManager {
     }
 
     /**
-     * Helps to construct and write statsd compatible log message.
+     * Returns a recycled event, or a new one if none is available.
      */
-    private static class StatsCompatLogger implements StatsLogger {
+    private static StatsCompatEvent obtainEvent() {
+        synchronized (sEventsLock) {
+            int size = sEventPool.size();
+            return size > 0 ? sEventPool.remove(size - 1) : new StatsCompatEvent();
+        }
+    }
 
-        private static final ItemInfo DEFAULT_ITEM_INFO = new ItemInfo();
+    /**
+     * Adds the event to the pending events, which are written in a batch on
+     * {@link #LOG_EXECUTOR}.
+     */
+    private static void enqueueEvent(StatsCompatEvent event) {
+        boolean scheduleWrite;
+        synchronized (sEventsLock) {
+            sPendingEvents.add(event);
+            scheduleWrite = !sIsWriteScheduled;
+            sIsWriteScheduled = true;
+        }
+        if (scheduleWrite) {
+            LOG_EXECUTOR.post(StatsLogCompatManager::writePendingEvents);
+        }
+    }
+
+    @WorkerThread
+    private static void writePendingEvents() {
+        synchronized (sEventsLock) {
+            sWritingEvents.addAll(sPendingEvents);
+            sPendingEvents.clear();
+            sIsWriteScheduled = false;
+        }
+        for (int i = 0; i < sWritingEvents.size(); i++) {
+            sWritingEvents.get(i).write();
+        }
+        synchronized (sEventsLock) {
+            for (int i = 0; i < sWritingEvents.size(); i++) {
+                StatsCompatEvent event = sWritingEvents.get(i);
+                event.reset();
+                if (sEventPool.size() < MAX_POOLED_EVENTS) {
+                    sEventPool.add(event);
+                }
+            }
+        }
+        sWritingEvents.clear();
+    }
+
+    /**
+     * Fields of an event logged by {@link StatsCompatLogger}. A logged event is copied into a
+     * recycled instance, so that its proto is built and written on {@link #LOG_EXECUTOR} without
+     * allocating on the calling thread.
+     */
+    private static class StatsCompatEvent {
+
+        static final ItemInfo DEFAULT_ITEM_INFO = new ItemInfo();
         static {
             DEFAULT_ITEM_INFO.itemType = ITEM_TYPE_NON_ACTIONABLE;
         }
-        private final Context mContext;
-        private final Optional<ActivityContext> mActivityContext;
-        private ItemInfo mItemInfo = DEFAULT_ITEM_INFO;
-        private InstanceId mInstanceId = DEFAULT_INSTANCE_ID;
-        private OptionalInt mRank = OptionalInt.empty();
-        private Optional<ContainerInfo> mContainerInfo = Optional.empty();
-        private int mSrcState = LAUNCHER_STATE_UNSPECIFIED;
-        private int mDstState = LAUNCHER_STATE_UNSPECIFIED;
-        private Optional<FromState> mFromState = Optional.empty();
-        private Optional<ToState> mToState = Optional.empty();
-        private Optional<String> mEditText = Optional.empty();
-        private SliceItem mSliceItem;
-        private LauncherAtom.Slice mSlice;
-        private Optional<Integer> mCardinality = Optional.empty();
-        private int mInputType = SysUiStatsLog.LAUNCHER_UICHANGED__INPUT_TYPE__UNKNOWN;
-        private Optional<Integer> mFeatures = Optional.empty();
-        private Optional<String> mPackageName = Optional.empty();
+        Context mContext;
+        @Nullable
+        ActivityContext mActivityContext;
+        EventEnum mEvent;
+        ItemInfo mItemInfo = DEFAULT_ITEM_INFO;
+        InstanceId mInstanceId = DEFAULT_INSTANCE_ID;
+        boolean mHasRank;
+        int mRank;
+        @Nullable
+        ContainerInfo mContainerInfo;
+        int mSrcState = LAUNCHER_STATE_UNSPECIFIED;
+        int mDstState = LAUNCHER_STATE_UNSPECIFIED;
+        @Nullable
+        FromState mFromState;
+        @Nullable
+        ToState mToState;
+        @Nullable
+        String mEditText;
+        @Nullable
+        SliceItem mSliceItem;
+        @Nullable
+        LauncherAtom.Slice mSlice;
+        boolean mHasCardinality;
+        int mCardinality;
+        int mInputType = SysUiStatsLog.LAUNCHER_UICHANGED__INPUT_TYPE__UNKNOWN;
+        boolean mHasFeatures;
+        int mFeatures;
+        @Nullable
+        String mPackageName;
         /**
          * Indicates the current rotation of the display. Uses {@link android.view.Surface values.}
          */
-        private final int mDisplayRotation;
+        int mDisplayRotation;
+
+        void copyFrom(StatsCompatEvent other) {
+            mContext = other.mContext;
+            mActivityContext = other.mActivityContext;
+            mEvent = other.mEvent;
+            mItemInfo = other.mItemInfo;
+            mInstanceId = other.mInstanceId;
+            mHasRank = other.mHasRank;
+            mRank = other.mRank;
+            mContainerInfo = other.mContainerInfo;
+            mSrcState = other.mSrcState;
+            mDstState = other.mDstState;
+            mFromState = other.mFromState;
+            mToState = other.mToState;
+            mEditText = other.mEditText;
+            mSliceItem = other.mSliceItem;
+            mSlice = other.mSlice;
+            mHasCardinality = other.mHasCardinality;
+            mCardinality = other.mCardinality;
+            mInputType = other.mInputType;
+            mHasFeatures = other.mHasFeatures;
+            mFeatures = other.mFeatures;
+            mPackageName = other.mPackageName;
+            mDisplayRotation = other.mDisplayRotation;
+        }
+
+        /**
+         * Resets all the fields, so that the event does not hold on to the logged objects
+         */
+        void reset() {
+            mContext = null;
+            mActivityContext = null;
+            mEvent = null;
+            mItemInfo = DEFAULT_ITEM_INFO;
+            mInstanceId = DEFAULT_INSTANCE_ID;
+            mHasRank = false;
+            mRank = 0;
+            mContainerInfo = null;
+            mSrcState = LAUNCHER_STATE_UNSPECIFIED;
+            mDstState = LAUNCHER_STATE_UNSPECIFIED;
+            mFromState = null;
+            mToState = null;
+            mEditText = null;
+            mSliceItem = null;
+            mSlice = null;
+            mHasCardinality = false;
+            mCardinality = 0;
+            mInputType = SysUiStatsLog.LAUNCHER_UICHANGED__INPUT_TYPE__UNKNOWN;
+            mHasFeatures = false;
+            mFeatures = 0;
+            mPackageName = null;
+            mDisplayRotation = 0;
+        }
+
+        /**
+         * Builds the proto of the event and writes it to StatsLog
+         */
+        @WorkerThread
+        void write() {
+            if (DEBUG) {
+                String name = (mEvent instanceof Enum) ? ((Enum) mEvent).name() :
+                        mEvent.getId() + "";
+                Log.d(TAG, name);
+            }
+
+            if (mSlice == null && mSliceItem != null) {
+                mSlice = LauncherAtom.Slice.newBuilder().setUri(
+                        mSliceItem.getSlice().getUri().toString()).build();
+            }
+
+            if (mSlice != null) {
+                LauncherAtom.ItemInfo.Builder itemInfoBuilder =
+                        LauncherAtom.ItemInfo.newBuilder().setSlice(mSlice);
+                if (mContainerInfo != null) {
+                    itemInfoBuilder.setContainerInfo(mContainerInfo);
+                }
+                write(applyOverwrites(itemInfoBuilder.build()));
+                return;
+            }
+
+            if (mItemInfo == null) {
+                return;
+            }
+
+            // Items outside of a collection do not need the collection info from the model, so
+            // their proto is built directly on the logging thread.
+            if (mItemInfo.container < 0) {
+                write(applyOverwrites(mItemInfo.buildProto(mContext)));
+            }
+        }
+
+        private LauncherAtom.ItemInfo applyOverwrites(LauncherAtom.ItemInfo atomInfo) {
+            LauncherAtom.ItemInfo.Builder itemInfoBuilder = atomInfo.toBuilder();
+
+            if (mHasRank) {
+                itemInfoBuilder.setRank(mRank);
+            }
+            if (mContainerInfo != null) {
+                itemInfoBuilder.setContainerInfo(mContainerInfo);
+            }
+
+            if (mActivityContext != null) {
+                mActivityContext.applyOverwritesToLogItem(itemInfoBuilder);
+            }
+
+            if (mFromState != null || mToState != null || mEditText != null) {
+                FolderIcon.Builder folderIconBuilder = itemInfoBuilder
+                        .getFolderIcon()
+                        .toBuilder();
+                if (mFromState != null) {
+                    folderIconBuilder.setFromLabelState(mFromState);
+                }
+                if (mToState != null) {
+                    folderIconBuilder.setToLabelState(mToState);
+                }
+                if (mEditText != null) {
+                    folderIconBuilder.setLabelInfo(mEditText);
+                }
+                itemInfoBuilder.setFolderIcon(folderIconBuilder);
+            }
+            return itemInfoBuilder.build();
+        }
+
+        @WorkerThread
+        private void write(LauncherAtom.ItemInfo atomInfo) {
+            EventEnum event = mEvent;
+            InstanceId instanceId = mInstanceId;
+            int srcState = mSrcState;
+            int dstState = mDstState;
+            int inputType = mInputType;
+            String packageName = mPackageName != null ? mPackageName : getPackageName(atomInfo);
+            if (IS_VERBOSE) {
+                String name = (event instanceof Enum) ? ((Enum) event).name() :
+                        event.getId() + "";
+                StringBuilder logStringBuilder = new StringBuilder("\n");
+                if (instanceId != DEFAULT_INSTANCE_ID) {
+                    logStringBuilder.append(String.format("InstanceId:%s ", instanceId));
+                }
+                logStringBuilder.append(name);
+                if (srcState != LAUNCHER_STATE_UNSPECIFIED
+                        || dstState != LAUNCHER_STATE_UNSPECIFIED) {
+                    logStringBuilder.append(
+                            String.format("(State:%s->%s)", getStateString(srcState),
+                                    getStateString(dstState)));
+                }
+                if (atomInfo.hasContainerInfo()) {
+                    logStringBuilder.append("\n").append(atomInfo);
+                }
+                if (!TextUtils.isEmpty(packageName)) {
+                    logStringBuilder.append(String.format("\nPackage name: %s", packageName));
+                }
+                Log.d(TAG, logStringBuilder.toString());
+            }
+
+            for (StatsLogConsumer consumer : LOGS_CONSUMER) {
+                consumer.consume(event, atomInfo);
+            }
+
+            // TODO: remove this when b/231648228 is fixed.
+            if (Utilities.isRunningInTestHarness()) {
+                return;
+            }
+            int cardinality = mHasCardinality ? mCardinality : getCardinality(atomInfo);
+            int features = mHasFeatures ? mFeatures : getFeatures(atomInfo);
+            SysUiStatsLog.write(
+                    SysUiStatsLog.LAUNCHER_EVENT,
+                    SysUiStatsLog.LAUNCHER_UICHANGED__ACTION__DEFAULT_ACTION /* deprecated */,
+                    srcState,
+                    dstState,
+                    null /* launcher extensions, deprecated */,
+                    false /* quickstep_enabled, deprecated */,
+                    event.getId() /* event_id */,
+                    atomInfo.getItemCase().getNumber() /* target_id */,
+                    instanceId.getId() /* instance_id TODO */,
+                    0 /* uid TODO */,
+                    packageName /* package_name */,
+                    getComponentName(atomInfo) /* component_name */,
+                    getGridX(atomInfo, false) /* grid_x */,
+                    getGridY(atomInfo, false) /* grid_y */,
+                    getPageId(atomInfo) /* page_id */,
+                    getGridX(atomInfo, true) /* grid_x_parent */,
+                    getGridY(atomInfo, true) /* grid_y_parent */,
+                    getParentPageId(atomInfo) /* page_id_parent */,
+                    getHierarchy(atomInfo) /* hierarchy */,
+                    false /* is_work_profile, deprecated */,
+                    atomInfo.getRank() /* rank */,
+                    atomInfo.getFolderIcon().getFromLabelState().getNumber() /* fromState */,
+                    atomInfo.getFolderIcon().getToLabelState().getNumber() /* toState */,
+                    atomInfo.getFolderIcon().getLabelInfo() /* edittext */,
+                    cardinality /* cardinality */,
+                    features /* features */,
+                    getSearchAttributes(atomInfo) /* searchAttributes */,
+                    getAttributes(atomInfo) /* attributes */,
+                    inputType /* input_type */,
+                    atomInfo.getUserType() /* user_type */,
+                    getDisplayRotation() /* display_rotation */,
+                    getRecentsOrientationHandler(atomInfo) /* recents_orientation_handler */);
+        }
+
+        private int getDisplayRotation() {
+            return switch (mDisplayRotation) {
+                case ROTATION_90 -> LAUNCHER_UICHANGED__DISPLAY_ROTATION__ROTATION_90;
+                case ROTATION_180 -> LAUNCHER_UICHANGED__DISPLAY_ROTATION__ROTATION_180;
+                case ROTATION_270 -> LAUNCHER_UICHANGED__DISPLAY_ROTATION__ROTATION_270;
+                default -> LAUNCHER_UICHANGED__DISPLAY_ROTATION__ROTATION_0;
+            };
+        }
+
+        private int getRecentsOrientationHandler(LauncherAtom.ItemInfo itemInfo) {
+            var orientationHandler =
+                    itemInfo.getContainerInfo().getTaskSwitcherContainer().getOrientationHandler();
+            return switch (orientationHandler) {
+                case PORTRAIT -> LAUNCHER_UICHANGED__RECENTS_ORIENTATION_HANDLER__PORTRAIT;
+                case LANDSCAPE -> LAUNCHER_UICHANGED__RECENTS_ORIENTATION_HANDLER__LANDSCAPE;
+                case SEASCAPE -> LAUNCHER_UICHANGED__RECENTS_ORIENTATION_HANDLER__SEASCAPE;
+            };
+        }
+    }
+
+    /**
+     * Helps to construct and write statsd compatible log message.
+     */
+    private static class StatsCompatLogger extends StatsCompatEvent implements StatsLogger {
 
         StatsCompatLogger(Context context, ActivityContext activityContext) {
             mContext = context;
-            mActivityContext = Optional.ofNullable(activityContext);
+            mActivityContext = activityContext;
             mDisplayRotation = DisplayController.INSTANCE.get(mContext).getInfo().rotation;
         }
 
         @Override
         public StatsLogger withItemInfo(ItemInfo itemInfo) {
-            if (mContainerInfo.isPresent()) {
+            if (mContainerInfo != null) {
                 throw new IllegalArgumentException(
                         "ItemInfo and ContainerInfo are mutual exclusive; cannot log both.");
             }
@@ -268,7 +573,8 @@ public class StatsLogCompatManager extends StatsLogManager {
 
         @Override
         public StatsLogger withRank(int rank) {
-            this.mRank = OptionalInt.of(rank);
+            this.mHasRank = true;
+            this.mRank = rank;
             return this;
         }
 
@@ -288,25 +594,25 @@ public class StatsLogCompatManager extends StatsLogManager {
         public StatsLogger withContainerInfo(ContainerInfo containerInfo) {
             checkState(mItemInfo == DEFAULT_ITEM_INFO,
                     "ItemInfo and ContainerInfo are mutual exclusive; cannot log both.");
-            this.mContainerInfo = Optional.of(containerInfo);
+            this.mContainerInfo = checkNotNull(containerInfo);
             return this;
         }
 
         @Override
         public StatsLogger withFromState(FromState fromState) {
-            this.mFromState = Optional.of(fromState);
+            this.mFromState = checkNotNull(fromState);
             return this;
         }
 
         @Override
         public StatsLogger withToState(ToState toState) {
-            this.mToState = Optional.of(toState);
+            this.mToState = checkNotNull(toState);
             return this;
         }
 
         @Override
         public StatsLogger withEditText(String editText) {
-            this.mEditText = Optional.of(editText);
+            this.mEditText = checkNotNull(editText);
             return this;
         }
 
@@ -332,7 +638,8 @@ public class StatsLogCompatManager extends StatsLogManager {
 
         @Override
         public StatsLogger withCardinality(int cardinality) {
-            this.mCardinality = Optional.of(cardinality);
+            this.mHasCardinality = true;
+            this.mCardinality = cardinality;
             return this;
         }
 
@@ -344,54 +651,23 @@ public class StatsLogCompatManager extends StatsLogManager {
 
         @Override
         public StatsLogger withFeatures(int feature) {
-            this.mFeatures = Optional.of(feature);
+            this.mHasFeatures = true;
+            this.mFeatures = feature;
             return this;
         }
 
         @Override
         public StatsLogger withPackageName(@Nullable String packageName) {
-            mPackageName = Optional.ofNullable(packageName);
+            mPackageName = packageName;
             return this;
         }
 
         @Override
         public void log(EventEnum event) {
-            if (DEBUG) {
-                String name = (event instanceof Enum) ? ((Enum) event).name() :
-                        event.getId() + "";
-                Log.d(TAG, name);
-            }
-
-            if (mSlice == null && mSliceItem != null) {
-                mSlice = LauncherAtom.Slice.newBuilder().setUri(
-                        mSliceItem.getSlice().getUri().toString()).build();
-            }
-
-            if (mSlice != null) {
-                Executors.MODEL_EXECUTOR.execute(
-                        () -> {
-                            LauncherAtom.ItemInfo.Builder itemInfoBuilder =
-                                    LauncherAtom.ItemInfo.newBuilder().setSlice(mSlice);
-                            mContainerInfo.ifPresent(itemInfoBuilder::setContainerInfo);
-                            write(event, applyOverwrites(itemInfoBuilder.build()));
-                        });
-                return;
-            }
-
-            if (mItemInfo == null) {
-                return;
-            }
-
-            // Item is inside a collection, fetch collection info in a BG thread
-            // and then write to StatsLog.
-            if (mItemInfo.container < 0) {
-                LauncherAppState.INSTANCE.get(mContext).getModel().enqueueModelUpdateTask(
-                        (taskController, dataModel, apps) -> write(event, applyOverwrites(
-                                mItemInfo.buildProto(
-                                        (CollectionInfo) dataModel.itemsIdMap
-                                                .get(mItemInfo.container),
-                                        mContext))));
-            }
+            StatsCompatEvent pendingEvent = obtainEvent();
+            pendingEvent.copyFrom(this);
+            pendingEvent.mEvent = event;
+            enqueueEvent(pendingEvent);
         }
 
         @Override
@@ -442,121 +718,6 @@ public class StatsLogCompatManager extends StatsLogManager {
                     break;
             }
         }
-
-        private LauncherAtom.ItemInfo applyOverwrites(LauncherAtom.ItemInfo atomInfo) {
-            LauncherAtom.ItemInfo.Builder itemInfoBuilder = atomInfo.toBuilder();
-
-            mRank.ifPresent(itemInfoBuilder::setRank);
-            mContainerInfo.ifPresent(itemInfoBuilder::setContainerInfo);
-
-            mActivityContext.ifPresent(activityContext ->
-                    activityContext.applyOverwritesToLogItem(itemInfoBuilder));
-
-            if (mFromState.isPresent() || mToState.isPresent() || mEditText.isPresent()) {
-                FolderIcon.Builder folderIconBuilder = itemInfoBuilder
-                        .getFolderIcon()
-                        .toBuilder();
-                mFromState.ifPresent(folderIconBuilder::setFromLabelState);
-                mToState.ifPresent(folderIconBuilder::setToLabelState);
-                mEditText.ifPresent(folderIconBuilder::setLabelInfo);
-                itemInfoBuilder.setFolderIcon(folderIconBuilder);
-            }
-            return itemInfoBuilder.build();
-        }
-
-        @WorkerThread
-        private void write(EventEnum event, LauncherAtom.ItemInfo atomInfo) {
-            InstanceId instanceId = mInstanceId;
-            int srcState = mSrcState;
-            int dstState = mDstState;
-            int inputType = mInputType;
-            String packageName = mPackageName.orElseGet(() -> getPackageName(atomInfo));
-            if (IS_VERBOSE) {
-                String name = (event instanceof Enum) ? ((Enum) event).name() :
-                        event.getId() + "";
-                StringBuilder logStringBuilder = new StringBuilder("\n");
-                if (instanceId != DEFAULT_INSTANCE_ID) {
-                    logStringBuilder.append(String.format("InstanceId:%s ", instanceId));
-                }
-                logStringBuilder.append(name);
-                if (srcState != LAUNCHER_STATE_UNSPECIFIED
-                        || dstState != LAUNCHER_STATE_UNSPECIFIED) {
-                    logStringBuilder.append(
-                            String.format("(State:%s->%s)", getStateString(srcState),
-                                    getStateString(dstState)));
-                }
-                if (atomInfo.hasContainerInfo()) {
-                    logStringBuilder.append("\n").append(atomInfo);
-                }
-                if (!TextUtils.isEmpty(packageName)) {
-                    logStringBuilder.append(String.format("\nPackage name: %s", packageName));
-                }
-                Log.d(TAG, logStringBuilder.toString());
-            }
-
-            for (StatsLogConsumer consumer : LOGS_CONSUMER) {
-                consumer.consume(event, atomInfo);
-            }
-
-            // TODO: remove this when b/231648228 is fixed.
-            if (Utilities.isRunningInTestHarness()) {
-                return;
-            }
-            int cardinality = mCardinality.orElseGet(() -> getCardinality(atomInfo));
-            int features = mFeatures.orElseGet(() -> getFeatures(atomInfo));
-            SysUiStatsLog.write(
-                    SysUiStatsLog.LAUNCHER_EVENT,
-                    SysUiStatsLog.LAUNCHER_UICHANGED__ACTION__DEFAULT_ACTION /* deprecated */,
-                    srcState,
-                    dstState,
-                    null /* launcher extensions, deprecated */,
-                    false /* quickstep_enabled, deprecated */,
-                    event.getId() /* event_id */,
-                    atomInfo.getItemCase().getNumber() /* target_id */,
-                    instanceId.getId() /* instance_id TODO */,
-                    0 /* uid TODO */,
-                    packageName /* package_name */,
-                    getComponentName(atomInfo) /* component_name */,
-                    getGridX(atomInfo, false) /* grid_x */,
-                    getGridY(atomInfo, false) /* grid_y */,
-                    getPageId(atomInfo) /* page_id */,
-                    getGridX(atomInfo, true) /* grid_x_parent */,
-                    getGridY(atomInfo, true) /* grid_y_parent */,
-                    getParentPageId(atomInfo) /* page_id_parent */,
-                    getHierarchy(atomInfo) /* hierarchy */,
-                    false /* is_work_profile, deprecated */,
-                    atomInfo.getRank() /* rank */,
-                    atomInfo.getFolderIcon().getFromLabelState().getNumber() /* fromState */,
-                    atomInfo.getFolderIcon().getToLabelState().getNumber() /* toState */,
-                    atomInfo.getFolderIcon().getLabelInfo() /* edittext */,
-                    cardinality /* cardinality */,
-                    features /* features */,
-                    getSearchAttributes(atomInfo) /* searchAttributes */,
-                    getAttributes(atomInfo) /* attributes */,
-                    inputType /* input_type */,
-                    atomInfo.getUserType() /* user_type */,
-                    getDisplayRotation() /* display_rotation */,
-                    getRecentsOrientationHandler(atomInfo) /* recents_orientation_handler */);
-        }
-
-        private int getDisplayRotation() {
-            return switch (mDisplayRotation) {
-                case ROTATION_90 -> LAUNCHER_UICHANGED__DISPLAY_ROTATION__ROTATION_90;
-                case ROTATION_180 -> LAUNCHER_UICHANGED__DISPLAY_ROTATION__ROTATION_180;
-                case ROTATION_270 -> LAUNCHER_UICHANGED__DISPLAY_ROTATION__ROTATION_270;
-                default -> LAUNCHER_UICHANGED__DISPLAY_ROTATION__ROTATION_0;
-            };
-        }
-
-        private int getRecentsOrientationHandler(LauncherAtom.ItemInfo itemInfo) {
-            var orientationHandler =
-                    itemInfo.getContainerInfo().getTaskSwitcherContainer().getOrientationHandler();
-            return switch (orientationHandler) {
-                case PORTRAIT -> LAUNCHER_UICHANGED__RECENTS_ORIENTATION_HANDLER__PORTRAIT;
-                case LANDSCAPE -> LAUNCHER_UICHANGED__RECENTS_ORIENTATION_HANDLER__LANDSCAPE;
-                case SEASCAPE -> LAUNCHER_UICHANGED__RECENTS_ORIENTATION_HANDLER__SEASCAPE;
-            };
-        }
     }
 
     /**
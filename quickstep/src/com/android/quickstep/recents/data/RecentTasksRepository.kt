@@ -21,7 +21,10 @@ import com.android.systemui.shared.recents.model.ThumbnailData
 import kotlinx.coroutines.flow.Flow
 
 interface RecentTasksRepository {
-    /** Gets all the recent tasks, refreshing from data sources if [forceRefresh] is true. */
+    /**
+     * Gets all the recent tasks, refreshing from data sources if [forceRefresh] is true. Flow only
+     * emits when the list of tasks changes, use [getTaskDataById] to observe the data of a task.
+     */
     fun getAllTaskData(forceRefresh: Boolean = false): Flow<List<Task>>
 
     /**
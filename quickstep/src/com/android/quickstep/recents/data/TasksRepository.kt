@@ -25,6 +25,7 @@ import com.android.quickstep.task.thumbnail.data.TaskIconDataSource
 import com.android.quickstep.task.thumbnail.data.TaskThumbnailDataSource
 import com.android.systemui.shared.recents.model.Task
 import com.android.systemui.shared.recents.model.ThumbnailData
+import java.util.concurrent.ConcurrentHashMap
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Job
 import kotlinx.coroutines.async
@@ -32,8 +33,9 @@ import kotlinx.coroutines.awaitAll
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.distinctUntilChangedBy
+import kotlinx.coroutines.flow.emitAll
+import kotlinx.coroutines.flow.flow
 import kotlinx.coroutines.flow.map
-import kotlinx.coroutines.flow.update
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
 
@@ -48,6 +50,10 @@ class TasksRepository(
     private val tasks = MutableStateFlow(MapForStateFlow<Int, Task>(emptyMap()))
     private val taskRequests = HashMap<Int, Pair<Task.TaskKey, Job>>()
 
+    // Flow of each observed task, so that an icon or thumbnail update only reaches the observers
+    // of that task, instead of copying the task map and emitting it to every observer.
+    private val taskFlows = ConcurrentHashMap<Int, MutableStateFlow<TaskForStateFlow>>()
+
     override fun getAllTaskData(forceRefresh: Boolean): Flow<List<Task>> {
         if (forceRefresh) {
             recentsModel.getTasks { newTaskList ->
@@ -65,6 +71,7 @@ class TasksRepository(
                     "getAllTaskData: oldTasks ${tasks.value.keys}, newTasks: ${recentTasks.keys}",
                 )
                 tasks.value = MapForStateFlow(recentTasks)
+                onTaskMapChanged(recentTasks)
 
                 // Request data for tasks to prevent stale data.
                 // This will prevent thumbnail and icon from being replaced and null due to
@@ -75,7 +82,8 @@ class TasksRepository(
         return tasks.map { it.values.toList() }
     }
 
-    override fun getTaskDataById(taskId: Int) = tasks.map { it[taskId] }
+    override fun getTaskDataById(taskId: Int) =
+        flow { emitAll(taskFlows.computeIfAbsent(taskId, ::createTaskFlow)) }.map { it.task }
 
     override fun getThumbnailById(taskId: Int) =
         getTaskDataById(taskId).map { it?.thumbnail }.distinctUntilChangedBy { it?.snapshotId }
@@ -133,8 +141,24 @@ class TasksRepository(
                 title = null
                 titleDescription = null
             }
+            notifyTaskChanged(taskId)
+        }
+    }
+
+    private fun createTaskFlow(taskId: Int) =
+        MutableStateFlow(TaskForStateFlow(tasks.value[taskId]))
+
+    /** Emits the tasks of [taskMap], and drops the unobserved flows of tasks that were removed. */
+    private fun onTaskMapChanged(taskMap: Map<Int, Task>) {
+        taskFlows.entries.removeIf { (taskId, taskFlow) ->
+            val task = taskMap[taskId]
+            taskFlow.value = TaskForStateFlow(task)
+            task == null && taskFlow.subscriptionCount.value == 0
         }
-        tasks.update { oldValue -> MapForStateFlow(oldValue) }
+    }
+
+    private fun notifyTaskChanged(taskId: Int) {
+        taskFlows[taskId]?.let { it.value = TaskForStateFlow(tasks.value[taskId]) }
     }
 
     private suspend fun fetchIcon(task: Task) {
@@ -184,13 +208,13 @@ class TasksRepository(
         task.icon = iconData.icon
         task.titleDescription = iconData.contentDescription
         task.title = iconData.title
-        tasks.update { oldValue -> MapForStateFlow(oldValue + (taskId to task)) }
+        notifyTaskChanged(taskId)
     }
 
     private fun updateThumbnail(taskId: Int, thumbnail: ThumbnailData?) {
         val task = tasks.value[taskId] ?: return
         task.thumbnail = thumbnail
-        tasks.update { oldValue -> MapForStateFlow(oldValue + (taskId to task)) }
+        notifyTaskChanged(taskId)
     }
 
     private suspend fun getThumbnailFromDataSource(task: Task) =
@@ -212,6 +236,13 @@ class TasksRepository(
         private val updated: Long = System.nanoTime(),
     ) : Map<K, T> by backingMap
 
+    /**
+     * Helper class to support StateFlow emissions of a mutable [Task]: instances are only equal to
+     * themselves, so every update is emitted. Updates that arrive before an observer collects them
+     * are conflated into the latest one.
+     */
+    private class TaskForStateFlow(val task: Task?)
+
     private data class IconData(
         val icon: Drawable,
         val contentDescription: String,
@@ -55,6 +55,25 @@ public class MotionPauseDetector {
      */
     private static final long TEST_HARNESS_TRIGGER_TIMEOUT = 2000;
 
+    // Reasons for the pause state, which are only logged when the state changes. They are
+    // constants as the state is checked for every motion event.
+    private static final ActiveGestureLog.CompoundString REASON_FAST_SPEED_AFTER_PAUSE =
+            new ActiveGestureLog.CompoundString("Was paused, but started moving at a fast speed");
+    private static final ActiveGestureLog.CompoundString REASON_DIRECTION_CHANGED =
+            new ActiveGestureLog.CompoundString("Velocity changed directions");
+    private static final ActiveGestureLog.CompoundString REASON_BACK_TO_BACK_SLOW_SPEEDS =
+            new ActiveGestureLog.CompoundString("Pause requires back to back slow speeds");
+    private static final ActiveGestureLog.CompoundString REASON_RAPID_DECELERATION =
+            new ActiveGestureLog.CompoundString(
+                    "Didn't have back to back slow speeds, checking for rapid "
+                            + " deceleration on first pause only");
+    private static final ActiveGestureLog.CompoundString REASON_MAINTAINED_SLOW_SPEED =
+            new ActiveGestureLog.CompoundString(
+                    "Maintained slow speed for sufficient duration when making"
+                            + " pause harder to trigger");
+    private static final ActiveGestureLog.CompoundString REASON_HARDER_TO_TRIGGER =
+            new ActiveGestureLog.CompoundString("Intentionally making pause harder to trigger");
+
     private final float mSpeedVerySlow;
     private final float mSpeedSlow;
     private final float mSpeedSomewhatFast;
@@ -65,7 +84,8 @@ public class MotionPauseDetector {
     private final Context mContext;
     private final SystemVelocityProvider mVelocityProvider;
 
-    private Float mPreviousVelocity = null;
+    // Velocity of the previous motion, NaN if there is none
+    private float mPreviousVelocity = Float.NaN;
 
     private OnMotionPauseListener mOnMotionPauseListener;
     private boolean mIsTrackpadGesture;
@@ -156,7 +176,7 @@ public class MotionPauseDetector {
                         : FORCE_PAUSE_TIMEOUT;
         mForcePauseTimeout.setAlarm(timeoutMs);
         float newVelocity = mVelocityProvider.addMotionEvent(ev, ev.getPointerId(pointerIndex));
-        if (mPreviousVelocity != null) {
+        if (!Float.isNaN(mPreviousVelocity)) {
             checkMotionPaused(newVelocity, mPreviousVelocity, ev.getEventTime());
         }
         mPreviousVelocity = newVelocity;
@@ -170,17 +190,15 @@ public class MotionPauseDetector {
         if (mIsPaused) {
             // Continue to be paused until moving at a fast speed.
             isPaused = speed < mSpeedFast || previousSpeed < mSpeedFast;
-            isPausedReason = new ActiveGestureLog.CompoundString(
-                    "Was paused, but started moving at a fast speed");
+            isPausedReason = REASON_FAST_SPEED_AFTER_PAUSE;
         } else {
             if (velocity < 0 != prevVelocity < 0) {
                 // We're just changing directions, not necessarily stopping.
                 isPaused = false;
-                isPausedReason = new ActiveGestureLog.CompoundString("Velocity changed directions");
+                isPausedReason = REASON_DIRECTION_CHANGED;
             } else {
                 isPaused = speed < mSpeedVerySlow && previousSpeed < mSpeedVerySlow;
-                isPausedReason = new ActiveGestureLog.CompoundString(
-                        "Pause requires back to back slow speeds");
+                isPausedReason = REASON_BACK_TO_BACK_SLOW_SPEEDS;
                 if (!isPaused && !mHasEverBeenPaused) {
                     // We want to be more aggressive about detecting the first pause to ensure it
                     // feels as responsive as possible; getting two very slow speeds back to back
@@ -190,9 +208,7 @@ public class MotionPauseDetector {
                     boolean notSuperFast = speed < mSpeedSomewhatFast
                             || (mIsTrackpadGesture && speed < mSpeedTrackpadSomewhatFast);
                     isPaused = isRapidDeceleration && notSuperFast;
-                    isPausedReason = new ActiveGestureLog.CompoundString(
-                            "Didn't have back to back slow speeds, checking for rapid "
-                                    + " deceleration on first pause only");
+                    isPausedReason = REASON_RAPID_DECELERATION;
                 }
                 if (mMakePauseHarderToTrigger) {
                     if (speed < mSpeedSlow) {
@@ -200,14 +216,11 @@ public class MotionPauseDetector {
                             mSlowStartTime = time;
                         }
                         isPaused = time - mSlowStartTime >= HARDER_TRIGGER_TIMEOUT;
-                        isPausedReason = new ActiveGestureLog.CompoundString(
-                                "Maintained slow speed for sufficient duration when making"
-                                        + " pause harder to trigger");
+                        isPausedReason = REASON_MAINTAINED_SLOW_SPEED;
                     } else {
                         mSlowStartTime = 0;
                         isPaused = false;
-                        isPausedReason = new ActiveGestureLog.CompoundString(
-                                "Intentionally making pause harder to trigger");
+                        isPausedReason = REASON_HARDER_TO_TRIGGER;
                     }
                 }
             }
@@ -216,14 +229,18 @@ public class MotionPauseDetector {
     }
 
     private void updatePaused(boolean isPaused, ActiveGestureLog.CompoundString reason) {
+        boolean wouldHaveBeenPaused = isPaused;
         if (mDisallowPause) {
-            reason = new ActiveGestureLog.CompoundString(
-                    "Disallow pause; otherwise, would have been %b due to reason: ", isPaused)
-                    .append(reason);
             isPaused = false;
         }
         if (mIsPaused != isPaused) {
             mIsPaused = isPaused;
+            if (mDisallowPause) {
+                reason = new ActiveGestureLog.CompoundString(
+                        "Disallow pause; otherwise, would have been %b due to reason: ",
+                        wouldHaveBeenPaused)
+                        .append(reason);
+            }
             addLogs(new ActiveGestureLog.CompoundString(
                     "onMotionPauseChanged triggered; paused=%b, reason=", mIsPaused)
                     .append(reason));
@@ -256,7 +273,7 @@ public class MotionPauseDetector {
 
     public void clear() {
         mVelocityProvider.clear();
-        mPreviousVelocity = null;
+        mPreviousVelocity = Float.NaN;
         setOnMotionPauseListener(null);
         mIsTrackpadGesture = false;
         mIsPaused = mHasEverBeenPaused = false;
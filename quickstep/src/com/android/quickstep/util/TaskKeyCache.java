@@ -79,6 +79,8 @@ public interface TaskKeyCache<V> {
 
         final Task.TaskKey mKey;
         V mValue;
+        // Size of the value, for caches with a budget in bytes
+        int mBytes;
 
         Entry(Task.TaskKey key, V value) {
             mKey = key;
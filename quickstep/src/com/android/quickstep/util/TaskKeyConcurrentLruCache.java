@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.android.systemui.shared.recents.model.Task.TaskKey;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * An approximate LRU cache for task key entries, which can be used from several threads without
+ * blocking readers.
+ * <p>
+ * Instead of moving entries in a list on each access, every entry records the time of its last
+ * access from a shared counter, and the entries with the oldest access are evicted when the cache
+ * grows over its max size. Only evictions are serialized, reads and updates never take a lock.
+ * @param <V> The type of the value
+ */
+public class TaskKeyConcurrentLruCache<V> implements TaskKeyCache<V> {
+
+    private static final String TAG = "TaskKeyConcurrentLruCache";
+
+    private final ConcurrentHashMap<Integer, Node<V>> mMap = new ConcurrentHashMap<>();
+    // Source of the access times of the entries
+    private final AtomicLong mClock = new AtomicLong();
+    private final Object mEvictionLock = new Object();
+    private volatile int mMaxSize;
+
+    public TaskKeyConcurrentLruCache(int maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Removes all entries from the cache
+     */
+    @Override
+    public void evictAll() {
+        mMap.clear();
+    }
+
+    /**
+     * Removes a particular entry from the cache
+     */
+    @Override
+    public void remove(TaskKey key) {
+        if (key != null) {
+            mMap.remove(key.id);
+        }
+    }
+
+    /**
+     * Removes all entries matching keyCheck
+     */
+    @Override
+    public void removeAll(Predicate<TaskKey> keyCheck) {
+        mMap.values().removeIf(node -> keyCheck.test(node.mKey));
+    }
+
+    /**
+     * Gets the entry if it is still valid
+     */
+    @Override
+    @Nullable
+    public V getAndInvalidateIfModified(TaskKey key) {
+        Node<V> node = mMap.get(key.id);
+        if (node == null) {
+            return null;
+        }
+        if (node.mKey.windowingMode == key.windowingMode
+                && node.mKey.lastActiveTime == key.lastActiveTime) {
+            node.mAccessTime = mClock.incrementAndGet();
+            return node.mValue;
+        }
+        // Only remove this entry, in case it was replaced by a valid one in the meantime
+        mMap.remove(key.id, node);
+        return null;
+    }
+
+    /**
+     * Adds an entry to the cache, evicting the least recently accessed entries if needed
+     */
+    @Override
+    public void put(TaskKey key, V value) {
+        if (key != null && value != null) {
+            mMap.put(key.id, new Node<>(key, value, mClock.incrementAndGet()));
+            removeExcessIfNeeded(mMaxSize);
+        } else {
+            Log.e(TAG, "Unexpected null key or value: " + key + ", " + value);
+        }
+    }
+
+    /**
+     * Updates the cache entry if it is already present in the cache
+     */
+    @Override
+    public void updateIfAlreadyInCache(int taskId, V data) {
+        Node<V> node = mMap.get(taskId);
+        if (node != null) {
+            node.mValue = data;
+        }
+    }
+
+    /**
+     * Updates cache size and remove excess if the number of existing entries is larger than new
+     * cache size
+     */
+    @Override
+    public void updateCacheSizeAndRemoveExcess(int cacheSize) {
+        mMaxSize = cacheSize;
+        removeExcessIfNeeded(cacheSize);
+    }
+
+    @Override
+    public int getMaxSize() {
+        return mMaxSize;
+    }
+
+    @Override
+    public int getSize() {
+        return mMap.size();
+    }
+
+    private void removeExcessIfNeeded(int maxSize) {
+        if (mMap.size() <= maxSize) {
+            return;
+        }
+        synchronized (mEvictionLock) {
+            // Entries may be added while evicting, so check again until the cache fits
+            int excess;
+            while ((excess = mMap.size() - maxSize) > 0) {
+                // Sort a snapshot of the access times, as readers keep updating them
+                ArrayList<EvictionCandidate<V>> candidates = new ArrayList<>(mMap.size());
+                for (Node<V> node : mMap.values()) {
+                    candidates.add(new EvictionCandidate<>(node));
+                }
+                if (candidates.isEmpty()) {
+                    return;
+                }
+                candidates.sort(Comparator.comparingLong(candidate -> candidate.mAccessTime));
+                for (int i = 0; i < excess && i < candidates.size(); i++) {
+                    Node<V> node = candidates.get(i).mNode;
+                    mMap.remove(node.mKey.id, node);
+                }
+            }
+        }
+    }
+
+    /**
+     * Access time of an entry at the time the eviction started
+     */
+    private static final class EvictionCandidate<V> {
+
+        final long mAccessTime;
+        final Node<V> mNode;
+
+        EvictionCandidate(Node<V> node) {
+            mAccessTime = node.mAccessTime;
+            mNode = node;
+        }
+    }
+
+    private static final class Node<V> {
+
+        final TaskKey mKey;
+        volatile V mValue;
+        volatile long mAccessTime;
+
+        Node(TaskKey key, V value, long accessTime) {
+            mKey = key;
+            mValue = value;
+            mAccessTime = accessTime;
+        }
+    }
+}
@@ -21,20 +21,39 @@ import androidx.annotation.Nullable;
 
 import com.android.systemui.shared.recents.model.Task.TaskKey;
 
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
 
 /**
  * A simple LRU cache for task key entries
+ * <p>
+ * The cache can also be given a budget in bytes, in which case the least recently accessed
+ * entries are evicted until the size of the entries fits in the budget.
  * @param <V> The type of the value
  */
 public class TaskKeyLruCache<V> implements TaskKeyCache<V> {
 
-    private final MyLinkedHashMap<V> mMap;
+    private final MyLinkedHashMap mMap;
+    private final long mMaxBytes;
+    @Nullable
+    private final ToIntFunction<V> mSizeOf;
+    private long mBytes;
 
     public TaskKeyLruCache(int maxSize) {
-        mMap = new MyLinkedHashMap<>(maxSize);
+        this(maxSize, Long.MAX_VALUE, null);
+    }
+
+    /**
+     * @param maxBytes Maximum total size of the entries, as returned by {@param sizeOf}
+     * @param sizeOf Returns the size in bytes of an entry
+     */
+    public TaskKeyLruCache(int maxSize, long maxBytes, @Nullable ToIntFunction<V> sizeOf) {
+        mMap = new MyLinkedHashMap(maxSize);
+        mMaxBytes = maxBytes;
+        mSizeOf = sizeOf;
     }
 
     /**
@@ -42,20 +61,27 @@ public class TaskKeyLruCache<V> implements TaskKeyCache<V> {
      */
     public synchronized void evictAll() {
         mMap.clear();
+        mBytes = 0;
     }
 
     /**
      * Removes a particular entry from the cache
      */
     public synchronized void remove(TaskKey key) {
-        mMap.remove(key.id);
+        onEntryRemoved(mMap.remove(key.id));
     }
 
     /**
      * Removes all entries matching keyCheck
      */
     public synchronized void removeAll(Predicate<TaskKey> keyCheck) {
-        mMap.entrySet().removeIf(e -> keyCheck.test(e.getValue().mKey));
+        mMap.entrySet().removeIf(e -> {
+            if (keyCheck.test(e.getValue().mKey)) {
+                onEntryRemoved(e.getValue());
+                return true;
+            }
+            return false;
+        });
     }
 
     /**
@@ -79,7 +105,11 @@ public class TaskKeyLruCache<V> implements TaskKeyCache<V> {
      */
     public final synchronized void put(TaskKey key, V value) {
         if (key != null && value != null) {
-            mMap.put(key.id, new Entry<>(key, value));
+            Entry<V> entry = new Entry<>(key, value);
+            entry.mBytes = sizeOf(value);
+            mBytes += entry.mBytes;
+            onEntryRemoved(mMap.put(key.id, entry));
+            trimToMaxBytes();
         } else {
             Log.e("TaskKeyCache", "Unexpected null key or value: " + key + ", " + value);
         }
@@ -92,6 +122,10 @@ public class TaskKeyLruCache<V> implements TaskKeyCache<V> {
         Entry<V> entry = mMap.get(taskId);
         if (entry != null) {
             entry.mValue = data;
+            mBytes -= entry.mBytes;
+            entry.mBytes = sizeOf(data);
+            mBytes += entry.mBytes;
+            trimToMaxBytes();
         }
     }
 
@@ -105,7 +139,35 @@ public class TaskKeyLruCache<V> implements TaskKeyCache<V> {
         return mMap.size();
     }
 
-    private static class MyLinkedHashMap<V> extends LinkedHashMap<Integer, Entry<V>> {
+    /**
+     * Returns the total size in bytes of the entries
+     */
+    public synchronized long getSizeInBytes() {
+        return mBytes;
+    }
+
+    private int sizeOf(V value) {
+        return mSizeOf == null || value == null ? 0 : mSizeOf.applyAsInt(value);
+    }
+
+    private void onEntryRemoved(@Nullable Entry<V> entry) {
+        if (entry != null) {
+            mBytes -= entry.mBytes;
+        }
+    }
+
+    /**
+     * Evicts the least recently accessed entries until the entries fit in the byte budget
+     */
+    private void trimToMaxBytes() {
+        Iterator<Entry<V>> iterator = mMap.values().iterator();
+        while (mBytes > mMaxBytes && iterator.hasNext()) {
+            onEntryRemoved(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    private class MyLinkedHashMap extends LinkedHashMap<Integer, Entry<V>> {
 
         private final int mMaxSize;
 
@@ -116,7 +178,11 @@ public class TaskKeyLruCache<V> implements TaskKeyCache<V> {
 
         @Override
         protected boolean removeEldestEntry(Map.Entry<Integer, TaskKeyLruCache.Entry<V>> eldest) {
-            return size() > mMaxSize;
+            if (size() > mMaxSize) {
+                mBytes -= eldest.getValue().mBytes;
+                return true;
+            }
+            return false;
         }
     }
 }
@@ -699,6 +699,8 @@ public abstract class RecentsView<
     // Used to keep track of the last requested task list id, so that we do not request to load the
     // tasks again if we have already requested it and the task list has not changed
     private int mTaskListChangeId = -1;
+    // The final scroll of the fling whose thumbnails are prefetched, if any
+    private int mThumbnailPrefetchScroll = Integer.MIN_VALUE;
 
     // Only valid until the launcher state changes to NORMAL
     /**
@@ -2586,7 +2588,18 @@ public abstract class RecentsView<
             return;
         }
 
+        // While flinging, the thumbnails of the tasks that will be visible where the fling ends
+        // are prefetched, so that they are ready when the scroll settles. The prefetched tasks are
+        // only replaced when a fling to another scroll starts, so that the prefetch isn't
+        // cancelled when the fling settles.
+        boolean isFlinging = !mScroller.isFinished();
+        int finalScroll = getPagedOrientationHandler().getPrimaryValue(mScroller.getFinalX(),
+                mScroller.getFinalY());
+        if (!isFlinging) {
+            mThumbnailPrefetchScroll = Integer.MIN_VALUE;
+        }
         int lowerIndex, upperIndex, visibleStart, visibleEnd;
+        int prefetchLowerIndex, prefetchUpperIndex, prefetchStart, prefetchEnd;
         if (showAsGrid()) {
             int screenStart = getPagedOrientationHandler().getPrimaryScroll(this);
             int pageOrientedSize = getPagedOrientationHandler().getMeasuredSize(this);
@@ -2598,15 +2611,27 @@ public abstract class RecentsView<
             lowerIndex = upperIndex = 0;
             visibleStart = screenStart - extraWidth;
             visibleEnd = screenStart + pageOrientedSize + extraWidth;
+            prefetchLowerIndex = prefetchUpperIndex = 0;
+            prefetchStart = finalScroll - extraWidth;
+            prefetchEnd = finalScroll + pageOrientedSize + extraWidth;
         } else {
             int centerPageIndex = getPageNearestToCenterOfScreen();
             int numChildren = getChildCount();
             lowerIndex = Math.max(0, centerPageIndex - 2);
             upperIndex = Math.min(centerPageIndex + 2, numChildren - 1);
             visibleStart = visibleEnd = 0;
+            int destinationPage = isFlinging ? getDestinationPage(finalScroll) : INVALID_PAGE;
+            if (destinationPage == INVALID_PAGE) {
+                isFlinging = false;
+            }
+            prefetchLowerIndex = Math.max(0, destinationPage - 2);
+            prefetchUpperIndex = Math.min(destinationPage + 2, numChildren - 1);
+            prefetchStart = prefetchEnd = 0;
         }
+        boolean prefetchThumbnails = isFlinging && finalScroll != mThumbnailPrefetchScroll;
 
         List<Integer> visibleTaskIds = new ArrayList<>();
+        List<Task> tasksToPrefetch = new ArrayList<>();
         // Update the task data for the in/visible children
         getTaskViews().forEachWithIndexInParent((index, taskView) -> {
             List<TaskContainer> containers = taskView.getTaskContainers();
@@ -2663,11 +2688,32 @@ public abstract class RecentsView<
                 if (visibilityChanges != 0) {
                     taskView.onTaskListVisibilityChanged(false /* visible */, visibilityChanges);
                 }
+
+                boolean prefetch;
+                if (!prefetchThumbnails) {
+                    prefetch = false;
+                } else if (showAsGrid()) {
+                    prefetch = isTaskViewWithinBounds(taskView, prefetchStart, prefetchEnd,
+                            mTaskViewsDismissPrimaryTranslations.getOrDefault(taskView, 0));
+                } else {
+                    prefetch = index >= prefetchLowerIndex && index <= prefetchUpperIndex;
+                }
+                if (prefetch) {
+                    for (TaskContainer container : containers) {
+                        if (container != null) {
+                            tasksToPrefetch.add(container.getTask());
+                        }
+                    }
+                }
             }
         });
         if (enableRefactorTaskThumbnail()) {
             mRecentsViewModel.updateVisibleTasks(visibleTaskIds);
         }
+        if (prefetchThumbnails) {
+            mThumbnailPrefetchScroll = finalScroll;
+            mModel.getThumbnailCache().prefetchThumbnails(tasksToPrefetch);
+        }
     }
 
     /**
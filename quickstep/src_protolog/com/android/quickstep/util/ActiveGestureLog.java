@@ -17,6 +17,7 @@ package com.android.quickstep.util;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 
 import java.io.PrintWriter;
 import java.text.SimpleDateFormat;
@@ -45,11 +46,31 @@ public class ActiveGestureLog {
      */
     public static final String INTENT_EXTRA_LOG_TRACE_ID = "INTENT_EXTRA_LOG_TRACE_ID";
 
+    // Number of encoded events kept, across all the gestures tracked
+    private static final int MAX_ENCODED_EVENTS = 512;
+    private static final int MAX_ENCODED_ARGS = 4;
+
     private final EventLog[] logs;
     private int nextIndex;
     private int mCurrentLogId = 100;
-
-    private ActiveGestureLog() {
+    // Order of the logs, to interleave the encoded events with the other logs at dump time. It
+    // is compared by difference so that it can overflow.
+    private int mNextSequence;
+
+    // Ring buffer of the encoded events, see addEncodedLog
+    private final long[] mEncodedTimes = new long[MAX_ENCODED_EVENTS];
+    private final int[] mEncodedSequences = new int[MAX_ENCODED_EVENTS];
+    private final int[] mEncodedLogIds = new int[MAX_ENCODED_EVENTS];
+    private final EncodedEvent[] mEncodedEvents = new EncodedEvent[MAX_ENCODED_EVENTS];
+    private final int[] mEncodedArgs = new int[MAX_ENCODED_EVENTS * MAX_ENCODED_ARGS];
+    private final int[] mEncodedDuplicateCounts = new int[MAX_ENCODED_EVENTS];
+    private int mNextEncodedIndex;
+    private int mEncodedCount;
+    // Index of the last encoded event if no other log was added after it, -1 otherwise
+    private int mLastEncodedIndex = -1;
+
+    @VisibleForTesting
+    ActiveGestureLog() {
         this.logs = new EventLog[MAX_GESTURES_TRACKED];
         this.nextIndex = 0;
     }
@@ -88,12 +109,13 @@ public class ActiveGestureLog {
     public void addLog(
             @NonNull CompoundString compoundString,
             @Nullable ActiveGestureErrorDetector.GestureEvent gestureEvent) {
+        mLastEncodedIndex = -1;
         EventLog lastEventLog = logs[(nextIndex + logs.length - 1) % logs.length];
         if (lastEventLog == null || mCurrentLogId != lastEventLog.logId) {
             EventLog eventLog = new EventLog(mCurrentLogId, mIsFullyGesturalNavMode);
             EventEntry eventEntry = new EventEntry();
 
-            eventEntry.update(compoundString, gestureEvent);
+            eventEntry.update(compoundString, gestureEvent, mNextSequence++);
             eventLog.eventEntries.add(eventEntry);
             logs[nextIndex] = eventLog;
             nextIndex = (nextIndex + 1) % logs.length;
@@ -112,10 +134,52 @@ public class ActiveGestureLog {
         }
         EventEntry eventEntry = new EventEntry();
 
-        eventEntry.update(compoundString, gestureEvent);
+        eventEntry.update(compoundString, gestureEvent, mNextSequence++);
         lastEventEntries.add(eventEntry);
     }
 
+    /**
+     * Adds a log for an event logged for every input event, without allocating except for the
+     * first log of a gesture. The event and its arguments are stored as is, and only formatted at
+     * log-dump-time. Encoded events are not tracked for error detection.
+     *
+     * @param event Formats the event from its arguments.
+     */
+    public void addEncodedLog(
+            @NonNull EncodedEvent event, int arg0, int arg1, int arg2, int arg3) {
+        EventLog lastEventLog = logs[(nextIndex + logs.length - 1) % logs.length];
+        if (lastEventLog == null || mCurrentLogId != lastEventLog.logId) {
+            // The encoded events are dumped with the other logs of their gesture
+            logs[nextIndex] = new EventLog(mCurrentLogId, mIsFullyGesturalNavMode);
+            nextIndex = (nextIndex + 1) % logs.length;
+        }
+
+        int last = mLastEncodedIndex;
+        if (last >= 0 && mEncodedEvents[last] == event
+                && mEncodedLogIds[last] == mCurrentLogId
+                && mEncodedArgs[last * MAX_ENCODED_ARGS] == arg0
+                && mEncodedArgs[last * MAX_ENCODED_ARGS + 1] == arg1
+                && mEncodedArgs[last * MAX_ENCODED_ARGS + 2] == arg2
+                && mEncodedArgs[last * MAX_ENCODED_ARGS + 3] == arg3) {
+            mEncodedDuplicateCounts[last]++;
+            return;
+        }
+
+        int index = mNextEncodedIndex;
+        mEncodedTimes[index] = System.currentTimeMillis();
+        mEncodedSequences[index] = mNextSequence++;
+        mEncodedLogIds[index] = mCurrentLogId;
+        mEncodedEvents[index] = event;
+        mEncodedArgs[index * MAX_ENCODED_ARGS] = arg0;
+        mEncodedArgs[index * MAX_ENCODED_ARGS + 1] = arg1;
+        mEncodedArgs[index * MAX_ENCODED_ARGS + 2] = arg2;
+        mEncodedArgs[index * MAX_ENCODED_ARGS + 3] = arg3;
+        mEncodedDuplicateCounts[index] = 0;
+        mLastEncodedIndex = index;
+        mNextEncodedIndex = (index + 1) % MAX_ENCODED_EVENTS;
+        mEncodedCount = Math.min(mEncodedCount + 1, MAX_ENCODED_EVENTS);
+    }
+
     public void dump(String prefix, PrintWriter writer) {
         writer.println(prefix + "ActiveGestureErrorDetector:");
         for (int i = 0; i < logs.length; i++) {
@@ -136,7 +200,14 @@ public class ActiveGestureLog {
             }
 
             writer.println(prefix + "\tLogs for logId: " + eventLog.logId);
+            // Encoded events are interleaved with the other entries of the log in logging order
+            int encoded = nextEncodedEvent(eventLog.logId, 0);
             for (EventEntry eventEntry : eventLog.eventEntries) {
+                while (encoded >= 0
+                        && mEncodedSequences[encodedIndex(encoded)] - eventEntry.sequence < 0) {
+                    dumpEncodedEvent(prefix, writer, sdf, date, encodedIndex(encoded));
+                    encoded = nextEncodedEvent(eventLog.logId, encoded + 1);
+                }
                 if (eventEntry.mCompoundString.mIsNoOp) {
                     continue;
                 }
@@ -145,11 +216,49 @@ public class ActiveGestureLog {
                 StringBuilder msg = new StringBuilder(prefix + "\t\t")
                         .append(sdf.format(date))
                         .append(eventEntry.mCompoundString);
-                if (eventEntry.duplicateCount > 0) {
-                    msg.append(" & ").append(eventEntry.duplicateCount).append(" similar events");
-                }
+                appendDuplicateCount(msg, eventEntry.duplicateCount);
                 writer.println(msg);
             }
+            while (encoded >= 0) {
+                dumpEncodedEvent(prefix, writer, sdf, date, encodedIndex(encoded));
+                encoded = nextEncodedEvent(eventLog.logId, encoded + 1);
+            }
+        }
+    }
+
+    /**
+     * Returns the age rank, from the oldest, of the first encoded event of the log from the
+     * {@param start} oldest one, or -1 if there is none.
+     */
+    private int nextEncodedEvent(int logId, int start) {
+        for (int i = start; i < mEncodedCount; i++) {
+            if (mEncodedLogIds[encodedIndex(i)] == logId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index in the ring buffer of the {@param rank} oldest encoded event.
+     */
+    private int encodedIndex(int rank) {
+        return (mNextEncodedIndex - mEncodedCount + rank + MAX_ENCODED_EVENTS)
+                % MAX_ENCODED_EVENTS;
+    }
+
+    private void dumpEncodedEvent(String prefix, PrintWriter writer, SimpleDateFormat sdf,
+            Date date, int index) {
+        date.setTime(mEncodedTimes[index]);
+        StringBuilder msg = new StringBuilder(prefix + "\t\t").append(sdf.format(date));
+        mEncodedEvents[index].format(msg, mEncodedArgs, index * MAX_ENCODED_ARGS);
+        appendDuplicateCount(msg, mEncodedDuplicateCounts[index]);
+        writer.println(msg);
+    }
+
+    private static void appendDuplicateCount(StringBuilder msg, int duplicateCount) {
+        if (duplicateCount > 0) {
+            msg.append(" & ").append(duplicateCount).append(" similar events");
         }
     }
 
@@ -185,6 +294,7 @@ public class ActiveGestureLog {
         @NonNull private CompoundString mCompoundString;
         private ActiveGestureErrorDetector.GestureEvent gestureEvent;
         private long time;
+        private int sequence;
         private int duplicateCount;
 
         private EventEntry() {}
@@ -200,9 +310,11 @@ public class ActiveGestureLog {
 
         private void update(
                 @NonNull CompoundString compoundString,
-                ActiveGestureErrorDetector.GestureEvent gestureEvent) {
+                ActiveGestureErrorDetector.GestureEvent gestureEvent,
+                int sequence) {
             this.mCompoundString = compoundString;
             this.gestureEvent = gestureEvent;
+            this.sequence = sequence;
             time = System.currentTimeMillis();
             duplicateCount = 0;
         }
@@ -226,6 +338,16 @@ public class ActiveGestureLog {
         }
     }
 
+    /** An event logged with {@link #addEncodedLog}, which is formatted at log-dump-time. */
+    public interface EncodedEvent {
+
+        /**
+         * Appends the description of the event to {@param out}, with the arguments of the event
+         * starting at {@param offset} in {@param args}.
+         */
+        void format(@NonNull StringBuilder out, @NonNull int[] args, int offset);
+    }
+
     /** A buildable string stored as an array for memory efficiency. */
     public static class CompoundString {
 
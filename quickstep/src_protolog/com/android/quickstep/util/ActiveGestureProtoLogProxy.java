@@ -23,7 +23,6 @@ import static com.android.quickstep.util.ActiveGestureErrorDetector.GestureEvent
 import static com.android.quickstep.util.ActiveGestureErrorDetector.GestureEvent.INVALID_VELOCITY_ON_SWIPE_UP;
 import static com.android.quickstep.util.ActiveGestureErrorDetector.GestureEvent.LAUNCHER_DESTROYED;
 import static com.android.quickstep.util.ActiveGestureErrorDetector.GestureEvent.MOTION_DOWN;
-import static com.android.quickstep.util.ActiveGestureErrorDetector.GestureEvent.MOTION_MOVE;
 import static com.android.quickstep.util.ActiveGestureErrorDetector.GestureEvent.MOTION_UP;
 import static com.android.quickstep.util.ActiveGestureErrorDetector.GestureEvent.NAVIGATION_MODE_SWITCHED;
 import static com.android.quickstep.util.ActiveGestureErrorDetector.GestureEvent.ON_CANCEL_RECENTS_ANIMATION;
@@ -45,6 +44,7 @@ import android.view.MotionEvent;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 
 import com.android.internal.protolog.ProtoLog;
 import com.android.internal.protolog.common.IProtoLogGroup;
@@ -61,6 +61,17 @@ import com.android.internal.protolog.common.IProtoLogGroup;
  */
 public class ActiveGestureProtoLogProxy {
 
+    @VisibleForTesting
+    static final ActiveGestureLog.EncodedEvent ON_INPUT_EVENT_ACTION_MOVE =
+            (out, args, offset) -> out.append("onMotionEvent: ")
+                    .append(MotionEvent.actionToString(args[offset]))
+                    .append(", ")
+                    .append(MotionEvent.classificationToString(args[offset + 1]))
+                    .append(", pointerCount: ")
+                    .append(args[offset + 2])
+                    .append(", displayId=")
+                    .append(args[offset + 3]);
+
     public static void logLauncherDestroyed() {
         ActiveGestureLog.INSTANCE.addLog("Launcher destroyed", LAUNCHER_DESTROYED);
         if (isProtoLogInitialized()) return;
@@ -350,23 +361,26 @@ public class ActiveGestureProtoLogProxy {
                 displayId);
     }
 
+    /**
+     * Logs a move event. This is called for every input event of a gesture, so the event is
+     * encoded instead of being formatted.
+     */
     public static void logOnInputEventActionMove(
-            @NonNull String action,
-            @NonNull String classification,
+            int action,
+            int classification,
             int pointerCount,
             int displayId) {
-        ActiveGestureLog.INSTANCE.addLog(new ActiveGestureLog.CompoundString(
-                        "onMotionEvent: %s, %s, pointerCount: %d, displayId=%d",
-                        action,
-                        classification,
-                        pointerCount,
-                        displayId),
-                MOTION_MOVE);
+        ActiveGestureLog.INSTANCE.addEncodedLog(
+                ON_INPUT_EVENT_ACTION_MOVE,
+                action,
+                classification,
+                pointerCount,
+                displayId);
         if (!enableActiveGestureProtoLog() || !isProtoLogInitialized()) return;
         ProtoLog.d(ACTIVE_GESTURE_LOG,
                 "onMotionEvent: %s, %s, pointerCount: %d, displayId=%d",
-                action,
-                classification,
+                MotionEvent.actionToString(action),
+                MotionEvent.classificationToString(classification),
                 pointerCount,
                 displayId);
     }
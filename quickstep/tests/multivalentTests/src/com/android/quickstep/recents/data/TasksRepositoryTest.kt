@@ -305,6 +305,28 @@ class TasksRepositoryTest {
             assertThat(task2BitmapValues).isEqualTo(listOf(null, bitmap2))
         }
 
+    @Test
+    fun retrievedThumbnailsOnlyCauseEmissionOnTheirTaskDataFlow() =
+        testScope.runTest {
+            recentsModel.seedTasks(defaultTaskList)
+            val allTaskDataFlow = systemUnderTest.getAllTaskData(forceRefresh = true)
+
+            val allTaskDataValues = mutableListOf<List<Task>>()
+            testScope.backgroundScope.launch { allTaskDataFlow.toList(allTaskDataValues) }
+            val task3BitmapValues = mutableListOf<Bitmap?>()
+            testScope.backgroundScope.launch {
+                systemUnderTest
+                    .getTaskDataById(3)
+                    .map { it?.thumbnail?.thumbnail }
+                    .toList(task3BitmapValues)
+            }
+
+            systemUnderTest.setVisibleTasks(setOf(1, 2))
+
+            assertThat(task3BitmapValues).containsExactly(null)
+            assertThat(allTaskDataValues).hasSize(1)
+        }
+
     @Test
     fun onTaskThumbnailChanged_setsNewThumbnailDataOnTask() =
         testScope.runTest {
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+import android.content.ComponentName;
+import android.content.Intent;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.systemui.shared.recents.model.Task;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+@SmallTest
+public class TaskKeyConcurrentLruCacheTest {
+
+    private static final int STRESS_THREAD_COUNT = 8;
+    private static final int STRESS_OPERATION_COUNT = 20000;
+
+    @Test
+    public void add() {
+        TaskKeyConcurrentLruCache<String> cache = new TaskKeyConcurrentLruCache<>(3);
+        Task.TaskKey key1 = createTaskKey(1, 1);
+        Task.TaskKey key2 = createTaskKey(2, 2);
+        cache.put(key1, "1");
+        cache.put(key2, "2");
+
+        assertEquals(2, cache.getSize());
+        assertEquals("1", cache.getAndInvalidateIfModified(key1));
+        assertEquals("2", cache.getAndInvalidateIfModified(key2));
+    }
+
+    @Test
+    public void evictsLeastRecentlyAccessedEntry() {
+        TaskKeyConcurrentLruCache<String> cache = new TaskKeyConcurrentLruCache<>(2);
+        Task.TaskKey key1 = createTaskKey(1, 1);
+        Task.TaskKey key2 = createTaskKey(2, 2);
+        Task.TaskKey key3 = createTaskKey(3, 3);
+        cache.put(key1, "1");
+        cache.put(key2, "2");
+
+        // Access key1 so that key2 is the least recently accessed
+        assertNotNull(cache.getAndInvalidateIfModified(key1));
+        cache.put(key3, "3");
+
+        assertEquals(2, cache.getSize());
+        assertNotNull(cache.getAndInvalidateIfModified(key1));
+        assertNull(cache.getAndInvalidateIfModified(key2));
+        assertNotNull(cache.getAndInvalidateIfModified(key3));
+    }
+
+    @Test
+    public void getInvalidatesModifiedEntry() {
+        TaskKeyConcurrentLruCache<String> cache = new TaskKeyConcurrentLruCache<>(3);
+        cache.put(createTaskKey(1, 1), "1");
+
+        assertNull(cache.getAndInvalidateIfModified(createTaskKey(1, 2)));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void updateIfAlreadyInCache() {
+        TaskKeyConcurrentLruCache<String> cache = new TaskKeyConcurrentLruCache<>(3);
+        Task.TaskKey key1 = createTaskKey(1, 1);
+        cache.put(key1, "1");
+
+        cache.updateIfAlreadyInCache(1, "updated");
+        cache.updateIfAlreadyInCache(2, "2");
+
+        assertEquals(1, cache.getSize());
+        assertEquals("updated", cache.getAndInvalidateIfModified(key1));
+    }
+
+    @Test
+    public void removeAll() {
+        TaskKeyConcurrentLruCache<String> cache = new TaskKeyConcurrentLruCache<>(3);
+        Task.TaskKey key1 = createTaskKey(1, 1);
+        Task.TaskKey key2 = createTaskKey(2, 2);
+        cache.put(key1, "1");
+        cache.put(key2, "2");
+
+        cache.removeAll(key -> key.id == 1);
+
+        assertEquals(1, cache.getSize());
+        assertNull(cache.getAndInvalidateIfModified(key1));
+        assertEquals("2", cache.getAndInvalidateIfModified(key2));
+    }
+
+    @Test
+    public void updateCacheSizeAndRemoveExcess() {
+        TaskKeyConcurrentLruCache<String> cache = new TaskKeyConcurrentLruCache<>(3);
+        Task.TaskKey key1 = createTaskKey(1, 1);
+        Task.TaskKey key2 = createTaskKey(2, 2);
+        Task.TaskKey key3 = createTaskKey(3, 3);
+        cache.put(key1, "1");
+        cache.put(key2, "2");
+        cache.put(key3, "3");
+
+        cache.updateCacheSizeAndRemoveExcess(1);
+
+        assertEquals(1, cache.getMaxSize());
+        assertEquals(1, cache.getSize());
+        assertEquals("3", cache.getAndInvalidateIfModified(key3));
+    }
+
+    @Test
+    public void concurrentReadersAndWriters() throws Exception {
+        int maxSize = 4;
+        TaskKeyConcurrentLruCache<String> cache = new TaskKeyConcurrentLruCache<>(maxSize);
+        ExecutorService executor = Executors.newFixedThreadPool(STRESS_THREAD_COUNT);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        try {
+            for (int t = 0; t < STRESS_THREAD_COUNT; t++) {
+                Random random = new Random(t);
+                results.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < STRESS_OPERATION_COUNT; i++) {
+                        Task.TaskKey key = createTaskKey(random.nextInt(8), random.nextInt(2));
+                        switch (random.nextInt(4)) {
+                            case 0 -> cache.put(key, valueFor(key));
+                            case 1 -> cache.remove(key);
+                            default -> {
+                                String value = cache.getAndInvalidateIfModified(key);
+                                // Entries are only returned for the key they were added with
+                                assertTrue(value == null || value.equals(valueFor(key)));
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(cache.getSize() <= maxSize);
+    }
+
+    private static String valueFor(Task.TaskKey key) {
+        return key.id + ":" + key.lastActiveTime;
+    }
+
+    private static Task.TaskKey createTaskKey(int id, long lastActiveTime) {
+        return new Task.TaskKey(id, 0, new Intent(), new ComponentName("", ""), 0,
+                lastActiveTime);
+    }
+}
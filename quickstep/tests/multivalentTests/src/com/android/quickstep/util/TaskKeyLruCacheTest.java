@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+
+import android.content.ComponentName;
+import android.content.Intent;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.systemui.shared.recents.model.Task;
+
+import org.junit.Test;
+
+@SmallTest
+public class TaskKeyLruCacheTest {
+    @Test
+    public void evictsLeastRecentlyAccessedEntry() {
+        TaskKeyLruCache<String> cache = new TaskKeyLruCache<>(2);
+        Task.TaskKey key1 = createTaskKey(1);
+        Task.TaskKey key2 = createTaskKey(2);
+        Task.TaskKey key3 = createTaskKey(3);
+        cache.put(key1, "1");
+        cache.put(key2, "2");
+
+        // Access key1 so that key2 is the least recently accessed
+        assertNotNull(cache.getAndInvalidateIfModified(key1));
+        cache.put(key3, "3");
+
+        assertEquals(2, cache.getSize());
+        assertNotNull(cache.getAndInvalidateIfModified(key1));
+        assertNull(cache.getAndInvalidateIfModified(key2));
+        assertNotNull(cache.getAndInvalidateIfModified(key3));
+    }
+
+    @Test
+    public void evictsEntriesOverByteBudget() {
+        TaskKeyLruCache<String> cache =
+                new TaskKeyLruCache<>(Integer.MAX_VALUE, 10, String::length);
+        Task.TaskKey key1 = createTaskKey(1);
+        Task.TaskKey key2 = createTaskKey(2);
+        Task.TaskKey key3 = createTaskKey(3);
+        cache.put(key1, "aaaa");
+        cache.put(key2, "bbbb");
+        assertEquals(8, cache.getSizeInBytes());
+
+        cache.put(key3, "cccc");
+
+        assertEquals(2, cache.getSize());
+        assertEquals(8, cache.getSizeInBytes());
+        assertNull(cache.getAndInvalidateIfModified(key1));
+        assertNotNull(cache.getAndInvalidateIfModified(key2));
+        assertNotNull(cache.getAndInvalidateIfModified(key3));
+    }
+
+    @Test
+    public void byteCountFollowsUpdatesAndRemovals() {
+        TaskKeyLruCache<String> cache =
+                new TaskKeyLruCache<>(Integer.MAX_VALUE, 10, String::length);
+        Task.TaskKey key1 = createTaskKey(1);
+        Task.TaskKey key2 = createTaskKey(2);
+        cache.put(key1, "aaaa");
+        cache.put(key2, "bb");
+
+        cache.updateIfAlreadyInCache(1, "a");
+        assertEquals(3, cache.getSizeInBytes());
+
+        cache.remove(key2);
+        assertEquals(1, cache.getSizeInBytes());
+
+        cache.evictAll();
+        assertEquals(0, cache.getSizeInBytes());
+    }
+
+    private static Task.TaskKey createTaskKey(int id) {
+        return new Task.TaskKey(id, 0, new Intent(), new ComponentName("", ""), 0, id);
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.quickstep.logging;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_DESKTOP;
+import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_APPLICATION;
+import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_APP_LAUNCH_TAP;
+import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_ITEM_DRAG_STARTED;
+import static com.android.launcher3.logging.StatsLogManager.LauncherEvent.LAUNCHER_ITEM_DROP_COMPLETED;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Debug;
+import android.os.Looper;
+import android.os.Process;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.logger.LauncherAtom;
+import com.android.launcher3.logging.StatsLogManager.EventEnum;
+import com.android.launcher3.logging.StatsLogManager.StatsLogger;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.quickstep.logging.StatsLogCompatManager.StatsLogConsumer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for the pooled events of {@link StatsLogCompatManager}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class StatsLogCompatManagerTest {
+
+    private static final int EVENT_COUNT = 100;
+
+    private final List<EventEnum> mEvents = new ArrayList<>();
+    private final List<LauncherAtom.ItemInfo> mAtomInfos = new ArrayList<>();
+    private final List<Looper> mLoopers = new ArrayList<>();
+    private final StatsLogConsumer mConsumer = (event, atomInfo) -> {
+        synchronized (mEvents) {
+            mEvents.add(event);
+            mAtomInfos.add(atomInfo);
+            mLoopers.add(Looper.myLooper());
+        }
+    };
+
+    private Context mContext;
+    private StatsLogCompatManager mManager;
+
+    @Before
+    public void setUp() throws Exception {
+        mContext = getInstrumentation().getTargetContext();
+        mManager = new StatsLogCompatManager(mContext);
+        // Drops the events logged before the test
+        waitForLogExecutor();
+        StatsLogCompatManager.LOGS_CONSUMER.add(mConsumer);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        waitForLogExecutor();
+        StatsLogCompatManager.LOGS_CONSUMER.remove(mConsumer);
+    }
+
+    @Test
+    public void testEventsAreConsumedInOrderOnLogExecutor() throws Exception {
+        WorkspaceItemInfo info = createItemInfo();
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            mManager.logger().withItemInfo(info).withRank(i).log(LAUNCHER_APP_LAUNCH_TAP);
+        }
+        waitForLogExecutor();
+
+        assertEquals(EVENT_COUNT, mEvents.size());
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            assertEquals(LAUNCHER_APP_LAUNCH_TAP, mEvents.get(i));
+            assertEquals(i, mAtomInfos.get(i).getRank());
+            assertEquals(StatsLogCompatManager.LOG_EXECUTOR.getLooper(), mLoopers.get(i));
+        }
+    }
+
+    @Test
+    public void testLoggerLogsSeveralEvents() throws Exception {
+        StatsLogger logger = mManager.logger().withItemInfo(createItemInfo()).withRank(3);
+        logger.log(LAUNCHER_ITEM_DRAG_STARTED);
+        logger.log(LAUNCHER_ITEM_DROP_COMPLETED);
+        logger.withRank(4).log(LAUNCHER_APP_LAUNCH_TAP);
+        waitForLogExecutor();
+
+        assertEquals(List.of(LAUNCHER_ITEM_DRAG_STARTED, LAUNCHER_ITEM_DROP_COMPLETED,
+                LAUNCHER_APP_LAUNCH_TAP), mEvents);
+        assertEquals(3, mAtomInfos.get(0).getRank());
+        assertEquals(3, mAtomInfos.get(1).getRank());
+        assertEquals(4, mAtomInfos.get(2).getRank());
+    }
+
+    @Test
+    public void testPooledEventsAreResetBeforeReuse() throws Exception {
+        WeakReference<WorkspaceItemInfo> loggedInfo = logEventWithRank(5);
+        waitForLogExecutor();
+
+        // The written event is back in the pool, and must not hold on to the logged item
+        for (int i = 0; i < 10 && loggedInfo.get() != null; i++) {
+            Runtime.getRuntime().gc();
+            System.runFinalization();
+        }
+        assertNull("Pooled events should not hold on to logged items", loggedInfo.get());
+
+        // The rank of the previous event is not applied to the next one
+        WorkspaceItemInfo info = createItemInfo();
+        info.rank = 1;
+        mManager.logger().withItemInfo(info).log(LAUNCHER_APP_LAUNCH_TAP);
+        waitForLogExecutor();
+
+        assertEquals(2, mAtomInfos.size());
+        assertEquals(5, mAtomInfos.get(0).getRank());
+        assertEquals(1, mAtomInfos.get(1).getRank());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testLogAllocatesLessThanBuildingProtos() throws Exception {
+        WorkspaceItemInfo info = createItemInfo();
+        StatsLogger logger = mManager.logger().withItemInfo(info);
+        // Warm up, which also fills the pool of events
+        logEvents(logger);
+        buildProtos(info);
+        waitForLogExecutor();
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        buildProtos(info);
+        Debug.stopAllocCounting();
+        int protoAllocations = Debug.getThreadAllocCount();
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        logEvents(logger);
+        Debug.stopAllocCounting();
+        int logAllocations = Debug.getThreadAllocCount();
+
+        assertTrue("Logging allocated " + logAllocations + " objects, building the protos "
+                        + protoAllocations,
+                logAllocations < protoAllocations);
+    }
+
+    private WeakReference<WorkspaceItemInfo> logEventWithRank(int rank) {
+        WorkspaceItemInfo info = createItemInfo();
+        mManager.logger().withItemInfo(info).withRank(rank).log(LAUNCHER_APP_LAUNCH_TAP);
+        return new WeakReference<>(info);
+    }
+
+    private void buildProtos(WorkspaceItemInfo info) {
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            info.buildProto(mContext);
+        }
+    }
+
+    private static void logEvents(StatsLogger logger) {
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            logger.log(LAUNCHER_APP_LAUNCH_TAP);
+        }
+    }
+
+    private static WorkspaceItemInfo createItemInfo() {
+        WorkspaceItemInfo info = new WorkspaceItemInfo();
+        info.container = CONTAINER_DESKTOP;
+        info.itemType = ITEM_TYPE_APPLICATION;
+        info.intent = new Intent().setComponent(new ComponentName("com.test", "com.test.App"));
+        info.user = Process.myUserHandle();
+        return info;
+    }
+
+    private static void waitForLogExecutor() throws Exception {
+        StatsLogCompatManager.LOG_EXECUTOR.submit(() -> { }).get();
+    }
+}
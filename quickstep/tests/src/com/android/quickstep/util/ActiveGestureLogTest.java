@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static android.view.MotionEvent.ACTION_MOVE;
+import static android.view.MotionEvent.CLASSIFICATION_NONE;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.os.Debug;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Unit tests for the encoded logs of {@link ActiveGestureLog}. Each test uses its own log, so that
+ * the logs of {@link ActiveGestureLog#INSTANCE} are left untouched.
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ActiveGestureLogTest {
+
+    private static final int EVENT_COUNT = 1000;
+
+    private ActiveGestureLog mLog;
+
+    @Before
+    public void setUp() {
+        mLog = new ActiveGestureLog();
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testEncodedLogsDoNotAllocate() {
+        // Warm up
+        logMoveEvents(EVENT_COUNT);
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        logMoveEvents(EVENT_COUNT);
+        Debug.stopAllocCounting();
+
+        assertEquals("Encoded events should not allocate", 0, Debug.getThreadAllocCount());
+    }
+
+    @Test
+    public void testEncodedLogsAreMergedAndDumped() {
+        mLog.addLog("gesture started");
+        for (int i = 0; i < 3; i++) {
+            mLog.addEncodedLog(ActiveGestureProtoLogProxy.ON_INPUT_EVENT_ACTION_MOVE,
+                    ACTION_MOVE, CLASSIFICATION_NONE, 1, 0);
+        }
+
+        String dump = dump();
+
+        assertTrue(dump, dump.contains("pointerCount: 1, displayId=0 & 2 similar events"));
+    }
+
+    @Test
+    public void testEncodedLogsOfGestureWithoutOtherLogsAreDumped() {
+        mLog.addLog("previous gesture");
+        int logId = mLog.incrementLogId() + 1;
+        mLog.addEncodedLog(ActiveGestureProtoLogProxy.ON_INPUT_EVENT_ACTION_MOVE,
+                ACTION_MOVE, CLASSIFICATION_NONE, 2, 0);
+
+        String dump = dump();
+
+        assertTrue(dump, dump.contains("Logs for logId: " + logId));
+        assertTrue(dump, dump.contains("pointerCount: 2, displayId=0"));
+    }
+
+    private String dump() {
+        StringWriter out = new StringWriter();
+        mLog.dump("", new PrintWriter(out));
+        return out.toString();
+    }
+
+    private void logMoveEvents(int count) {
+        for (int i = 0; i < count; i++) {
+            // Change the pointer count so that events are not merged as duplicates
+            mLog.addEncodedLog(ActiveGestureProtoLogProxy.ON_INPUT_EVENT_ACTION_MOVE,
+                    ACTION_MOVE, CLASSIFICATION_NONE, 1 + i % 2, 0);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.ComponentName;
+import android.content.Intent;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+
+import com.android.systemui.shared.recents.model.Task;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+/**
+ * Microbenchmark of the {@link TaskKeyCache} implementations, with several threads reading the
+ * cache while one thread keeps adding and updating entries, as happens during recents animations.
+ * Timings of the reads are reported in logcat under {@link #TAG}, and every read must return
+ * either nothing or the value of its task.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class TaskKeyCacheBenchmark {
+
+    private static final String TAG = "TaskKeyCacheBenchmark";
+
+    private static final int CACHE_SIZE = 8;
+    private static final int TASK_COUNT = 12;
+    private static final int READS_PER_THREAD = 200000;
+
+    @Test
+    public void benchmark1Reader() throws Exception {
+        runBenchmark(1);
+    }
+
+    @Test
+    public void benchmark4Readers() throws Exception {
+        runBenchmark(4);
+    }
+
+    private void runBenchmark(int readerCount) throws Exception {
+        Log.d(TAG, readerCount + " readers: "
+                + "lru=" + measure(TaskKeyLruCache::new, readerCount) + "ns/read"
+                + ", lastActiveTime=" + measure(TaskKeyByLastActiveTimeCache::new, readerCount)
+                + "ns/read"
+                + ", concurrentLru=" + measure(TaskKeyConcurrentLruCache::new, readerCount)
+                + "ns/read");
+    }
+
+    /**
+     * Returns the average time of a read, with {@param readerCount} threads reading the cache
+     * while another thread writes to it.
+     */
+    private static long measure(IntFunction<TaskKeyCache<String>> cacheFactory, int readerCount)
+            throws Exception {
+        TaskKeyCache<String> cache = cacheFactory.apply(CACHE_SIZE);
+        Task.TaskKey[] keys = new Task.TaskKey[TASK_COUNT];
+        for (int i = 0; i < TASK_COUNT; i++) {
+            keys[i] = new Task.TaskKey(i, 0, new Intent(), new ComponentName("", ""), 0, i);
+            cache.put(keys[i], String.valueOf(i));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(readerCount + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch readersDone = new CountDownLatch(readerCount);
+        List<Future<Long>> readTimes = new ArrayList<>();
+        try {
+            executor.execute(() -> {
+                Random random = new Random(0);
+                while (readersDone.getCount() > 0 && !Thread.currentThread().isInterrupted()) {
+                    Task.TaskKey key = keys[random.nextInt(TASK_COUNT)];
+                    if (random.nextBoolean()) {
+                        cache.put(key, String.valueOf(key.id));
+                    } else {
+                        cache.updateIfAlreadyInCache(key.id, String.valueOf(key.id));
+                    }
+                }
+            });
+            for (int t = 0; t < readerCount; t++) {
+                Random random = new Random(t + 1);
+                readTimes.add(executor.submit(() -> {
+                    try {
+                        start.await();
+                        int wrongValueCount = 0;
+                        long startTime = SystemClock.elapsedRealtimeNanos();
+                        for (int i = 0; i < READS_PER_THREAD; i++) {
+                            Task.TaskKey key = keys[random.nextInt(TASK_COUNT)];
+                            String value = cache.getAndInvalidateIfModified(key);
+                            if (value != null && !value.equals(String.valueOf(key.id))) {
+                                wrongValueCount++;
+                            }
+                        }
+                        long time = SystemClock.elapsedRealtimeNanos() - startTime;
+                        assertEquals("Reads returned the value of another task", 0,
+                                wrongValueCount);
+                        return time;
+                    } finally {
+                        // Stops the writer even if a reader fails
+                        readersDone.countDown();
+                    }
+                }));
+            }
+            start.countDown();
+            long totalTime = 0;
+            for (Future<Long> readTime : readTimes) {
+                totalTime += readTime.get();
+            }
+            return totalTime / readerCount / READS_PER_THREAD;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -82,6 +82,7 @@ public class DeviceProfile {
     private static final int DEFAULT_DOT_SIZE = 100;
     private static final float MIN_FOLDER_TEXT_SIZE_SP = 16f;
     private static final float MIN_WIDGET_PADDING_DP = 6f;
+    private static final int MIN_ALL_APPS_SEARCH_RESULTS = 5;
 
     // Minimum aspect ratio beyond which an extra top padding may be applied to a bottom sheet.
     private static final float MIN_ASPECT_RATIO_FOR_EXTRA_TOP_PADDING = 1.5f;
@@ -260,6 +261,7 @@ public class DeviceProfile {
     public int allAppsIconDrawablePaddingPx;
     public int allAppsLeftRightMargin;
     public final int numShownAllAppsColumns;
+    public final int numAllAppsSearchResults;
     public float allAppsIconTextSizePx;
 
     // Overview
@@ -371,6 +373,7 @@ public class DeviceProfile {
         inlineNavButtonsEndSpacingPx = 0;
         mBubbleBarSpaceThresholdPx = 0;
         numShownAllAppsColumns = 0;
+        numAllAppsSearchResults = 0;
         overviewActionsHeight = 0;
         overviewActionsTopMarginPx = 0;
         overviewActionsButtonSpacing = 0;
@@ -631,6 +634,11 @@ public class DeviceProfile {
 
         numShownAllAppsColumns =
                 isTwoPanels ? inv.numDatabaseAllAppsColumns : inv.numAllAppsColumns;
+        // Show two rows of search results on large screens, and at least the historical 5 results
+        // everywhere else
+        numAllAppsSearchResults = isTablet
+                ? 2 * numShownAllAppsColumns
+                : Math.max(MIN_ALL_APPS_SEARCH_RESULTS, numShownAllAppsColumns);
 
         int hotseatBarBottomSpace;
         int minQsbMargin = res.getDimensionPixelSize(R.dimen.min_qsb_margin);
@@ -35,6 +35,7 @@ import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
 
 import android.content.Context;
 import android.content.Intent;
+import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
 import android.content.res.XmlResourceParser;
@@ -260,6 +261,10 @@ public class InvariantDeviceProfile {
 
     private final List<OnIDPChangeListener> mChangeListeners = new CopyOnWriteArrayList<>();
 
+    // Options parsed from R.xml.device_profiles, reused until the resources or the displays they
+    // were parsed for change
+    private volatile ParsedGridOptions mParsedGridOptions;
+
     @Inject
     InvariantDeviceProfile(
             @ApplicationContext Context context,
@@ -406,7 +411,8 @@ public class InvariantDeviceProfile {
 
         inlineNavButtonsEndSpacing = closestProfile.inlineNavButtonsEndSpacing;
 
-        iconSize = displayOption.iconSizes;
+        // Copied as the partner overrides below can modify it, and display options are cached
+        iconSize = displayOption.iconSizes.clone();
         float maxIconSize = iconSize[0];
         for (int i = 1; i < iconSize.length; i++) {
             maxIconSize = Math.max(maxIconSize, iconSize[i]);
@@ -548,7 +554,7 @@ public class InvariantDeviceProfile {
                 && gridOption.filterByFlag(deviceType, isFixedLandscapeMode);
     }
 
-    private static List<DisplayOption> getPredefinedDeviceProfiles(
+    private List<DisplayOption> getPredefinedDeviceProfiles(
             Context context,
             String gridName,
             Info displayInfo,
@@ -556,34 +562,18 @@ public class InvariantDeviceProfile {
             boolean isFixedLandscapeMode
     ) {
         ArrayList<DisplayOption> profiles = new ArrayList<>();
-
-        try (XmlResourceParser parser = context.getResources().getXml(R.xml.device_profiles)) {
-            final int depth = parser.getDepth();
-            int type;
-            while (((type = parser.next()) != XmlPullParser.END_TAG ||
-                    parser.getDepth() > depth) && type != XmlPullParser.END_DOCUMENT) {
-                if ((type == XmlPullParser.START_TAG)
-                        && GridOption.TAG_NAME.equals(parser.getName())) {
-                    GridOption gridOption = new GridOption(
-                            context, Xml.asAttributeSet(parser), displayInfo);
-                    if (firstGridFilter(gridOption, displayInfo.getDeviceType(), allowDisabledGrid,
-                            isFixedLandscapeMode)) {
-                        final int displayDepth = parser.getDepth();
-                        while (((type = parser.next()) != XmlPullParser.END_TAG
-                                || parser.getDepth() > displayDepth)
-                                && type != XmlPullParser.END_DOCUMENT) {
-                            if ((type == XmlPullParser.START_TAG) && "display-option".equals(
-                                    parser.getName())) {
-                                profiles.add(new DisplayOption(gridOption, context,
-                                        Xml.asAttributeSet(parser)));
-                            }
-                        }
-                    }
-                }
-            }
+        List<DisplayOption> allOptions;
+        try {
+            allOptions = getParsedGridOptions(context, displayInfo).displayOptions;
         } catch (IOException | XmlPullParserException e) {
             throw new RuntimeException(e);
         }
+        for (DisplayOption option : allOptions) {
+            if (firstGridFilter(option.grid, displayInfo.getDeviceType(), allowDisabledGrid,
+                    isFixedLandscapeMode)) {
+                profiles.add(option);
+            }
+        }
         ArrayList<DisplayOption> filteredProfiles = new ArrayList<>();
         if (!TextUtils.isEmpty(gridName)) {
             for (DisplayOption option : profiles) {
@@ -711,7 +701,14 @@ public class InvariantDeviceProfile {
      * @return all the grid options that can be shown on the device
      */
     public List<GridOption> parseAllGridOptions(Context context) {
-        return parseAllDefinedGridOptions(context, displayInfo)
+        List<GridOption> allOptions;
+        try {
+            allOptions = getParsedGridOptions(context, displayInfo).gridOptions;
+        } catch (IOException | XmlPullParserException e) {
+            Log.e(TAG, "Error parsing device profile", e);
+            return Collections.emptyList();
+        }
+        return allOptions
                 .stream()
                 .filter(go -> go.isEnabled(deviceType))
                 .filter(go -> go.filterByFlag(deviceType, isFixedLandscape))
@@ -722,7 +719,35 @@ public class InvariantDeviceProfile {
      * @return all the grid options that can be shown on the device
      */
     public static List<GridOption> parseAllDefinedGridOptions(Context context, Info displayInfo) {
-        List<GridOption> result = new ArrayList<>();
+        try {
+            return parseGridOptions(context, displayInfo, null).gridOptions;
+        } catch (IOException | XmlPullParserException e) {
+            Log.e(TAG, "Error parsing device profile", e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Returns the options parsed for the given display, parsing them only if the resources or the
+     * displays changed since they were last parsed.
+     */
+    private ParsedGridOptions getParsedGridOptions(Context context, Info displayInfo)
+            throws IOException, XmlPullParserException {
+        Configuration config = context.getResources().getConfiguration();
+        int[] dimens = findMinWidthAndHeightPxForDevice(displayInfo);
+        Object[] key = new Object[]{config.densityDpi, config.getLocales(), dimens[0], dimens[1]};
+        ParsedGridOptions parsedOptions = mParsedGridOptions;
+        if (parsedOptions == null || !Arrays.equals(parsedOptions.key, key)) {
+            parsedOptions = parseGridOptions(context, displayInfo, key);
+            mParsedGridOptions = parsedOptions;
+        }
+        return parsedOptions;
+    }
+
+    private static ParsedGridOptions parseGridOptions(Context context, Info displayInfo,
+            Object[] key) throws IOException, XmlPullParserException {
+        List<GridOption> gridOptions = new ArrayList<>();
+        List<DisplayOption> displayOptions = new ArrayList<>();
         try (XmlResourceParser parser = context.getResources().getXml(R.xml.device_profiles)) {
             final int depth = parser.getDepth();
             int type;
@@ -730,14 +755,24 @@ public class InvariantDeviceProfile {
                     || parser.getDepth() > depth) && type != XmlPullParser.END_DOCUMENT) {
                 if ((type == XmlPullParser.START_TAG)
                         && GridOption.TAG_NAME.equals(parser.getName())) {
-                    result.add(new GridOption(context, Xml.asAttributeSet(parser), displayInfo));
+                    GridOption gridOption = new GridOption(
+                            context, Xml.asAttributeSet(parser), displayInfo);
+                    gridOptions.add(gridOption);
+                    final int displayDepth = parser.getDepth();
+                    while (((type = parser.next()) != XmlPullParser.END_TAG
+                            || parser.getDepth() > displayDepth)
+                            && type != XmlPullParser.END_DOCUMENT) {
+                        if ((type == XmlPullParser.START_TAG) && "display-option".equals(
+                                parser.getName())) {
+                            displayOptions.add(new DisplayOption(gridOption, context,
+                                    Xml.asAttributeSet(parser)));
+                        }
+                    }
                 }
             }
-        } catch (IOException | XmlPullParserException e) {
-            Log.e(TAG, "Error parsing device profile", e);
-            return Collections.emptyList();
         }
-        return result;
+        return new ParsedGridOptions(key, Collections.unmodifiableList(gridOptions),
+                Collections.unmodifiableList(displayOptions));
     }
 
     private int getLauncherIconDensity(int requiredSize) {
@@ -1573,4 +1608,22 @@ public class InvariantDeviceProfile {
             return this;
         }
     }
+
+    /**
+     * Grid and display options parsed from {@link R.xml#device_profiles}, in the order they are
+     * defined. The options are shared and should not be modified.
+     */
+    private static final class ParsedGridOptions {
+        final Object[] key;
+        final List<GridOption> gridOptions;
+        final List<DisplayOption> displayOptions;
+
+        ParsedGridOptions(Object[] key, List<GridOption> gridOptions,
+                List<DisplayOption> displayOptions) {
+            this.key = key;
+            this.gridOptions = gridOptions;
+            this.displayOptions = displayOptions;
+        }
+    }
+
 }
@@ -264,6 +264,7 @@ import com.android.launcher3.widget.PendingAddWidgetInfo;
 import com.android.launcher3.widget.PendingAppWidgetHostView;
 import com.android.launcher3.widget.WidgetAddFlowHandler;
 import com.android.launcher3.widget.WidgetManagerHelper;
+import com.android.launcher3.widget.WidgetPreviewCache;
 import com.android.launcher3.widget.custom.CustomWidgetManager;
 import com.android.launcher3.widget.model.WidgetsListBaseEntry;
 import com.android.launcher3.widget.picker.WidgetsFullSheet;
@@ -2174,13 +2175,14 @@ public class Launcher extends StatefulActivity<LauncherState>
     @Override
     public void onTrimMemory(int level) {
         super.onTrimMemory(level);
+        mIconCache.onTrimMemory(level);
         if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
             // The widget preview db can result in holding onto over
             // 3MB of memory for caching which isn't necessary.
             SQLiteDatabase.releaseMemory();
 
             // This clears all widget bitmaps from the widget tray
-            // TODO(hyunyoungs)
+            WidgetPreviewCache.INSTANCE.get(this).clearMemory();
         }
     }
 
@@ -2634,6 +2636,7 @@ public class Launcher extends StatefulActivity<LauncherState>
         }
 
         mModel.dumpState(prefix, fd, writer, args);
+        mModelWriter.dumpWriteStats(prefix, writer);
         mOverlayManager.dump(prefix, writer);
         ACTIVITY_TRACKER.dump(prefix, writer);
         MSDLPlayerWrapper.INSTANCE.get(getApplicationContext()).dump(prefix, writer);
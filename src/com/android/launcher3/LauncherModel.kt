@@ -58,6 +58,7 @@ import com.android.launcher3.util.Preconditions
 import java.io.FileDescriptor
 import java.io.PrintWriter
 import java.util.concurrent.CancellationException
+import java.util.concurrent.CopyOnWriteArraySet
 import java.util.function.Consumer
 import javax.inject.Inject
 import javax.inject.Named
@@ -96,6 +97,9 @@ constructor(
     private var mLoaderTask: LoaderTask? = null
     private var mIsLoaderTaskRunning = false
 
+    // Flushes of the updates queued by model writers, to write them before a reload
+    private val mPendingWritesFlushes = CopyOnWriteArraySet<Runnable>()
+
     // only allow this once per reboot to reload work apps
     private var mShouldReloadWorkProfile = true
 
@@ -145,6 +149,20 @@ constructor(
         owner: BgDataModel.Callbacks?,
     ) = ModelWriter(context, this, mBgDataModel, verifyChanges, cellPosMapper, owner)
 
+    /** Adds a flush of updates queued by a [ModelWriter], to be run before the model reloads */
+    fun addPendingWritesFlush(flush: Runnable) {
+        mPendingWritesFlushes.add(flush)
+    }
+
+    /** Removes a flush added with [addPendingWritesFlush] */
+    fun removePendingWritesFlush(flush: Runnable) {
+        mPendingWritesFlushes.remove(flush)
+    }
+
+    /** Keeps the icons of the workspace items in memory, after items are added or removed */
+    fun updatePinnedIcons() =
+        iconCache.setPinnedComponents(mBgDataModel.getWorkspaceIconComponents())
+
     /** Called when the icon for an app changes, outside of package event */
     @WorkerThread
     fun onAppIconChanged(packageName: String, user: UserHandle) {
@@ -311,6 +329,10 @@ constructor(
                     val task = loaderFactory.newLoaderTask(launcherBinder, UserManagerState())
                     mLoaderTask = task
 
+                    // Queued updates were made with the current load id, write them before the
+                    // loader changes it
+                    mPendingWritesFlushes.forEach(Runnable::run)
+
                     // Always post the loader task, instead of running directly
                     // (even on same thread) so that we exit any nested synchronized blocks
                     MODEL_EXECUTOR.post(task)
@@ -467,6 +489,7 @@ constructor(
         }
         modelDelegate.dump(prefix, fd, writer, args)
         mBgDataModel.dump(prefix, fd, writer, args)
+        iconCache.dump(prefix ?: "", writer)
     }
 
     /** Returns true if there are any callbacks attached to the model */
@@ -39,6 +39,10 @@ public class MultipageCellLayout extends CellLayout {
 
     private boolean mSeamWasAdded = false;
 
+    // Reused so that the simulated seam is the same view across reorders, which lets reorder
+    // solutions be cached
+    private MulticellReorderAlgorithm mReorderAlgorithm;
+
     public MultipageCellLayout(Context context) {
         this(context, null);
     }
@@ -105,7 +109,10 @@ public class MultipageCellLayout extends CellLayout {
 
     @Override
     public MulticellReorderAlgorithm createReorderAlgorithm() {
-        return new MulticellReorderAlgorithm(this);
+        if (mReorderAlgorithm == null) {
+            mReorderAlgorithm = new MulticellReorderAlgorithm(this);
+        }
+        return mReorderAlgorithm;
     }
 
     @Override
@@ -0,0 +1,370 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.allapps.search;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.search.StringMatcherUtility;
+import com.android.launcher3.search.StringMatcherUtility.StringMatcher;
+import com.android.launcher3.util.IntArray;
+
+import java.text.CollationKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Index over the app titles which returns the same matches as
+ * {@link StringMatcherUtility#matches(String, String, StringMatcher)}, without comparing the query
+ * against every title on each keystroke.
+ *
+ * <p>Every suffix of a title which starts at a break point is stored as a token, sorted by its
+ * collation key. All the tokens starting with a query then form a contiguous range which is found
+ * with a binary search. When the query extends the previous one, the search is limited to the
+ * previous range.
+ *
+ * <p>Matches are either returned in the order of the apps, or ranked by how the query matched the
+ * title. In both cases, only the requested number of results is kept while going through the
+ * matches, using a bounded heap.
+ *
+ * <p>This class is not thread safe and is expected to be used on the model thread.
+ */
+@WorkerThread
+public class AppTitleSearchIndex {
+
+    private static final int NOT_BUILT = -1;
+
+    // Match types, from the most to the least relevant
+    private static final int MATCH_PREFIX = 0;
+    private static final int MATCH_WORD_START = 1;
+    private static final int MATCH_CAMEL_CASE = 2;
+    private static final int MATCH_FUZZY = 3;
+    private static final int MATCH_TYPE_COUNT = 4;
+
+    // Boosts are clamped so that they only order apps with the same match type
+    private static final int MAX_BOOST = (1 << 16) - 1;
+
+    private final ArrayList<AppInfo> mApps = new ArrayList<>();
+    private int mModificationCount = NOT_BUILT;
+
+    private StringMatcher mMatcher;
+    private String[] mLowerCaseTitles = new String[0];
+
+    // Tokens sorted by their collation key, along with their length, match type and the index of
+    // the app they belong to
+    private CollationKey[] mTokenKeys = new CollationKey[0];
+    private int[] mTokenLengths = new int[0];
+    private int[] mTokenTypes = new int[0];
+    private int[] mTokenApps = new int[0];
+
+    // Previous query, used to refine the results when the user keeps typing
+    private String mLastQuery;
+    private boolean mLastQueryFuzzy;
+    private CollationKey mLastLowerBound;
+    private CollationKey mLastUpperBound;
+    private int mRangeStart;
+    private int mRangeEnd;
+    private IntArray mFuzzyMatches = new IntArray();
+    private IntArray mFuzzyMatchesTmp = new IntArray();
+
+    // Per app state of the current search. An app entry is only valid if its search id matches
+    // the current one, which avoids clearing the arrays for every search.
+    private int mSearchId;
+    private int[] mAppSearchIds = new int[0];
+    private int[] mAppMatchTypes = new int[0];
+    private int[] mAppScores = new int[0];
+    private final IntArray mMatchedApps = new IntArray();
+    private boolean mIsRanked;
+
+    /**
+     * Rebuilds the index if the apps changed since the last call
+     *
+     * @param modificationCount a counter which changes whenever {@param apps} is modified
+     */
+    public void update(List<AppInfo> apps, int modificationCount) {
+        if (mModificationCount == modificationCount) {
+            return;
+        }
+        mModificationCount = modificationCount;
+        mLastQuery = null;
+
+        // Create a new matcher, as the locale might have changed along with the apps
+        mMatcher = StringMatcher.getInstance();
+        mApps.clear();
+        mApps.addAll(apps);
+
+        int appCount = mApps.size();
+        mLowerCaseTitles = new String[appCount];
+        mAppSearchIds = new int[appCount];
+        mAppMatchTypes = new int[appCount];
+        mAppScores = new int[appCount];
+        ArrayList<Token> tokens = new ArrayList<>(appCount * 2);
+        for (int i = 0; i < appCount; i++) {
+            CharSequence title = mApps.get(i).title;
+            String target = title == null ? "" : title.toString();
+            mLowerCaseTitles[i] = target.toLowerCase();
+
+            IntArray starts = StringMatcherUtility.getMatchStartIndices(target, mMatcher);
+            for (int j = 0; j < starts.size(); j++) {
+                int start = starts.get(j);
+                String token = target.substring(start);
+                tokens.add(new Token(mMatcher.getCollationKey(token), token.length(),
+                        getMatchType(target, start), i));
+            }
+        }
+        tokens.sort((a, b) -> a.key.compareTo(b.key));
+
+        int tokenCount = tokens.size();
+        mTokenKeys = new CollationKey[tokenCount];
+        mTokenLengths = new int[tokenCount];
+        mTokenTypes = new int[tokenCount];
+        mTokenApps = new int[tokenCount];
+        for (int i = 0; i < tokenCount; i++) {
+            Token token = tokens.get(i);
+            mTokenKeys[i] = token.key;
+            mTokenLengths[i] = token.length;
+            mTokenTypes[i] = token.matchType;
+            mTokenApps[i] = token.appIndex;
+        }
+    }
+
+    /**
+     * Returns up to {@param maxResults} apps matching the query, in the order in which they were
+     * provided to {@link #update(List, int)}
+     */
+    public ArrayList<AppInfo> search(String query, int maxResults) {
+        return search(query, maxResults, null);
+    }
+
+    /**
+     * Returns up to {@param maxResults} apps matching the query.
+     *
+     * @param boostProvider if not null, results are ranked by match type (title prefix, word
+     *                      start, camel case break and finally fuzzy match), and then by the
+     *                      provided boost. Otherwise they are returned in the order of the apps.
+     */
+    public ArrayList<AppInfo> search(String query, int maxResults,
+            @Nullable ToIntFunction<AppInfo> boostProvider) {
+        final String queryTextLower = query.toLowerCase();
+        if (queryTextLower.isEmpty() || mMatcher == null || maxResults <= 0) {
+            mLastQuery = null;
+            return new ArrayList<>();
+        }
+
+        mSearchId++;
+        mMatchedApps.clear();
+        boolean isRefinement = mLastQuery != null && queryTextLower.startsWith(mLastQuery);
+        boolean isFuzzy = StringMatcherUtility.requestSimpleFuzzySearch(queryTextLower);
+        if (isFuzzy) {
+            collectFuzzyMatches(queryTextLower, isRefinement && mLastQueryFuzzy);
+        } else {
+            collectTokenMatches(queryTextLower, isRefinement && !mLastQueryFuzzy);
+        }
+        mLastQuery = queryTextLower;
+        mLastQueryFuzzy = isFuzzy;
+
+        mIsRanked = boostProvider != null;
+        if (mIsRanked) {
+            for (int i = 0; i < mMatchedApps.size(); i++) {
+                int appIndex = mMatchedApps.get(i);
+                int boost = Math.max(0,
+                        Math.min(MAX_BOOST, boostProvider.applyAsInt(mApps.get(appIndex))));
+                mAppScores[appIndex] =
+                        (MATCH_TYPE_COUNT - mAppMatchTypes[appIndex]) * (MAX_BOOST + 1) + boost;
+            }
+        }
+        return selectTopResults(maxResults);
+    }
+
+    private void collectTokenMatches(String query, boolean isRefinement) {
+        CollationKey lowerBound = mMatcher.getCollationKey(query);
+        CollationKey upperBound = mMatcher.getPrefixUpperBoundKey(query);
+
+        int start = 0;
+        int end = mTokenKeys.length;
+        // The previous range can only be reused if it contains the new one. This is not always
+        // the case when the added character forms a contraction with the previous one.
+        if (isRefinement && lowerBound.compareTo(mLastLowerBound) >= 0
+                && upperBound.compareTo(mLastUpperBound) <= 0) {
+            start = mRangeStart;
+            end = mRangeEnd;
+        }
+        mRangeStart = findFirst(lowerBound, start, end, false);
+        mRangeEnd = findFirst(upperBound, mRangeStart, end, true);
+        mLastLowerBound = lowerBound;
+        mLastUpperBound = upperBound;
+
+        int queryLength = query.length();
+        for (int i = mRangeStart; i < mRangeEnd; i++) {
+            // Ignorable characters in the query can make it match a shorter token, which
+            // StringMatcherUtility doesn't allow
+            if (mTokenLengths[i] >= queryLength) {
+                addMatch(mTokenApps[i], mTokenTypes[i]);
+            }
+        }
+    }
+
+    private void collectFuzzyMatches(String query, boolean isRefinement) {
+        IntArray matches = mFuzzyMatchesTmp;
+        matches.clear();
+        if (isRefinement) {
+            for (int i = 0; i < mFuzzyMatches.size(); i++) {
+                int appIndex = mFuzzyMatches.get(i);
+                if (mLowerCaseTitles[appIndex].contains(query)) {
+                    matches.add(appIndex);
+                }
+            }
+        } else {
+            for (int i = 0; i < mLowerCaseTitles.length; i++) {
+                if (mLowerCaseTitles[i].contains(query)) {
+                    matches.add(i);
+                }
+            }
+        }
+        mFuzzyMatchesTmp = mFuzzyMatches;
+        mFuzzyMatches = matches;
+
+        for (int i = 0; i < matches.size(); i++) {
+            int appIndex = matches.get(i);
+            addMatch(appIndex,
+                    mLowerCaseTitles[appIndex].startsWith(query) ? MATCH_PREFIX : MATCH_FUZZY);
+        }
+    }
+
+    private void addMatch(int appIndex, int matchType) {
+        if (mAppSearchIds[appIndex] != mSearchId) {
+            mAppSearchIds[appIndex] = mSearchId;
+            mAppMatchTypes[appIndex] = matchType;
+            mMatchedApps.add(appIndex);
+        } else if (matchType < mAppMatchTypes[appIndex]) {
+            mAppMatchTypes[appIndex] = matchType;
+        }
+    }
+
+    /**
+     * Returns the best {@param maxResults} matched apps, best first. The heap keeps the worst
+     * selected app at its root, so that it can be replaced by a better one in O(log k).
+     */
+    private ArrayList<AppInfo> selectTopResults(int maxResults) {
+        int matchCount = mMatchedApps.size();
+        int[] heap = new int[Math.min(maxResults, matchCount)];
+        int size = 0;
+        for (int i = 0; i < matchCount; i++) {
+            int appIndex = mMatchedApps.get(i);
+            if (size < heap.length) {
+                heap[size] = appIndex;
+                siftUp(heap, size);
+                size++;
+            } else if (isBetter(appIndex, heap[0])) {
+                heap[0] = appIndex;
+                siftDown(heap, size);
+            }
+        }
+
+        AppInfo[] result = new AppInfo[size];
+        while (size > 0) {
+            size--;
+            result[size] = mApps.get(heap[0]);
+            heap[0] = heap[size];
+            siftDown(heap, size);
+        }
+        return new ArrayList<>(Arrays.asList(result));
+    }
+
+    private void siftUp(int[] heap, int index) {
+        int value = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!isBetter(heap[parent], value)) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = value;
+    }
+
+    private void siftDown(int[] heap, int size) {
+        int index = 0;
+        int value = heap[0];
+        while (true) {
+            int worst = 2 * index + 1;
+            if (worst >= size) {
+                break;
+            }
+            if (worst + 1 < size && isBetter(heap[worst], heap[worst + 1])) {
+                worst++;
+            }
+            if (!isBetter(value, heap[worst])) {
+                break;
+            }
+            heap[index] = heap[worst];
+            index = worst;
+        }
+        heap[index] = value;
+    }
+
+    private boolean isBetter(int appIndex, int otherAppIndex) {
+        if (mIsRanked && mAppScores[appIndex] != mAppScores[otherAppIndex]) {
+            return mAppScores[appIndex] > mAppScores[otherAppIndex];
+        }
+        return appIndex < otherAppIndex;
+    }
+
+    /**
+     * Returns the index of the first token in [start, end) whose key is greater than or equal to
+     * {@param key}, or strictly greater when {@param exclusive} is set.
+     */
+    private int findFirst(CollationKey key, int start, int end, boolean exclusive) {
+        int low = start;
+        int high = end;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int compare = mTokenKeys[mid].compareTo(key);
+            if (compare < 0 || (exclusive && compare == 0)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int getMatchType(String target, int start) {
+        if (start == 0) {
+            return MATCH_PREFIX;
+        }
+        return Character.isLetterOrDigit(target.codePointBefore(start))
+                ? MATCH_CAMEL_CASE : MATCH_WORD_START;
+    }
+
+    private static class Token {
+        final CollationKey key;
+        final int length;
+        final int matchType;
+        final int appIndex;
+
+        Token(CollationKey key, int length, int matchType, int appIndex) {
+            this.key = key;
+            this.length = length;
+            this.matchType = matchType;
+            this.appIndex = appIndex;
+        }
+    }
+}
@@ -15,23 +15,29 @@
  */
 package com.android.launcher3.allapps.search;
 
+import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_PREDICTION;
 import static com.android.launcher3.allapps.BaseAllAppsAdapter.VIEW_TYPE_EMPTY_SEARCH;
 import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
 
+import android.content.ComponentName;
 import android.content.Context;
 import android.os.Handler;
 
-import androidx.annotation.AnyThread;
-
 import com.android.launcher3.LauncherAppState;
 import com.android.launcher3.allapps.BaseAllAppsAdapter.AdapterItem;
+import com.android.launcher3.model.BgDataModel;
+import com.android.launcher3.model.BgDataModel.FixedContainerItems;
 import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.search.SearchAlgorithm;
 import com.android.launcher3.search.SearchCallback;
-import com.android.launcher3.search.StringMatcherUtility;
+import com.android.launcher3.util.ComponentKey;
+import com.android.launcher3.views.ActivityContext;
 
 import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ToIntFunction;
 
 /**
  * The default search implementation.
@@ -40,18 +46,34 @@ public class DefaultAppSearchAlgorithm implements SearchAlgorithm<AdapterItem> {
 
     private static final int MAX_RESULTS_COUNT = 5;
 
+    private final Context mContext;
     private final LauncherAppState mAppState;
     private final Handler mResultHandler;
     private final boolean mAddNoResultsMessage;
+    private final boolean mRankResults;
+
+    // Only accessed on the model thread
+    private final AppTitleSearchIndex mIndex = new AppTitleSearchIndex();
 
     public DefaultAppSearchAlgorithm(Context context) {
         this(context, false);
     }
 
     public DefaultAppSearchAlgorithm(Context context, boolean addNoResultsMessage) {
+        this(context, addNoResultsMessage, false);
+    }
+
+    /**
+     * @param rankResults if true, results are ranked by relevance and app predictions instead of
+     *                    being returned in the all apps order
+     */
+    public DefaultAppSearchAlgorithm(Context context, boolean addNoResultsMessage,
+            boolean rankResults) {
+        mContext = context;
         mAppState = LauncherAppState.getInstance(context);
         mResultHandler = new Handler(MAIN_EXECUTOR.getLooper());
         mAddNoResultsMessage = addNoResultsMessage;
+        mRankResults = rankResults;
     }
 
     @Override
@@ -63,8 +85,14 @@ public class DefaultAppSearchAlgorithm implements SearchAlgorithm<AdapterItem> {
 
     @Override
     public void doSearch(String query, SearchCallback<AdapterItem> callback) {
+        int maxResults = getMaxResultsCount();
         mAppState.getModel().enqueueModelUpdateTask((taskController, dataModel, apps) ->  {
-            ArrayList<AdapterItem> result = getTitleMatchResult(apps.data, query);
+            mIndex.update(apps.data, apps.getModificationCount());
+            ArrayList<AdapterItem> result = new ArrayList<>();
+            for (AppInfo info : mIndex.search(query, maxResults,
+                    mRankResults ? getPredictionBoost(dataModel) : null)) {
+                result.add(AdapterItem.asApp(info));
+            }
             if (mAddNoResultsMessage && result.isEmpty()) {
                 result.add(getEmptyMessageAdapterItem(query));
             }
@@ -72,6 +100,35 @@ public class DefaultAppSearchAlgorithm implements SearchAlgorithm<AdapterItem> {
         });
     }
 
+    private int getMaxResultsCount() {
+        ActivityContext activityContext = ActivityContext.lookupContextNoThrow(mContext);
+        return activityContext == null
+                ? MAX_RESULTS_COUNT
+                : activityContext.getDeviceProfile().numAllAppsSearchResults;
+    }
+
+    /**
+     * Returns a boost for apps based on their rank in the all apps predictions, which reflect the
+     * launch history of the user
+     */
+    private static ToIntFunction<AppInfo> getPredictionBoost(BgDataModel dataModel) {
+        FixedContainerItems predictions = dataModel.extraItems.get(CONTAINER_PREDICTION);
+        if (predictions == null || predictions.items.isEmpty()) {
+            return info -> 0;
+        }
+        int count = predictions.items.size();
+        Map<ComponentKey, Integer> boosts = new HashMap<>(count);
+        for (int i = 0; i < count; i++) {
+            ItemInfo item = predictions.items.get(i);
+            ComponentName cn = item.getTargetComponent();
+            if (cn != null) {
+                boosts.putIfAbsent(new ComponentKey(cn, item.user), count - i);
+            }
+        }
+        return info -> info.componentName == null
+                ? 0 : boosts.getOrDefault(new ComponentKey(info.componentName, info.user), 0);
+    }
+
     private static AdapterItem getEmptyMessageAdapterItem(String query) {
         AdapterItem item = new AdapterItem(VIEW_TYPE_EMPTY_SEARCH);
         // Add a place holder info to propagate the query
@@ -80,28 +137,4 @@ public class DefaultAppSearchAlgorithm implements SearchAlgorithm<AdapterItem> {
         item.itemInfo = placeHolder;
         return item;
     }
-
-    /**
-     * Filters {@link AppInfo}s matching specified query
-     */
-    @AnyThread
-    public static ArrayList<AdapterItem> getTitleMatchResult(List<AppInfo> apps, String query) {
-        // Do an intersection of the words in the query and each title, and filter out all the
-        // apps that don't match all of the words in the query.
-        final String queryTextLower = query.toLowerCase();
-        final ArrayList<AdapterItem> result = new ArrayList<>();
-        StringMatcherUtility.StringMatcher matcher =
-                StringMatcherUtility.StringMatcher.getInstance();
-
-        int resultCount = 0;
-        int total = apps.size();
-        for (int i = 0; i < total && resultCount < MAX_RESULTS_COUNT; i++) {
-            AppInfo info = apps.get(i);
-            if (StringMatcherUtility.matches(queryTextLower, info.title.toString(), matcher)) {
-                result.add(AdapterItem.asApp(info));
-                resultCount++;
-            }
-        }
-        return result;
-    }
 }
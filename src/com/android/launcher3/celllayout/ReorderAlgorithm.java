@@ -23,6 +23,7 @@ import com.android.launcher3.util.CellAndSpan;
 import com.android.launcher3.util.GridOccupancy;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map.Entry;
@@ -74,11 +75,22 @@ public class ReorderAlgorithm {
      */
     public ItemConfiguration findReorderSolution(ReorderParameters reorderParameters,
             int[] direction, boolean decX) {
-        return findReorderSolutionRecursive(reorderParameters.getPixelX(),
+        // Drag events keep targeting the same cells while the item moves within a cell, so the
+        // solution of the last searches is reused as long as the layout doesn't change.
+        ReorderSolutionCache cache = mCellLayout.getReorderSolutionCache();
+        ReorderSolutionCache.Key key = cache.createKey(mCellLayout, reorderParameters, direction,
+                decX);
+        ItemConfiguration solution = reorderParameters.getSolution();
+        if (cache.apply(key, mCellLayout, solution, direction)) {
+            return solution;
+        }
+        solution = findReorderSolutionRecursive(reorderParameters.getPixelX(),
                 reorderParameters.getPixelY(), reorderParameters.getMinSpanX(),
                 reorderParameters.getMinSpanY(), reorderParameters.getSpanX(),
                 reorderParameters.getSpanY(), direction,
-                reorderParameters.getDragView(), decX, reorderParameters.getSolution());
+                reorderParameters.getDragView(), decX, solution);
+        cache.put(key, mCellLayout, solution, direction);
+        return solution;
     }
 
     private ItemConfiguration findReorderSolutionRecursive(int pixelX, int pixelY, int minSpanX,
@@ -198,7 +210,7 @@ public class ReorderAlgorithm {
         mCellLayout.mTmpOccupied.markCells(rectOccupiedByPotentialDrop, true);
 
         int[] tmpLocation = findNearestArea(c.cellX, c.cellY, c.spanX, c.spanY, direction,
-                mCellLayout.mTmpOccupied.cells, null, new int[2]);
+                mCellLayout.mTmpOccupied, null, new int[2]);
 
         if (tmpLocation[0] >= 0 && tmpLocation[1] >= 0) {
             c.cellX = tmpLocation[0];
@@ -239,6 +251,14 @@ public class ReorderAlgorithm {
             return false;
         }
 
+        // Break early if the views can't be pushed that far, before changing any state. The views
+        // are sorted as the push would have, as the order of views with the same edge depends on
+        // the previous sort.
+        if (!canPushFit(views, whichEdge, pushDistance, dragView, currentState)) {
+            cluster.sortConfigurationForEdgePush(whichEdge);
+            return false;
+        }
+
         // Mark the occupied state as false for the group of views we want to move.
         for (View v : views) {
             CellAndSpan c = currentState.map.get(v);
@@ -304,6 +324,71 @@ public class ReorderAlgorithm {
         return foundSolution;
     }
 
+    /**
+     * Returns false if pushing the views by pushDistance towards whichEdge can't succeed.
+     * <p>
+     * Along a row crossed by the views (or a column for a vertical push), the other cells occupied
+     * between the views and the edge of the grid are either left in place or pushed ahead of the
+     * views, so they have to fit in the cells left once the views have moved.
+     */
+    private boolean canPushFit(ArrayList<View> views, int whichEdge, int pushDistance,
+            View dragView, ItemConfiguration currentState) {
+        boolean horizontal = whichEdge == ViewCluster.LEFT || whichEdge == ViewCluster.RIGHT;
+        boolean towardsStart = whichEdge == ViewCluster.LEFT || whichEdge == ViewCluster.TOP;
+        int lineCount = horizontal ? mCellLayout.getCountY() : mCellLayout.getCountX();
+        int lineLength = horizontal ? mCellLayout.getCountX() : mCellLayout.getCountY();
+
+        // Cells occupied by the other views, with the columns as rows for a vertical push
+        GridOccupancy others = new GridOccupancy(lineLength, lineCount);
+        for (int i = 0; i < currentState.map.size(); i++) {
+            View v = currentState.map.keyAt(i);
+            if (v == dragView || views.contains(v)) continue;
+            CellAndSpan c = currentState.map.valueAt(i);
+            if (horizontal) {
+                others.markCells(c, true);
+            } else {
+                others.markCells(c.cellY, c.cellX, c.spanY, c.spanX, true);
+            }
+        }
+
+        // Leading cell of the views along each line, or -1 if no view crosses the line
+        int[] leading = new int[lineCount];
+        Arrays.fill(leading, -1);
+        for (View v : views) {
+            CellAndSpan c = currentState.map.get(v);
+            int start = horizontal ? c.cellX : c.cellY;
+            int end = start + (horizontal ? c.spanX : c.spanY) - 1;
+            int first = Math.max(horizontal ? c.cellY : c.cellX, 0);
+            int last = Math.min((horizontal ? c.cellY + c.spanY : c.cellX + c.spanX), lineCount);
+            for (int line = first; line < last; line++) {
+                if (leading[line] < 0) {
+                    leading[line] = towardsStart ? start : end;
+                } else {
+                    leading[line] = towardsStart
+                            ? Math.min(leading[line], start) : Math.max(leading[line], end);
+                }
+            }
+        }
+
+        for (int line = 0; line < lineCount; line++) {
+            if (leading[line] < 0) continue;
+            int free;
+            int occupied;
+            if (towardsStart) {
+                free = leading[line] - pushDistance;
+                occupied = others.getOccupiedCount(0, line, leading[line]);
+            } else {
+                free = lineLength - 1 - leading[line] - pushDistance;
+                occupied = others.getOccupiedCount(leading[line] + 1, line,
+                        lineLength - 1 - leading[line]);
+            }
+            if (free < 0 || occupied > free) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private void revertDir(int[] direction) {
         direction[0] *= -1;
         direction[1] *= -1;
@@ -381,7 +466,7 @@ public class ReorderAlgorithm {
 
         int[] tmpLocation = findNearestArea(boundingRect.left, boundingRect.top,
                 boundingRect.width(), boundingRect.height(), direction,
-                mCellLayout.mTmpOccupied.cells, blockOccupied.cells, new int[2]);
+                mCellLayout.mTmpOccupied, blockOccupied, new int[2]);
 
         // If we successfully found a location by pushing the block of views, we commit it
         if (tmpLocation[0] >= 0 && tmpLocation[1] >= 0) {
@@ -591,8 +676,8 @@ public class ReorderAlgorithm {
      * @param spanX         Horizontal span of the object.
      * @param spanY         Vertical span of the object.
      * @param direction     The favored direction in which the views should move from x, y
-     * @param occupied      The array which represents which cells in the CellLayout are occupied
-     * @param blockOccupied The array which represents which cells in the specified block (cellX,
+     * @param occupied      The grid which represents which cells in the CellLayout are occupied
+     * @param blockOccupied The grid which represents which cells in the specified block (cellX,
      *                      cellY, spanX, spanY) are occupied. This is used when try to move a group
      *                      of views.
      * @param result        Array in which to place the result, or null (in which case a new array
@@ -602,7 +687,7 @@ public class ReorderAlgorithm {
      * nearest the requested location.
      */
     public int[] findNearestArea(int cellX, int cellY, int spanX, int spanY, int[] direction,
-            boolean[][] occupied, boolean[][] blockOccupied, int[] result) {
+            GridOccupancy occupied, GridOccupancy blockOccupied, int[] result) {
         // Keep track of best-scoring drop area
         final int[] bestXY = result != null ? result : new int[2];
         float bestDistance = Float.MAX_VALUE;
@@ -612,16 +697,15 @@ public class ReorderAlgorithm {
         final int countY = mCellLayout.getCountY();
 
         for (int y = 0; y < countY - (spanY - 1); y++) {
-            inner:
+            long vacantOrigins = blockOccupied == null
+                    ? occupied.getVacantOrigins(y, spanX, spanY) : 0;
             for (int x = 0; x < countX - (spanX - 1); x++) {
                 // First, let's see if this thing fits anywhere
-                for (int i = 0; i < spanX; i++) {
-                    for (int j = 0; j < spanY; j++) {
-                        if (occupied[x + i][y + j] && (blockOccupied == null
-                                || blockOccupied[i][j])) {
-                            continue inner;
-                        }
-                    }
+                boolean fits = blockOccupied == null
+                        ? (vacantOrigins & (1L << x)) != 0
+                        : occupied.isRegionVacant(x, y, blockOccupied);
+                if (!fits) {
+                    continue;
                 }
 
                 float distance = (float) Math.hypot(x - cellX, y - cellY);
@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.celllayout;
+
+import android.view.View;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.launcher3.CellLayout;
+import com.android.launcher3.ShortcutAndWidgetContainer;
+import com.android.launcher3.util.CellAndSpan;
+import com.android.launcher3.util.GridOccupancy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the last solutions found by {@link ReorderAlgorithm#findReorderSolution}, so that drag
+ * events targeting the same cells of an unchanged layout don't run the search again.
+ *
+ * A solution is keyed by the cells targeted for each span the search may try, the spans, the
+ * direction, the position of every view and the occupancy of the layout. Since the key covers
+ * all the inputs of the search, the cache only needs to be cleared to release the views.
+ */
+public class ReorderSolutionCache {
+
+    private static final int MAX_ENTRIES = 16;
+
+    private final LinkedHashMap<Key, Entry> mEntries =
+            new LinkedHashMap<>(MAX_ENTRIES, 0.75f, true /* accessOrder */) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            };
+
+    private int mHitCount;
+    private int mMissCount;
+
+    /**
+     * Returns the key of a search with the given parameters over the current state of the layout.
+     */
+    public Key createKey(CellLayout cellLayout, ReorderParameters parameters, int[] direction,
+            boolean decX) {
+        ShortcutAndWidgetContainer container = cellLayout.getShortcutsAndWidgets();
+        int childCount = container.getChildCount();
+        View[] views = new View[childCount];
+        int[] values = new int[9 + 2 * (parameters.getSpanX() + parameters.getSpanY())
+                + 5 * childCount];
+        int i = 0;
+        values[i++] = parameters.getSpanX();
+        values[i++] = parameters.getSpanY();
+        values[i++] = parameters.getMinSpanX();
+        values[i++] = parameters.getMinSpanY();
+        values[i++] = decX ? 1 : 0;
+        values[i++] = direction[0];
+        values[i++] = direction[1];
+        values[i++] = cellLayout.getCountX();
+        values[i++] = cellLayout.getCountY();
+
+        // Cells targeted for each span, in the order in which the search shrinks the item
+        int spanX = parameters.getSpanX();
+        int spanY = parameters.getSpanY();
+        int[] target = new int[2];
+        boolean shrinkX = decX;
+        while (true) {
+            cellLayout.findNearestAreaIgnoreOccupied(parameters.getPixelX(),
+                    parameters.getPixelY(), spanX, spanY, target);
+            values[i++] = target[0];
+            values[i++] = target[1];
+            if (spanX > parameters.getMinSpanX()
+                    && (parameters.getMinSpanY() == spanY || shrinkX)) {
+                spanX--;
+                shrinkX = false;
+            } else if (spanY > parameters.getMinSpanY()) {
+                spanY--;
+                shrinkX = true;
+            } else {
+                break;
+            }
+        }
+
+        for (int j = 0; j < childCount; j++) {
+            View child = container.getChildAt(j);
+            CellLayoutLayoutParams lp = (CellLayoutLayoutParams) child.getLayoutParams();
+            views[j] = child;
+            values[i++] = lp.getCellX();
+            values[i++] = lp.getCellY();
+            values[i++] = lp.cellHSpan;
+            values[i++] = lp.cellVSpan;
+            values[i++] = lp.canReorder ? 1 : 0;
+        }
+
+        GridOccupancy occupied = new GridOccupancy(cellLayout.getCountX(),
+                cellLayout.getCountY());
+        cellLayout.getOccupied().copyTo(occupied);
+        return new Key(parameters.getDragView(), views, Arrays.copyOf(values, i), occupied);
+    }
+
+    /**
+     * Applies the cached solution for the key to {@param solution}, {@param direction} and the
+     * temporary occupancy of the layout, as the search would have left them.
+     *
+     * @return false if there is no solution for the key
+     */
+    public boolean apply(Key key, CellLayout cellLayout, ItemConfiguration solution,
+            int[] direction) {
+        Entry entry = mEntries.get(key);
+        if (entry == null) {
+            mMissCount++;
+            return false;
+        }
+        mHitCount++;
+        cellLayout.copyCurrentStateToSolution(solution);
+        for (int i = 0; i < entry.views.length; i++) {
+            CellAndSpan c = solution.map.get(entry.views[i]);
+            if (c != null) {
+                c.copyFrom(entry.cells[i]);
+            }
+        }
+        solution.isSolution = entry.isSolution;
+        solution.copyFrom(entry.result);
+        solution.intersectingViews = new ArrayList<>(entry.intersectingViews);
+        direction[0] = entry.direction[0];
+        direction[1] = entry.direction[1];
+        entry.tmpOccupied.copyTo(cellLayout.mTmpOccupied);
+        return true;
+    }
+
+    /**
+     * Saves the result of the search for the key.
+     */
+    public void put(Key key, CellLayout cellLayout, ItemConfiguration solution, int[] direction) {
+        int size = solution.map.size();
+        View[] views = new View[size];
+        CellAndSpan[] cells = new CellAndSpan[size];
+        for (int i = 0; i < size; i++) {
+            views[i] = solution.map.keyAt(i);
+            CellAndSpan c = solution.map.valueAt(i);
+            cells[i] = new CellAndSpan(c.cellX, c.cellY, c.spanX, c.spanY);
+        }
+        GridOccupancy tmpOccupied = new GridOccupancy(cellLayout.getCountX(),
+                cellLayout.getCountY());
+        cellLayout.mTmpOccupied.copyTo(tmpOccupied);
+        mEntries.put(key, new Entry(views, cells, solution.isSolution,
+                new CellAndSpan(solution.cellX, solution.cellY, solution.spanX, solution.spanY),
+                new ArrayList<>(solution.intersectingViews), direction.clone(), tmpOccupied));
+    }
+
+    public void clear() {
+        mEntries.clear();
+    }
+
+    @VisibleForTesting
+    int getHitCount() {
+        return mHitCount;
+    }
+
+    @VisibleForTesting
+    int getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * Inputs of a search, views are compared by identity.
+     */
+    public static final class Key {
+        private final View mDragView;
+        private final View[] mViews;
+        private final int[] mValues;
+        private final GridOccupancy mOccupied;
+        private final int mHashCode;
+
+        Key(View dragView, View[] views, int[] values, GridOccupancy occupied) {
+            mDragView = dragView;
+            mViews = views;
+            mValues = values;
+            mOccupied = occupied;
+            mHashCode = 31 * (31 * (31 * System.identityHashCode(dragView)
+                    + Arrays.hashCode(views)) + Arrays.hashCode(values)) + occupied.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && mHashCode == other.mHashCode
+                    && mDragView == other.mDragView && Arrays.equals(mViews, other.mViews)
+                    && Arrays.equals(mValues, other.mValues) && mOccupied.equals(other.mOccupied);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+    }
+
+    private static class Entry {
+        final View[] views;
+        final CellAndSpan[] cells;
+        final boolean isSolution;
+        final CellAndSpan result;
+        final ArrayList<View> intersectingViews;
+        final int[] direction;
+        final GridOccupancy tmpOccupied;
+
+        Entry(View[] views, CellAndSpan[] cells, boolean isSolution, CellAndSpan result,
+                ArrayList<View> intersectingViews, int[] direction, GridOccupancy tmpOccupied) {
+            this.views = views;
+            this.cells = cells;
+            this.isSolution = isSolution;
+            this.result = result;
+            this.intersectingViews = intersectingViews;
+            this.direction = direction;
+            this.tmpOccupied = tmpOccupied;
+        }
+    }
+}
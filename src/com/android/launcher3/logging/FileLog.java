@@ -14,14 +14,27 @@ import com.android.launcher3.util.IOUtils;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.text.DateFormat;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Wrapper around {@link Log} to allow writing to a file.
@@ -37,11 +50,22 @@ public final class FileLog {
     private static final DateFormat DATE_FORMAT =
             DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT);
 
+    // Suffix of the compressed logs of the previous days, and of the parts of the current day
+    // rotated out of the log file
+    private static final String COMPRESSED_FILE_SUFFIX = ".gz";
+
     private static final long MAX_LOG_FILE_SIZE = 8 << 20;  // 4 mb
+    private static final long MAX_COMPRESSED_FILE_SIZE = 1 << 20;  // 1 mb
+    private static final long LOG_EXPIRY_MS = TimeUnit.HOURS.toMillis(36);
 
     private static Handler sHandler = null;
     private static File sLogsDirectory = null;
 
+    // Logs waiting to be written by the file-logger thread
+    private static final Queue<LogEntry> sPendingLogs = new ConcurrentLinkedQueue<>();
+    // Whether a write of the pending logs is scheduled on the file-logger thread
+    private static final AtomicBoolean sWriteScheduled = new AtomicBoolean();
+
     public static final int LOG_DAYS = 4;
 
     public static void setDir(File logsDir) {
@@ -51,6 +75,8 @@ public final class FileLog {
                 if (sHandler != null && !logsDir.equals(sLogsDirectory)) {
                     ((HandlerThread) sHandler.getLooper().getThread()).quit();
                     sHandler = null;
+                    // The pending logs will be written by the next thread
+                    sWriteScheduled.set(false);
                 }
             }
         }
@@ -105,11 +131,12 @@ public final class FileLog {
         if (!ENABLED) {
             return;
         }
-        String out = String.format("%s %s %s", DATE_FORMAT.format(new Date()), tag, msg);
-        if (e != null) {
-            out += "\n" + Log.getStackTraceString(e);
+        // The log is formatted and written on the file-logger thread, which writes all the logs
+        // queued until then at once.
+        sPendingLogs.add(new LogEntry(System.currentTimeMillis(), tag, msg, e));
+        if (sWriteScheduled.compareAndSet(false, true)) {
+            getHandler().sendEmptyMessage(LogWriterCallback.MSG_WRITE);
         }
-        Message.obtain(getHandler(), LogWriterCallback.MSG_WRITE, out).sendToTarget();
     }
 
     @VisibleForTesting
@@ -141,8 +168,9 @@ public final class FileLog {
 
     /**
      * Writes logs to the file.
-     * Log files are named log-0 for even days of the year and log-1 for odd days of the year.
-     * Logs older than 36 hours are purged.
+     * Log files are named log-0 to log-3 based on the day of the year. When the file of the day
+     * grows over {@link #MAX_LOG_FILE_SIZE}, and when the day changes, the logs of the file are
+     * compressed to log-N.gz. Logs older than 36 hours are purged.
      */
     private static class LogWriterCallback implements Handler.Callback {
 
@@ -152,59 +180,28 @@ public final class FileLog {
         private static final int MSG_CLOSE = 2;
         private static final int MSG_FLUSH = 3;
 
-        private String mCurrentFileName = null;
-        private PrintWriter mCurrentWriter = null;
+        private final StringBuilder mBuffer = new StringBuilder();
+        private final Date mDate = new Date();
+
+        private int mCurrentDay = -1;
+        private FileChannel mCurrentChannel = null;
 
         private void closeWriter() {
-            IOUtils.closeSilently(mCurrentWriter);
-            mCurrentWriter = null;
+            IOUtils.closeSilently(mCurrentChannel);
+            mCurrentChannel = null;
         }
 
         @Override
         public boolean handleMessage(Message msg) {
             if (sLogsDirectory == null || !ENABLED) {
+                // The logs can't be written, drop them
+                sWriteScheduled.set(false);
+                sPendingLogs.clear();
                 return true;
             }
             switch (msg.what) {
                 case MSG_WRITE: {
-                    Calendar cal = Calendar.getInstance();
-                    // suffix with 0 or 1 based on the day of the year.
-                    String fileName = FILE_NAME_PREFIX + (cal.get(Calendar.DAY_OF_YEAR) % LOG_DAYS);
-
-                    if (!fileName.equals(mCurrentFileName)) {
-                        closeWriter();
-                    }
-
-                    try {
-                        if (mCurrentWriter == null) {
-                            mCurrentFileName = fileName;
-
-                            boolean append = false;
-                            File logFile = new File(sLogsDirectory, fileName);
-                            if (logFile.exists()) {
-                                Calendar modifiedTime = Calendar.getInstance();
-                                modifiedTime.setTimeInMillis(logFile.lastModified());
-
-                                // If the file was modified more that 36 hours ago, purge the file.
-                                // We use instead of 24 to account for day-365 followed by day-1
-                                modifiedTime.add(Calendar.HOUR, 36);
-                                append = cal.before(modifiedTime)
-                                        && logFile.length() < MAX_LOG_FILE_SIZE;
-                            }
-                            mCurrentWriter = new PrintWriter(new FileWriter(logFile, append));
-                        }
-
-                        mCurrentWriter.println((String) msg.obj);
-                        mCurrentWriter.flush();
-
-                        // Auto close file stream after some time.
-                        sHandler.removeMessages(MSG_CLOSE);
-                        sHandler.sendEmptyMessageDelayed(MSG_CLOSE, CLOSE_DELAY);
-                    } catch (Exception e) {
-                        Log.e("FileLog", "Error writing logs to file", e);
-                        // Close stream, will try reopening during next log
-                        closeWriter();
-                    }
+                    writePendingLogs();
                     return true;
                 }
                 case MSG_CLOSE: {
@@ -212,12 +209,14 @@ public final class FileLog {
                     return true;
                 }
                 case MSG_FLUSH: {
+                    writePendingLogs();
                     closeWriter();
                     Pair<PrintWriter, CountDownLatch> p =
                             (Pair<PrintWriter, CountDownLatch>) msg.obj;
 
                     if (p.first != null) {
                         for (int i = 0; i < LOG_DAYS; i++) {
+                            dumpFile(p.first, FILE_NAME_PREFIX + i + COMPRESSED_FILE_SUFFIX);
                             dumpFile(p.first, FILE_NAME_PREFIX + i);
                         }
                     }
@@ -227,15 +226,132 @@ public final class FileLog {
             }
             return true;
         }
+
+        /**
+         * Formats all the queued logs and writes them to the file of the day in one block.
+         */
+        private void writePendingLogs() {
+            // Cleared before taking the logs, so that logs queued from now on schedule a new write
+            sWriteScheduled.set(false);
+            mBuffer.setLength(0);
+            LogEntry entry;
+            while ((entry = sPendingLogs.poll()) != null) {
+                mDate.setTime(entry.time);
+                synchronized (DATE_FORMAT) {
+                    mBuffer.append(DATE_FORMAT.format(mDate));
+                }
+                mBuffer.append(' ').append(entry.tag).append(' ').append(entry.msg);
+                if (entry.exception != null) {
+                    mBuffer.append('\n').append(Log.getStackTraceString(entry.exception));
+                }
+                mBuffer.append('\n');
+            }
+            if (mBuffer.length() == 0) {
+                return;
+            }
+
+            try {
+                ByteBuffer bytes = ByteBuffer.wrap(
+                        mBuffer.toString().getBytes(StandardCharsets.UTF_8));
+                FileChannel channel = getChannel(bytes.remaining());
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+
+                // Auto close file stream after some time.
+                sHandler.removeMessages(MSG_CLOSE);
+                sHandler.sendEmptyMessageDelayed(MSG_CLOSE, CLOSE_DELAY);
+            } catch (Exception e) {
+                Log.e("FileLog", "Error writing logs to file", e);
+                // Close stream, will try reopening during next log
+                closeWriter();
+            }
+        }
+
+        /**
+         * Returns the channel of the file of the day, rotating the file if it can't fit
+         * {@param pendingBytes} more bytes.
+         */
+        private FileChannel getChannel(long pendingBytes) throws IOException {
+            long now = System.currentTimeMillis();
+            Calendar cal = Calendar.getInstance();
+            cal.setTimeInMillis(now);
+            int day = cal.get(Calendar.DAY_OF_YEAR) % LOG_DAYS;
+            if (day != mCurrentDay) {
+                closeWriter();
+            }
+            File logFile = new File(sLogsDirectory, FILE_NAME_PREFIX + day);
+            File compressedFile = new File(sLogsDirectory,
+                    FILE_NAME_PREFIX + day + COMPRESSED_FILE_SUFFIX);
+
+            if (mCurrentChannel == null) {
+                mCurrentDay = day;
+                // If the logs were modified more that 36 hours ago, they are from a previous use
+                // of the file, purge them. We use instead of 24 to account for day-365 followed
+                // by day-1
+                if (isExpired(logFile, now) || isExpired(compressedFile, now)) {
+                    logFile.delete();
+                    compressedFile.delete();
+                }
+                // Compress the logs left by the previous days
+                for (int i = 0; i < LOG_DAYS; i++) {
+                    File oldLogFile = new File(sLogsDirectory, FILE_NAME_PREFIX + i);
+                    if (i != day && oldLogFile.exists()) {
+                        compress(oldLogFile, new File(sLogsDirectory,
+                                FILE_NAME_PREFIX + i + COMPRESSED_FILE_SUFFIX));
+                    }
+                }
+                mCurrentChannel = openChannel(logFile);
+            }
+
+            long size = mCurrentChannel.size();
+            if (size > 0 && size + pendingBytes > MAX_LOG_FILE_SIZE) {
+                closeWriter();
+                compress(logFile, compressedFile);
+                mCurrentChannel = openChannel(logFile);
+            }
+            return mCurrentChannel;
+        }
+
+        private static FileChannel openChannel(File file) throws IOException {
+            return FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+
+        private static boolean isExpired(File file, long now) {
+            return file.exists() && now >= file.lastModified() + LOG_EXPIRY_MS;
+        }
+
+        /**
+         * Appends the logs of {@param logFile} to {@param compressedFile} and deletes it. As gzip
+         * members can be concatenated, the compressed file is read as a single stream.
+         */
+        private static void compress(File logFile, File compressedFile) {
+            // Drop the older compressed logs if there are too many
+            boolean append = compressedFile.length() < MAX_COMPRESSED_FILE_SIZE;
+            try (InputStream in = new FileInputStream(logFile);
+                 OutputStream out = new GZIPOutputStream(
+                         new FileOutputStream(compressedFile, append))) {
+                IOUtils.copy(in, out);
+            } catch (IOException e) {
+                Log.e("FileLog", "Error compressing logs", e);
+            }
+            logFile.delete();
+        }
     }
 
     private static void dumpFile(PrintWriter out, String fileName) {
         File logFile = new File(sLogsDirectory, fileName);
         if (logFile.exists()) {
 
+            InputStream stream = null;
             BufferedReader in = null;
             try {
-                in = new BufferedReader(new FileReader(logFile));
+                stream = new FileInputStream(logFile);
+                if (fileName.endsWith(COMPRESSED_FILE_SUFFIX)) {
+                    stream = new GZIPInputStream(stream);
+                }
+                in = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
                 out.println();
                 out.println("--- logfile: " + fileName + " ---");
                 String line;
@@ -246,10 +362,29 @@ public final class FileLog {
                 // ignore
             } finally {
                 IOUtils.closeSilently(in);
+                IOUtils.closeSilently(stream);
             }
         }
     }
 
+    /**
+     * A log waiting to be written, with the time at which it was logged.
+     */
+    private static class LogEntry {
+
+        final long time;
+        final String tag;
+        final String msg;
+        final Exception exception;
+
+        LogEntry(long time, String tag, String msg, Exception exception) {
+            this.time = time;
+            this.tag = tag;
+            this.msg = msg;
+            this.exception = exception;
+        }
+    }
+
     /**
      * Gets files used for FileLog
      */
@@ -257,9 +392,10 @@ public final class FileLog {
         try {
             flushAll(null);
         } catch (InterruptedException e) { }
-        File[] files = new File[LOG_DAYS];
+        File[] files = new File[LOG_DAYS * 2];
         for (int i = 0; i < LOG_DAYS; i++) {
-            files[i] = new File(sLogsDirectory, FILE_NAME_PREFIX + i);
+            files[2 * i] = new File(sLogsDirectory, FILE_NAME_PREFIX + i + COMPRESSED_FILE_SUFFIX);
+            files[2 * i + 1] = new File(sLogsDirectory, FILE_NAME_PREFIX + i);
         }
         return files;
     }
@@ -43,13 +43,18 @@ import com.android.launcher3.pm.PackageInstallInfo;
 import com.android.launcher3.pm.UserCache;
 import com.android.launcher3.util.ApiWrapper;
 import com.android.launcher3.util.ApplicationInfoWrapper;
+import com.android.launcher3.util.ComponentKey;
 import com.android.launcher3.util.FlagOp;
 import com.android.launcher3.util.PackageManagerHelper;
+import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.util.SafeCloseable;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -69,9 +74,23 @@ public class AllAppsList {
 
     public static final int DEFAULT_APPLICATIONS_NUMBER = 42;
 
-    /** The list off all apps. */
+    /**
+     * The list off all apps, in the order they were added. This should only be modified through
+     * this class, so that the indices below are kept in sync.
+     */
     public final ArrayList<AppInfo> data = new ArrayList<>(DEFAULT_APPLICATIONS_NUMBER);
 
+    // Position of each app in data
+    private final IdentityHashMap<AppInfo, Integer> mDataPositions = new IdentityHashMap<>();
+    // Indices over data. In case of duplicate keys, the component index points to the first added
+    // app, and the package index keeps the apps in the order they were added.
+    private final HashMap<ComponentKey, AppInfo> mComponentIndex = new HashMap<>();
+    private final HashMap<PackageUserKey, ArrayList<AppInfo>> mPackageIndex = new HashMap<>();
+
+    // Result of the last copyData call, cleared when apps are added or removed
+    @Nullable
+    private AppInfo[] mSortedData;
+
     @NonNull
     private final IconCache mIconCache;
 
@@ -79,6 +98,7 @@ public class AllAppsList {
     private final AppFilter mAppFilter;
 
     private boolean mDataChanged = false;
+    private int mModificationCount = 0;
     private Consumer<AppInfo> mRemoveListener = NO_OP_CONSUMER;
 
     private AlphabeticIndexCompat mIndex;
@@ -111,6 +131,19 @@ public class AllAppsList {
         return result;
     }
 
+    /**
+     * Returns a counter which is incremented on every change to the list, so that derived data
+     * can be invalidated without being notified of each change.
+     */
+    public int getModificationCount() {
+        return mModificationCount;
+    }
+
+    private void markDataChanged() {
+        mDataChanged = true;
+        mModificationCount++;
+    }
+
     /**
      * Helper to checking {@link Callbacks#FLAG_HAS_SHORTCUT_PERMISSION}
      */
@@ -127,7 +160,7 @@ public class AllAppsList {
         } else {
             mFlags &= ~flagMask;
         }
-        mDataChanged = true;
+        markDataChanged();
     }
 
     /**
@@ -162,8 +195,8 @@ public class AllAppsList {
             info.title = "";
         }
 
-        data.add(info);
-        mDataChanged = true;
+        addToData(info);
+        markDataChanged();
     }
 
     @Nullable
@@ -188,8 +221,8 @@ public class AllAppsList {
             promiseAppInfo.title = "";
         }
 
-        data.add(promiseAppInfo);
-        mDataChanged = true;
+        addToData(promiseAppInfo);
+        markDataChanged();
 
         return promiseAppInfo;
     }
@@ -203,8 +236,9 @@ public class AllAppsList {
     public List<AppInfo> updatePromiseInstallInfo(PackageInstallInfo installInfo) {
         List<AppInfo> updatedAppInfos = new ArrayList<>();
         UserHandle user = installInfo.user;
-        for (int i = data.size() - 1; i >= 0; i--) {
-            final AppInfo appInfo = data.get(i);
+        List<AppInfo> packageApps = getAppsForPackage(installInfo.packageName, user);
+        for (int i = packageApps.size() - 1; i >= 0; i--) {
+            final AppInfo appInfo = packageApps.get(i);
             final ComponentName tgtComp = appInfo.getTargetComponent();
             if (tgtComp != null && tgtComp.getPackageName().equals(installInfo.packageName)
                     && appInfo.user.equals(user)) {
@@ -232,24 +266,77 @@ public class AllAppsList {
                                 + " package=" + appInfo.getTargetPackage()
                                 + ", user=" + user);
                     }
-                    removeApp(i);
+                    removeApp(appInfo);
                 }
             }
         }
         return updatedAppInfos;
     }
 
-    private void removeApp(int index) {
-        AppInfo removed = data.remove(index);
-        if (removed != null) {
-            mDataChanged = true;
-            mRemoveListener.accept(removed);
+    private void addToData(AppInfo info) {
+        mDataPositions.put(info, data.size());
+        data.add(info);
+        mComponentIndex.putIfAbsent(new ComponentKey(info.componentName, info.user), info);
+        mPackageIndex.computeIfAbsent(
+                new PackageUserKey(info.componentName.getPackageName(), info.user),
+                k -> new ArrayList<>(1)).add(info);
+        mSortedData = null;
+    }
+
+    private void removeApp(AppInfo info) {
+        Integer index = mDataPositions.remove(info);
+        if (index == null) {
+            return;
         }
+        // Search results break ties in the order of data, so keep the order of the other apps
+        data.remove((int) index);
+        for (int i = index; i < data.size(); i++) {
+            mDataPositions.put(data.get(i), i);
+        }
+        PackageUserKey packageKey =
+                new PackageUserKey(info.componentName.getPackageName(), info.user);
+        ArrayList<AppInfo> packageApps = mPackageIndex.get(packageKey);
+        if (packageApps != null) {
+            packageApps.remove(info);
+            if (packageApps.isEmpty()) {
+                mPackageIndex.remove(packageKey);
+            }
+        }
+        ComponentKey componentKey = new ComponentKey(info.componentName, info.user);
+        if (mComponentIndex.get(componentKey) == info) {
+            // Point to the next app with the same component, if any
+            mComponentIndex.remove(componentKey);
+            if (packageApps != null) {
+                for (AppInfo other : packageApps) {
+                    if (info.componentName.equals(other.componentName)) {
+                        mComponentIndex.put(componentKey, other);
+                        break;
+                    }
+                }
+            }
+        }
+        mSortedData = null;
+        markDataChanged();
+        mRemoveListener.accept(info);
+    }
+
+    /**
+     * Returns the apps for the provided package, in the order of {@link #data}. The returned list
+     * should not be modified.
+     */
+    private List<AppInfo> getAppsForPackage(String packageName, UserHandle user) {
+        ArrayList<AppInfo> packageApps = mPackageIndex.get(new PackageUserKey(packageName, user));
+        return packageApps == null ? Collections.emptyList() : packageApps;
     }
 
     public void clear() {
         data.clear();
+        mDataPositions.clear();
+        mComponentIndex.clear();
+        mPackageIndex.clear();
+        mSortedData = null;
         mDataChanged = false;
+        mModificationCount++;
         // Reset the index as locales might have changed
         mIndex = new AlphabeticIndexCompat(LocaleList.getDefault());
     }
@@ -273,12 +360,9 @@ public class AllAppsList {
      * Remove the apps for the given apk identified by packageName.
      */
     public void removePackage(String packageName, UserHandle user) {
-        final List<AppInfo> data = this.data;
-        for (int i = data.size() - 1; i >= 0; i--) {
-            AppInfo info = data.get(i);
-            if (info.user.equals(user) && packageName.equals(info.componentName.getPackageName())) {
-                removeApp(i);
-            }
+        // Copy the list, as it is modified while removing apps
+        for (AppInfo info : new ArrayList<>(getAppsForPackage(packageName, user))) {
+            removeApp(info);
         }
     }
 
@@ -291,17 +375,17 @@ public class AllAppsList {
             AppInfo info = data.get(i);
             if (matcher.test(info)) {
                 info.runtimeStatusFlags = op.apply(info.runtimeStatusFlags);
-                mDataChanged = true;
+                markDataChanged();
             }
         }
     }
 
     public void updateIconsAndLabels(HashSet<String> packages, UserHandle user) {
-        for (AppInfo info : data) {
-            if (info.user.equals(user) && packages.contains(info.componentName.getPackageName())) {
+        for (String packageName : packages) {
+            for (AppInfo info : getAppsForPackage(packageName, user)) {
                 mIconCache.updateTitleAndIcon(info);
                 info.sectionName = mIndex.computeSectionName(info.title);
-                mDataChanged = true;
+                markDataChanged();
             }
         }
     }
@@ -319,18 +403,16 @@ public class AllAppsList {
         if (matches.size() > 0) {
             // Find disabled/removed activities and remove them from data and add them
             // to the removed list.
-            for (int i = data.size() - 1; i >= 0; i--) {
-                final AppInfo applicationInfo = data.get(i);
-                if (user.equals(applicationInfo.user)
-                        && packageName.equals(applicationInfo.componentName.getPackageName())) {
-                    if (!findActivity(matches, applicationInfo.componentName)) {
-                        if (DEBUG) {
-                            Log.w(TAG, "Changing shortcut target due to app component name change."
-                                    + " component=" + applicationInfo.componentName
-                                    + ", user=" + user);
-                        }
-                        removeApp(i);
+            List<AppInfo> packageApps = getAppsForPackage(packageName, user);
+            for (int i = packageApps.size() - 1; i >= 0; i--) {
+                final AppInfo applicationInfo = packageApps.get(i);
+                if (!findActivity(matches, applicationInfo.componentName)) {
+                    if (DEBUG) {
+                        Log.w(TAG, "Changing shortcut target due to app component name change."
+                                + " component=" + applicationInfo.componentName
+                                + ", user=" + user);
                     }
+                    removeApp(applicationInfo);
                 }
             }
 
@@ -348,7 +430,7 @@ public class AllAppsList {
                     applicationInfo.intent = launchIntent;
                     AppInfo.updateRuntimeFlagsForActivityTarget(applicationInfo, info,
                             userCache.getUserInfo(user), apiWrapper, pmHelper);
-                    mDataChanged = true;
+                    markDataChanged();
                 }
             }
         } else {
@@ -358,13 +440,10 @@ public class AllAppsList {
                         + " removing any AppInfo with package=" + packageName
                         + ", user=" + user);
             }
-            for (int i = data.size() - 1; i >= 0; i--) {
-                final AppInfo applicationInfo = data.get(i);
-                if (user.equals(applicationInfo.user)
-                        && packageName.equals(applicationInfo.componentName.getPackageName())) {
-                    mIconCache.remove(applicationInfo.componentName, user);
-                    removeApp(i);
-                }
+            // Copy the list, as it is modified while removing apps
+            for (AppInfo applicationInfo : new ArrayList<>(getAppsForPackage(packageName, user))) {
+                mIconCache.remove(applicationInfo.componentName, user);
+                removeApp(applicationInfo);
             }
         }
 
@@ -391,18 +470,20 @@ public class AllAppsList {
      */
     public @Nullable AppInfo findAppInfo(@NonNull ComponentName componentName,
                                           @NonNull UserHandle user) {
-        for (AppInfo info: data) {
-            if (componentName.equals(info.componentName) && user.equals(info.user)) {
-                return info;
-            }
-        }
-        return null;
+        return mComponentIndex.get(new ComponentKey(componentName, user));
     }
 
+    /**
+     * Returns all the apps sorted using {@link AppInfo#COMPONENT_KEY_COMPARATOR}. The same array
+     * is returned until apps are added or removed, so it should not be modified.
+     */
     public AppInfo[] copyData() {
-        AppInfo[] result = data.toArray(EMPTY_ARRAY);
-        Arrays.sort(result, COMPONENT_KEY_COMPARATOR);
-        return result;
+        if (mSortedData == null) {
+            AppInfo[] result = data.toArray(EMPTY_ARRAY);
+            Arrays.sort(result, COMPONENT_KEY_COMPARATOR);
+            mSortedData = result;
+        }
+        return mSortedData;
     }
 
     public SafeCloseable trackRemoves(Consumer<AppInfo> removeListener) {
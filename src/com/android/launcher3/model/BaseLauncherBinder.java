@@ -91,6 +91,8 @@ public class BaseLauncherBinder {
     final Callbacks[] mCallbacksList;
 
     private int mMyBindingId;
+    // Screens bound synchronously by the first callbacks during the last workspace bind
+    private final IntSet mBoundScreenIds = new IntSet();
 
     @AssistedInject
     public BaseLauncherBinder(
@@ -132,6 +134,7 @@ public class BaseLauncherBinder {
                 workspaceItemCount = mBgDataModel.itemsIdMap.size();
             }
 
+            mBoundScreenIds.clear();
             for (Callbacks cb : mCallbacksList) {
                 new UnifiedWorkspaceBinder(cb, itemsIdMap, extraItems, orderedScreenIds)
                         .bind(isBindSync, workspaceItemCount);
@@ -141,6 +144,50 @@ public class BaseLauncherBinder {
         }
     }
 
+    /**
+     * Optimistically binds the items of a {@link WorkspaceSnapshot}, before the workspace is
+     * loaded from the db. The next {@link #bindWorkspace} starts a new binding which clears these
+     * items, and any snapshot bind task still pending at that point is skipped.
+     */
+    public void bindWorkspaceSnapshot(@NonNull WorkspaceSnapshot.Snapshot snapshot) {
+        Trace.beginSection("BaseLauncherBinder#bindWorkspaceSnapshot");
+        try {
+            synchronized (mBgDataModel) {
+                mMyBindingId = mBgDataModel.lastBindId;
+            }
+            for (Callbacks cb : mCallbacksList) {
+                IntSet currentScreenIds = cb.getPagesToBindSynchronously(snapshot.orderedScreenIds);
+                if (currentScreenIds == null || currentScreenIds.isEmpty()) {
+                    currentScreenIds = snapshot.currentScreenIds;
+                }
+                ArrayList<ItemInfo> items = snapshot.items.stream()
+                        .filter(currentScreenContentFilter(currentScreenIds))
+                        .collect(Collectors.toCollection(ArrayList::new));
+                sortWorkspaceItemsSpatially(items);
+                int bindingId = mMyBindingId;
+                mUiExecutor.execute(() -> {
+                    if (bindingId != mBgDataModel.lastBindId) {
+                        Log.d(TAG, "Workspace loaded before the snapshot was bound, skipping");
+                        return;
+                    }
+                    cb.clearPendingBinds();
+                    cb.startBinding();
+                    cb.bindScreens(snapshot.orderedScreenIds);
+                    cb.bindItems(items, false);
+                });
+            }
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Returns the screens which were bound synchronously during the last workspace bind
+     */
+    public IntSet getBoundScreenIds() {
+        return mBoundScreenIds;
+    }
+
     /**
      * BindDeepShortcuts is abstract because it is a no-op for the go launcher.
      */
@@ -274,6 +321,9 @@ public class BaseLauncherBinder {
             final IntSet currentScreenIds =
                     mCallbacks.getPagesToBindSynchronously(mOrderedScreenIds);
             Objects.requireNonNull(currentScreenIds, "Null screen ids provided by " + mCallbacks);
+            if (mCallbacks == mCallbacksList[0]) {
+                mBoundScreenIds.copyFrom(currentScreenIds);
+            }
 
             // Separate the items that are on the current screen, and all the other remaining items
             ArrayList<ItemInfo> currentWorkspaceItems = new ArrayList<>();
@@ -47,6 +47,7 @@ import com.android.launcher3.BuildConfig;
 import com.android.launcher3.Workspace;
 import com.android.launcher3.config.FeatureFlags;
 import com.android.launcher3.dagger.LauncherAppSingleton;
+import com.android.launcher3.logger.LauncherAtom;
 import com.android.launcher3.logging.FileLog;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.model.data.CollectionInfo;
@@ -71,6 +72,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -119,6 +121,11 @@ public class BgDataModel {
      */
     public final StringCache stringCache = new StringCache();
 
+    /**
+     * Cache of the logging protos of the items in {@link #itemsIdMap}
+     */
+    public final ItemProtoCache itemProtos = new ItemProtoCache();
+
     /**
      * Id when the model was last bound
      */
@@ -143,6 +150,25 @@ public class BgDataModel {
         itemsIdMap.clear();
         deepShortcutMap.clear();
         extraItems.clear();
+        itemProtos.clear();
+    }
+
+    /**
+     * Adds the protos of all the items to {@param out}. Only the cached protos are collected while
+     * holding the lock, the missing ones are built after releasing it.
+     *
+     * @return the number of protos built
+     */
+    public int collectItemProtos(Context context, List<LauncherAtom.ItemInfo> out) {
+        ItemProtoCache.PendingProtos pending = new ItemProtoCache.PendingProtos();
+        synchronized (this) {
+            itemProtos.collectProtos(context, itemsIdMap, out, pending);
+        }
+        ItemProtoCache.buildProtos(context, pending, out);
+        synchronized (this) {
+            itemProtos.cacheProtos(pending);
+        }
+        return pending.size();
     }
 
     /**
@@ -163,6 +189,20 @@ public class BgDataModel {
         return screenSet.getArray();
     }
 
+    /**
+     * Returns the components of all the workspace items, including the ones in the hotseat and in
+     * folders, whose icons are kept in memory.
+     */
+    public synchronized Set<ComponentKey> getWorkspaceIconComponents() {
+        Set<ComponentKey> keys = new HashSet<>();
+        for (ItemInfo info : itemsIdMap) {
+            if (info instanceof WorkspaceItemInfo && info.getTargetComponent() != null) {
+                keys.add(new ComponentKey(info.getTargetComponent(), info.user));
+            }
+        }
+        return keys;
+    }
+
     public synchronized void dump(String prefix, FileDescriptor fd, PrintWriter writer,
             String[] args) {
         writer.println(prefix + "Data Model:");
@@ -202,7 +242,10 @@ public class BgDataModel {
                                             + " items (" + info + ")")));
         }
 
-        items.forEach(item -> itemsIdMap.remove(item.id));
+        items.forEach(item -> {
+            itemsIdMap.remove(item.id);
+            itemProtos.invalidate(item);
+        });
         items.stream().map(info -> info.user).distinct().forEach(
                 user -> updateShortcutPinnedState(context, user));
     }
@@ -501,7 +501,6 @@ class GridSizeMigrationLogic {
     ): WorkspaceItemsToPlace {
         val itemsToPlace = WorkspaceItemsToPlace(sortedItemsToPlace, mutableListOf())
         val occupied = GridOccupancy(trgX, trgY)
-        val trg = Point(trgX, trgY)
         val next: Point =
             if (
                 screenId == 0 &&
@@ -527,7 +526,7 @@ class GridSizeMigrationLogic {
                 iterator.remove()
                 continue
             }
-            findPlacementForEntry(entry, next.x, next.y, trg, occupied)?.let {
+            findPlacementForEntry(entry, next.x, next.y, occupied)?.let {
                 entry.screenId = screenId
                 entry.cellX = it.cellX
                 entry.cellY = it.cellY
@@ -553,19 +552,15 @@ class GridSizeMigrationLogic {
         entry: DbEntry,
         startPosX: Int,
         startPosY: Int,
-        trg: Point,
         occupied: GridOccupancy,
     ): CellAndSpan? {
-        var newStartPosX = startPosX
-        for (y in startPosY until trg.y) {
-            for (x in newStartPosX until trg.x) {
-                if (occupied.isRegionVacant(x, y, entry.minSpanX, entry.minSpanY)) {
-                    return (CellAndSpan(x, y, entry.minSpanX, entry.minSpanY))
-                }
-            }
-            newStartPosX = 0
+        val vacant = kotlin.IntArray(2)
+        if (
+            !occupied.findVacantCell(vacant, startPosX, startPosY, entry.minSpanX, entry.minSpanY)
+        ) {
+            return null
         }
-        return null
+        return CellAndSpan(vacant[0], vacant[1], entry.minSpanX, entry.minSpanY)
     }
 
     private data class WorkspaceItemsToPlace(
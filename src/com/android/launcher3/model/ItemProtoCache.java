@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static com.android.launcher3.model.data.ItemInfo.NAV_BAR_KIDS_MODE;
+
+import android.content.Context;
+import android.util.Log;
+import android.util.SparseArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.android.launcher3.logger.LauncherAtom;
+import com.android.launcher3.model.data.CollectionInfo;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.util.IntArray;
+import com.android.launcher3.util.IntSparseArrayMap;
+import com.android.launcher3.util.SettingsCache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cache of the {@link LauncherAtom.ItemInfo} protos of the items in {@link BgDataModel}, so that
+ * logging a snapshot of the layout only builds the protos of the items which changed since the
+ * previous snapshot.
+ * <p>
+ * A proto is reused as long as its item is the same instance in the model, the item was not
+ * modified through {@link ModelWriter}, and the collection containing it did not move. Protos of
+ * collections are never cached, as they depend on their contents.
+ * <p>
+ * Unless noted otherwise, methods must be called while holding the lock of {@link BgDataModel}.
+ * The protos which are not cached are built after releasing it, see
+ * {@link BgDataModel#collectItemProtos}.
+ */
+public class ItemProtoCache {
+
+    private static final String TAG = "ItemProtoCache";
+
+    private final SparseArray<Entry> mEntries = new SparseArray<>();
+    // Incremented when protos are invalidated, to not cache protos built from stale items
+    private int mInvalidationCount;
+
+    /**
+     * Removes the proto of the given item, when it is modified in place
+     */
+    public void invalidate(@NonNull ItemInfo item) {
+        mEntries.remove(item.id);
+        mInvalidationCount++;
+    }
+
+    /**
+     * Removes all the protos
+     */
+    public void clear() {
+        mEntries.clear();
+        mInvalidationCount++;
+    }
+
+    /**
+     * Adds the protos of all the items of {@param itemsIdMap} to {@param out}, and removes the
+     * protos of the items no longer in the model. The items whose proto is not cached are added
+     * to {@param pending}, with a null placeholder in {@param out}.
+     */
+    public void collectProtos(@NonNull Context context,
+            @NonNull IntSparseArrayMap<ItemInfo> itemsIdMap,
+            @NonNull List<LauncherAtom.ItemInfo> out, @NonNull PendingProtos pending) {
+        boolean isKidsMode = SettingsCache.INSTANCE.get(context).getValue(NAV_BAR_KIDS_MODE, 0);
+        for (int i = mEntries.size() - 1; i >= 0; i--) {
+            Entry entry = mEntries.valueAt(i);
+            if (itemsIdMap.get(mEntries.keyAt(i)) != entry.mItem
+                    || entry.mProto.getIsKidsMode() != isKidsMode) {
+                mEntries.removeAt(i);
+            }
+        }
+
+        pending.mInvalidationCount = mInvalidationCount;
+        for (int i = 0; i < itemsIdMap.size(); i++) {
+            ItemInfo info = itemsIdMap.valueAt(i);
+            CollectionInfo parent = getContainer(info, itemsIdMap);
+            Entry entry = info instanceof CollectionInfo ? null : mEntries.get(info.id);
+            if (entry != null && entry.hasSameParent(parent)) {
+                out.add(entry.mProto);
+            } else {
+                pending.mEntries.add(new Entry(info, parent));
+                pending.mPositions.add(out.size());
+                out.add(null);
+            }
+        }
+    }
+
+    /**
+     * Builds the protos of the items of {@param pending} in place of their placeholder in
+     * {@param out}. This doesn't access the cache, and can be called without the lock.
+     */
+    public static void buildProtos(@NonNull Context context, @NonNull PendingProtos pending,
+            @NonNull List<LauncherAtom.ItemInfo> out) {
+        for (int i = 0; i < pending.mEntries.size(); i++) {
+            Entry entry = pending.mEntries.get(i);
+            entry.mProto = entry.mItem.buildProto(entry.mParent, context);
+            out.set(pending.mPositions.get(i), entry.mProto);
+        }
+    }
+
+    /**
+     * Caches the protos built by {@link #buildProtos}, unless some items were invalidated since
+     * they were collected. Protos of collections are not cached.
+     */
+    public void cacheProtos(@NonNull PendingProtos pending) {
+        if (pending.mInvalidationCount != mInvalidationCount) {
+            return;
+        }
+        for (int i = 0; i < pending.mEntries.size(); i++) {
+            Entry entry = pending.mEntries.get(i);
+            if (entry.mProto != null && !(entry.mItem instanceof CollectionInfo)) {
+                mEntries.put(entry.mItem.id, entry);
+            }
+        }
+    }
+
+    /**
+     * Returns the collection containing {@param info}, or null if it is not in a collection
+     */
+    @Nullable
+    public static CollectionInfo getContainer(
+            @NonNull ItemInfo info, @NonNull IntSparseArrayMap<ItemInfo> itemsIdMap) {
+        if (info.container > 0) {
+            ItemInfo containerInfo = itemsIdMap.get(info.container);
+
+            if (!(containerInfo instanceof CollectionInfo)) {
+                Log.e(TAG, String.format(
+                        "Item info: %s found with invalid container: %s",
+                        info,
+                        containerInfo));
+            }
+            // Allow crash to help debug b/173838775
+            return (CollectionInfo) containerInfo;
+        }
+        return null;
+    }
+
+    /**
+     * Items collected by {@link #collectProtos} whose proto must be built
+     */
+    public static class PendingProtos {
+
+        private final ArrayList<Entry> mEntries = new ArrayList<>();
+        // Position of the placeholder of each entry in the collected protos
+        private final IntArray mPositions = new IntArray();
+        private int mInvalidationCount;
+
+        /**
+         * Returns the number of protos to build
+         */
+        public int size() {
+            return mEntries.size();
+        }
+    }
+
+    private static class Entry {
+
+        final ItemInfo mItem;
+        // Built after releasing the lock of the model
+        LauncherAtom.ItemInfo mProto;
+
+        // The position of the parent collection when the proto was built, as it is in the proto
+        @Nullable
+        final CollectionInfo mParent;
+        final int mParentContainer;
+        final int mParentScreenId;
+        final int mParentCellX;
+        final int mParentCellY;
+
+        Entry(ItemInfo item, @Nullable CollectionInfo parent) {
+            mItem = item;
+            mParent = parent;
+            mParentContainer = parent == null ? 0 : parent.container;
+            mParentScreenId = parent == null ? 0 : parent.screenId;
+            mParentCellX = parent == null ? 0 : parent.cellX;
+            mParentCellY = parent == null ? 0 : parent.cellY;
+        }
+
+        boolean hasSameParent(@Nullable CollectionInfo parent) {
+            if (parent != mParent) {
+                return false;
+            }
+            return parent == null
+                    || (parent.container == mParentContainer
+                    && parent.screenId == mParentScreenId
+                    && parent.cellX == mParentCellX
+                    && parent.cellY == mParentCellY);
+        }
+    }
+}
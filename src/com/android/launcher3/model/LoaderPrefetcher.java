@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static com.android.launcher3.util.Executors.THREAD_POOL_EXECUTOR;
+import static com.android.launcher3.util.PackageManagerHelper.hasShortcutsPermission;
+
+import android.appwidget.AppWidgetProviderInfo;
+import android.content.Context;
+import android.content.pm.LauncherActivityInfo;
+import android.content.pm.LauncherApps;
+import android.content.pm.ShortcutInfo;
+import android.os.SystemClock;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.pm.ShortcutConfigActivityInfo;
+import com.android.launcher3.shortcuts.ShortcutRequest;
+import com.android.launcher3.shortcuts.ShortcutRequest.QueryResult;
+import com.android.launcher3.widget.WidgetManagerHelper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Issues the system service queries needed by the later {@link LoaderTask} stages (all apps,
+ * deep shortcuts and widgets) on a background pool, so that they overlap with the workspace
+ * load happening on the model thread.
+ *
+ * <p>Results are joined back on the model thread by the loader in its regular bind order. Any
+ * query which fails is reported as {@code null}, and the caller is expected to fall back to
+ * querying synchronously.
+ */
+public class LoaderPrefetcher {
+
+    private static final String TAG = "LoaderPrefetcher";
+    private static final boolean DEBUG = false;
+
+    private final Context mContext;
+    private final List<UserHandle> mProfiles;
+
+    private final List<FutureTask<?>> mTasks = new ArrayList<>();
+
+    private Future<Map<UserHandle, List<LauncherActivityInfo>>> mActivities;
+    private Future<Map<UserHandle, List<ShortcutInfo>>> mDeepShortcuts;
+    private Future<List<AppWidgetProviderInfo>> mWidgetProviders;
+    private Future<List<ShortcutConfigActivityInfo>> mShortcutConfigActivities;
+
+    public LoaderPrefetcher(Context context, List<UserHandle> profiles) {
+        mContext = context;
+        mProfiles = new ArrayList<>(profiles);
+    }
+
+    /**
+     * Starts all the queries. Each query is submitted as an independent task so that they can
+     * run in parallel on the pool.
+     */
+    public void start() {
+        LauncherApps launcherApps = mContext.getSystemService(LauncherApps.class);
+        UserManager userManager = mContext.getSystemService(UserManager.class);
+
+        mActivities = submit("activities", () -> {
+            Map<UserHandle, List<LauncherActivityInfo>> result = new LinkedHashMap<>();
+            for (UserHandle user : mProfiles) {
+                result.put(user, launcherApps.getActivityList(null, user));
+            }
+            return result;
+        });
+        mDeepShortcuts = submit("deepShortcuts", () -> {
+            if (!hasShortcutsPermission(mContext)) {
+                return null;
+            }
+            Map<UserHandle, List<ShortcutInfo>> result = new LinkedHashMap<>();
+            for (UserHandle user : mProfiles) {
+                if (userManager.isUserUnlocked(user)) {
+                    QueryResult shortcuts = new ShortcutRequest(mContext, user)
+                            .query(ShortcutRequest.ALL);
+                    if (!shortcuts.wasSuccess()) {
+                        // Let the loader retry synchronously, so that it sees the same
+                        // failure handling as before.
+                        return null;
+                    }
+                    result.put(user, shortcuts);
+                }
+            }
+            return result;
+        });
+        mWidgetProviders = submit("widgetProviders",
+                () -> new WidgetManagerHelper(mContext).getAllProviders(null));
+        mShortcutConfigActivities = submit("shortcutConfigActivities",
+                () -> ShortcutConfigActivityInfo.queryList(mContext, null));
+    }
+
+    /**
+     * Cancels any pending queries, used when the loader is stopped.
+     */
+    public void cancel() {
+        for (FutureTask<?> task : mTasks) {
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * Returns the activity list per profile, or null if it could not be prefetched.
+     */
+    @WorkerThread
+    @Nullable
+    public Map<UserHandle, List<LauncherActivityInfo>> getActivities() {
+        return join(mActivities);
+    }
+
+    /**
+     * Returns all deep shortcuts per unlocked profile, or null if they could not be prefetched.
+     */
+    @WorkerThread
+    @Nullable
+    public Map<UserHandle, List<ShortcutInfo>> getDeepShortcuts() {
+        return join(mDeepShortcuts);
+    }
+
+    /**
+     * Returns all widget providers, or null if they could not be prefetched.
+     */
+    @WorkerThread
+    @Nullable
+    public List<AppWidgetProviderInfo> getWidgetProviders() {
+        return join(mWidgetProviders);
+    }
+
+    /**
+     * Returns all shortcut config activities, or null if they could not be prefetched.
+     */
+    @WorkerThread
+    @Nullable
+    public List<ShortcutConfigActivityInfo> getShortcutConfigActivities() {
+        return join(mShortcutConfigActivities);
+    }
+
+    private <T> Future<T> submit(String name, Callable<T> callable) {
+        FutureTask<T> task = new FutureTask<>(() -> {
+            long startTime = SystemClock.uptimeMillis();
+            T result = callable.call();
+            if (DEBUG) {
+                Log.d(TAG, name + " prefetched in " + (SystemClock.uptimeMillis() - startTime)
+                        + "ms");
+            }
+            return result;
+        });
+        mTasks.add(task);
+        THREAD_POOL_EXECUTOR.execute(task);
+        return task;
+    }
+
+    @Nullable
+    private static <T> T join(@Nullable Future<T> future) {
+        if (future == null) {
+            return null;
+        }
+        try {
+            return future.get();
+        } catch (CancellationException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            Log.w(TAG, "Prefetch failed, falling back to synchronous query", e.getCause());
+            return null;
+        }
+    }
+}
@@ -48,6 +48,7 @@ import android.content.pm.PackageInstaller.SessionInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.ShortcutInfo;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.os.Trace;
 import android.os.UserHandle;
 import android.os.UserManager;
@@ -160,6 +161,7 @@ public class LoaderTask implements Runnable {
 
     private final InstallSessionHelper mSessionHelper;
     private final IconCache mIconCache;
+    private final WorkspaceSnapshot mWorkspaceSnapshot;
 
     private final UserManagerState mUserManagerState;
     private Map<ShortcutKey, ShortcutInfo> mShortcutKeyToPinnedShortcuts;
@@ -169,6 +171,11 @@ public class LoaderTask implements Runnable {
 
     private boolean mStopped;
 
+    @Nullable
+    private LoaderPrefetcher mPrefetcher;
+    private long mLoadStartTime;
+    private long mLastSplitTime;
+
     private final Set<PackageUserKey> mPendingPackages = new HashSet<>();
     private boolean mItemsDeleted = false;
     private String mDbName;
@@ -185,6 +192,7 @@ public class LoaderTask implements Runnable {
             AllAppsList bgAllAppsList,
             BgDataModel bgModel,
             LoaderCursorFactory loaderCursorFactory,
+            WorkspaceSnapshot workspaceSnapshot,
             @Named("SAFE_MODE") boolean isSafeModeEnabled,
             @Assisted @NonNull BaseLauncherBinder launcherBinder,
             @Assisted UserManagerState userManagerState) {
@@ -203,6 +211,7 @@ public class LoaderTask implements Runnable {
         mPmHelper = pmHelper;
         mSessionHelper = sessionHelper;
         mIconCache = iconCache;
+        mWorkspaceSnapshot = workspaceSnapshot;
         mUserManagerState = userManagerState;
         mInstallingPkgsCached = null;
     }
@@ -266,6 +275,7 @@ public class LoaderTask implements Runnable {
 
         TraceHelper.INSTANCE.beginSection(TAG);
         MODEL_EXECUTOR.elevatePriority(CALLER_LOADER_TASK);
+        mLoadStartTime = mLastSplitTime = SystemClock.uptimeMillis();
         LoaderMemoryLogger memoryLogger = new LoaderMemoryLogger();
         mIsRestoreFromBackup =
                 LauncherPrefs.get(mContext).get(IS_FIRST_LOAD_AFTER_RESTORE);
@@ -274,6 +284,11 @@ public class LoaderTask implements Runnable {
             restoreEventLogger = LauncherRestoreEventLogger.Companion.newInstance(mContext);
         }
         try (LauncherModel.LoaderTransaction transaction = mModel.beginLoader(this)) {
+            // Start the system queries for the later stages, so that they run while the
+            // workspace is being loaded from the db.
+            startPrefetch();
+            bindWorkspaceSnapshot();
+
             List<CacheableShortcutInfo> allShortcuts = new ArrayList<>();
             loadWorkspace(allShortcuts, "", new HashMap<>(), memoryLogger, restoreEventLogger);
 
@@ -295,6 +310,8 @@ public class LoaderTask implements Runnable {
             verifyNotStopped();
             mLauncherBinder.bindWorkspace(true /* incrementBindId */, /* isBindSync= */ false);
             logASplit("bindWorkspace finished");
+            // Keep the icons of the bound items in memory
+            mIconCache.setPinnedComponents(mBgDataModel.getWorkspaceIconComponents());
 
             mModelDelegate.workspaceLoadComplete();
             // Notify the installer packages of packages with active installs on the first screen.
@@ -305,6 +322,12 @@ public class LoaderTask implements Runnable {
             logASplit("step 1 loading workspace complete");
             verifyNotStopped();
 
+            if (mDbName != null && mDbName.equals(mIDP.dbFile)) {
+                mWorkspaceSnapshot.write(
+                        mBgDataModel, mDbName, mLauncherBinder.getBoundScreenIds());
+                logASplit("workspace snapshot written");
+            }
+
             // second step
             Trace.beginSection("LoadAllApps");
             List<LauncherActivityInfo> allActivityList;
@@ -359,7 +382,9 @@ public class LoaderTask implements Runnable {
 
             // fourth step
             WidgetsModel widgetsModel = mBgDataModel.widgetsModel;
-            List<CachedObject> allWidgetsList = widgetsModel.update(/*packageUser=*/null);
+            List<CachedObject> allWidgetsList = widgetsModel.update(/*packageUser=*/null,
+                    mPrefetcher != null ? mPrefetcher.getWidgetProviders() : null,
+                    mPrefetcher != null ? mPrefetcher.getShortcutConfigActivities() : null);
             logASplit("load widgets finished");
 
             verifyNotStopped();
@@ -408,7 +433,10 @@ public class LoaderTask implements Runnable {
         } catch (Exception e) {
             memoryLogger.printLogs();
             throw e;
+        } finally {
+            cancelPrefetch();
         }
+        logASplit("LoaderTask total");
         MODEL_EXECUTOR.restorePriority(CALLER_LOADER_TASK);
         TraceHelper.INSTANCE.endSection();
     }
@@ -416,9 +444,39 @@ public class LoaderTask implements Runnable {
     public synchronized void stopLocked() {
         FileLog.w(TAG, "stopLocked: Loader stopping");
         mStopped = true;
+        cancelPrefetch();
         this.notify();
     }
 
+    private synchronized void startPrefetch() {
+        verifyNotStopped();
+        mPrefetcher = new LoaderPrefetcher(mContext, mUserCache.getUserProfiles());
+        mPrefetcher.start();
+        logASplit("prefetch started");
+    }
+
+    /**
+     * Binds the current page from the last {@link WorkspaceSnapshot}, so that it is visible while
+     * the workspace is loaded from the db. The snapshot is skipped when the db content may differ
+     * from what was last bound.
+     */
+    private void bindWorkspaceSnapshot() {
+        if (mIDP.dbFile == null || mIsRestoreFromBackup || mIsSafeModeEnabled) {
+            return;
+        }
+        WorkspaceSnapshot.Snapshot snapshot = mWorkspaceSnapshot.read(mIDP.dbFile);
+        if (snapshot != null) {
+            mLauncherBinder.bindWorkspaceSnapshot(snapshot);
+            logASplit("bindWorkspaceSnapshot finished, " + snapshot.items.size() + " items");
+        }
+    }
+
+    private synchronized void cancelPrefetch() {
+        if (mPrefetcher != null) {
+            mPrefetcher.cancel();
+        }
+    }
+
     public void loadWorkspaceForPreview(String selection,
             Map<ComponentKey, AppWidgetProviderInfo> widgetProviderInfoMap) {
         loadWorkspace(new ArrayList<>(), selection, widgetProviderInfoMap, null, null);
@@ -721,12 +779,19 @@ public class LoaderTask implements Runnable {
         // Clear the list of apps
         mBgAllAppsList.clear();
 
+        Map<UserHandle, List<LauncherActivityInfo>> prefetchedApps =
+                mPrefetcher != null ? mPrefetcher.getActivities() : null;
+        logASplit("loadAllApps: prefetched activities joined");
+
         List<IconRequestInfo<AppInfo>> allAppsItemRequestInfos = new ArrayList<>();
         boolean isWorkProfileQuiet = false;
         boolean isPrivateProfileQuiet = false;
         for (UserHandle user : profiles) {
             // Query for the set of apps
-            final List<LauncherActivityInfo> apps = mLauncherApps.getActivityList(null, user);
+            final List<LauncherActivityInfo> apps =
+                    prefetchedApps != null && prefetchedApps.containsKey(user)
+                            ? prefetchedApps.get(user)
+                            : mLauncherApps.getActivityList(null, user);
             // Fail if we don't have any apps
             // TODO: Fix this. Only fail for the current user.
             if (apps == null || apps.isEmpty()) {
@@ -875,10 +940,15 @@ public class LoaderTask implements Runnable {
         mBgDataModel.deepShortcutMap.clear();
 
         if (mBgAllAppsList.hasShortcutHostPermission()) {
+            Map<UserHandle, List<ShortcutInfo>> prefetchedShortcuts =
+                    mPrefetcher != null ? mPrefetcher.getDeepShortcuts() : null;
             for (UserHandle user : mUserCache.getUserProfiles()) {
                 if (mUserManager.isUserUnlocked(user)) {
-                    List<ShortcutInfo> shortcuts = new ShortcutRequest(mContext, user)
-                            .query(ShortcutRequest.ALL);
+                    List<ShortcutInfo> shortcuts =
+                            prefetchedShortcuts != null && prefetchedShortcuts.containsKey(user)
+                                    ? prefetchedShortcuts.get(user)
+                                    : new ShortcutRequest(mContext, user)
+                                            .query(ShortcutRequest.ALL);
                     allShortcuts.addAll(shortcuts);
                     mBgDataModel.updateDeepShortcutCounts(null, user, shortcuts);
                 }
@@ -910,9 +980,16 @@ public class LoaderTask implements Runnable {
                 && (provider.provider.getPackageName() != null);
     }
 
-    private static void logASplit(String label) {
+    /**
+     * Logs the label along with the time spent since the previous split and since the loader
+     * started, so that individual stages can be measured.
+     */
+    private void logASplit(String label) {
         if (DEBUG) {
-            Log.d(TAG, label);
+            long now = SystemClock.uptimeMillis();
+            Log.d(TAG, label + " (+" + (now - mLastSplitTime) + "ms, total "
+                    + (now - mLoadStartTime) + "ms)");
+            mLastSplitTime = now;
         }
     }
 
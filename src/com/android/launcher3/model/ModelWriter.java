@@ -21,6 +21,10 @@ import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
 
 import android.content.ContentValues;
 import android.content.Context;
+import android.database.SQLException;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -47,11 +51,14 @@ import com.android.launcher3.util.ItemInfoMatcher;
 import com.android.launcher3.util.LooperExecutor;
 import com.android.launcher3.widget.LauncherWidgetHolder;
 
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -59,11 +66,21 @@ import java.util.stream.StreamSupport;
 
 /**
  * Class for handling model updates.
+ *
+ * <p>Updates to existing items are written behind: they are queued, coalesced per item id, and
+ * written to the database in a single transaction once the current UI thread message (typically
+ * the current frame) is done. Any other database operation first flushes the queue, so that
+ * operations are still applied in the order they were made.
  */
 public class ModelWriter {
 
     private static final String TAG = "ModelWriter";
 
+    // Capturing the caller stack trace of every write is expensive, only do it to debug
+    // inconsistencies between the model and the database
+    private static final boolean CAPTURE_STACK_TRACES =
+            Utilities.IS_DEBUG_DEVICE || FeatureFlags.IS_STUDIO_BUILD;
+
     private final Context mContext;
     private final LauncherModel mModel;
     private final BgDataModel mBgDataModel;
@@ -79,6 +96,13 @@ public class ModelWriter {
     private boolean mPreparingToUndo;
     private final CellPosMapper mCellPosMapper;
 
+    // Updates waiting to be written to the database, by item id, in the order they were made
+    private final LinkedHashMap<Integer, PendingUpdate> mPendingUpdates = new LinkedHashMap<>();
+    private long mFirstPendingUpdateNanos;
+    private boolean mFlushScheduled;
+    private final Runnable mFlushRunnable = this::flushPendingUpdates;
+    private final WriteStats mWriteStats = new WriteStats();
+
     public ModelWriter(Context context, LauncherModel model, BgDataModel dataModel,
             boolean verifyChanges, CellPosMapper cellPosMapper, @Nullable Callbacks owner) {
         mContext = context;
@@ -175,7 +199,7 @@ public class ModelWriter {
      * cellX, cellY have already been updated on the ItemInfos.
      */
     public void moveItemsInDatabase(final ArrayList<ItemInfo> items, int container, int screen) {
-        ArrayList<ContentValues> contentValues = new ArrayList<>();
+        ArrayList<UpdateItemRunnable> updates = new ArrayList<>();
         int count = items.size();
         notifyOtherCallbacks(c -> c.bindItemsModified(items));
 
@@ -183,16 +207,15 @@ public class ModelWriter {
             ItemInfo item = items.get(i);
             updateItemInfoProps(item, container, screen, item.cellX, item.cellY);
 
-            final ContentValues values = new ContentValues();
-            values.put(Favorites.CONTAINER, item.container);
-            values.put(Favorites.CELLX, item.cellX);
-            values.put(Favorites.CELLY, item.cellY);
-            values.put(Favorites.RANK, item.rank);
-            values.put(Favorites.SCREEN, item.screenId);
-
-            contentValues.add(values);
+            final ContentWriter writer = new ContentWriter(mContext)
+                    .put(Favorites.CONTAINER, item.container)
+                    .put(Favorites.CELLX, item.cellX)
+                    .put(Favorites.CELLY, item.cellY)
+                    .put(Favorites.RANK, item.rank)
+                    .put(Favorites.SCREEN, item.screenId);
+            updates.add(new UpdateItemRunnable(item, () -> writer));
         }
-        enqueueDeleteRunnable(new UpdateItemsRunnable(items, contentValues));
+        enqueueDeleteRunnable(new UpdateItemsRunnable(updates));
     }
 
     /**
@@ -244,7 +267,7 @@ public class ModelWriter {
         notifyOtherCallbacks(c -> c.bindItems(Collections.singletonList(item), false));
 
         ModelVerifier verifier = new ModelVerifier();
-        final StackTraceElement[] stackTrace = new Throwable().getStackTrace();
+        final StackTraceElement[] stackTrace = captureStackTrace();
         newModelTask(() -> {
             // Write the item on background thread, as some properties might have been updated in
             // the background.
@@ -258,6 +281,7 @@ public class ModelWriter {
                 mBgDataModel.addItem(mContext, item, true);
                 verifier.verifyModel();
             }
+            mModel.updatePinnedIcons();
         }).executeOnModelThread();
     }
 
@@ -295,6 +319,7 @@ public class ModelWriter {
                 mBgDataModel.removeItem(mContext, item);
                 verifier.verifyModel();
             }
+            mModel.updatePinnedIcons();
         }));
     }
 
@@ -315,6 +340,7 @@ public class ModelWriter {
                     Favorites._ID + "=" + info.id, null);
             mBgDataModel.removeItem(mContext, info);
             verifier.verifyModel();
+            mModel.updatePinnedIcons();
         }));
     }
 
@@ -396,10 +422,195 @@ public class ModelWriter {
         });
     }
 
-    private class UpdateItemRunnable extends UpdateItemBaseRunnable {
+    /**
+     * Adds an update to the write-behind queue, coalescing it with a pending update of the same
+     * item, and schedules the queue to be written.
+     */
+    private void enqueueUpdate(UpdateItemRunnable update) {
+        boolean isModelThread = Looper.myLooper() == MODEL_EXECUTOR.getLooper();
+        Runnable previousUpdatesWriter = null;
+        boolean scheduleFlush = false;
+        int pendingCount;
+        synchronized (mPendingUpdates) {
+            PendingUpdate pending = mPendingUpdates.get(update.mItemId);
+            if (pending != null && !pending.canCoalesce(update)) {
+                // The item was replaced or the model reloaded, write the previous updates first
+                previousUpdatesWriter = takePendingUpdatesLocked();
+                pending = null;
+            }
+            if (pending == null) {
+                if (mPendingUpdates.isEmpty()) {
+                    mFirstPendingUpdateNanos = SystemClock.elapsedRealtimeNanos();
+                }
+                mPendingUpdates.put(update.mItemId, new PendingUpdate(update));
+            } else {
+                pending.add(update);
+                mWriteStats.onUpdateCoalesced();
+            }
+            if (!mFlushScheduled && !isModelThread) {
+                mFlushScheduled = true;
+                scheduleFlush = true;
+            }
+            pendingCount = mPendingUpdates.size();
+        }
+        mWriteStats.onUpdateQueued(pendingCount);
+        if (Trace.isEnabled()) {
+            Trace.setCounter("ModelWriter#pendingUpdates", pendingCount);
+        }
+
+        if (previousUpdatesWriter != null) {
+            MODEL_EXECUTOR.execute(previousUpdatesWriter);
+        }
+        if (isModelThread) {
+            // Model tasks expect their writes to be done when they complete
+            flushPendingUpdates();
+        } else if (scheduleFlush) {
+            if (Looper.myLooper() == mUiExecutor.getLooper()) {
+                // Wait for the end of the current frame, to batch all the updates it makes. A
+                // reload started before then flushes the updates first, so that they are not
+                // dropped for being made with the previous load id.
+                mModel.addPendingWritesFlush(mFlushRunnable);
+                mUiExecutor.post(mFlushRunnable);
+            } else {
+                MODEL_EXECUTOR.execute(mFlushRunnable);
+            }
+        }
+    }
+
+    /**
+     * Writes all the pending updates on the model thread
+     */
+    private void flushPendingUpdates() {
+        mModel.removePendingWritesFlush(mFlushRunnable);
+        Runnable updatesWriter;
+        synchronized (mPendingUpdates) {
+            mFlushScheduled = false;
+            updatesWriter = takePendingUpdatesLocked();
+        }
+        if (updatesWriter != null) {
+            MODEL_EXECUTOR.execute(updatesWriter);
+        }
+    }
+
+    /**
+     * Empties the write-behind queue, and returns a task writing its updates or null if it was
+     * empty
+     */
+    @Nullable
+    private Runnable takePendingUpdatesLocked() {
+        if (mPendingUpdates.isEmpty()) {
+            return null;
+        }
+        ArrayList<PendingUpdate> updates = new ArrayList<>(mPendingUpdates.values());
+        long firstUpdateNanos = mFirstPendingUpdateNanos;
+        mPendingUpdates.clear();
+        if (Trace.isEnabled()) {
+            Trace.setCounter("ModelWriter#pendingUpdates", 0);
+        }
+        return () -> writeUpdates(updates, firstUpdateNanos);
+    }
+
+    private void writeUpdates(ArrayList<PendingUpdate> updates, long firstUpdateNanos) {
+        Trace.beginSection("ModelWriter#writeUpdates");
+        try {
+            int loadId = mModel.getLastLoadId();
+            ModelDbController dbController = mModel.getModelDbController();
+            int written = 0;
+            try (SQLiteTransaction t = dbController.newTransaction()) {
+                for (PendingUpdate update : updates) {
+                    if (update.mLoadId != loadId) {
+                        Log.d(TAG, "Model changed before the update could be written");
+                        continue;
+                    }
+                    dbController.update(update.getValues(), itemIdMatch(update.mItemId), null);
+                    written++;
+                }
+                t.commit();
+            } catch (Exception e) {
+                // The transaction was rolled back, write the updates separately so that a single
+                // failing update doesn't lose the others
+                Log.e(TAG, "Failed to write " + updates.size() + " item updates together", e);
+                writeUpdatesIndividually(updates);
+                return;
+            }
+
+            // Lock on mBgLock *after* the db operation
+            synchronized (mBgDataModel) {
+                for (PendingUpdate update : updates) {
+                    if (update.mLoadId == loadId) {
+                        update.updateItemArraysLocked();
+                    }
+                }
+            }
+            mWriteStats.onUpdatesWritten(written,
+                    SystemClock.elapsedRealtimeNanos() - firstUpdateNanos);
+            WorkspaceSnapshot.INSTANCE.get(mContext).onWorkspaceChanged(mBgDataModel);
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    private void writeUpdatesIndividually(ArrayList<PendingUpdate> updates) {
+        for (PendingUpdate pending : updates) {
+            for (UpdateItemRunnable update : pending.mUpdates) {
+                try {
+                    update.run();
+                } catch (SQLException e) {
+                    FileLog.e(TAG, "Failed to write update of item " + update.mItemId, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates of an item waiting in the write-behind queue
+     */
+    private class PendingUpdate {
+        private final int mItemId;
+        private final int mLoadId;
+        private final ArrayList<UpdateItemRunnable> mUpdates = new ArrayList<>(1);
+
+        PendingUpdate(UpdateItemRunnable update) {
+            mItemId = update.mItemId;
+            mLoadId = update.mLoadId;
+            mUpdates.add(update);
+        }
+
+        boolean canCoalesce(UpdateItemRunnable update) {
+            return update.mLoadId == mLoadId && update.mItem == mUpdates.get(0).mItem;
+        }
+
+        void add(UpdateItemRunnable update) {
+            mUpdates.add(update);
+        }
+
+        /**
+         * Returns the values of all the updates, later updates overriding earlier ones
+         */
+        ContentValues getValues() {
+            ContentValues values = mUpdates.get(0).mWriter.get().getValues(mContext);
+            for (int i = 1; i < mUpdates.size(); i++) {
+                values.putAll(mUpdates.get(i).mWriter.get().getValues(mContext));
+            }
+            return values;
+        }
+
+        void updateItemArraysLocked() {
+            // The last update is the most relevant to report inconsistencies
+            mUpdates.get(mUpdates.size() - 1).updateItemArraysLocked();
+        }
+    }
+
+    /**
+     * Update of a single item, written through the write-behind queue
+     */
+    private class UpdateItemRunnable extends ModelTask {
         private final ItemInfo mItem;
         private final Supplier<ContentWriter> mWriter;
         private final int mItemId;
+        @Nullable
+        private final StackTraceElement[] mStackTrace = captureStackTrace();
+        private final ModelVerifier mVerifier = new ModelVerifier();
 
         UpdateItemRunnable(ItemInfo item, Supplier<ContentWriter> writer) {
             mItem = item;
@@ -407,73 +618,67 @@ public class ModelWriter {
             mItemId = item.id;
         }
 
+        @Override
+        public void executeOnModelThread() {
+            enqueueUpdate(this);
+        }
+
+        /**
+         * Writes the update directly, when it is not written with the rest of the write-behind
+         * queue
+         */
         @Override
         public void runImpl() {
             mModel.getModelDbController().update(
                     mWriter.get().getValues(mContext), itemIdMatch(mItemId), null);
-            updateItemArrays(mItem, mItemId);
-        }
-    }
-
-    private class UpdateItemsRunnable extends UpdateItemBaseRunnable {
-        private final ArrayList<ContentValues> mValues;
-        private final ArrayList<ItemInfo> mItems;
-
-        UpdateItemsRunnable(ArrayList<ItemInfo> items, ArrayList<ContentValues> values) {
-            mValues = values;
-            mItems = items;
+            synchronized (mBgDataModel) {
+                updateItemArraysLocked();
+            }
         }
 
-        @Override
-        public void runImpl() {
-            try (SQLiteTransaction t = mModel.getModelDbController().newTransaction()) {
-                int count = mItems.size();
-                for (int i = 0; i < count; i++) {
-                    ItemInfo item = mItems.get(i);
-                    final int itemId = item.id;
-                    mModel.getModelDbController().update(
-                            mValues.get(i), itemIdMatch(itemId), null);
-                    updateItemArrays(item, itemId);
+        void updateItemArraysLocked() {
+            checkItemInfoLocked(mItemId, mItem, mStackTrace);
+            mBgDataModel.itemProtos.invalidate(mItem);
+
+            if (mItem.container != Favorites.CONTAINER_DESKTOP &&
+                    mItem.container != Favorites.CONTAINER_HOTSEAT) {
+                // Item is in a collection, make sure this collection exists
+                if (!(mBgDataModel.itemsIdMap.get(mItem.container) instanceof CollectionInfo)) {
+                    // An items container is being set to a that of an item which is not in
+                    // the list of collections.
+                    String msg = "item: " + mItem + " container being set to: " +
+                            mItem.container + ", not in the list of collections";
+                    Log.e(TAG, msg);
                 }
-                t.commit();
-            } catch (Exception e) {
-                e.printStackTrace();
             }
+            mVerifier.verifyModel();
         }
     }
 
-    private abstract class UpdateItemBaseRunnable extends ModelTask {
-        private final StackTraceElement[] mStackTrace;
-        private final ModelVerifier mVerifier = new ModelVerifier();
+    /**
+     * Updates of several items, kept together while an undo is possible
+     */
+    private class UpdateItemsRunnable extends ModelTask {
+        private final ArrayList<UpdateItemRunnable> mUpdates;
 
-        UpdateItemBaseRunnable() {
-            mStackTrace = new Throwable().getStackTrace();
+        UpdateItemsRunnable(ArrayList<UpdateItemRunnable> updates) {
+            mUpdates = updates;
         }
 
-        protected void updateItemArrays(ItemInfo item, int itemId) {
-            // Lock on mBgLock *after* the db operation
-            synchronized (mBgDataModel) {
-                checkItemInfoLocked(itemId, item, mStackTrace);
-
-                if (item.container != Favorites.CONTAINER_DESKTOP &&
-                        item.container != Favorites.CONTAINER_HOTSEAT) {
-                    // Item is in a collection, make sure this collection exists
-                    if (!(mBgDataModel.itemsIdMap.get(item.container) instanceof CollectionInfo)) {
-                        // An items container is being set to a that of an item which is not in
-                        // the list of collections.
-                        String msg = "item: " + item + " container being set to: " +
-                                item.container + ", not in the list of collections";
-                        Log.e(TAG, msg);
-                    }
-                }
-                mVerifier.verifyModel();
-            }
+        @Override
+        public void executeOnModelThread() {
+            mUpdates.forEach(ModelWriter.this::enqueueUpdate);
+        }
+
+        @Override
+        public void runImpl() {
+            mUpdates.forEach(UpdateItemRunnable::runImpl);
         }
     }
 
     private abstract class ModelTask implements Runnable {
 
-        private final int mLoadId = mBgDataModel.lastLoadId;
+        protected final int mLoadId = mBgDataModel.lastLoadId;
 
         @Override
         public final void run() {
@@ -482,15 +687,30 @@ public class ModelWriter {
                 return;
             }
             runImpl();
+            WorkspaceSnapshot.INSTANCE.get(mContext).onWorkspaceChanged(mBgDataModel);
         }
 
-        public final void executeOnModelThread() {
+        public void executeOnModelThread() {
+            // Pending updates were made before this task, and need to be written first
+            flushPendingUpdates();
             MODEL_EXECUTOR.execute(this);
         }
 
         public abstract void runImpl();
     }
 
+    @Nullable
+    private static StackTraceElement[] captureStackTrace() {
+        return CAPTURE_STACK_TRACES ? new Throwable().getStackTrace() : null;
+    }
+
+    /**
+     * Dumps statistics of the write-behind queue of this writer
+     */
+    public void dumpWriteStats(String prefix, PrintWriter writer) {
+        mWriteStats.dump(prefix, writer);
+    }
+
     private ModelTask newModelTask(Runnable r) {
         return new ModelTask() {
             @Override
@@ -534,4 +754,51 @@ public class ModelWriter {
             });
         }
     }
+
+    /**
+     * Statistics of the write-behind queue of a model writer
+     */
+    private static class WriteStats {
+
+        private int mQueuedUpdates;
+        private int mCoalescedUpdates;
+        private int mWrittenUpdates;
+        private int mMaxQueueDepth;
+        private int mFlushes;
+        private long mTotalFlushLatencyNanos;
+        private long mMaxFlushLatencyNanos;
+
+        synchronized void onUpdateQueued(int queueDepth) {
+            mQueuedUpdates++;
+            mMaxQueueDepth = Math.max(mMaxQueueDepth, queueDepth);
+        }
+
+        synchronized void onUpdateCoalesced() {
+            mCoalescedUpdates++;
+        }
+
+        /**
+         * @param latencyNanos time between the first update of the flush being queued and all the
+         *                     updates being written
+         */
+        synchronized void onUpdatesWritten(int count, long latencyNanos) {
+            mFlushes++;
+            mWrittenUpdates += count;
+            mTotalFlushLatencyNanos += latencyNanos;
+            mMaxFlushLatencyNanos = Math.max(mMaxFlushLatencyNanos, latencyNanos);
+        }
+
+        synchronized void dump(String prefix, PrintWriter writer) {
+            writer.println(prefix + "ModelWriter updates:"
+                    + " queued=" + mQueuedUpdates
+                    + " coalesced=" + mCoalescedUpdates
+                    + " written=" + mWrittenUpdates
+                    + " maxQueueDepth=" + mMaxQueueDepth
+                    + " flushes=" + mFlushes
+                    + " avgFlushLatencyMs=" + (mFlushes == 0 ? 0
+                            : TimeUnit.NANOSECONDS.toMillis(mTotalFlushLatencyNanos / mFlushes))
+                    + " maxFlushLatencyMs="
+                    + TimeUnit.NANOSECONDS.toMillis(mMaxFlushLatencyNanos));
+        }
+    }
 }
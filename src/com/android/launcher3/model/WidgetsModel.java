@@ -38,6 +38,7 @@ import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.util.Preconditions;
 import com.android.launcher3.widget.LauncherAppWidgetProviderInfo;
 import com.android.launcher3.widget.WidgetManagerHelper;
+import com.android.launcher3.widget.WidgetPreviewCache;
 import com.android.launcher3.widget.WidgetSections;
 import com.android.wm.shell.Flags;
 
@@ -155,6 +156,20 @@ public class WidgetsModel {
      *                    only widgets and shortcuts associated with the package/user are.
      */
     public List<CachedObject> update(@Nullable PackageUserKey packageUser) {
+        return update(packageUser, null, null);
+    }
+
+    /**
+     * Same as {@link #update(PackageUserKey)}, but uses the provided lists when available
+     * instead of querying the system again.
+     *
+     * @param providers All widget providers matching {@code packageUser}, or null to query them
+     * @param configActivities All shortcut config activities matching {@code packageUser}, or
+     *                         null to query them
+     */
+    public List<CachedObject> update(@Nullable PackageUserKey packageUser,
+            @Nullable List<AppWidgetProviderInfo> providers,
+            @Nullable List<ShortcutConfigActivityInfo> configActivities) {
         if (!WIDGETS_ENABLED) {
             return new ArrayList<>();
         }
@@ -164,8 +179,10 @@ public class WidgetsModel {
         List<CachedObject> updatedItems = new ArrayList<>();
         try {
             // Widgets
-            WidgetManagerHelper widgetManager = new WidgetManagerHelper(mContext);
-            for (AppWidgetProviderInfo widgetInfo : widgetManager.getAllProviders(packageUser)) {
+            if (providers == null) {
+                providers = new WidgetManagerHelper(mContext).getAllProviders(packageUser);
+            }
+            for (AppWidgetProviderInfo widgetInfo : providers) {
                 LauncherAppWidgetProviderInfo launcherWidgetInfo =
                         LauncherAppWidgetProviderInfo.fromProviderInfo(mContext, widgetInfo);
 
@@ -175,8 +192,10 @@ public class WidgetsModel {
             }
 
             // Shortcuts
-            for (ShortcutConfigActivityInfo info :
-                    queryList(mContext, packageUser)) {
+            if (configActivities == null) {
+                configActivities = queryList(mContext, packageUser);
+            }
+            for (ShortcutConfigActivityInfo info : configActivities) {
                 widgetsAndShortcuts.add(new WidgetItem(info, mIconCache));
                 updatedItems.add(info);
             }
@@ -233,6 +252,7 @@ public class WidgetsModel {
         if (!WIDGETS_ENABLED) {
             return;
         }
+        WidgetPreviewCache.INSTANCE.get(mContext).removePackages(packageNames, user);
         for (Entry<PackageItemInfo, List<WidgetItem>> entry : mWidgetsByPackageItem.entrySet()) {
             if (packageNames.contains(entry.getKey().packageName)) {
                 List<WidgetItem> items = entry.getValue();
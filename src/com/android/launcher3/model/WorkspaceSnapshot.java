@@ -0,0 +1,350 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_APPLICATION;
+import static com.android.launcher3.model.ModelUtils.currentScreenContentFilter;
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Trace;
+import android.os.UserHandle;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.InvariantDeviceProfile;
+import com.android.launcher3.dagger.ApplicationContext;
+import com.android.launcher3.dagger.LauncherAppSingleton;
+import com.android.launcher3.dagger.LauncherBaseAppComponent;
+import com.android.launcher3.icons.IconCache;
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.model.data.IconRequestInfo;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.pm.UserCache;
+import com.android.launcher3.util.DaggerSingletonObject;
+import com.android.launcher3.util.IntArray;
+import com.android.launcher3.util.IntSet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import javax.inject.Inject;
+
+/**
+ * Compact binary snapshot of the apps bound on the hotseat and on the current workspace screen.
+ *
+ * <p>The snapshot is written after each successful workspace load, and read once per process
+ * with memory-mapped I/O before the workspace is loaded from the db. It only references icons by
+ * their component and user, and the icons are loaded from the icon db in bulk. This lets the
+ * loader bind the current page in a few milliseconds, before the authoritative bind replaces it.
+ *
+ * <p>Any edit made through {@link ModelWriter} deletes the snapshot right away, and rewrites it
+ * from the model once the edits have settled.
+ */
+@LauncherAppSingleton
+public class WorkspaceSnapshot {
+
+    public static final DaggerSingletonObject<WorkspaceSnapshot> INSTANCE =
+            new DaggerSingletonObject<>(LauncherBaseAppComponent::getWorkspaceSnapshot);
+
+    private static final String TAG = "WorkspaceSnapshot";
+
+    private static final int MAGIC = 0x4C575331; // "LWS1"
+    // Increment when the file format changes
+    private static final int VERSION = 1;
+    private static final String FILE_NAME = "workspace_snapshot";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final long REWRITE_DELAY_MS = 1000;
+
+    private final InvariantDeviceProfile mIdp;
+    private final UserCache mUserCache;
+    private final IconCache mIconCache;
+    private final File mFile;
+
+    // Model thread state
+    private boolean mReadAttempted = false;
+    @Nullable
+    private String mDbName;
+    private final IntSet mCurrentScreenIds = new IntSet();
+    @Nullable
+    private Runnable mPendingRewrite;
+
+    @Inject
+    WorkspaceSnapshot(@ApplicationContext Context context, InvariantDeviceProfile idp,
+            UserCache userCache, IconCache iconCache) {
+        this(idp, userCache, iconCache, new File(context.getCacheDir(), FILE_NAME));
+    }
+
+    @VisibleForTesting
+    WorkspaceSnapshot(InvariantDeviceProfile idp, UserCache userCache, IconCache iconCache,
+            File file) {
+        mIdp = idp;
+        mUserCache = userCache;
+        mIconCache = iconCache;
+        mFile = file;
+    }
+
+    /**
+     * Returns the snapshot written for {@param dbName} and the current grid, with the titles and
+     * icons of its items loaded from the icon cache, or null if there is no valid snapshot. The
+     * snapshot is only returned for the first call in the process, as the following loads start
+     * with the workspace already bound.
+     */
+    @WorkerThread
+    @Nullable
+    public Snapshot read(@NonNull String dbName) {
+        if (mReadAttempted) {
+            return null;
+        }
+        mReadAttempted = true;
+        if (!mFile.exists()) {
+            return null;
+        }
+        Trace.beginSection("WorkspaceSnapshot#read");
+        try (FileInputStream in = new FileInputStream(mFile);
+             FileChannel channel = in.getChannel()) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            Snapshot snapshot = parse(buffer, dbName);
+            if (snapshot == null) {
+                mFile.delete();
+                return null;
+            }
+            List<IconRequestInfo<WorkspaceItemInfo>> iconRequests = new ArrayList<>();
+            for (ItemInfo item : snapshot.items) {
+                iconRequests.add(new IconRequestInfo<>(
+                        (WorkspaceItemInfo) item, null, false /* useLowResIcon */));
+            }
+            mIconCache.getTitlesAndIconsInBulk(iconRequests);
+            return snapshot;
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            Log.w(TAG, "Unable to read workspace snapshot", e);
+            mFile.delete();
+            return null;
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    @Nullable
+    private Snapshot parse(ByteBuffer buffer, String dbName) {
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                || !dbName.equals(readString(buffer))
+                || buffer.getInt() != mIdp.numColumns || buffer.getInt() != mIdp.numRows) {
+            // Written for a different db or grid
+            return null;
+        }
+        Snapshot snapshot = new Snapshot();
+        int screenCount = buffer.getInt();
+        for (int i = 0; i < screenCount; i++) {
+            snapshot.orderedScreenIds.add(buffer.getInt());
+        }
+        int currentScreenCount = buffer.getInt();
+        for (int i = 0; i < currentScreenCount; i++) {
+            snapshot.currentScreenIds.add(buffer.getInt());
+        }
+        int itemCount = buffer.getInt();
+        for (int i = 0; i < itemCount; i++) {
+            WorkspaceItemInfo item = new WorkspaceItemInfo();
+            item.id = buffer.getInt();
+            item.container = buffer.getInt();
+            item.screenId = buffer.getInt();
+            item.cellX = buffer.getInt();
+            item.cellY = buffer.getInt();
+            item.spanX = buffer.getInt();
+            item.spanY = buffer.getInt();
+            item.rank = buffer.getInt();
+            UserHandle user = mUserCache.getUserForSerialNumber(buffer.getLong());
+            ComponentName cn = ComponentName.unflattenFromString(readString(buffer));
+            item.title = readString(buffer);
+            if (user == null || cn == null) {
+                // The profile was removed, the item is removed by the db load
+                continue;
+            }
+            item.user = user;
+            item.intent = AppInfo.makeLaunchIntent(cn);
+            snapshot.items.add(item);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Writes a new snapshot from the items bound for {@param dbName}. The items are only read
+     * under the model lock, the file is written afterwards.
+     *
+     * @param currentScreenIds the screens bound synchronously, or empty to use the first screen
+     */
+    @WorkerThread
+    public void write(@NonNull BgDataModel dataModel, @NonNull String dbName,
+            @NonNull IntSet currentScreenIds) {
+        cancelPendingRewrite();
+        mDbName = dbName;
+        if (mCurrentScreenIds != currentScreenIds) {
+            mCurrentScreenIds.copyFrom(currentScreenIds);
+        }
+
+        IntArray orderedScreenIds;
+        IntSet screenIds = new IntSet();
+        ArrayList<ItemInfo> items = new ArrayList<>();
+        synchronized (dataModel) {
+            orderedScreenIds = dataModel.collectWorkspaceScreens();
+            if (!currentScreenIds.isEmpty()) {
+                screenIds.addAll(currentScreenIds);
+            } else if (!orderedScreenIds.isEmpty()) {
+                screenIds.add(orderedScreenIds.get(0));
+            }
+            Predicate<ItemInfo> filter = currentScreenContentFilter(screenIds);
+            dataModel.itemsIdMap.forEach(item -> {
+                if (filter.test(item) && canSnapshot(item)) {
+                    items.add(item);
+                }
+            });
+        }
+        writeToFile(dbName, orderedScreenIds, screenIds, items);
+    }
+
+    /**
+     * Called when the workspace is modified outside of a load. The snapshot is deleted so that
+     * it is never ahead of the db, and rewritten once the workspace has not changed for a while.
+     */
+    @WorkerThread
+    public void onWorkspaceChanged(@NonNull BgDataModel dataModel) {
+        if (mDbName == null) {
+            // Nothing was written by this process yet
+            return;
+        }
+        if (mPendingRewrite == null) {
+            mFile.delete();
+        } else {
+            cancelPendingRewrite();
+        }
+        String dbName = mDbName;
+        mPendingRewrite = () -> {
+            mPendingRewrite = null;
+            write(dataModel, dbName, mCurrentScreenIds);
+        };
+        MODEL_EXECUTOR.getHandler().postDelayed(mPendingRewrite, REWRITE_DELAY_MS);
+    }
+
+    private void cancelPendingRewrite() {
+        if (mPendingRewrite != null) {
+            MODEL_EXECUTOR.getHandler().removeCallbacks(mPendingRewrite);
+            mPendingRewrite = null;
+        }
+    }
+
+    @VisibleForTesting
+    void writeToFile(String dbName, IntArray orderedScreenIds, IntSet currentScreenIds,
+            List<ItemInfo> items) {
+        Trace.beginSection("WorkspaceSnapshot#write");
+        File tempFile = new File(mFile.getPath() + TEMP_SUFFIX);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, dbName);
+            out.writeInt(mIdp.numColumns);
+            out.writeInt(mIdp.numRows);
+            out.writeInt(orderedScreenIds.size());
+            for (int i = 0; i < orderedScreenIds.size(); i++) {
+                out.writeInt(orderedScreenIds.get(i));
+            }
+            out.writeInt(currentScreenIds.size());
+            for (int screenId : currentScreenIds) {
+                out.writeInt(screenId);
+            }
+            out.writeInt(items.size());
+            for (ItemInfo item : items) {
+                out.writeInt(item.id);
+                out.writeInt(item.container);
+                out.writeInt(item.screenId);
+                out.writeInt(item.cellX);
+                out.writeInt(item.cellY);
+                out.writeInt(item.spanX);
+                out.writeInt(item.spanY);
+                out.writeInt(item.rank);
+                out.writeLong(mUserCache.getSerialNumberForUser(item.user));
+                writeString(out, item.getTargetComponent().flattenToString());
+                writeString(out, item.title == null ? "" : item.title.toString());
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write workspace snapshot", e);
+            tempFile.delete();
+            return;
+        } finally {
+            Trace.endSection();
+        }
+        // Rename so that readers never see a partially written file
+        if (!tempFile.renameTo(mFile)) {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Only enabled apps are part of the snapshot, as other items need state which is only
+     * available once the db and the packages are loaded.
+     */
+    private static boolean canSnapshot(ItemInfo item) {
+        return item.itemType == ITEM_TYPE_APPLICATION
+                && item instanceof WorkspaceItemInfo info
+                && !info.isDisabled()
+                && !info.hasPromiseIconUi()
+                && info.getTargetComponent() != null;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Workspace items read from a snapshot
+     */
+    public static class Snapshot {
+        public final IntArray orderedScreenIds = new IntArray();
+        public final IntSet currentScreenIds = new IntSet();
+        public final ArrayList<ItemInfo> items = new ArrayList<>();
+    }
+}
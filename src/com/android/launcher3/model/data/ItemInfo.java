@@ -83,7 +83,7 @@ public class ItemInfo {
     public static final int NO_ID = -1;
 
     /** Hidden field Settings.Secure.NAV_BAR_KIDS_MODE */
-    private static final Uri NAV_BAR_KIDS_MODE = Settings.Secure.getUriFor("nav_bar_kids_mode");
+    public static final Uri NAV_BAR_KIDS_MODE = Settings.Secure.getUriFor("nav_bar_kids_mode");
 
     /**
      * The id in the settings database for this item
@@ -22,6 +22,7 @@ import androidx.annotation.Nullable;
 
 import com.android.launcher3.util.IntArray;
 
+import java.text.CollationKey;
 import java.text.Collator;
 import java.util.stream.IntStream;
 
@@ -67,6 +68,32 @@ public class StringMatcherUtility {
         return false;
     }
 
+    /**
+     * Returns the indices in {@code target} at which a query can start matching, using the same
+     * rules as {@link #matches(String, String, StringMatcher)}.
+     */
+    public static IntArray getMatchStartIndices(String target, StringMatcher matcher) {
+        IntArray result = new IntArray();
+        int targetLength = target.length();
+        if (targetLength == 0) {
+            return result;
+        }
+
+        int lastType;
+        int thisType = Character.UNASSIGNED;
+        int nextType = Character.getType(target.codePointAt(0));
+        for (int i = 0; i < targetLength; i++) {
+            lastType = thisType;
+            thisType = nextType;
+            nextType = i < (targetLength - 1)
+                    ? Character.getType(target.codePointAt(i + 1)) : Character.UNASSIGNED;
+            if (matcher.isBreak(thisType, lastType, nextType)) {
+                result.add(i);
+            }
+        }
+        return result;
+    }
+
     /**
      * Returns a list of breakpoints wherever the string contains a break. For example:
      * "t-mobile" would have breakpoints at [0, 1]
@@ -141,6 +168,21 @@ public class StringMatcherUtility {
             }
         }
 
+        /**
+         * Returns the key for comparing {@param s} with other keys from this matcher
+         */
+        public CollationKey getCollationKey(String s) {
+            return mCollator.getCollationKey(s);
+        }
+
+        /**
+         * Returns a key larger than the key of any string starting with {@param prefix}, so that
+         * together with {@link #getCollationKey(String)} it bounds all the prefix matches.
+         */
+        public CollationKey getPrefixUpperBoundKey(String prefix) {
+            return mCollator.getCollationKey(prefix + MAX_UNICODE);
+        }
+
         public static StringMatcher getInstance() {
             return new StringMatcher();
         }
@@ -222,7 +264,7 @@ public class StringMatcherUtility {
     /**
      * Matching optimization to search in Chinese.
      */
-    private static boolean requestSimpleFuzzySearch(String s) {
+    public static boolean requestSimpleFuzzySearch(String s) {
         for (int i = 0; i < s.length(); ) {
             int codepoint = s.codePointAt(i);
             i += Character.charCount(codepoint);
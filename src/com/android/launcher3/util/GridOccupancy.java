@@ -4,20 +4,40 @@ import android.graphics.Rect;
 
 import com.android.launcher3.model.data.ItemInfo;
 
+import java.util.Arrays;
+
 /**
  * Utility object to manage the occupancy in a grid.
+ *
+ * Each row is stored as a bit mask, so that a span of cells is checked with a single operation.
  */
 public class GridOccupancy {
 
+    // Maximum number of columns, as each row is stored in a long
+    public static final int MAX_COUNT_X = Long.SIZE;
+
     private final int mCountX;
     private final int mCountY;
 
-    public final boolean[][] cells;
+    // Bit x of mRows[y] is set if the cell (x, y) is occupied
+    private final long[] mRows;
 
     public GridOccupancy(int countX, int countY) {
+        if (countX > MAX_COUNT_X) {
+            throw new IllegalArgumentException("Grid can't have more than " + MAX_COUNT_X
+                    + " columns: " + countX);
+        }
         mCountX = countX;
         mCountY = countY;
-        cells = new boolean[countX][countY];
+        mRows = new long[countY];
+    }
+
+    /**
+     * Returns true if the cell is occupied. Cells outside of the grid are never occupied.
+     */
+    public boolean isOccupied(int x, int y) {
+        return x >= 0 && x < mCountX && y >= 0 && y < mCountY
+                && (mRows[y] & (1L << x)) != 0;
     }
 
     /**
@@ -30,32 +50,73 @@ public class GridOccupancy {
      * @return true if a vacant cell was found
      */
     public boolean findVacantCell(int[] vacantOut, int spanX, int spanY) {
-        for (int y = 0; (y + spanY) <= mCountY; y++) {
-            for (int x = 0; (x + spanX) <= mCountX; x++) {
-                boolean available = !cells[x][y];
-                out:
-                for (int i = x; i < x + spanX; i++) {
-                    for (int j = y; j < y + spanY; j++) {
-                        available = available && !cells[i][j];
-                        if (!available) break out;
-                    }
-                }
-                if (available) {
-                    vacantOut[0] = x;
-                    vacantOut[1] = y;
-                    return true;
-                }
+        return findVacantCell(vacantOut, 0, 0, spanX, spanY);
+    }
+
+    /**
+     * Find the first vacant cell in reading order, starting from (startX, startY).
+     *
+     * @param vacantOut Holds the x and y coordinate of the vacant cell
+     * @param startX Column from which to search in the first row, the next rows are searched from
+     *               the first column.
+     * @param startY Row from which to search.
+     * @param spanX Horizontal cell span.
+     * @param spanY Vertical cell span.
+     *
+     * @return true if a vacant cell was found
+     */
+    public boolean findVacantCell(int[] vacantOut, int startX, int startY, int spanX, int spanY) {
+        for (int y = Math.max(startY, 0); (y + spanY) <= mCountY; y++) {
+            long origins = getVacantOrigins(y, spanX, spanY);
+            if (y == startY && startX > 0) {
+                origins &= startX >= Long.SIZE ? 0 : -1L << startX;
+            }
+            if (origins != 0) {
+                vacantOut[0] = Long.numberOfTrailingZeros(origins);
+                vacantOut[1] = y;
+                return true;
             }
         }
         return false;
     }
 
-    public void copyTo(GridOccupancy dest) {
-        for (int i = 0; i < mCountX; i++) {
-            for (int j = 0; j < mCountY; j++) {
-                dest.cells[i][j] = cells[i][j];
-            }
+    /**
+     * Returns a bit mask of the columns x for which the region (x, y, spanX, spanY) is vacant.
+     */
+    public long getVacantOrigins(int y, int spanX, int spanY) {
+        if (y < 0 || spanX <= 0 || spanY <= 0 || spanX > mCountX || y + spanY > mCountY) {
+            return 0;
+        }
+        long occupied = 0;
+        for (int j = y; j < y + spanY; j++) {
+            occupied |= mRows[j];
+        }
+        // Keep the columns starting a run of at least spanX vacant cells, doubling the length of
+        // the runs at each step. Columns outside of the grid are never vacant.
+        long origins = ~occupied & spanMask(mCountX);
+        int runLength = 1;
+        while (runLength < spanX && origins != 0) {
+            int shift = Math.min(runLength, spanX - runLength);
+            origins &= origins >>> shift;
+            runLength += shift;
+        }
+        return origins;
+    }
+
+    /**
+     * Returns the number of occupied cells in the row y, from column x to x + spanX.
+     */
+    public int getOccupiedCount(int x, int y, int spanX) {
+        if (y < 0 || y >= mCountY) {
+            return 0;
         }
+        int start = Math.max(x, 0);
+        int end = Math.min(x + spanX, mCountX);
+        return start >= end ? 0 : Long.bitCount(mRows[y] & (spanMask(end - start) << start));
+    }
+
+    public void copyTo(GridOccupancy dest) {
+        System.arraycopy(mRows, 0, dest.mRows, 0, mCountY);
     }
 
     public boolean isRegionVacant(int x, int y, int spanX, int spanY) {
@@ -64,21 +125,39 @@ public class GridOccupancy {
         if (x < 0 || y < 0 || x2 >= mCountX || y2 >= mCountY) {
             return false;
         }
-        for (int i = x; i <= x2; i++) {
-            for (int j = y; j <= y2; j++) {
-                if (cells[i][j]) {
-                    return false;
-                }
+        long mask = spanMask(spanX) << x;
+        for (int j = y; j <= y2; j++) {
+            if ((mRows[j] & mask) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if none of the occupied cells of {@param shape}, placed with its top left cell
+     * at (x, y), overlaps an occupied cell of this grid.
+     */
+    public boolean isRegionVacant(int x, int y, GridOccupancy shape) {
+        if (x < 0 || y < 0 || x + shape.mCountX > mCountX || y + shape.mCountY > mCountY) {
+            return false;
+        }
+        for (int j = 0; j < shape.mCountY; j++) {
+            if ((mRows[y + j] & (shape.mRows[j] << x)) != 0) {
+                return false;
             }
         }
         return true;
     }
 
     public void markCells(int cellX, int cellY, int spanX, int spanY, boolean value) {
-        if (cellX < 0 || cellY < 0) return;
-        for (int x = cellX; x < cellX + spanX && x < mCountX; x++) {
-            for (int y = cellY; y < cellY + spanY && y < mCountY; y++) {
-                cells[x][y] = value;
+        if (cellX < 0 || cellY < 0 || cellX >= mCountX) return;
+        long mask = spanMask(Math.min(spanX, mCountX - cellX)) << cellX;
+        for (int y = cellY; y < cellY + spanY && y < mCountY; y++) {
+            if (value) {
+                mRows[y] |= mask;
+            } else {
+                mRows[y] &= ~mask;
             }
         }
     }
@@ -96,7 +175,28 @@ public class GridOccupancy {
     }
 
     public void clear() {
-        markCells(0, 0, mCountX, mCountY, false);
+        Arrays.fill(mRows, 0);
+    }
+
+    /**
+     * Returns a mask of the first {@param span} bits
+     */
+    private static long spanMask(int span) {
+        if (span <= 0) {
+            return 0;
+        }
+        return span >= Long.SIZE ? -1L : (1L << span) - 1;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof GridOccupancy other && mCountX == other.mCountX
+                && mCountY == other.mCountY && Arrays.equals(mRows, other.mRows);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * mCountX + mCountY) + Arrays.hashCode(mRows);
     }
 
     @Override
@@ -104,7 +204,7 @@ public class GridOccupancy {
         StringBuilder s = new StringBuilder("Grid: \n");
         for (int y = 0; y < mCountY; y++) {
             for (int x = 0; x < mCountX; x++) {
-                s.append(cells[x][y] ? 1 : 0).append(" ");
+                s.append(isOccupied(x, y) ? 1 : 0).append(" ");
             }
             s.append("\n");
         }
@@ -36,6 +36,7 @@ import android.util.Size;
 import android.widget.RemoteViews;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import androidx.core.os.BuildCompat;
 
@@ -60,7 +61,7 @@ import java.util.function.Consumer;
 /**
  * Utility class to generate widget previews
  *
- * Note that it no longer uses database, all previews are freshly generated
+ * Note that it no longer uses database, previews are cached by {@link WidgetPreviewCache}
  */
 public class DatabaseWidgetPreviewLoader {
 
@@ -131,12 +132,28 @@ public class DatabaseWidgetPreviewLoader {
     }
 
     /**
-     * Returns a generated preview for a widget and if the preview should be saved in persistent
-     * storage.
+     * Returns a generated preview for a widget. Previews drawn from the widget preview image are
+     * read from or saved to {@link WidgetPreviewCache}.
      */
     private Bitmap generatePreview(WidgetItem item, int previewWidth, int previewHeight) {
         if (item.widgetInfo != null) {
-            return generateWidgetPreview(item.widgetInfo, previewWidth, null);
+            if (item.widgetInfo.previewImage == 0) {
+                // Placeholder previews are cheap to draw and depend on the icon theme
+                return generateWidgetPreview(item.widgetInfo, previewWidth, null);
+            }
+            WidgetPreviewCache cache = WidgetPreviewCache.INSTANCE.get(mContext);
+            String key = cache.getKey(item.widgetInfo, previewWidth, previewHeight);
+            Bitmap preview = key == null ? null : cache.get(key);
+            if (preview == null) {
+                Drawable drawable = loadPreviewDrawable(item.widgetInfo);
+                preview = generateWidgetPreview(item.widgetInfo, drawable, previewWidth, null);
+                // The placeholder drawn when the preview image fails to load isn't cached, so
+                // that the preview image is loaded again next time
+                if (key != null && drawable != null) {
+                    cache.put(key, preview);
+                }
+            }
+            return preview;
         } else {
             return generateShortcutPreview(item.activityInfo, previewWidth, previewHeight);
         }
@@ -152,9 +169,15 @@ public class DatabaseWidgetPreviewLoader {
      */
     public Bitmap generateWidgetPreview(LauncherAppWidgetProviderInfo info,
             int maxPreviewWidth, int[] preScaledWidthOut) {
-        // Load the preview image if possible
-        if (maxPreviewWidth < 0) maxPreviewWidth = Integer.MAX_VALUE;
+        return generateWidgetPreview(info, loadPreviewDrawable(info), maxPreviewWidth,
+                preScaledWidthOut);
+    }
 
+    /**
+     * Loads the preview image of the widget, or returns null if it has none or can't be loaded
+     */
+    @Nullable
+    private Drawable loadPreviewDrawable(LauncherAppWidgetProviderInfo info) {
         Drawable drawable = null;
         if (info.previewImage != 0) {
             try {
@@ -174,6 +197,12 @@ public class DatabaseWidgetPreviewLoader {
                         + info.provider);
             }
         }
+        return drawable;
+    }
+
+    private Bitmap generateWidgetPreview(LauncherAppWidgetProviderInfo info,
+            @Nullable Drawable drawable, int maxPreviewWidth, int[] preScaledWidthOut) {
+        if (maxPreviewWidth < 0) maxPreviewWidth = Integer.MAX_VALUE;
 
         final boolean widgetPreviewExists = (drawable != null);
         final int spanX = info.spanX;
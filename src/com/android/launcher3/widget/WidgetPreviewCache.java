@@ -0,0 +1,312 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.widget;
+
+import static android.content.res.Configuration.UI_MODE_NIGHT_MASK;
+
+import static com.android.launcher3.util.Executors.ORDERED_BG_EXECUTOR;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.os.UserHandle;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.dagger.ApplicationContext;
+import com.android.launcher3.dagger.LauncherAppSingleton;
+import com.android.launcher3.dagger.LauncherBaseAppComponent;
+import com.android.launcher3.pm.UserCache;
+import com.android.launcher3.util.DaggerSingletonObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Set;
+
+import javax.inject.Inject;
+
+/**
+ * Cache of the widget preview bitmaps rendered by {@link DatabaseWidgetPreviewLoader}, backed by
+ * an in-memory LRU cache and by files in the app cache directory.
+ *
+ * <p>Entries are keyed by the widget provider, the preview size, and a freshness identifier made
+ * of the provider package install path and the resources configuration. Stale entries are never
+ * returned, and the files of a package are deleted when its icons are updated.
+ */
+@LauncherAppSingleton
+public class WidgetPreviewCache {
+
+    public static final DaggerSingletonObject<WidgetPreviewCache> INSTANCE =
+            new DaggerSingletonObject<>(LauncherBaseAppComponent::getWidgetPreviewCache);
+
+    private static final String TAG = "WidgetPreviewCache";
+
+    // Increment when the rendering of previews or the file format changes
+    private static final int CACHE_VERSION = 1;
+    private static final String CACHE_DIR = "widget_previews";
+    private static final String FILE_SUFFIX = ".png";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final int MAX_DISK_ENTRIES = 300;
+    // Number of files kept when trimming, so that the disk cache isn't trimmed on every write
+    private static final int TRIMMED_DISK_ENTRIES = MAX_DISK_ENTRIES * 3 / 4;
+
+    private final Context mContext;
+    private final File mCacheDir;
+    private final LruCache<String, Bitmap> mMemoryCache;
+
+    // Number of files in the disk cache, or -1 if they need to be counted again
+    private int mDiskEntryCount = -1;
+
+    @Inject
+    WidgetPreviewCache(@ApplicationContext Context context) {
+        this(context, new File(context.getCacheDir(), CACHE_DIR),
+                (int) (Runtime.getRuntime().maxMemory() / 32));
+    }
+
+    @VisibleForTesting
+    WidgetPreviewCache(Context context, File cacheDir, int maxMemoryBytes) {
+        mContext = context;
+        mCacheDir = cacheDir;
+        mMemoryCache = new LruCache<>(maxMemoryBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+        };
+    }
+
+    /**
+     * Returns the key identifying the preview of {@param info} at the provided size, or null if
+     * the preview can't be cached
+     */
+    @Nullable
+    public String getKey(@NonNull LauncherAppWidgetProviderInfo info, int width, int height) {
+        if (info.providerInfo == null || info.providerInfo.applicationInfo == null) {
+            return null;
+        }
+        UserHandle user = info.getProfile();
+        Configuration config = mContext.getResources().getConfiguration();
+        String hash = hash(info.provider.getClassName(), width + "x" + height,
+                info.providerInfo.applicationInfo.sourceDir, config.getLocales().toLanguageTags(),
+                Integer.toString(config.densityDpi),
+                Integer.toString(config.uiMode & UI_MODE_NIGHT_MASK),
+                Integer.toString(Build.VERSION.SDK_INT));
+        return hash == null ? null : getFilePrefix(info.provider.getPackageName(), user) + hash;
+    }
+
+    /**
+     * Returns the cached preview for the provided key, reading it from disk if needed
+     */
+    @WorkerThread
+    @Nullable
+    public Bitmap get(@NonNull String key) {
+        Bitmap bitmap = mMemoryCache.get(key);
+        if (bitmap != null) {
+            return bitmap;
+        }
+        File file = getFile(key);
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != CACHE_VERSION || !key.equals(in.readUTF())) {
+                // Different version, the entry will be overwritten on put
+                return null;
+            }
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inPreferredConfig = Bitmap.Config.HARDWARE;
+            bitmap = BitmapFactory.decodeStream(in, null, options);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to read widget preview " + file, e);
+        }
+        if (bitmap != null) {
+            mMemoryCache.put(key, bitmap);
+        } else {
+            file.delete();
+        }
+        return bitmap;
+    }
+
+    /**
+     * Adds a preview to the cache. It is available in memory immediately, and written to disk in
+     * the background.
+     */
+    public void put(@NonNull String key, @NonNull Bitmap bitmap) {
+        mMemoryCache.put(key, bitmap);
+        ORDERED_BG_EXECUTOR.execute(() -> writeToDisk(key, bitmap));
+    }
+
+    /**
+     * Removes all the previews of the provided packages
+     */
+    public void removePackages(@NonNull Set<String> packageNames, @NonNull UserHandle user) {
+        String[] prefixes = packageNames.stream()
+                .map(p -> getFilePrefix(p, user))
+                .toArray(String[]::new);
+        for (String key : mMemoryCache.snapshot().keySet()) {
+            for (String prefix : prefixes) {
+                if (key.startsWith(prefix)) {
+                    mMemoryCache.remove(key);
+                    break;
+                }
+            }
+        }
+        ORDERED_BG_EXECUTOR.execute(() -> {
+            File[] files = mCacheDir.listFiles();
+            if (files == null) {
+                return;
+            }
+            for (File file : files) {
+                for (String prefix : prefixes) {
+                    if (file.getName().startsWith(prefix)) {
+                        file.delete();
+                        break;
+                    }
+                }
+            }
+            mDiskEntryCount = -1;
+        });
+    }
+
+    /**
+     * Drops the in-memory previews, the disk cache is kept
+     */
+    public void clearMemory() {
+        mMemoryCache.evictAll();
+    }
+
+    @WorkerThread
+    private void writeToDisk(String key, Bitmap bitmap) {
+        if (!mCacheDir.exists() && !mCacheDir.mkdirs()) {
+            return;
+        }
+
+        // Hardware bitmaps need to be copied before they can be compressed
+        Bitmap source = bitmap.getConfig() == Bitmap.Config.HARDWARE
+                ? bitmap.copy(Bitmap.Config.ARGB_8888, false) : bitmap;
+        if (source == null) {
+            return;
+        }
+        File file = getFile(key);
+        boolean isNewFile = !file.exists();
+        File tempFile = new File(mCacheDir, file.getName() + TEMP_SUFFIX);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(CACHE_VERSION);
+            out.writeUTF(key);
+            source.compress(Bitmap.CompressFormat.PNG, 100, out);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write widget preview " + file, e);
+            tempFile.delete();
+            return;
+        } finally {
+            if (source != bitmap) {
+                source.recycle();
+            }
+        }
+        // Rename so that readers never see a partially written file
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            return;
+        }
+        if (mDiskEntryCount < 0) {
+            String[] fileNames = mCacheDir.list();
+            mDiskEntryCount = fileNames == null ? 0 : fileNames.length;
+        } else if (isNewFile) {
+            mDiskEntryCount++;
+        }
+        if (mDiskEntryCount > MAX_DISK_ENTRIES) {
+            trimDiskCache();
+        }
+    }
+
+    /**
+     * Deletes the least recently written files, once the disk cache has grown too large
+     */
+    @WorkerThread
+    private void trimDiskCache() {
+        File[] files = mCacheDir.listFiles();
+        if (files == null) {
+            mDiskEntryCount = -1;
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        int deleteCount = Math.max(0, files.length - TRIMMED_DISK_ENTRIES);
+        for (int i = 0; i < deleteCount; i++) {
+            files[i].delete();
+        }
+        mDiskEntryCount = files.length - deleteCount;
+    }
+
+    private File getFile(String key) {
+        // Keys are made of file name safe characters
+        return new File(mCacheDir, key + FILE_SUFFIX);
+    }
+
+    /**
+     * Returns the prefix of the keys of a package. Package names can't contain '-', so that the
+     * prefix of a package never matches the keys of another one.
+     */
+    private String getFilePrefix(String packageName, UserHandle user) {
+        return packageName + '-' + UserCache.INSTANCE.get(mContext).getSerialNumberForUser(user)
+                + '-';
+    }
+
+    /**
+     * Returns the hex SHA-256 hash of {@param parts}, or null if it can't be computed
+     */
+    @Nullable
+    private static String hash(String... parts) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            Log.e(TAG, "Unable to hash widget preview key", e);
+            return null;
+        }
+        for (String part : parts) {
+            digest.update(part.getBytes(StandardCharsets.UTF_8));
+            // Separates the parts, as they never contain a null character
+            digest.update((byte) 0);
+        }
+        StringBuilder hash = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hash.append(Character.forDigit((b >> 4) & 0xF, 16))
+                    .append(Character.forDigit(b & 0xF, 16));
+        }
+        return hash.toString();
+    }
+}
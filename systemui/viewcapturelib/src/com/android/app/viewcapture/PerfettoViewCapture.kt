@@ -44,8 +44,10 @@ internal constructor(private val context: Context, executor: Executor) :
 
     private val mViewIdProvider = ViewIdProvider(context.getResources())
 
+    private var mSerializationFrames: ViewPropertyRingBuffer? = null
+    private var mSerializationFrame: Int = 0
     private var mSerializationCurrentId: Int = 0
-    private var mSerializationCurrentView: ViewPropertyRef? = null
+    private val mSerializationCurrentView = ViewPropertyRef()
 
     inner class NewInternedStrings {
         val packageNames = mutableListOf<String>()
@@ -86,7 +88,7 @@ internal constructor(private val context: Context, executor: Executor) :
     override fun onCapturedViewPropertiesBg(
         elapsedRealtimeNanos: Long,
         windowName: String,
-        startFlattenedTree: ViewPropertyRef
+        frames: ViewPropertyRingBuffer
     ) {
         Trace.beginSection("vc#onCapturedViewPropertiesBg")
 
@@ -97,7 +99,7 @@ internal constructor(private val context: Context, executor: Executor) :
             serializeViews(
                 os,
                 windowName,
-                startFlattenedTree,
+                frames,
                 ctx.incrementalState,
                 newInternedStrings
             )
@@ -110,11 +112,12 @@ internal constructor(private val context: Context, executor: Executor) :
     private fun serializeViews(
         os: ProtoOutputStream,
         windowName: String,
-        startFlattenedTree: ViewPropertyRef,
+        frames: ViewPropertyRingBuffer,
         incrementalState: ViewCaptureDataSource.IncrementalState,
         newInternedStrings: NewInternedStrings
     ) {
-        mSerializationCurrentView = startFlattenedTree
+        mSerializationFrames = frames
+        mSerializationFrame = frames.frameCount - 1
         mSerializationCurrentId = 0
 
         val tokenExtensions = os.start(TracePacket.WINSCOPE_EXTENSIONS)
@@ -130,6 +133,7 @@ internal constructor(private val context: Context, executor: Executor) :
         serializeViewsRec(os, -1, incrementalState, newInternedStrings)
         os.end(tokenViewCapture)
         os.end(tokenExtensions)
+        mSerializationFrames = null
     }
 
     private fun serializeViewsRec(
@@ -138,16 +142,18 @@ internal constructor(private val context: Context, executor: Executor) :
         incrementalState: ViewCaptureDataSource.IncrementalState,
         newInternedStrings: NewInternedStrings
     ) {
-        if (mSerializationCurrentView == null) {
+        val frames = mSerializationFrames!!
+        if (mSerializationCurrentId >= frames.getNodeCount(mSerializationFrame)) {
             return
         }
 
         val id = mSerializationCurrentId
-        val childCount = mSerializationCurrentView!!.childCount
+        frames.readNode(mSerializationFrame, id, mSerializationCurrentView)
+        val childCount = mSerializationCurrentView.childCount
 
         serializeView(
             os,
-            mSerializationCurrentView!!,
+            mSerializationCurrentView,
             mSerializationCurrentId,
             parentId,
             incrementalState,
@@ -155,7 +161,6 @@ internal constructor(private val context: Context, executor: Executor) :
         )
 
         ++mSerializationCurrentId
-        mSerializationCurrentView = mSerializationCurrentView!!.next
 
         for (i in 0..childCount - 1) {
             serializeViewsRec(os, id, incrementalState, newInternedStrings)
@@ -54,6 +54,7 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -85,10 +86,16 @@ public abstract class ViewCapture {
     // Number of ViewPropertyRef to preallocate per window
     private final int mInitPoolSize;
 
+    // Number of captured views to keep per window, across all frames
+    private final int mMaxCapturedViews;
+
     protected static final int DEFAULT_MEMORY_SIZE = 2000;
     // Initial size of the reference pool. This is at least be 5 * total number of views in
     // Launcher. This allows the first free frames avoid object allocation during view capture.
     protected static final int DEFAULT_INIT_POOL_SIZE = 300;
+    // Average number of views per frame used to bound the captured views of a window from the
+    // number of frames to keep. Windows with more views keep proportionally fewer frames.
+    protected static final int DEFAULT_AVERAGE_VIEWS_PER_FRAME = 100;
 
     public static final LooperExecutor MAIN_EXECUTOR = new LooperExecutor(Looper.getMainLooper());
 
@@ -102,9 +109,25 @@ public abstract class ViewCapture {
     public boolean mIsStarted = false;
 
     protected ViewCapture(int memorySize, int initPoolSize, Executor bgExecutor) {
+        this(memorySize, initPoolSize, getDefaultMaxCapturedViews(memorySize), bgExecutor);
+    }
+
+    /**
+     * @param maxCapturedViews maximum number of views to keep per window, across all frames. Once
+     *                         reached, the oldest frames are dropped even if there are less than
+     *                         {@param memorySize} frames.
+     */
+    protected ViewCapture(int memorySize, int initPoolSize, int maxCapturedViews,
+            Executor bgExecutor) {
         mMemorySize = memorySize;
         mBgExecutor = bgExecutor;
         mInitPoolSize = initPoolSize;
+        mMaxCapturedViews = maxCapturedViews;
+    }
+
+    private static int getDefaultMaxCapturedViews(int memorySize) {
+        return (int) Math.min((long) memorySize * DEFAULT_AVERAGE_VIEWS_PER_FRAME,
+                Integer.MAX_VALUE);
     }
 
     public static LooperExecutor createAndStartNewLooperExecutor(String name, int priority) {
@@ -238,9 +261,12 @@ public abstract class ViewCapture {
                         mBgExecutor);
     }
 
+    /**
+     * Called after a frame is captured. The frame is the last one of {@param frames}.
+     */
     @WorkerThread
     protected void onCapturedViewPropertiesBg(long elapsedRealtimeNanos, String windowName,
-            ViewPropertyRef startFlattenedViewTree) {
+            ViewPropertyRingBuffer frames) {
     }
 
     @AnyThread
@@ -282,18 +308,17 @@ public abstract class ViewCapture {
      * While this might seem trivial, using Strings in any form causes the ViewCapture to hog the
      * main thread for up to an additional 6-7ms. It must be avoided at all costs.
      * <p>
+     * On the background thread, the captured frames are stored in a {@link ViewPropertyRingBuffer}
+     * made of preallocated primitive arrays, rather than as one object per view and frame. This
+     * keeps the memory footprint bounded and avoids garbage collection while capturing.
+     * <p>
      * Another optimization is to only store the class names of the Views in the view hierarchy one
-     * time. They are then referenced via a classNameIndex value stored in each ViewPropertyRef.
+     * time. They are then referenced via a class index stored in each row of the ring buffer.
      * <p>
      * TODO: b/262585897: If further memory optimization is required, an effective one would be to
      * only store the changes between frames, rather than the entire node tree for each frame.
      * The go/web-hv UX already does this, and has reaped significant memory improves because of it.
      * <p>
-     * TODO: b/262585897: Another memory optimization could be to store all integer, float, and
-     * boolean information via single integer values via the Chinese remainder theorem, or a similar
-     * algorithm, which enables multiple numerical values to be stored inside 1 number. Doing this
-     * would allow each ViewPropertyRef to slim down its memory footprint significantly.
-     * <p>
      * One important thing to remember is that bugs related to recycling will usually only appear
      * after at least 2000 frames have been rendered. If that code is changed, the tester can
      * use hard-coded logs to verify that recycling is happening, and test view capturing at least
@@ -314,10 +339,9 @@ public abstract class ViewCapture {
         private ViewPropertyRef mPool = new ViewPropertyRef();
         private final ViewPropertyRef mViewPropertyRef = new ViewPropertyRef();
 
-        private int mFrameIndexBg = -1;
         private boolean mIsFirstFrame = true;
-        private long[] mFrameTimesNanosBg = new long[mMemorySize];
-        private ViewPropertyRef[] mNodesBg = new ViewPropertyRef[mMemorySize];
+        private final ViewPropertyRingBuffer mFramesBg = new ViewPropertyRingBuffer(
+                mMemorySize, mInitPoolSize, mMaxCapturedViews);
 
         private boolean mIsActive = true;
         private final Consumer<ViewPropertyRef> mCaptureCallback =
@@ -369,68 +393,20 @@ public abstract class ViewCapture {
             Trace.beginSection("vc#copyCleanViewsFromLastFrameBg");
 
             long elapsedRealtimeNanos = start.elapsedRealtimeNanos;
-            mFrameIndexBg++;
-            if (mFrameIndexBg >= mMemorySize) {
-                mFrameIndexBg = 0;
-            }
-            mFrameTimesNanosBg[mFrameIndexBg] = elapsedRealtimeNanos;
-
-            ViewPropertyRef recycle = mNodesBg[mFrameIndexBg];
-
-            ViewPropertyRef resultStart = null;
-            ViewPropertyRef resultEnd = null;
+            ViewPropertyRingBuffer frames = mFramesBg;
+            frames.startFrame(elapsedRealtimeNanos);
 
             ViewPropertyRef end = start;
 
             while (end != null) {
                 end.completeTransferFromViewBg();
 
-                ViewPropertyRef propertyRef = recycle;
-                if (propertyRef == null) {
-                    propertyRef = new ViewPropertyRef();
-                } else {
-                    recycle = recycle.next;
-                    propertyRef.next = null;
-                }
-
-                ViewPropertyRef copy = null;
-                if (end.childCount < 0) {
-                    copy = findInLastFrame(end.hashCode);
-                    if (copy != null) {
-                        copy.transferTo(end);
-                    } else {
+                // A negative child count is the signal to copy this view from the last frame.
+                if (end.childCount >= 0 || !frames.copySubtreeFromLastFrame(end.hashCode)) {
+                    if (end.childCount < 0) {
                         end.childCount = 0;
                     }
-                }
-                end.transferTo(propertyRef);
-
-                if (resultStart == null) {
-                    resultStart = propertyRef;
-                    resultEnd = resultStart;
-                } else {
-                    resultEnd.next = propertyRef;
-                    resultEnd = resultEnd.next;
-                }
-
-                if (copy != null) {
-                    int pending = copy.childCount;
-                    while (pending > 0) {
-                        copy = copy.next;
-                        pending = pending - 1 + copy.childCount;
-
-                        propertyRef = recycle;
-                        if (propertyRef == null) {
-                            propertyRef = new ViewPropertyRef();
-                        } else {
-                            recycle = recycle.next;
-                            propertyRef.next = null;
-                        }
-
-                        copy.transferTo(propertyRef);
-
-                        resultEnd.next = propertyRef;
-                        resultEnd = resultEnd.next;
-                    }
+                    frames.addNode(end);
                 }
 
                 if (end.next == null) {
@@ -442,23 +418,13 @@ public abstract class ViewCapture {
                 }
                 end = end.next;
             }
-            mNodesBg[mFrameIndexBg] = resultStart;
+            frames.endFrame();
 
-            onCapturedViewPropertiesBg(elapsedRealtimeNanos, name, resultStart);
+            onCapturedViewPropertiesBg(elapsedRealtimeNanos, name, frames);
 
             Trace.endSection();
         }
 
-        @WorkerThread
-        private @Nullable ViewPropertyRef findInLastFrame(int hashCode) {
-            int lastFrameIndex = (mFrameIndexBg == 0) ? mMemorySize - 1 : mFrameIndexBg - 1;
-            ViewPropertyRef viewPropertyRef = mNodesBg[lastFrameIndex];
-            while (viewPropertyRef != null && viewPropertyRef.hashCode != hashCode) {
-                viewPropertyRef = viewPropertyRef.next;
-            }
-            return viewPropertyRef;
-        }
-
         private void initPool(int initPoolSize) {
             ViewPropertyRef start = new ViewPropertyRef();
             ViewPropertyRef current = start;
@@ -535,14 +501,17 @@ public abstract class ViewCapture {
         @WorkerThread
         private WindowData dumpToProto(ViewIdProvider idProvider, ArrayList<Class> classList) {
             WindowData.Builder builder = WindowData.newBuilder().setTitle(name);
-            int size = (mNodesBg[mMemorySize - 1] == null) ? mFrameIndexBg + 1 : mMemorySize;
-            for (int i = size - 1; i >= 0; i--) {
-                int index = (mMemorySize + mFrameIndexBg - i) % mMemorySize;
+            ViewPropertyRingBuffer frames = mFramesBg;
+            // Classes are added to classList the first time they are used by a dumped node
+            int[] classnameIndices = new int[frames.getClasses().size()];
+            Arrays.fill(classnameIndices, -1);
+            int frameCount = frames.getFrameCount();
+            for (int i = 0; i < frameCount; i++) {
                 ViewNode.Builder nodeBuilder = ViewNode.newBuilder();
-                mNodesBg[index].toProto(idProvider, classList, nodeBuilder);
+                frames.toProto(i, 0, idProvider, classList, classnameIndices, nodeBuilder);
                 FrameData.Builder frameDataBuilder = FrameData.newBuilder()
                         .setNode(nodeBuilder)
-                        .setTimestamp(mFrameTimesNanosBg[index]);
+                        .setTimestamp(frames.getFrameTimeNanos(i));
                 builder.addFrameData(frameDataBuilder);
             }
             return builder.build();
@@ -580,8 +549,7 @@ public abstract class ViewCapture {
         @Override
         public void onTrimMemory(int level) {
             if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
-                mNodesBg = new ViewPropertyRef[0];
-                mFrameTimesNanosBg = new long[0];
+                mBgExecutor.execute(mFramesBg::clear);
                 if (mRoot != null && mRoot.getContext() != null) {
                     mRoot.getContext().unregisterComponentCallbacks(this);
                 }
@@ -659,68 +627,6 @@ public abstract class ViewCapture {
             view = null;
         }
 
-        public void transferTo(ViewPropertyRef out) {
-            out.clazz = this.clazz;
-            out.hashCode = this.hashCode;
-            out.childCount = this.childCount;
-            out.id = this.id;
-            out.left = this.left;
-            out.top = this.top;
-            out.right = this.right;
-            out.bottom = this.bottom;
-            out.scrollX = this.scrollX;
-            out.scrollY = this.scrollY;
-            out.scaleX = this.scaleX;
-            out.scaleY = this.scaleY;
-            out.translateX = this.translateX;
-            out.translateY = this.translateY;
-            out.alpha = this.alpha;
-            out.visibility = this.visibility;
-            out.willNotDraw = this.willNotDraw;
-            out.clipChildren = this.clipChildren;
-            out.elevation = this.elevation;
-        }
-
-        /**
-         * Converts the data to the proto representation and returns the next property ref
-         * at the end of the iteration.
-         */
-        public ViewPropertyRef toProto(ViewIdProvider idProvider, ArrayList<Class> classList,
-                ViewNode.Builder viewNode) {
-            int classnameIndex = classList.indexOf(clazz);
-            if (classnameIndex < 0) {
-                classnameIndex = classList.size();
-                classList.add(clazz);
-            }
-
-            viewNode.setClassnameIndex(classnameIndex)
-                    .setHashcode(hashCode)
-                    .setId(idProvider.getName(id))
-                    .setLeft(left)
-                    .setTop(top)
-                    .setWidth(right - left)
-                    .setHeight(bottom - top)
-                    .setTranslationX(translateX)
-                    .setTranslationY(translateY)
-                    .setScrollX(scrollX)
-                    .setScrollY(scrollY)
-                    .setScaleX(scaleX)
-                    .setScaleY(scaleY)
-                    .setAlpha(alpha)
-                    .setVisibility(visibility)
-                    .setWillNotDraw(willNotDraw)
-                    .setElevation(elevation)
-                    .setClipChildren(clipChildren);
-
-            ViewPropertyRef result = next;
-            for (int i = 0; (i < childCount) && (result != null); i++) {
-                ViewNode.Builder childViewNode = ViewNode.newBuilder();
-                result = result.toProto(idProvider, classList, childViewNode);
-                viewNode.addChildren(childViewNode);
-            }
-            return result;
-        }
-
         @Override
         public void run() {
             Consumer<ViewPropertyRef> oldCallback = callback;
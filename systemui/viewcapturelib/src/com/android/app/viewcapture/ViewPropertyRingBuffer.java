@@ -0,0 +1,494 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.app.viewcapture;
+
+import androidx.annotation.WorkerThread;
+
+import com.android.app.viewcapture.ViewCapture.ViewIdProvider;
+import com.android.app.viewcapture.ViewCapture.ViewPropertyRef;
+import com.android.app.viewcapture.data.ViewNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Storage of the frames captured by a {@link ViewCapture} window listener.
+ * <p>
+ * Each view node of a frame is a row spread across preallocated primitive arrays, one array per
+ * property. Frames are appended one after the other to a ring of rows, and the oldest frames are
+ * dropped once either the maximum number of frames or the maximum number of rows is reached. This
+ * keeps the memory footprint bounded and avoids creating and recycling an object per node. Class
+ * references are deduplicated when the nodes are added, and rows only store the class index.
+ * <p>
+ * Nodes are stored in pre-order, each node being followed by its children, like the flattened
+ * list of {@link ViewPropertyRef} captured on the UI thread.
+ * <p>
+ * All methods must be called on the background thread of the ViewCapture.
+ */
+@WorkerThread
+public final class ViewPropertyRingBuffer {
+
+    private static final int MIN_NODE_CAPACITY = 64;
+    private static final int MAX_NODE_CAPACITY = 1 << 30;
+
+    // Columns of mInts
+    private static final int HASHCODE = 0;
+    private static final int CLASS_INDEX = 1;
+    private static final int ID = 2;
+    private static final int LEFT = 3;
+    private static final int TOP = 4;
+    private static final int RIGHT = 5;
+    private static final int BOTTOM = 6;
+    private static final int SCROLL_X = 7;
+    private static final int SCROLL_Y = 8;
+    private static final int VISIBILITY = 9;
+    private static final int CHILD_COUNT = 10;
+    private static final int FLAGS = 11;
+    private static final int INT_COLUMN_COUNT = 12;
+
+    // Columns of mFloats
+    private static final int TRANSLATE_X = 0;
+    private static final int TRANSLATE_Y = 1;
+    private static final int SCALE_X = 2;
+    private static final int SCALE_Y = 3;
+    private static final int ALPHA = 4;
+    private static final int ELEVATION = 5;
+    private static final int FLOAT_COLUMN_COUNT = 6;
+
+    // Bits of the FLAGS column
+    private static final int FLAG_WILL_NOT_DRAW = 1;
+    private static final int FLAG_CLIP_CHILDREN = 1 << 1;
+
+    private final int mMaxFrames;
+    private final int mInitialNodeCapacity;
+    private final int mMaxNodeCapacity;
+
+    private int[][] mInts;
+    private float[][] mFloats;
+    // Rows are addressed by an ever increasing position, the array index being position & mMask
+    private int mMask;
+    private long mWritePosition;
+
+    // Frames are kept in a ring of mMaxFrames slots, mFirstFrameSlot being the oldest frame
+    private final long[] mFrameStarts;
+    private final int[] mFrameSizes;
+    private final long[] mFrameTimesNanos;
+    private int mFirstFrameSlot;
+    private int mFrameCount;
+
+    private long mCurrentFrameStart;
+    private long mCurrentFrameTimeNanos;
+
+    private final ArrayList<Class> mClasses = new ArrayList<>();
+    private final HashMap<Class, Integer> mClassIndices = new HashMap<>();
+
+    // Lookup of the nodes of the last stored frame by hashCode, and the one being filled with the
+    // nodes of the current frame. They are swapped after every frame.
+    private FrameIndex mLastFrameIndex = new FrameIndex();
+    private FrameIndex mCurrentFrameIndex = new FrameIndex();
+
+    /**
+     * @param maxFrames maximum number of frames to keep
+     * @param initialNodeCapacity number of rows to preallocate
+     * @param maxNodeCapacity number of rows after which old frames are dropped instead of growing
+     *                        the arrays
+     */
+    ViewPropertyRingBuffer(int maxFrames, int initialNodeCapacity, int maxNodeCapacity) {
+        mMaxFrames = maxFrames;
+        mInitialNodeCapacity = initialNodeCapacity;
+        mMaxNodeCapacity = maxNodeCapacity;
+        mFrameStarts = new long[maxFrames];
+        mFrameSizes = new int[maxFrames];
+        mFrameTimesNanos = new long[maxFrames];
+        allocate(initialNodeCapacity);
+    }
+
+    /**
+     * Drops all the frames and shrinks the arrays back to their initial size
+     */
+    void clear() {
+        mFrameCount = 0;
+        mFirstFrameSlot = 0;
+        mWritePosition = 0;
+        mLastFrameIndex.clear();
+        mCurrentFrameIndex.clear();
+        mClasses.clear();
+        mClassIndices.clear();
+        allocate(mInitialNodeCapacity);
+    }
+
+    /**
+     * Starts a new frame, to which nodes are then added in pre-order
+     */
+    void startFrame(long elapsedRealtimeNanos) {
+        mCurrentFrameStart = mWritePosition;
+        mCurrentFrameTimeNanos = elapsedRealtimeNanos;
+        mCurrentFrameIndex.clear();
+    }
+
+    /**
+     * Adds a node captured for the current frame
+     */
+    void addNode(ViewPropertyRef ref) {
+        int row = reserveRow();
+        int[][] ints = mInts;
+        ints[HASHCODE][row] = ref.hashCode;
+        ints[CLASS_INDEX][row] = getClassIndex(ref.clazz);
+        ints[ID][row] = ref.id;
+        ints[LEFT][row] = ref.left;
+        ints[TOP][row] = ref.top;
+        ints[RIGHT][row] = ref.right;
+        ints[BOTTOM][row] = ref.bottom;
+        ints[SCROLL_X][row] = ref.scrollX;
+        ints[SCROLL_Y][row] = ref.scrollY;
+        ints[VISIBILITY][row] = ref.visibility;
+        ints[CHILD_COUNT][row] = ref.childCount;
+        ints[FLAGS][row] = (ref.willNotDraw ? FLAG_WILL_NOT_DRAW : 0)
+                | (ref.clipChildren ? FLAG_CLIP_CHILDREN : 0);
+
+        float[][] floats = mFloats;
+        floats[TRANSLATE_X][row] = ref.translateX;
+        floats[TRANSLATE_Y][row] = ref.translateY;
+        floats[SCALE_X][row] = ref.scaleX;
+        floats[SCALE_Y][row] = ref.scaleY;
+        floats[ALPHA][row] = ref.alpha;
+        floats[ELEVATION][row] = ref.elevation;
+
+        mCurrentFrameIndex.putIfAbsent(ref.hashCode,
+                (int) (mWritePosition - 1 - mCurrentFrameStart));
+    }
+
+    /**
+     * Adds the view with the provided hashCode and all its descendants to the current frame, by
+     * copying them from the last frame.
+     *
+     * @return false if the view was not found in the last frame
+     */
+    boolean copySubtreeFromLastFrame(int hashCode) {
+        int node = mLastFrameIndex.get(hashCode);
+        if (node < 0 || mFrameCount == 0) {
+            return false;
+        }
+        int lastSlot = getFrameSlot(mFrameCount - 1);
+        long position = mFrameStarts[lastSlot] + node;
+        long end = mFrameStarts[lastSlot] + mFrameSizes[lastSlot];
+        int pending = 1;
+        while (pending > 0 && position < end) {
+            int dst = reserveRow();
+            // Reserving a row can grow the arrays, so only compute the source index afterwards
+            int src = (int) (position & mMask);
+            for (int[] column : mInts) {
+                column[dst] = column[src];
+            }
+            for (float[] column : mFloats) {
+                column[dst] = column[src];
+            }
+            mCurrentFrameIndex.putIfAbsent(mInts[HASHCODE][dst],
+                    (int) (mWritePosition - 1 - mCurrentFrameStart));
+            pending = pending - 1 + mInts[CHILD_COUNT][dst];
+            position++;
+        }
+        return true;
+    }
+
+    /**
+     * Stores the current frame, dropping the oldest frame if the maximum number of frames is
+     * reached
+     */
+    void endFrame() {
+        if (mFrameCount == mMaxFrames) {
+            dropOldestFrame();
+        }
+        int slot = getFrameSlot(mFrameCount);
+        mFrameStarts[slot] = mCurrentFrameStart;
+        mFrameSizes[slot] = (int) (mWritePosition - mCurrentFrameStart);
+        mFrameTimesNanos[slot] = mCurrentFrameTimeNanos;
+        mFrameCount++;
+
+        FrameIndex lastFrameIndex = mLastFrameIndex;
+        mLastFrameIndex = mCurrentFrameIndex;
+        mCurrentFrameIndex = lastFrameIndex;
+    }
+
+    /**
+     * Returns the number of stored frames. Frames are numbered from 0 for the oldest frame to
+     * {@code getFrameCount() - 1} for the last one.
+     */
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    public long getFrameTimeNanos(int frame) {
+        return mFrameTimesNanos[getFrameSlot(frame)];
+    }
+
+    public int getNodeCount(int frame) {
+        return mFrameSizes[getFrameSlot(frame)];
+    }
+
+    /**
+     * Copies the properties of a node into {@param out}
+     */
+    public void readNode(int frame, int node, ViewPropertyRef out) {
+        int row = getRow(frame, node);
+        int[][] ints = mInts;
+        out.hashCode = ints[HASHCODE][row];
+        out.clazz = mClasses.get(ints[CLASS_INDEX][row]);
+        out.id = ints[ID][row];
+        out.left = ints[LEFT][row];
+        out.top = ints[TOP][row];
+        out.right = ints[RIGHT][row];
+        out.bottom = ints[BOTTOM][row];
+        out.scrollX = ints[SCROLL_X][row];
+        out.scrollY = ints[SCROLL_Y][row];
+        out.visibility = ints[VISIBILITY][row];
+        out.childCount = ints[CHILD_COUNT][row];
+        out.willNotDraw = (ints[FLAGS][row] & FLAG_WILL_NOT_DRAW) != 0;
+        out.clipChildren = (ints[FLAGS][row] & FLAG_CLIP_CHILDREN) != 0;
+
+        float[][] floats = mFloats;
+        out.translateX = floats[TRANSLATE_X][row];
+        out.translateY = floats[TRANSLATE_Y][row];
+        out.scaleX = floats[SCALE_X][row];
+        out.scaleY = floats[SCALE_Y][row];
+        out.alpha = floats[ALPHA][row];
+        out.elevation = floats[ELEVATION][row];
+    }
+
+    /**
+     * Returns the classes referenced by the stored nodes
+     */
+    List<Class> getClasses() {
+        return mClasses;
+    }
+
+    /**
+     * Converts a node and its descendants to their proto representation, and returns the index
+     * of the node following them.
+     *
+     * @param classnameIndices maps indices of {@link #getClasses()} to indices of
+     *                         {@param classList}, -1 for classes not yet added to it
+     */
+    int toProto(int frame, int node, ViewIdProvider idProvider, ArrayList<Class> classList,
+            int[] classnameIndices, ViewNode.Builder viewNode) {
+        int row = getRow(frame, node);
+        int[][] ints = mInts;
+        float[][] floats = mFloats;
+
+        int classIndex = ints[CLASS_INDEX][row];
+        int classnameIndex = classnameIndices[classIndex];
+        if (classnameIndex < 0) {
+            Class clazz = mClasses.get(classIndex);
+            classnameIndex = classList.indexOf(clazz);
+            if (classnameIndex < 0) {
+                classnameIndex = classList.size();
+                classList.add(clazz);
+            }
+            classnameIndices[classIndex] = classnameIndex;
+        }
+
+        int left = ints[LEFT][row];
+        int top = ints[TOP][row];
+        viewNode.setClassnameIndex(classnameIndex)
+                .setHashcode(ints[HASHCODE][row])
+                .setId(idProvider.getName(ints[ID][row]))
+                .setLeft(left)
+                .setTop(top)
+                .setWidth(ints[RIGHT][row] - left)
+                .setHeight(ints[BOTTOM][row] - top)
+                .setTranslationX(floats[TRANSLATE_X][row])
+                .setTranslationY(floats[TRANSLATE_Y][row])
+                .setScrollX(ints[SCROLL_X][row])
+                .setScrollY(ints[SCROLL_Y][row])
+                .setScaleX(floats[SCALE_X][row])
+                .setScaleY(floats[SCALE_Y][row])
+                .setAlpha(floats[ALPHA][row])
+                .setVisibility(ints[VISIBILITY][row])
+                .setWillNotDraw((ints[FLAGS][row] & FLAG_WILL_NOT_DRAW) != 0)
+                .setElevation(floats[ELEVATION][row])
+                .setClipChildren((ints[FLAGS][row] & FLAG_CLIP_CHILDREN) != 0);
+
+        int childCount = ints[CHILD_COUNT][row];
+        int nodeCount = getNodeCount(frame);
+        int next = node + 1;
+        for (int i = 0; (i < childCount) && (next < nodeCount); i++) {
+            ViewNode.Builder childViewNode = ViewNode.newBuilder();
+            next = toProto(frame, next, idProvider, classList, classnameIndices, childViewNode);
+            viewNode.addChildren(childViewNode);
+        }
+        return next;
+    }
+
+    private int getFrameSlot(int frame) {
+        return (mFirstFrameSlot + frame) % mMaxFrames;
+    }
+
+    private int getRow(int frame, int node) {
+        return (int) ((mFrameStarts[getFrameSlot(frame)] + node) & mMask);
+    }
+
+    private int getClassIndex(Class clazz) {
+        Integer index = mClassIndices.get(clazz);
+        if (index == null) {
+            index = mClasses.size();
+            mClasses.add(clazz);
+            mClassIndices.put(clazz, index);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the array index of the next row of the current frame, making room for it by either
+     * growing the arrays or dropping the oldest frames
+     */
+    private int reserveRow() {
+        while (true) {
+            long firstPosition = mFrameCount > 0
+                    ? mFrameStarts[mFirstFrameSlot] : mCurrentFrameStart;
+            int capacity = mMask + 1;
+            if (mWritePosition - firstPosition < capacity) {
+                break;
+            }
+            // The last frame is always kept, as clean views of the current frame are copied from it
+            if ((capacity < mMaxNodeCapacity && capacity < MAX_NODE_CAPACITY)
+                    || mFrameCount <= 1) {
+                grow(firstPosition);
+            } else {
+                dropOldestFrame();
+            }
+        }
+        return (int) (mWritePosition++ & mMask);
+    }
+
+    private void dropOldestFrame() {
+        mFirstFrameSlot = (mFirstFrameSlot + 1) % mMaxFrames;
+        mFrameCount--;
+    }
+
+    private void allocate(int nodeCapacity) {
+        int capacity = Integer.highestOneBit(
+                Math.min(Math.max(nodeCapacity, MIN_NODE_CAPACITY), MAX_NODE_CAPACITY) - 1) << 1;
+        mInts = new int[INT_COLUMN_COUNT][capacity];
+        mFloats = new float[FLOAT_COLUMN_COUNT][capacity];
+        mMask = capacity - 1;
+    }
+
+    private void grow(long firstPosition) {
+        int[][] oldInts = mInts;
+        float[][] oldFloats = mFloats;
+        int oldMask = mMask;
+        allocate((mMask + 1) * 2);
+        for (long position = firstPosition; position < mWritePosition; position++) {
+            int src = (int) (position & oldMask);
+            int dst = (int) (position & mMask);
+            for (int i = 0; i < INT_COLUMN_COUNT; i++) {
+                mInts[i][dst] = oldInts[i][src];
+            }
+            for (int i = 0; i < FLOAT_COLUMN_COUNT; i++) {
+                mFloats[i][dst] = oldFloats[i][src];
+            }
+        }
+    }
+
+    /**
+     * Open addressing map from a view hashCode to the index of the first node of a frame with that
+     * hashCode. This lets clean subtrees be found in the last frame in O(1) instead of walking the
+     * whole frame for each of them. The backing arrays are reused across frames and only grow, so
+     * indexing a frame does not allocate once the size of the view hierarchy is stable.
+     */
+    private static final class FrameIndex {
+
+        private static final int INITIAL_CAPACITY = 64;
+
+        private int[] mKeys = new int[INITIAL_CAPACITY];
+        // Node indices, -1 for empty slots
+        private int[] mValues = newValues(INITIAL_CAPACITY);
+        private int mSize = 0;
+
+        void clear() {
+            if (mSize > 0) {
+                Arrays.fill(mValues, -1);
+                mSize = 0;
+            }
+        }
+
+        /**
+         * Adds the node to the index, unless a node with the same hashCode was already added.
+         * This matches a search from the start of the frame, which returns the first node found.
+         */
+        void putIfAbsent(int hashCode, int node) {
+            // Keep the load factor under 1/2 so that probe sequences stay short
+            if ((mSize + 1) * 2 > mValues.length) {
+                int[] oldKeys = mKeys;
+                int[] oldValues = mValues;
+                mKeys = new int[oldKeys.length * 2];
+                mValues = newValues(oldValues.length * 2);
+                mSize = 0;
+                for (int i = 0; i < oldValues.length; i++) {
+                    if (oldValues[i] >= 0) {
+                        insert(oldKeys[i], oldValues[i]);
+                    }
+                }
+            }
+            insert(hashCode, node);
+        }
+
+        private void insert(int hashCode, int node) {
+            int mask = mValues.length - 1;
+            int i = mix(hashCode) & mask;
+            while (mValues[i] >= 0) {
+                if (mKeys[i] == hashCode) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            mKeys[i] = hashCode;
+            mValues[i] = node;
+            mSize++;
+        }
+
+        /**
+         * Returns the index of the node with the provided hashCode, or -1 if there is none
+         */
+        int get(int hashCode) {
+            int mask = mValues.length - 1;
+            int i = mix(hashCode) & mask;
+            int node;
+            while ((node = mValues[i]) >= 0) {
+                if (mKeys[i] == hashCode) {
+                    return node;
+                }
+                i = (i + 1) & mask;
+            }
+            return -1;
+        }
+
+        private static int[] newValues(int capacity) {
+            int[] values = new int[capacity];
+            Arrays.fill(values, -1);
+            return values;
+        }
+
+        private static int mix(int hashCode) {
+            // Identity hash codes are not uniformly distributed in the low bits
+            int h = hashCode * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
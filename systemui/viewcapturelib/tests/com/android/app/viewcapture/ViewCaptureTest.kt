@@ -20,6 +20,7 @@ import android.content.Intent
 import android.media.permission.SafeCloseable
 import android.testing.AndroidTestingRunner
 import android.view.View
+import android.widget.FrameLayout
 import android.widget.LinearLayout
 import android.widget.TextView
 import androidx.test.ext.junit.rules.ActivityScenarioRule
@@ -77,6 +78,43 @@ class ViewCaptureTest {
         }
     }
 
+    @Test
+    fun testWindowListenerCopiesCleanSubtreesFromLastFrame() {
+        activityScenarioRule.scenario.onActivity { activity ->
+            val content = LinearLayout(activity)
+            for (i in 0 until GROUP_COUNT) {
+                content.addView(
+                    FrameLayout(activity).apply {
+                        for (j in 0 until GROUP_SIZE) addView(TextView(activity))
+                    }
+                )
+            }
+            activity.setContentView(content)
+        }
+        // Let the hierarchy draw once, so that unchanged groups are captured as clean subtrees
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync()
+
+        activityScenarioRule.scenario.onActivity { activity ->
+            val rootView = activity.requireViewById<View>(android.R.id.content)
+            val group = ((rootView as FrameLayout).getChildAt(0) as LinearLayout).getChildAt(0)
+            val changingView = (group as FrameLayout).getChildAt(0)
+            val closeable = viewCapture.startCapture(rootView, "rootViewId")
+            for (i in 0 until 5) {
+                changingView.invalidate()
+                rootView.viewTreeObserver.dispatchOnDraw()
+            }
+            val data = viewCapture.getDumpTask(rootView).get().get()
+            closeable.close()
+
+            assertEquals(5, data.frameDataList.size)
+            for (frame in data.frameDataList) {
+                val groups = frame.node.childrenList.first().childrenList
+                assertEquals(GROUP_COUNT, groups.size)
+                groups.forEach { assertEquals(GROUP_SIZE, it.childrenList.size) }
+            }
+        }
+    }
+
     private fun startViewCaptureAndInvalidateNTimes(n: Int, activity: TestActivity): SafeCloseable {
         val rootView: View = activity.requireViewById(android.R.id.content)
         val closeable: SafeCloseable = viewCapture.startCapture(rootView, "rootViewId")
@@ -108,4 +146,10 @@ class ViewCaptureTest {
             )
         }
     }
+
+    companion object {
+        private const val GROUP_COUNT = 10
+        // Number of views in each subtree, excluding the parent FrameLayout
+        private const val GROUP_SIZE = 9
+    }
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.app.viewcapture
+
+import android.view.View
+import android.widget.FrameLayout
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import com.android.app.viewcapture.ViewCapture.ViewPropertyRef
+import junit.framework.Assert.assertEquals
+import junit.framework.Assert.assertFalse
+import junit.framework.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class ViewPropertyRingBufferTest {
+
+    private val ref = ViewPropertyRef()
+
+    @Test
+    fun oldestFramesDroppedAfterMaxFrames() {
+        val buffer = ViewPropertyRingBuffer(3, 16, Int.MAX_VALUE)
+        for (frame in 0 until 5) {
+            addFrame(buffer, frame.toLong(), hashCode = frame)
+        }
+
+        assertEquals(3, buffer.frameCount)
+        for (frame in 0 until 3) {
+            assertEquals(frame + 2L, buffer.getFrameTimeNanos(frame))
+            buffer.readNode(frame, 0, ref)
+            assertEquals(frame + 2, ref.hashCode)
+        }
+    }
+
+    @Test
+    fun cleanSubtreeCopiedFromLastFrame() {
+        val buffer = ViewPropertyRingBuffer(10, 16, Int.MAX_VALUE)
+        buffer.startFrame(0)
+        addNode(buffer, hashCode = 1, left = 10, childCount = 1, clazz = FrameLayout::class.java)
+        addNode(buffer, hashCode = 2, left = 20, childCount = 1, clazz = FrameLayout::class.java)
+        addNode(buffer, hashCode = 3, left = 30, childCount = 0, clazz = View::class.java)
+        buffer.endFrame()
+
+        buffer.startFrame(1)
+        addNode(buffer, hashCode = 1, left = 15, childCount = 1, clazz = FrameLayout::class.java)
+        assertTrue(buffer.copySubtreeFromLastFrame(2))
+        assertFalse(buffer.copySubtreeFromLastFrame(4))
+        buffer.endFrame()
+
+        assertEquals(3, buffer.getNodeCount(1))
+        buffer.readNode(1, 0, ref)
+        assertEquals(15, ref.left)
+        buffer.readNode(1, 1, ref)
+        assertEquals(2, ref.hashCode)
+        assertEquals(20, ref.left)
+        assertEquals(1, ref.childCount)
+        buffer.readNode(1, 2, ref)
+        assertEquals(3, ref.hashCode)
+        assertEquals(View::class.java, ref.clazz)
+        assertEquals(2, buffer.classes.size)
+    }
+
+    @Test
+    fun oldestFramesDroppedAfterMaxViews() {
+        val buffer = ViewPropertyRingBuffer(100, 64, 64)
+        for (frame in 0 until 10) {
+            buffer.startFrame(frame.toLong())
+            for (i in 0 until 20) {
+                addNode(buffer, hashCode = i, left = frame, childCount = 0)
+            }
+            buffer.endFrame()
+        }
+
+        // Only 3 frames of 20 views fit in 64 views
+        assertEquals(3, buffer.frameCount)
+        buffer.readNode(2, 19, ref)
+        assertEquals(9, ref.left)
+    }
+
+    private fun addFrame(buffer: ViewPropertyRingBuffer, time: Long, hashCode: Int) {
+        buffer.startFrame(time)
+        addNode(buffer, hashCode = hashCode, left = 0, childCount = 0)
+        buffer.endFrame()
+    }
+
+    private fun addNode(
+        buffer: ViewPropertyRingBuffer,
+        hashCode: Int,
+        left: Int,
+        childCount: Int,
+        clazz: Class<*> = View::class.java,
+    ) {
+        ref.hashCode = hashCode
+        ref.left = left
+        ref.childCount = childCount
+        ref.clazz = clazz
+        buffer.addNode(ref)
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import com.android.launcher3.LauncherPrefs.Companion.GRID_NAME
+import com.google.common.truth.Truth.assertThat
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/** Tests for the parsed grid options cached by [InvariantDeviceProfile]. */
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class InvariantDeviceProfileCacheTest : AbstractDeviceProfileTest() {
+
+    private lateinit var idp: InvariantDeviceProfile
+
+    @Before
+    fun setup() {
+        initializeVarsForPhone(deviceSpecs["phone"]!!)
+        idp = context.appComponent.idp
+    }
+
+    @Test
+    fun gridOptionsAreParsedOnce() {
+        val gridName = context.appComponent.launcherPrefs.get(GRID_NAME)
+
+        val gridOption = idp.getGridOptionFromName(context, gridName)
+
+        assertThat(gridOption).isNotNull()
+        assertThat(idp.getGridOptionFromName(context, gridName)).isSameInstanceAs(gridOption)
+        assertThat(idp.parseAllGridOptions(context)).contains(gridOption)
+    }
+
+    @Test
+    fun onConfigChanged_createsNewSupportedProfiles() {
+        val profiles = idp.supportedProfiles
+
+        idp.onConfigChanged(context)
+
+        // Device profiles are modified in place by their users, so they are never reused
+        assertThat(idp.supportedProfiles).isNotSameInstanceAs(profiles)
+        assertThat(idp.supportedProfiles.first()).isNotSameInstanceAs(profiles.first())
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.allapps.search;
+
+import static org.junit.Assert.assertEquals;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.search.StringMatcherUtility;
+import com.android.launcher3.search.StringMatcherUtility.StringMatcher;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for {@link AppTitleSearchIndex}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class AppTitleSearchIndexTest {
+
+    private static final String[] TITLES = {
+            "White Cow", "whiteCow", "whitecow", "Cats&Dogs", "2+43", "Elephant", "电子邮件",
+            "Calculator", "Calendar", "Camera", "Call Log", "Clock", "YouTube Music", "LEGO®Builder"
+    };
+
+    @Test
+    public void testSearchMatchesLinearScan() {
+        List<AppInfo> apps = createApps(TITLES);
+        AppTitleSearchIndex index = new AppTitleSearchIndex();
+        index.update(apps, 0);
+
+        for (String query : new String[] {"w", "white", "white c", "cow", "dog", "&", "43", "3",
+                "el", "电", "子邮", "ca", "cal", "calc", "m", "mu", "builder", "x"}) {
+            for (int maxResults : new int[] {1, 3, 100}) {
+                assertEquals(query + " " + maxResults,
+                        linearSearch(apps, query, maxResults),
+                        index.search(query, maxResults));
+            }
+        }
+    }
+
+    @Test
+    public void testRefinedSearchMatchesLinearScan() {
+        List<AppInfo> apps = createApps(TITLES);
+        AppTitleSearchIndex index = new AppTitleSearchIndex();
+        index.update(apps, 0);
+
+        for (String query : new String[] {"c", "ca", "cal", "cale", "ca", "c", "电", "电子"}) {
+            assertEquals(query, linearSearch(apps, query, 100), index.search(query, 100));
+        }
+    }
+
+    @Test
+    public void testUpdateRebuildsOnlyWhenModified() {
+        List<AppInfo> apps = createApps(TITLES);
+        AppTitleSearchIndex index = new AppTitleSearchIndex();
+        index.update(apps, 0);
+
+        List<AppInfo> newApps = createApps("Camera", "Cars");
+        index.update(newApps, 0);
+        assertEquals(apps.get(7), index.search("calc", 5).get(0));
+
+        index.update(newApps, 1);
+        assertEquals(Arrays.asList(newApps.get(0), newApps.get(1)), index.search("ca", 5));
+    }
+
+    @Test
+    public void testRankedSearchOrdersByMatchType() {
+        List<AppInfo> apps = createApps("whiteCow", "White Cow", "Cowboy", "Cow", "电子邮件", "子邮");
+        AppTitleSearchIndex index = new AppTitleSearchIndex();
+        index.update(apps, 0);
+
+        assertEquals(Arrays.asList(apps.get(2), apps.get(3), apps.get(1), apps.get(0)),
+                index.search("cow", 10, info -> 0));
+        assertEquals(Arrays.asList(apps.get(2), apps.get(3)), index.search("cow", 2, info -> 0));
+        assertEquals(Arrays.asList(apps.get(5), apps.get(4)), index.search("子", 10, info -> 0));
+    }
+
+    @Test
+    public void testRankedSearchBoostsWithinMatchType() {
+        List<AppInfo> apps = createApps("whiteCow", "White Cow", "Cowboy", "Cow");
+        AppTitleSearchIndex index = new AppTitleSearchIndex();
+        index.update(apps, 0);
+
+        // The boost reorders apps with the same match type, but never across match types
+        assertEquals(Arrays.asList(apps.get(3), apps.get(2), apps.get(1), apps.get(0)),
+                index.search("cow", 10, info -> info == apps.get(3) || info == apps.get(0)
+                        ? 100 : 0));
+    }
+
+    private static List<AppInfo> createApps(String... titles) {
+        List<AppInfo> apps = new ArrayList<>();
+        for (String title : titles) {
+            AppInfo info = new AppInfo();
+            info.title = title;
+            apps.add(info);
+        }
+        return apps;
+    }
+
+    private static List<AppInfo> linearSearch(List<AppInfo> apps, String query, int maxResults) {
+        String queryTextLower = query.toLowerCase();
+        StringMatcher matcher = StringMatcher.getInstance();
+        List<AppInfo> result = new ArrayList<>();
+        for (AppInfo info : apps) {
+            if (result.size() < maxResults && StringMatcherUtility.matches(
+                    queryTextLower, info.title.toString(), matcher)) {
+                result.add(info);
+            }
+        }
+        return result;
+    }
+}
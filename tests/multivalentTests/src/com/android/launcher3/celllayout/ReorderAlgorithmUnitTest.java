@@ -18,6 +18,7 @@ package com.android.launcher3.celllayout;
 import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import android.content.Context;
@@ -137,6 +138,41 @@ public class ReorderAlgorithmUnitTest {
         }
     }
 
+    /**
+     * Solves each test case twice on the same CellLayout and makes sure the second solution, which
+     * comes from the reorder solution cache, is the same as the first one.
+     */
+    @Test
+    public void testCachedSolutions() throws IOException {
+        List<ReorderAlgorithmUnitTestCase> testCases = getTestCases(
+                "ReorderAlgorithmUnitTest/reorder_algorithm_test_cases");
+        mApplicationContext = new ActivityContextWrapper(getApplicationContext());
+        for (ReorderAlgorithmUnitTestCase testCase : testCases) {
+            CellLayout cl = createCellLayout(testCase.startBoard, false);
+            ReorderSolutionCache cache = cl.getReorderSolutionCache();
+            ItemConfiguration first = calculateReorder(cl, testCase.x, testCase.y,
+                    testCase.spanX, testCase.spanY, testCase.minSpanX, testCase.minSpanY);
+            int searchCount = cache.getMissCount();
+            int hitCount = cache.getHitCount();
+            ItemConfiguration second = calculateReorder(cl, testCase.x, testCase.y,
+                    testCase.spanX, testCase.spanY, testCase.minSpanX, testCase.minSpanY);
+            // Every search of the second reorder is answered by the cache
+            assertEquals("Solution wasn't cached " + testCase, searchCount,
+                    cache.getMissCount());
+            if (searchCount > 0) {
+                assertTrue("Cache wasn't used " + testCase, cache.getHitCount() > hitCount);
+            }
+            if (first == null) {
+                assertNull("Cached solution should not exist " + testCase, second);
+                continue;
+            }
+            assertEquals("Cached solution doesn't match " + testCase, first.toString(),
+                    second.toString());
+            assertEquals(first.isSolution, second.isSolution);
+            assertEquals(first.map.toString(), second.map.toString());
+        }
+    }
+
     private void addViewInCellLayout(CellLayout cellLayout, int cellX, int cellY, int spanX,
             int spanY, boolean isWidget) {
         View cell = isWidget ? new View(mApplicationContext) : new DoubleShadowBubbleTextView(
@@ -146,8 +182,7 @@ public class ReorderAlgorithmUnitTest {
                 (CellLayoutLayoutParams) cell.getLayoutParams(), true);
     }
 
-    public ItemConfiguration solve(CellLayoutBoard board, int x, int y, int spanX,
-            int spanY, int minSpanX, int minSpanY, boolean isMulti) {
+    private CellLayout createCellLayout(CellLayoutBoard board, boolean isMulti) {
         CellLayout cl = mCellLayoutBuilder.createCellLayoutDefaultSize(board.getWidth(),
                 board.getHeight(), isMulti);
 
@@ -166,12 +201,16 @@ public class ReorderAlgorithmUnitTest {
                         widget -> addViewInCellLayout(cl, widget.getCellX(), widget.getCellY(),
                                 widget.getSpanX(), widget.getSpanY(), true)
                 );
+        return cl;
+    }
 
+    private ItemConfiguration calculateReorder(CellLayout cl, int x, int y, int spanX, int spanY,
+            int minSpanX, int minSpanY) {
         int[] testCaseXYinPixels = new int[2];
         cl.regionToCenterPoint(x, y, spanX, spanY, testCaseXYinPixels);
         ItemConfiguration configuration = new ItemConfiguration();
         cl.copyCurrentStateToSolution(configuration);
-        ItemConfiguration solution = cl.createReorderAlgorithm()
+        return cl.createReorderAlgorithm()
                 .calculateReorder(
                         new ReorderParameters(
                                 testCaseXYinPixels[0],
@@ -184,6 +223,12 @@ public class ReorderAlgorithmUnitTest {
                                 configuration
                         )
                 );
+    }
+
+    public ItemConfiguration solve(CellLayoutBoard board, int x, int y, int spanX,
+            int spanY, int minSpanX, int minSpanY, boolean isMulti) {
+        CellLayout cl = createCellLayout(board, isMulti);
+        ItemConfiguration solution = calculateReorder(cl, x, y, spanX, spanY, minSpanX, minSpanY);
         if (solution == null) {
             solution = new ItemConfiguration();
             solution.isSolution = false;
@@ -27,8 +27,11 @@ import com.android.launcher3.icons.cache.BaseIconCache
 import com.android.launcher3.icons.cache.BaseIconCache.IconDB
 import com.android.launcher3.icons.cache.CachedObject
 import com.android.launcher3.icons.cache.CachedObjectCachingLogic
+import com.android.launcher3.icons.cache.IconCacheJournal
+import com.android.launcher3.icons.cache.IconCacheJournal.PackageRecord
 import com.android.launcher3.icons.cache.IconCacheUpdateHandler
 import com.android.launcher3.util.RoboApiWrapper
+import com.android.launcher3.util.SQLiteCacheHelper
 import com.google.common.truth.Truth.assertThat
 import java.util.concurrent.FutureTask
 import org.junit.After
@@ -41,6 +44,7 @@ import org.mockito.Mock
 import org.mockito.MockitoAnnotations
 import org.mockito.kotlin.any
 import org.mockito.kotlin.anyOrNull
+import org.mockito.kotlin.argThat
 import org.mockito.kotlin.doAnswer
 import org.mockito.kotlin.doReturn
 import org.mockito.kotlin.eq
@@ -57,6 +61,8 @@ class IconCacheUpdateHandlerTest {
     @Mock private lateinit var baseIconCache: BaseIconCache
     @Mock private lateinit var cacheDb: IconDB
     @Mock private lateinit var workerHandler: Handler
+    @Mock private lateinit var journal: IconCacheJournal
+    @Mock private lateinit var transaction: SQLiteCacheHelper.Transaction
 
     @Captor private lateinit var deleteCaptor: ArgumentCaptor<String>
 
@@ -76,6 +82,7 @@ class IconCacheUpdateHandlerTest {
         MockitoAnnotations.initMocks(this)
         doReturn(iconProvider).whenever(baseIconCache).iconProvider
         doReturn(cursor).whenever(cacheDb).query(any(), any(), any())
+        doReturn(transaction).whenever(cacheDb).newTransaction()
 
         updateHandlerUnderTest = IconCacheUpdateHandler(baseIconCache, cacheDb, workerHandler)
     }
@@ -199,6 +206,154 @@ class IconCacheUpdateHandlerTest {
             )
     }
 
+    @Test
+    fun `writes icons in batched transactions`() {
+        doAnswer { i ->
+                (i.arguments[0] as Runnable).run()
+                true
+            }
+            .whenever(workerHandler)
+            .postAtTime(any(), anyOrNull(), any())
+
+        TestCachedObject(1).addToCursor(cursor)
+        TestCachedObject(2).addToCursor(cursor)
+
+        updateHandlerUnderTest.updateIcons(
+            TestCachedObject(1, freshnessId = "not-fresh"),
+            TestCachedObject(2, freshnessId = "not-fresh"),
+            TestCachedObject(3),
+        )
+        updateHandlerUnderTest.finish()
+
+        verify(baseIconCache, times(3))
+            .addIconToDBAndMemCache(any<CachedObject>(), eq(CachedObjectCachingLogic), any())
+        // One batch for the updated icons, which is committed before notifying the callback, and
+        // one for the added icon
+        verify(transaction, times(2)).commit()
+        verify(transaction, times(2)).close()
+    }
+
+    @Test
+    fun `only verifies changed packages when journal is valid`() {
+        val unchanged = TestCachedObject(1)
+        val changed = TestCachedObject(2)
+        doReturn(mapOf(unchanged.cn.packageName to unchanged.getPackageRecord()))
+            .whenever(journal)
+            .getVerifiedPackages(any(), any())
+        // Only the rows of the changed package are returned by the filtered query
+        TestCachedObject(2, freshnessId = "not-fresh").addToCursor(cursor)
+
+        updateHandlerUnderTest =
+            IconCacheUpdateHandler(baseIconCache, cacheDb, workerHandler, journal)
+        updateHandlerUnderTest.updateIcons(unchanged, changed)
+        updateHandlerUnderTest.finish()
+
+        verify(cacheDb)
+            .query(
+                any(),
+                argThat { contains("GLOB") },
+                argThat { contains("${changed.cn.packageName}/*") && size == 2 },
+            )
+        verify(cacheDb, never()).delete(any(), anyOrNull())
+        // The changed package has a pending update, so it is not recorded as verified
+        val records = mapOf(unchanged.cn.packageName to unchanged.getPackageRecord())
+        verify(journal).write(eq(mapOf(0L to mapOf(source(0) to records))))
+    }
+
+    @Test
+    fun `does not insert icons of unchanged packages again in later passes`() {
+        runWorkerTasksImmediately()
+        val app = TestCachedObject(1)
+        val widget = TestCachedObject(2, cn = ComponentName(app.cn.packageName, "FakeWidget"))
+        doAnswer { i ->
+                when (i.arguments[1] as String) {
+                    source(0) -> mapOf(app.cn.packageName to app.getPackageRecord())
+                    source(1) -> mapOf(widget.cn.packageName to widget.getPackageRecord())
+                    else -> null
+                }
+            }
+            .whenever(journal)
+            .getVerifiedPackages(any(), any())
+
+        updateHandlerUnderTest =
+            IconCacheUpdateHandler(baseIconCache, cacheDb, workerHandler, journal)
+        updateHandlerUnderTest.updateIcons(app)
+        updateHandlerUnderTest.updateIcons(widget)
+        updateHandlerUnderTest.finish()
+
+        verify(cacheDb, never()).query(any(), any(), any())
+        verify(baseIconCache, never()).addIconToDBAndMemCache(any<CachedObject>(), any(), any())
+        verify(cacheDb, never()).delete(any(), anyOrNull())
+    }
+
+    @Test
+    fun `verifies rows of later passes without a journal record`() {
+        runWorkerTasksImmediately()
+        val app = TestCachedObject(1)
+        val widget = TestCachedObject(2, cn = ComponentName(app.cn.packageName, "FakeWidget"))
+        // Row of a package which only had widgets, and was removed
+        val removedWidget = TestCachedObject(3)
+        doAnswer { i ->
+                if (i.arguments[1] as String == source(0)) {
+                    mapOf(app.cn.packageName to app.getPackageRecord())
+                } else {
+                    null
+                }
+            }
+            .whenever(journal)
+            .getVerifiedPackages(any(), any())
+        doAnswer { newCursor(app, widget, removedWidget) }
+            .whenever(cacheDb)
+            .query(any(), any(), any())
+
+        updateHandlerUnderTest =
+            IconCacheUpdateHandler(baseIconCache, cacheDb, workerHandler, journal)
+        updateHandlerUnderTest.updateIcons(app)
+        updateHandlerUnderTest.updateIcons(widget)
+        updateHandlerUnderTest.finish()
+
+        verify(baseIconCache, never()).addIconToDBAndMemCache(any<CachedObject>(), any(), any())
+        verifyItemsDeleted(3)
+    }
+
+    @Test
+    fun `falls back to full scan when journal is invalid`() {
+        doReturn(null).whenever(journal).getVerifiedPackages(any())
+        val obj1 = TestCachedObject(1).apply { addToCursor(cursor) }
+        TestCachedObject(2).addToCursor(cursor)
+
+        updateHandlerUnderTest =
+            IconCacheUpdateHandler(baseIconCache, cacheDb, workerHandler, journal)
+        updateHandlerUnderTest.updateIcons(obj1)
+        updateHandlerUnderTest.finish()
+
+        verifyItemsDeleted(2)
+        val records = mapOf(obj1.cn.packageName to obj1.getPackageRecord())
+        verify(journal).write(eq(mapOf(0L to mapOf(source(0) to records))))
+    }
+
+    private fun runWorkerTasksImmediately() {
+        doAnswer { i ->
+                (i.arguments[0] as Runnable).run()
+                true
+            }
+            .whenever(workerHandler)
+            .postAtTime(any(), anyOrNull(), any())
+    }
+
+    private fun newCursor(vararg items: TestCachedObject) =
+        MatrixCursor(
+                arrayOf(
+                    BaseIconCache.COLUMN_ROWID,
+                    BaseIconCache.COLUMN_COMPONENT,
+                    BaseIconCache.COLUMN_FRESHNESS_ID,
+                )
+            )
+            .apply { items.forEach { it.addToCursor(this) } }
+
+    /** Returns the journal source of the pass at [index] using [CachedObjectCachingLogic] */
+    private fun source(index: Int) = "${index}_${CachedObjectCachingLogic.javaClass.name}"
+
     private fun IconCacheUpdateHandler.updateIcons(vararg items: TestCachedObject) {
         updateIcons(items.toList(), CachedObjectCachingLogic) { _, _ -> }
     }
@@ -254,6 +409,8 @@ class TestCachedObject(
     fun addToCursor(cursor: MatrixCursor) =
         cursor.addRow(arrayOf(rowId, cn.flattenToString(), freshnessId))
 
+    fun getPackageRecord() = PackageRecord(cn.className.hashCode(), freshnessId)
+
     fun getPackageKey() =
         BaseIconCache.getPackageKey(cn.packageName, user).componentName.flattenToString()
 }
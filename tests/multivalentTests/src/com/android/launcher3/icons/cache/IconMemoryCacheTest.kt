@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.icons.cache
+
+import android.content.ComponentCallbacks2.TRIM_MEMORY_MODERATE
+import android.content.ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN
+import android.content.ComponentName
+import android.graphics.Bitmap
+import android.os.Process.myUserHandle
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import com.android.launcher3.icons.BitmapInfo
+import com.android.launcher3.icons.cache.BaseIconCache.CacheEntry
+import com.android.launcher3.util.ComponentKey
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class IconMemoryCacheTest {
+
+    private val entryBytes = newEntry().bitmap.icon.allocationByteCount.toLong()
+
+    @Test
+    fun `evicts least recently used entries when over budget`() {
+        val cache = IconMemoryCache(entryBytes * 2)
+        cache[key(1)] = newEntry()
+        cache[key(2)] = newEntry()
+        // Access the first entry, so that the second one becomes the eldest
+        cache[key(1)]
+        cache[key(3)] = newEntry()
+
+        assertNotNull(cache[key(1)])
+        assertNull(cache[key(2)])
+        assertNotNull(cache[key(3)])
+    }
+
+    @Test
+    fun `does not evict pinned entries`() {
+        val cache = IconMemoryCache(entryBytes * 2)
+        cache.setPinnedKeys(setOf(key(1)))
+        cache[key(1)] = newEntry()
+        cache[key(2)] = newEntry()
+        cache[key(3)] = newEntry()
+
+        assertNotNull(cache[key(1)])
+        assertNull(cache[key(2)])
+        assertNotNull(cache[key(3)])
+    }
+
+    @Test
+    fun `unpinned entries can be evicted again`() {
+        val cache = IconMemoryCache(entryBytes * 2)
+        cache.setPinnedKeys(setOf(key(1)))
+        cache[key(1)] = newEntry()
+        cache[key(2)] = newEntry()
+
+        cache.setPinnedKeys(setOf(key(2)))
+        cache[key(3)] = newEntry()
+
+        assertNull(cache[key(1)])
+        assertNotNull(cache[key(2)])
+        assertNotNull(cache[key(3)])
+    }
+
+    @Test
+    fun `does not keep entries when disabled`() {
+        val cache = IconMemoryCache(0)
+        cache[key(1)] = newEntry()
+
+        assertNull(cache[key(1)])
+    }
+
+    @Test
+    fun `downgrades unpinned entries when UI is hidden`() {
+        val cache = IconMemoryCache(entryBytes * 10)
+        cache.setPinnedKeys(setOf(key(1)))
+        cache[key(1)] = newEntry()
+        cache[key(2)] = newEntry()
+
+        cache.onTrimMemory(TRIM_MEMORY_UI_HIDDEN)
+
+        assertFalse(cache[key(1)]!!.bitmap.isLowRes)
+        assertTrue(cache[key(2)]!!.bitmap.isLowRes)
+    }
+
+    @Test
+    fun `evicts unpinned entries on moderate trim`() {
+        val cache = IconMemoryCache(entryBytes * 10)
+        cache.setPinnedKeys(setOf(key(1)))
+        cache[key(1)] = newEntry()
+        cache[key(2)] = newEntry()
+
+        cache.onTrimMemory(TRIM_MEMORY_MODERATE)
+
+        assertNotNull(cache[key(1)])
+        assertNull(cache[key(2)])
+    }
+
+    private fun key(id: Int) =
+        ComponentKey(ComponentName("com.android.fake$id", ".FakeActivity"), myUserHandle())
+
+    private fun newEntry() =
+        CacheEntry().apply {
+            bitmap =
+                BitmapInfo.of(Bitmap.createBitmap(ICON_SIZE, ICON_SIZE, Bitmap.Config.ARGB_8888), 0)
+        }
+
+    companion object {
+        private const val ICON_SIZE = 16
+    }
+}
@@ -14,6 +14,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.io.File;
+import java.io.FileWriter;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.Calendar;
@@ -42,6 +43,7 @@ public class FileLogTest {
         // Clear existing logs
         for (int i = 0; i < FileLog.LOG_DAYS; i++) {
             new File(mTempDir, "log-" + i).delete();
+            new File(mTempDir, "log-" + i + ".gz").delete();
         }
         mTempDir.delete();
     }
@@ -93,4 +95,27 @@ public class FileLogTest {
         // Old logs have been truncated
         assertFalse(writer.toString().contains("hoolalala"));
     }
+
+    @Test
+    public void testPreviousDayCompressed() throws Exception {
+        if (!FileLog.ENABLED) {
+            return;
+        }
+        int previousDay = (Calendar.getInstance().get(Calendar.DAY_OF_YEAR) + FileLog.LOG_DAYS - 1)
+                % FileLog.LOG_DAYS;
+        File previousDayFile = new File(mTempDir, "log-" + previousDay);
+        try (FileWriter out = new FileWriter(previousDayFile)) {
+            out.write("hoolalala\n");
+        }
+
+        FileLog.print("Testing", "abracadabra");
+        StringWriter writer = new StringWriter();
+        assertTrue(FileLog.flushAll(new PrintWriter(writer)));
+
+        // The logs of the previous day are compressed, and still dumped
+        assertFalse(previousDayFile.exists());
+        assertTrue(new File(mTempDir, "log-" + previousDay + ".gz").exists());
+        assertTrue(writer.toString().contains("hoolalala"));
+        assertTrue(writer.toString().contains("abracadabra"));
+    }
 }
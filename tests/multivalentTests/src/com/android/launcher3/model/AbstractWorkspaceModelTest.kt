@@ -106,7 +106,7 @@ abstract class AbstractWorkspaceModelTest {
         mScreenOccupancy.append(screenId, occupancy)
         for (x in 0 until mIdp.numColumns) {
             for (y in 0 until mIdp.numRows) {
-                if (occupancy.cells[x][y]) {
+                if (occupancy.isOccupied(x, y)) {
                     mLayoutBuilder.atWorkspace(x, y, screenId).putApp(TEST_PACKAGE, TEST_ACTIVITY)
                 }
             }
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.model
+
+import android.content.ComponentName
+import android.content.Intent
+import android.os.Process.myUserHandle
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import com.android.launcher3.AppFilter
+import com.android.launcher3.icons.IconCache
+import com.android.launcher3.model.data.AppInfo
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.kotlin.any
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.mock
+
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class AllAppsListTest {
+
+    private val user = myUserHandle()
+    private val appFilter: AppFilter = mock { on { shouldShowApp(any()) } doReturn true }
+    private val allAppsList = AllAppsList(mock<IconCache>(), appFilter)
+
+    @Test
+    fun `findAppInfo returns added apps`() {
+        val app1 = addApp("com.android.fake1", ".Activity1")
+        val app2 = addApp("com.android.fake1", ".Activity2")
+
+        assertThat(allAppsList.findAppInfo(app1.componentName!!, user)).isSameInstanceAs(app1)
+        assertThat(allAppsList.findAppInfo(app2.componentName!!, user)).isSameInstanceAs(app2)
+        assertThat(allAppsList.findAppInfo(component("com.android.fake2", ".Activity1"), user))
+            .isNull()
+    }
+
+    @Test
+    fun `add ignores duplicate components`() {
+        val app = addApp("com.android.fake1", ".Activity1")
+        addApp("com.android.fake1", ".Activity1")
+
+        assertThat(allAppsList.data).containsExactly(app)
+    }
+
+    @Test
+    fun `removePackage only removes apps of that package`() {
+        addApp("com.android.fake1", ".Activity1")
+        addApp("com.android.fake1", ".Activity2")
+        val app3 = addApp("com.android.fake2", ".Activity1")
+
+        allAppsList.removePackage("com.android.fake1", user)
+
+        assertThat(allAppsList.data).containsExactly(app3)
+        assertThat(allAppsList.findAppInfo(component("com.android.fake1", ".Activity1"), user))
+            .isNull()
+        assertThat(allAppsList.findAppInfo(app3.componentName!!, user)).isSameInstanceAs(app3)
+    }
+
+    @Test
+    fun `removePackage keeps the other apps findable in data`() {
+        val app1 = addApp("com.android.fake1", ".Activity1")
+        addApp("com.android.fake2", ".Activity1")
+        val app3 = addApp("com.android.fake3", ".Activity1")
+
+        allAppsList.removePackage("com.android.fake2", user)
+        allAppsList.removePackage("com.android.fake1", user)
+
+        assertThat(allAppsList.data).containsExactly(app3)
+        allAppsList.removePackage("com.android.fake3", user)
+        assertThat(allAppsList.data).isEmpty()
+        assertThat(allAppsList.findAppInfo(app1.componentName!!, user)).isNull()
+    }
+
+    @Test
+    fun `removePackage keeps the order of the other apps`() {
+        val app1 = addApp("com.android.fake1", ".Activity1")
+        addApp("com.android.fake2", ".Activity1")
+        val app3 = addApp("com.android.fake3", ".Activity1")
+        val app4 = addApp("com.android.fake4", ".Activity1")
+
+        allAppsList.removePackage("com.android.fake2", user)
+        assertThat(allAppsList.data).containsExactly(app1, app3, app4).inOrder()
+
+        allAppsList.removePackage("com.android.fake1", user)
+        assertThat(allAppsList.data).containsExactly(app3, app4).inOrder()
+    }
+
+    @Test
+    fun `copyData is reused until apps are added or removed`() {
+        addApp("com.android.fake2", ".Activity1")
+        addApp("com.android.fake1", ".Activity1")
+
+        val data = allAppsList.copyData()
+        assertThat(data.map { it.componentName!!.packageName })
+            .containsExactly("com.android.fake1", "com.android.fake2")
+            .inOrder()
+        allAppsList.setFlags(1, true)
+        assertThat(allAppsList.copyData()).isSameInstanceAs(data)
+
+        addApp("com.android.fake3", ".Activity1")
+        assertThat(allAppsList.copyData()).hasLength(3)
+
+        allAppsList.removePackage("com.android.fake3", user)
+        assertThat(allAppsList.copyData()).hasLength(2)
+    }
+
+    private fun component(packageName: String, className: String) =
+        ComponentName(packageName, packageName + className)
+
+    private fun addApp(packageName: String, className: String): AppInfo {
+        val componentName = component(packageName, className)
+        val app = AppInfo(componentName, "", user, Intent().setComponent(componentName))
+        allAppsList.add(app, null, false)
+        return app
+    }
+}
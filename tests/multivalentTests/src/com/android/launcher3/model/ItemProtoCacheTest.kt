@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.model
+
+import android.content.ComponentName
+import android.content.Intent
+import android.os.Process.myUserHandle
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import com.android.launcher3.LauncherSettings.Favorites.CONTAINER_DESKTOP
+import com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_APPLICATION
+import com.android.launcher3.logger.LauncherAtom
+import com.android.launcher3.model.data.FolderInfo
+import com.android.launcher3.model.data.ItemInfo
+import com.android.launcher3.model.data.WorkspaceItemInfo
+import com.android.launcher3.util.IntSparseArrayMap
+import com.android.launcher3.util.LauncherModelHelper.SandboxModelContext
+import com.google.common.truth.Truth.assertThat
+import org.junit.After
+import org.junit.Test
+import org.junit.runner.RunWith
+
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class ItemProtoCacheTest {
+
+    private val context = SandboxModelContext()
+    private val cache = ItemProtoCache()
+    private val itemsIdMap = IntSparseArrayMap<ItemInfo>()
+
+    @After
+    fun tearDown() {
+        context.destroy()
+    }
+
+    @Test
+    fun `protos of unchanged items are reused`() {
+        addItem(newApp(1, CONTAINER_DESKTOP, cellX = 0))
+        addItem(newApp(2, CONTAINER_DESKTOP, cellX = 1))
+        val firstProtos = collect(expectedBuiltCount = 2)
+
+        val secondProtos = collect(expectedBuiltCount = 0)
+
+        assertThat(secondProtos).hasSize(2)
+        assertThat(secondProtos[0]).isSameInstanceAs(firstProtos[0])
+        assertThat(secondProtos[1]).isSameInstanceAs(firstProtos[1])
+    }
+
+    @Test
+    fun `invalidated item is built again`() {
+        val app = newApp(1, CONTAINER_DESKTOP, cellX = 0)
+        addItem(app)
+        collect(expectedBuiltCount = 1)
+
+        app.cellX = 3
+        cache.invalidate(app)
+        val protos = collect(expectedBuiltCount = 1)
+
+        assertThat(protos.single().containerInfo.workspace.gridX).isEqualTo(3)
+    }
+
+    @Test
+    fun `replaced and removed items are not reused`() {
+        addItem(newApp(1, CONTAINER_DESKTOP, cellX = 0))
+        addItem(newApp(2, CONTAINER_DESKTOP, cellX = 1))
+        collect(expectedBuiltCount = 2)
+
+        addItem(newApp(1, CONTAINER_DESKTOP, cellX = 2))
+        itemsIdMap.remove(2)
+        val protos = collect(expectedBuiltCount = 1)
+
+        assertThat(protos.single().containerInfo.workspace.gridX).isEqualTo(2)
+    }
+
+    @Test
+    fun `items are built again when their folder moves`() {
+        val folder =
+            FolderInfo().apply {
+                id = 10
+                container = CONTAINER_DESKTOP
+                cellX = 0
+            }
+        addItem(folder)
+        addItem(newApp(1, folder.id, cellX = 0))
+        // Folders are always built
+        collect(expectedBuiltCount = 2)
+        collect(expectedBuiltCount = 1)
+
+        folder.cellX = 2
+        val protos = collect(expectedBuiltCount = 2)
+
+        val appProto = protos.single { it.hasApplication() }
+        assertThat(appProto.containerInfo.folder.workspace.gridX).isEqualTo(2)
+    }
+
+    @Test
+    fun `item invalidated while protos are built is not cached`() {
+        val app = newApp(1, CONTAINER_DESKTOP, cellX = 0)
+        addItem(app)
+        val protos = ArrayList<LauncherAtom.ItemInfo>()
+        val pending = ItemProtoCache.PendingProtos()
+        cache.collectProtos(context, itemsIdMap, protos, pending)
+        ItemProtoCache.buildProtos(context, pending, protos)
+
+        app.cellX = 3
+        cache.invalidate(app)
+        cache.cacheProtos(pending)
+
+        assertThat(protos.single().containerInfo.workspace.gridX).isEqualTo(0)
+        assertThat(collect(expectedBuiltCount = 1).single().containerInfo.workspace.gridX)
+            .isEqualTo(3)
+    }
+
+    private fun collect(expectedBuiltCount: Int): List<LauncherAtom.ItemInfo> {
+        val protos = ArrayList<LauncherAtom.ItemInfo>()
+        val pending = ItemProtoCache.PendingProtos()
+        cache.collectProtos(context, itemsIdMap, protos, pending)
+        ItemProtoCache.buildProtos(context, pending, protos)
+        cache.cacheProtos(pending)
+        assertThat(pending.size()).isEqualTo(expectedBuiltCount)
+        assertThat(protos).doesNotContain(null)
+        return protos
+    }
+
+    private fun addItem(item: ItemInfo) {
+        itemsIdMap.put(item.id, item)
+    }
+
+    private fun newApp(id: Int, container: Int, cellX: Int) =
+        WorkspaceItemInfo().apply {
+            this.id = id
+            this.container = container
+            this.cellX = cellX
+            itemType = ITEM_TYPE_APPLICATION
+            intent = Intent().setComponent(ComponentName("com.test", "com.test.App$id"))
+            user = myUserHandle()
+        }
+}
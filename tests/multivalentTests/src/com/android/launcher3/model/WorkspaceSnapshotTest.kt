@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.model
+
+import android.content.ComponentName
+import android.os.Process.myUserHandle
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import androidx.test.platform.app.InstrumentationRegistry
+import com.android.launcher3.InvariantDeviceProfile
+import com.android.launcher3.LauncherSettings.Favorites.CONTAINER_DESKTOP
+import com.android.launcher3.LauncherSettings.Favorites.CONTAINER_HOTSEAT
+import com.android.launcher3.icons.IconCache
+import com.android.launcher3.model.data.AppInfo
+import com.android.launcher3.model.data.ItemInfo
+import com.android.launcher3.model.data.WorkspaceItemInfo
+import com.android.launcher3.pm.UserCache
+import com.android.launcher3.util.IntArray
+import com.android.launcher3.util.IntSet
+import com.google.common.truth.Truth.assertThat
+import java.io.File
+import org.junit.After
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.kotlin.any
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.mock
+
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class WorkspaceSnapshotTest {
+
+    private val file =
+        File(InstrumentationRegistry.getInstrumentation().targetContext.cacheDir, "snapshot_test")
+    private val idp = mock<InvariantDeviceProfile>().apply {
+        numColumns = 4
+        numRows = 5
+    }
+    private val userCache: UserCache = mock {
+        on { getSerialNumberForUser(any()) } doReturn 0L
+        on { getUserForSerialNumber(0L) } doReturn myUserHandle()
+    }
+
+    @After
+    fun tearDown() {
+        file.delete()
+    }
+
+    @Test
+    fun `items are read back from the snapshot`() {
+        newSnapshot()
+            .writeToFile(
+                DB_NAME,
+                IntArray.wrap(0, 1),
+                IntSet.wrap(0),
+                listOf(
+                    newItem(1, CONTAINER_HOTSEAT, 0, "Phone"),
+                    newItem(2, CONTAINER_DESKTOP, 0, "Mail"),
+                ),
+            )
+
+        val snapshot = newSnapshot().read(DB_NAME)!!
+
+        assertThat(snapshot.orderedScreenIds.toArray()).asList().containsExactly(0, 1).inOrder()
+        assertThat(snapshot.currentScreenIds.contains(0)).isTrue()
+        assertThat(snapshot.items.map { it.id }).containsExactly(1, 2).inOrder()
+        val item = snapshot.items[1]
+        assertThat(item.container).isEqualTo(CONTAINER_DESKTOP)
+        assertThat(item.cellX).isEqualTo(2)
+        assertThat(item.title.toString()).isEqualTo("Mail")
+        assertThat(item.user).isEqualTo(myUserHandle())
+        assertThat(item.targetComponent).isEqualTo(component(2))
+    }
+
+    @Test
+    fun `snapshot is only read once per process`() {
+        newSnapshot().writeToFile(DB_NAME, IntArray.wrap(0), IntSet.wrap(0), listOf())
+        val snapshot = newSnapshot()
+
+        assertThat(snapshot.read(DB_NAME)).isNotNull()
+        assertThat(snapshot.read(DB_NAME)).isNull()
+    }
+
+    @Test
+    fun `snapshot of a different db or grid is ignored`() {
+        newSnapshot().writeToFile(DB_NAME, IntArray.wrap(0), IntSet.wrap(0), listOf())
+        assertThat(newSnapshot().read("other.db")).isNull()
+
+        newSnapshot().writeToFile(DB_NAME, IntArray.wrap(0), IntSet.wrap(0), listOf())
+        idp.numColumns = 5
+        assertThat(newSnapshot().read(DB_NAME)).isNull()
+        assertThat(file.exists()).isFalse()
+    }
+
+    @Test
+    fun `truncated snapshot is ignored`() {
+        newSnapshot()
+            .writeToFile(
+                DB_NAME,
+                IntArray.wrap(0),
+                IntSet.wrap(0),
+                listOf(newItem(1, CONTAINER_HOTSEAT, 0, "Phone")),
+            )
+        file.writeBytes(file.readBytes().copyOf(file.length().toInt() - 4))
+
+        assertThat(newSnapshot().read(DB_NAME)).isNull()
+        assertThat(file.exists()).isFalse()
+    }
+
+    private fun newSnapshot() = WorkspaceSnapshot(idp, userCache, mock<IconCache>(), file)
+
+    private fun newItem(id: Int, container: Int, screenId: Int, title: String): ItemInfo =
+        WorkspaceItemInfo().apply {
+            this.id = id
+            this.container = container
+            this.screenId = screenId
+            this.title = title
+            cellX = id
+            user = myUserHandle()
+            intent = AppInfo.makeLaunchIntent(component(id))
+        }
+
+    private fun component(id: Int) =
+        ComponentName("com.android.fake$id", "com.android.fake$id.Activity")
+
+    companion object {
+        private const val DB_NAME = "launcher_4_by_5.db"
+    }
+}
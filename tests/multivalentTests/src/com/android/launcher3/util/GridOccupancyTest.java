@@ -2,6 +2,7 @@ package com.android.launcher3.util;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 import androidx.test.ext.junit.runners.AndroidJUnit4;
@@ -10,6 +11,8 @@ import androidx.test.filters.SmallTest;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.Random;
+
 /**
  * Unit tests for {@link GridOccupancy}
  */
@@ -55,13 +58,161 @@ public class GridOccupancyTest {
         assertFalse(grid.isRegionVacant(0, 0, 2, 1));
     }
 
+    @Test
+    public void testFindVacantCellFromPosition() {
+        GridOccupancy grid = initGrid(4,
+                1, 1, 1, 0, 0,
+                0, 0, 1, 1, 0,
+                0, 0, 0, 0, 0,
+                1, 1, 0, 0, 0
+        );
+
+        int[] vacant = new int[2];
+        assertTrue(grid.findVacantCell(vacant, 4, 0, 1, 1));
+        assertEquals(vacant[0], 4);
+        assertEquals(vacant[1], 0);
+
+        // Next rows are searched from the first column
+        assertTrue(grid.findVacantCell(vacant, 4, 1, 2, 1));
+        assertEquals(vacant[0], 0);
+        assertEquals(vacant[1], 2);
+
+        assertFalse(grid.findVacantCell(vacant, 3, 2, 3, 2));
+    }
+
+    @Test
+    public void testGetVacantOrigins() {
+        GridOccupancy grid = initGrid(2,
+                0, 0, 1, 0, 0, 0,
+                0, 0, 0, 0, 1, 0
+        );
+
+        assertEquals(0b111011, grid.getVacantOrigins(0, 1, 1));
+        assertEquals(0b011001, grid.getVacantOrigins(0, 2, 1));
+        assertEquals(0b000001, grid.getVacantOrigins(0, 2, 2));
+        assertEquals(0, grid.getVacantOrigins(0, 3, 2));
+        assertEquals(0, grid.getVacantOrigins(1, 1, 2));
+    }
+
+    @Test
+    public void testIsRegionVacantWithShape() {
+        GridOccupancy grid = initGrid(2,
+                1, 0, 0,
+                0, 1, 0
+        );
+        GridOccupancy shape = initGrid(2,
+                0, 1,
+                1, 0
+        );
+
+        assertTrue(grid.isRegionVacant(0, 0, shape));
+        assertFalse(grid.isRegionVacant(1, 0, shape));
+        assertFalse(grid.isRegionVacant(2, 0, shape));
+    }
+
+    @Test
+    public void testWideGrid() {
+        GridOccupancy grid = new GridOccupancy(GridOccupancy.MAX_COUNT_X, 2);
+        grid.markCells(0, 0, GridOccupancy.MAX_COUNT_X - 1, 1, true);
+
+        int[] vacant = new int[2];
+        assertTrue(grid.findVacantCell(vacant, 1, 1));
+        assertEquals(vacant[0], GridOccupancy.MAX_COUNT_X - 1);
+        assertEquals(vacant[1], 0);
+        assertTrue(grid.isRegionVacant(0, 1, GridOccupancy.MAX_COUNT_X, 1));
+        assertFalse(grid.isRegionVacant(0, 0, GridOccupancy.MAX_COUNT_X, 2));
+
+        grid.clear();
+        assertTrue(grid.isRegionVacant(0, 0, GridOccupancy.MAX_COUNT_X, 2));
+    }
+
+    @Test
+    public void testGetOccupiedCount() {
+        GridOccupancy grid = initGrid(2,
+                1, 0, 1, 1,
+                0, 0, 0, 1
+        );
+
+        assertEquals(3, grid.getOccupiedCount(0, 0, 4));
+        assertEquals(1, grid.getOccupiedCount(0, 0, 2));
+        assertEquals(2, grid.getOccupiedCount(1, 0, 10));
+        assertEquals(1, grid.getOccupiedCount(-1, 1, 5));
+        assertEquals(0, grid.getOccupiedCount(0, 2, 4));
+
+        GridOccupancy copy = new GridOccupancy(4, 2);
+        grid.copyTo(copy);
+        assertEquals(grid, copy);
+        copy.markCells(1, 1, 1, 1, true);
+        assertNotEquals(grid, copy);
+    }
+
+    @Test
+    public void testFindVacantCellMatchesCellByCellSearch() {
+        Random random = new Random(0);
+        int[] vacant = new int[2];
+        for (int[] size : new int[][] {{4, 5}, {6, 5}, {8, 8}}) {
+            int countX = size[0];
+            int countY = size[1];
+            for (int i = 0; i < 50; i++) {
+                GridOccupancy grid = new GridOccupancy(countX, countY);
+                for (int x = 0; x < countX; x++) {
+                    for (int y = 0; y < countY; y++) {
+                        grid.markCells(x, y, 1, 1, random.nextInt(3) == 0);
+                    }
+                }
+                int startX = random.nextInt(countX);
+                int startY = random.nextInt(countY);
+                for (int spanX = 1; spanX <= countX; spanX++) {
+                    for (int spanY = 1; spanY <= countY; spanY++) {
+                        int[] expected = findVacantCellByCell(grid, countX, countY, startX,
+                                startY, spanX, spanY);
+                        assertEquals(expected != null,
+                                grid.findVacantCell(vacant, startX, startY, spanX, spanY));
+                        if (expected != null) {
+                            assertEquals(expected[0], vacant[0]);
+                            assertEquals(expected[1], vacant[1]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the first vacant origin from the start position in reading order, testing every
+     * cell, or null if the span doesn't fit
+     */
+    private static int[] findVacantCellByCell(GridOccupancy grid, int countX, int countY,
+            int startX, int startY, int spanX, int spanY) {
+        for (int y = startY; y + spanY <= countY; y++) {
+            for (int x = y == startY ? startX : 0; x + spanX <= countX; x++) {
+                if (isVacantByCell(grid, x, y, spanX, spanY)) {
+                    return new int[] {x, y};
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isVacantByCell(GridOccupancy grid, int x, int y, int spanX,
+            int spanY) {
+        for (int i = x; i < x + spanX; i++) {
+            for (int j = y; j < y + spanY; j++) {
+                if (grid.isOccupied(i, j)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     private GridOccupancy initGrid(int rows, int... cells) {
         int cols = cells.length / rows;
         int i = 0;
         GridOccupancy grid = new GridOccupancy(cols, rows);
         for (int y = 0; y < rows; y++) {
             for (int x = 0; x < cols; x++) {
-                grid.cells[x][y] = cells[i] != 0;
+                grid.markCells(x, y, 1, 1, cells[i] != 0);
                 i++;
             }
         }
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.widget
+
+import android.appwidget.AppWidgetProviderInfo
+import android.content.ComponentName
+import android.content.pm.ActivityInfo
+import android.content.pm.ApplicationInfo
+import android.graphics.Bitmap
+import android.os.Process.myUserHandle
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import com.android.launcher3.util.Executors.ORDERED_BG_EXECUTOR
+import com.android.launcher3.util.LauncherModelHelper.SandboxModelContext
+import com.android.launcher3.util.TestUtil
+import com.google.common.truth.Truth.assertThat
+import java.io.File
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+@SmallTest
+@RunWith(AndroidJUnit4::class)
+class WidgetPreviewCacheTest {
+
+    private lateinit var context: SandboxModelContext
+    private lateinit var cacheDir: File
+    private lateinit var cache: WidgetPreviewCache
+    private lateinit var providerInfo: LauncherAppWidgetProviderInfo
+
+    @Before
+    fun setup() {
+        context = SandboxModelContext()
+        cacheDir = File(context.cacheDir, "widget_preview_cache_test")
+        cache = WidgetPreviewCache(context, cacheDir, 1024 * 1024)
+        providerInfo = newProviderInfo("com.android.fake", "/data/app/fake-1/base.apk")
+    }
+
+    @After
+    fun tearDown() {
+        cacheDir.deleteRecursively()
+        context.destroy()
+    }
+
+    @Test
+    fun `key changes with size and package version`() {
+        val key = cache.getKey(providerInfo, 100, 100)
+
+        assertThat(key).isNotNull()
+        assertThat(cache.getKey(providerInfo, 100, 100)).isEqualTo(key)
+        assertThat(cache.getKey(providerInfo, 200, 100)).isNotEqualTo(key)
+        val updatedInfo = newProviderInfo("com.android.fake", "/data/app/fake-2/base.apk")
+        assertThat(cache.getKey(updatedInfo, 100, 100)).isNotEqualTo(key)
+    }
+
+    @Test
+    fun `key is a file name of the package`() {
+        val info = newProviderInfo("com.android.fake", "/data/app/fake|1/base.apk")
+
+        val key = cache.getKey(info, 100, 100)!!
+
+        assertThat(key).startsWith("com.android.fake-")
+        assertThat(key).doesNotContain("/")
+        assertThat(key).doesNotContain("|")
+    }
+
+    @Test
+    fun `disk cache is trimmed once it grows too large`() {
+        for (width in 1..301) {
+            cache.put(cache.getKey(providerInfo, width, 100)!!, newBitmap())
+        }
+        TestUtil.runOnExecutorSync(ORDERED_BG_EXECUTOR) {}
+
+        assertThat(cacheDir.list()!!.size).isAtMost(300)
+    }
+
+    @Test
+    fun `returns previews from memory`() {
+        val key = cache.getKey(providerInfo, 100, 100)!!
+        val preview = newBitmap()
+        cache.put(key, preview)
+
+        assertThat(cache.get(key)).isSameInstanceAs(preview)
+    }
+
+    @Test
+    fun `reads previews from disk once evicted from memory`() {
+        val key = cache.getKey(providerInfo, 100, 100)!!
+        cache.put(key, newBitmap())
+        TestUtil.runOnExecutorSync(ORDERED_BG_EXECUTOR) {}
+        cache.clearMemory()
+
+        assertThat(cache.get(key)).isNotNull()
+        // A new instance, as after a process restart, reads the same file
+        assertThat(WidgetPreviewCache(context, cacheDir, 1024 * 1024).get(key)).isNotNull()
+    }
+
+    @Test
+    fun `removePackages drops memory and disk entries of the package`() {
+        val key = cache.getKey(providerInfo, 100, 100)!!
+        val otherInfo = newProviderInfo("com.android.other", "/data/app/other/base.apk")
+        val otherKey = cache.getKey(otherInfo, 100, 100)!!
+        cache.put(key, newBitmap())
+        cache.put(otherKey, newBitmap())
+        TestUtil.runOnExecutorSync(ORDERED_BG_EXECUTOR) {}
+
+        cache.removePackages(setOf("com.android.fake"), myUserHandle())
+        TestUtil.runOnExecutorSync(ORDERED_BG_EXECUTOR) {}
+        cache.clearMemory()
+
+        assertThat(cache.get(key)).isNull()
+        assertThat(cache.get(otherKey)).isNotNull()
+    }
+
+    private fun newProviderInfo(packageName: String, sourceDir: String) =
+        AppWidgetProviderInfo()
+            .apply {
+                provider = ComponentName(packageName, "$packageName.Provider")
+                providerInfo =
+                    ActivityInfo().apply {
+                        applicationInfo = ApplicationInfo().apply { this.sourceDir = sourceDir }
+                    }
+            }
+            .let { LauncherAppWidgetProviderInfo.fromProviderInfo(context, it) }
+
+    private fun newBitmap() = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888)
+}
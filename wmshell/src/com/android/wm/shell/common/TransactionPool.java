@@ -16,26 +16,100 @@
 
 package com.android.wm.shell.common;
 
-import android.util.Pools;
+import android.annotation.NonNull;
 import android.view.SurfaceControl;
 
+import com.android.internal.annotations.VisibleForTesting;
+import com.android.wm.shell.sysui.ShellCommandHandler;
+
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Provides a synchronized pool of {@link SurfaceControl.Transaction}s to minimize allocations.
+ * <p>
+ * The pool keeps as many transactions as were used at the same time at the peak, within bounds,
+ * so that transitions using many transactions don't allocate them each time. Threads which use
+ * the pool the most can also {@link #enableThreadCache() enable a cache} of a few transactions,
+ * which are acquired and released without synchronization.
  */
 public class TransactionPool {
-    private final Pools.SynchronizedPool<SurfaceControl.Transaction> mTransactionPool =
-            new Pools.SynchronizedPool<>(4);
+    private static final String TAG = "TransactionPool";
+
+    /** The minimum and maximum number of transactions kept in the shared pool. */
+    @VisibleForTesting
+    static final int MIN_POOL_SIZE = 4;
+    @VisibleForTesting
+    static final int MAX_POOL_SIZE = 16;
+
+    /** The number of transactions kept in the cache of a thread. */
+    @VisibleForTesting
+    static final int THREAD_CACHE_SIZE = 2;
+
+    private final ArrayDeque<SurfaceControl.Transaction> mTransactionPool = new ArrayDeque<>();
+    private final ThreadLocal<ThreadCache> mThreadCache = new ThreadLocal<>();
+
+    /** The number of transactions acquired and not yet released. */
+    private final AtomicInteger mAcquiredCount = new AtomicInteger();
+    /** The highest number of transactions acquired and not yet released. */
+    private final AtomicInteger mPeakAcquiredCount = new AtomicInteger();
+
+    private final AtomicLong mThreadCacheHits = new AtomicLong();
+    private final AtomicLong mPoolHits = new AtomicLong();
+    private final AtomicLong mAllocations = new AtomicLong();
+    private final AtomicLong mClosed = new AtomicLong();
 
     public TransactionPool() {
     }
 
+    /**
+     * Creates a pool which caches transactions for the shell main and animation threads, and
+     * reports its usage in the shell dump.
+     */
+    public TransactionPool(ShellCommandHandler shellCommandHandler, ShellExecutor mainExecutor,
+            ShellExecutor animExecutor) {
+        shellCommandHandler.addDumpCallback(this::dump, this);
+        mainExecutor.execute(this::enableThreadCache);
+        animExecutor.execute(this::enableThreadCache);
+    }
+
+    /**
+     * Enables a cache of transactions for the calling thread, to acquire and release them without
+     * synchronization.
+     */
+    public void enableThreadCache() {
+        if (mThreadCache.get() == null) {
+            mThreadCache.set(new ThreadCache());
+        }
+    }
+
     /** Gets a transaction from the pool. */
     public SurfaceControl.Transaction acquire() {
-        SurfaceControl.Transaction t = mTransactionPool.acquire();
-        if (t == null) {
-            return new SurfaceControl.Transaction();
+        final int acquiredCount = mAcquiredCount.incrementAndGet();
+        if (acquiredCount > mPeakAcquiredCount.get()) {
+            mPeakAcquiredCount.accumulateAndGet(acquiredCount, Math::max);
+        }
+
+        final ThreadCache threadCache = mThreadCache.get();
+        if (threadCache != null) {
+            final SurfaceControl.Transaction t = threadCache.acquire();
+            if (t != null) {
+                mThreadCacheHits.incrementAndGet();
+                return t;
+            }
         }
-        return t;
+        final SurfaceControl.Transaction t;
+        synchronized (mTransactionPool) {
+            t = mTransactionPool.pollLast();
+        }
+        if (t != null) {
+            mPoolHits.incrementAndGet();
+            return t;
+        }
+        mAllocations.incrementAndGet();
+        return new SurfaceControl.Transaction();
     }
 
     /**
@@ -43,8 +117,102 @@ public class TransactionPool {
      * returning to pool.
      */
     public void release(SurfaceControl.Transaction t) {
-        if (!mTransactionPool.release(t)) {
-            t.close();
+        // Transactions which were not acquired from the pool may be released to it too.
+        mAcquiredCount.updateAndGet(count -> Math.max(count - 1, 0));
+
+        final ThreadCache threadCache = mThreadCache.get();
+        if (threadCache != null && threadCache.release(t)) {
+            return;
+        }
+        synchronized (mTransactionPool) {
+            if (mTransactionPool.contains(t)) {
+                throw new IllegalStateException("Already in the pool!");
+            }
+            if (mTransactionPool.size() < getPoolSize()) {
+                mTransactionPool.addLast(t);
+                return;
+            }
+        }
+        mClosed.incrementAndGet();
+        t.close();
+    }
+
+    /**
+     * Returns the maximum number of transactions kept in the shared pool.
+     */
+    @VisibleForTesting
+    int getPoolSize() {
+        return Math.min(Math.max(mPeakAcquiredCount.get(), MIN_POOL_SIZE), MAX_POOL_SIZE);
+    }
+
+    /**
+     * Dumps the usage of the pool.
+     */
+    public void dump(@NonNull PrintWriter pw, String prefix) {
+        final String innerPrefix = prefix + "  ";
+        final int pooledCount;
+        synchronized (mTransactionPool) {
+            pooledCount = mTransactionPool.size();
+        }
+        pw.println(prefix + TAG);
+        pw.println(innerPrefix + "poolSize=" + getPoolSize() + " pooled=" + pooledCount);
+        pw.println(innerPrefix + "acquired=" + mAcquiredCount.get()
+                + " peakAcquired=" + mPeakAcquiredCount.get());
+        pw.println(innerPrefix + "threadCacheHits=" + mThreadCacheHits.get()
+                + " poolHits=" + mPoolHits.get()
+                + " allocations=" + mAllocations.get()
+                + " closed=" + mClosed.get());
+    }
+
+    @VisibleForTesting
+    long getThreadCacheHits() {
+        return mThreadCacheHits.get();
+    }
+
+    @VisibleForTesting
+    long getPoolHits() {
+        return mPoolHits.get();
+    }
+
+    @VisibleForTesting
+    long getAllocations() {
+        return mAllocations.get();
+    }
+
+    @VisibleForTesting
+    long getClosed() {
+        return mClosed.get();
+    }
+
+    /**
+     * Transactions kept for a single thread.
+     */
+    private static class ThreadCache {
+        private final SurfaceControl.Transaction[] mTransactions =
+                new SurfaceControl.Transaction[THREAD_CACHE_SIZE];
+        private int mSize;
+
+        SurfaceControl.Transaction acquire() {
+            if (mSize == 0) {
+                return null;
+            }
+            final SurfaceControl.Transaction t = mTransactions[--mSize];
+            mTransactions[mSize] = null;
+            return t;
+        }
+
+        /** Returns whether the transaction was kept in the cache. */
+        boolean release(SurfaceControl.Transaction t) {
+            for (int i = 0; i < mSize; i++) {
+                if (mTransactions[i] == t) {
+                    throw new IllegalStateException("Already in the pool!");
+                }
+            }
+            if (mSize == THREAD_CACHE_SIZE) {
+                return false;
+            }
+            mTransactions[mSize++] = t;
+            return true;
         }
     }
 }
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.wm.shell.common.pip;
+
+import android.graphics.Rect;
+import android.util.ArraySet;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Spatial index of keep clear areas, which buckets the areas in a uniform grid to find the ones
+ * intersecting a rect without testing all of them.
+ * <p>
+ * The index is only rebuilt when the areas change, and doesn't allocate once it has grown to the
+ * number of areas. It is not thread safe.
+ */
+class KeepClearAreaIndex {
+
+    /** The number of cells of the grid in each dimension. */
+    private static final int GRID_SIZE = 8;
+
+    private Rect[] mAreas = new Rect[0];
+    /** The areas with the padding added, which are bucketed in the grid. */
+    private Rect[] mPaddedAreas = new Rect[0];
+    private int mAreaCount;
+    private int mPadding;
+    private boolean mHasChanged;
+
+    /** The bounds of the grid, containing all the padded areas. */
+    private final Rect mGridBounds = new Rect();
+    private int mCellWidth;
+    private int mCellHeight;
+    /** The indices of the areas intersecting each cell of the grid. */
+    private final int[][] mCellAreas = new int[GRID_SIZE * GRID_SIZE][];
+    private final int[] mCellAreaCounts = new int[GRID_SIZE * GRID_SIZE];
+
+    /** The last query which tested each area, to test the areas in several cells only once. */
+    private int[] mAreaQueryIds = new int[0];
+    private int mQueryId;
+
+    KeepClearAreaIndex() {
+        Arrays.fill(mCellAreas, new int[0]);
+    }
+
+    /**
+     * Updates the indexed areas, which is a no-op if they did not change.
+     */
+    void update(Set<Rect> restrictedAreas, Set<Rect> unrestrictedAreas, int padding) {
+        final int areaCount = restrictedAreas.size() + unrestrictedAreas.size();
+        ensureCapacity(areaCount);
+        mHasChanged = areaCount != mAreaCount || padding != mPadding;
+        setAreas(unrestrictedAreas, setAreas(restrictedAreas, 0));
+        if (!mHasChanged) {
+            return;
+        }
+        mAreaCount = areaCount;
+        mPadding = padding;
+        rebuild();
+    }
+
+    /** Returns the number of indexed areas. */
+    int getAreaCount() {
+        return mAreaCount;
+    }
+
+    /** Returns the indexed area at {@code index} with the padding added. */
+    Rect getPaddedArea(int index) {
+        return mPaddedAreas[index];
+    }
+
+    /** Returns whether {@code rect} intersects any area, without the padding. */
+    boolean intersectsArea(Rect rect) {
+        return intersects(rect.left, rect.top, rect.right, rect.bottom, mAreas);
+    }
+
+    /** Returns whether the given rect intersects any area with the padding added. */
+    boolean intersectsPaddedArea(int left, int top, int right, int bottom) {
+        return intersects(left, top, right, bottom, mPaddedAreas);
+    }
+
+    private boolean intersects(int left, int top, int right, int bottom, Rect[] areas) {
+        if (mAreaCount == 0 || !mGridBounds.intersects(left, top, right, bottom)) {
+            return false;
+        }
+        if (++mQueryId == Integer.MAX_VALUE) {
+            Arrays.fill(mAreaQueryIds, 0);
+            mQueryId = 1;
+        }
+        final int startCellX = getCellX(left);
+        final int endCellX = getCellX(right - 1);
+        final int startCellY = getCellY(top);
+        final int endCellY = getCellY(bottom - 1);
+        for (int cellY = startCellY; cellY <= endCellY; cellY++) {
+            for (int cellX = startCellX; cellX <= endCellX; cellX++) {
+                final int cell = cellY * GRID_SIZE + cellX;
+                final int[] cellAreas = mCellAreas[cell];
+                for (int i = mCellAreaCounts[cell] - 1; i >= 0; i--) {
+                    final int index = cellAreas[i];
+                    if (mAreaQueryIds[index] == mQueryId) {
+                        continue;
+                    }
+                    mAreaQueryIds[index] = mQueryId;
+                    if (areas[index].intersects(left, top, right, bottom)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private int setAreas(Set<Rect> areas, int index) {
+        // Avoids allocating an iterator for the ArraySet used by PipBoundsState.
+        if (areas.isEmpty()) {
+            return index;
+        } else if (areas instanceof ArraySet) {
+            final ArraySet<Rect> arraySet = (ArraySet<Rect>) areas;
+            for (int i = 0; i < arraySet.size(); i++) {
+                setArea(index++, arraySet.valueAt(i));
+            }
+        } else {
+            for (Rect area : areas) {
+                setArea(index++, area);
+            }
+        }
+        return index;
+    }
+
+    private void setArea(int index, Rect area) {
+        if (!mAreas[index].equals(area)) {
+            mAreas[index].set(area);
+            mHasChanged = true;
+        }
+    }
+
+    private void ensureCapacity(int areaCount) {
+        if (areaCount <= mAreas.length) {
+            return;
+        }
+        final int capacity = Math.max(areaCount, mAreas.length * 2);
+        final int oldCapacity = mAreas.length;
+        mAreas = Arrays.copyOf(mAreas, capacity);
+        mPaddedAreas = Arrays.copyOf(mPaddedAreas, capacity);
+        for (int i = oldCapacity; i < capacity; i++) {
+            mAreas[i] = new Rect();
+            mPaddedAreas[i] = new Rect();
+        }
+        mAreaQueryIds = new int[capacity];
+        mQueryId = 0;
+    }
+
+    private void rebuild() {
+        mGridBounds.setEmpty();
+        for (int i = 0; i < mAreaCount; i++) {
+            mPaddedAreas[i].set(mAreas[i]);
+            mPaddedAreas[i].inset(-mPadding, -mPadding);
+            mGridBounds.union(mPaddedAreas[i]);
+        }
+        mCellWidth = Math.max(1, (mGridBounds.width() + GRID_SIZE - 1) / GRID_SIZE);
+        mCellHeight = Math.max(1, (mGridBounds.height() + GRID_SIZE - 1) / GRID_SIZE);
+        Arrays.fill(mCellAreaCounts, 0);
+        for (int i = 0; i < mAreaCount; i++) {
+            final Rect area = mPaddedAreas[i];
+            if (area.isEmpty()) {
+                continue;
+            }
+            for (int cellY = getCellY(area.top); cellY <= getCellY(area.bottom - 1); cellY++) {
+                for (int cellX = getCellX(area.left); cellX <= getCellX(area.right - 1);
+                        cellX++) {
+                    addToCell(cellY * GRID_SIZE + cellX, i);
+                }
+            }
+        }
+    }
+
+    private void addToCell(int cell, int index) {
+        final int count = mCellAreaCounts[cell];
+        if (count == mCellAreas[cell].length) {
+            mCellAreas[cell] = Arrays.copyOf(mCellAreas[cell], Math.max(4, count * 2));
+        }
+        mCellAreas[cell][count] = index;
+        mCellAreaCounts[cell] = count + 1;
+    }
+
+    private int getCellX(int x) {
+        return Math.max(0, Math.min((x - mGridBounds.left) / mCellWidth, GRID_SIZE - 1));
+    }
+
+    private int getCellY(int y) {
+        return Math.max(0, Math.min((y - mGridBounds.top) / mCellHeight, GRID_SIZE - 1));
+    }
+}
@@ -20,11 +20,11 @@ import android.content.Context;
 import android.content.res.Resources;
 import android.graphics.Rect;
 import android.os.SystemProperties;
-import android.util.ArraySet;
 import android.view.Gravity;
 
 import com.android.wm.shell.R;
 
+import java.util.Arrays;
 import java.util.Set;
 
 /**
@@ -39,6 +39,11 @@ public class PhonePipKeepClearAlgorithm implements PipKeepClearAlgorithmInterfac
     protected int mKeepClearAreasPadding;
     private int mImeOffset;
 
+    private final KeepClearAreaIndex mKeepClearAreaIndex = new KeepClearAreaIndex();
+    // Candidate positions of PiP on each axis, reused across calls
+    private long[] mXCandidates = new long[0];
+    private long[] mYCandidates = new long[0];
+
     public PhonePipKeepClearAlgorithm(Context context) {
         reloadResources(context);
     }
@@ -114,56 +119,93 @@ public class PhonePipKeepClearAlgorithm implements PipKeepClearAlgorithmInterfac
         if (restrictedKeepClearAreas.isEmpty() && unrestrictedKeepClearAreas.isEmpty()) {
             return defaultBounds;
         }
-        Set<Rect> keepClearAreas = new ArraySet<>();
-        if (!restrictedKeepClearAreas.isEmpty()) {
-            keepClearAreas.addAll(restrictedKeepClearAreas);
-        }
-        if (!unrestrictedKeepClearAreas.isEmpty()) {
-            keepClearAreas.addAll(unrestrictedKeepClearAreas);
-        }
+        mKeepClearAreaIndex.update(restrictedKeepClearAreas, unrestrictedKeepClearAreas,
+                mKeepClearAreasPadding);
         Rect outBounds = new Rect(defaultBounds);
-        for (Rect r : keepClearAreas) {
-            Rect tmpRect = new Rect(r);
-            // add extra padding to the keep clear area
-            tmpRect.inset(-mKeepClearAreasPadding, -mKeepClearAreasPadding);
-            if (Rect.intersects(r, outBounds)) {
-                if (tryOffsetUp(outBounds, tmpRect, allowedBounds)) continue;
-                if (tryOffsetLeft(outBounds, tmpRect, allowedBounds)) continue;
-                if (tryOffsetDown(outBounds, tmpRect, allowedBounds)) continue;
-                if (tryOffsetRight(outBounds, tmpRect, allowedBounds)) continue;
-            }
+        if (mKeepClearAreaIndex.intersectsArea(outBounds)) {
+            moveToNearestFreePosition(outBounds, allowedBounds);
         }
         return outBounds;
     }
 
-    private static boolean tryOffsetLeft(Rect rectToMove, Rect rectToAvoid, Rect allowedBounds) {
-        return tryOffset(rectToMove, rectToAvoid, allowedBounds,
-                rectToAvoid.left - rectToMove.right, 0);
-    }
-
-    private static boolean tryOffsetRight(Rect rectToMove, Rect rectToAvoid, Rect allowedBounds) {
-        return tryOffset(rectToMove, rectToAvoid, allowedBounds,
-                rectToAvoid.right - rectToMove.left, 0);
-    }
-
-    private static boolean tryOffsetUp(Rect rectToMove, Rect rectToAvoid, Rect allowedBounds) {
-        return tryOffset(rectToMove, rectToAvoid, allowedBounds,
-                0, rectToAvoid.top - rectToMove.bottom);
-    }
+    /**
+     * Moves {@code bounds} to the nearest position within {@code allowedBounds} which does not
+     * intersect any keep clear area with the padding added, or leaves it unchanged if there is no
+     * such position.
+     * <p>
+     * The free positions are delimited by the edges of the allowed bounds and of the areas, so the
+     * nearest one is either at the current position or against some of these edges on each axis.
+     * These candidates are tested by increasing distance, until a free position is found.
+     */
+    private void moveToNearestFreePosition(Rect bounds, Rect allowedBounds) {
+        final int width = bounds.width();
+        final int height = bounds.height();
+        final int areaCount = mKeepClearAreaIndex.getAreaCount();
+        if (mXCandidates.length < 2 * areaCount + 3) {
+            mXCandidates = new long[2 * (2 * areaCount + 3)];
+            mYCandidates = new long[mXCandidates.length];
+        }
 
-    private static boolean tryOffsetDown(Rect rectToMove, Rect rectToAvoid, Rect allowedBounds) {
-        return tryOffset(rectToMove, rectToAvoid, allowedBounds,
-                0, rectToAvoid.bottom - rectToMove.top);
+        int xCount = 0;
+        int yCount = 0;
+        final int minX = allowedBounds.left;
+        final int maxX = allowedBounds.right - width;
+        final int minY = allowedBounds.top;
+        final int maxY = allowedBounds.bottom - height;
+        xCount = addCandidate(mXCandidates, xCount, bounds.left, bounds.left, minX, maxX);
+        xCount = addCandidate(mXCandidates, xCount, minX, bounds.left, minX, maxX);
+        xCount = addCandidate(mXCandidates, xCount, maxX, bounds.left, minX, maxX);
+        yCount = addCandidate(mYCandidates, yCount, bounds.top, bounds.top, minY, maxY);
+        yCount = addCandidate(mYCandidates, yCount, minY, bounds.top, minY, maxY);
+        yCount = addCandidate(mYCandidates, yCount, maxY, bounds.top, minY, maxY);
+        for (int i = 0; i < areaCount; i++) {
+            final Rect area = mKeepClearAreaIndex.getPaddedArea(i);
+            xCount = addCandidate(mXCandidates, xCount, area.left - width, bounds.left, minX, maxX);
+            xCount = addCandidate(mXCandidates, xCount, area.right, bounds.left, minX, maxX);
+            yCount = addCandidate(mYCandidates, yCount, area.top - height, bounds.top, minY, maxY);
+            yCount = addCandidate(mYCandidates, yCount, area.bottom, bounds.top, minY, maxY);
+        }
+        Arrays.sort(mXCandidates, 0, xCount);
+        Arrays.sort(mYCandidates, 0, yCount);
+
+        long minDistance = Long.MAX_VALUE;
+        int left = bounds.left;
+        int top = bounds.top;
+        for (int i = 0; i < xCount; i++) {
+            final long dx = mXCandidates[i] >>> 32;
+            if (dx * dx >= minDistance) {
+                break;
+            }
+            final int x = (int) mXCandidates[i];
+            for (int j = 0; j < yCount; j++) {
+                final long dy = mYCandidates[j] >>> 32;
+                final long distance = dx * dx + dy * dy;
+                if (distance >= minDistance) {
+                    break;
+                }
+                final int y = (int) mYCandidates[j];
+                if (!mKeepClearAreaIndex.intersectsPaddedArea(x, y, x + width, y + height)) {
+                    // The next candidates on this column are further away
+                    minDistance = distance;
+                    left = x;
+                    top = y;
+                    break;
+                }
+            }
+        }
+        bounds.offsetTo(left, top);
     }
 
-    private static boolean tryOffset(Rect rectToMove, Rect rectToAvoid, Rect allowedBounds,
-            int dx, int dy) {
-        Rect tmp = new Rect(rectToMove);
-        tmp.offset(dx, dy);
-        if (!Rect.intersects(rectToAvoid, tmp) && allowedBounds.contains(tmp)) {
-            rectToMove.offsetTo(tmp.left, tmp.top);
-            return true;
+    /**
+     * Adds {@code position} to {@code candidates} if it is within the allowed range, encoded with
+     * its distance to {@code start} in the high bits so that candidates sort by distance.
+     */
+    private static int addCandidate(long[] candidates, int count, int position, int start,
+            int min, int max) {
+        if (position < min || position > max) {
+            return count;
         }
-        return false;
+        candidates[count] = ((long) Math.abs(position - start) << 32) | (position & 0xFFFFFFFFL);
+        return count + 1;
     }
 }
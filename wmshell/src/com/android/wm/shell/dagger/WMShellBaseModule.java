@@ -294,8 +294,10 @@ public abstract class WMShellBaseModule {
 
     @WMSingleton
     @Provides
-    static TransactionPool provideTransactionPool() {
-        return new TransactionPool();
+    static TransactionPool provideTransactionPool(ShellCommandHandler shellCommandHandler,
+            @ShellMainThread ShellExecutor mainExecutor,
+            @ShellAnimationThread ShellExecutor animExecutor) {
+        return new TransactionPool(shellCommandHandler, mainExecutor, animExecutor);
     }
 
     @WMSingleton
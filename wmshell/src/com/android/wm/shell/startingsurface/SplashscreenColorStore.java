@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.wm.shell.startingsurface;
+
+import static com.android.wm.shell.startingsurface.SplashscreenContentDrawer.ColorCache.CACHE_SIZE;
+
+import android.annotation.NonNull;
+import android.util.ArrayMap;
+import android.util.AtomicFile;
+import android.util.Slog;
+
+import com.android.wm.shell.startingsurface.SplashscreenContentDrawer.ColorCache.Colors;
+import com.android.wm.shell.startingsurface.SplashscreenContentDrawer.ColorCache.IconColor;
+import com.android.wm.shell.startingsurface.SplashscreenContentDrawer.ColorCache.WindowColor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Reads and writes the colors computed by {@link SplashscreenContentDrawer.ColorCache}, so that
+ * they are not computed again after the shell restarts.
+ */
+class SplashscreenColorStore {
+    private static final String TAG = StartingWindowController.TAG;
+
+    /** The version of the file format, to be increased when the format changes. */
+    private static final int VERSION = 1;
+
+    private final AtomicFile mFile;
+
+    SplashscreenColorStore(File file) {
+        mFile = new AtomicFile(file);
+    }
+
+    /**
+     * Returns the persisted colors of the packages, or an empty map if they cannot be read.
+     */
+    @NonNull
+    ArrayMap<String, Colors> read() {
+        final ArrayMap<String, Colors> colorMap = new ArrayMap<>();
+        if (!mFile.exists()) {
+            return colorMap;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(mFile.openRead()))) {
+            if (in.readInt() != VERSION) {
+                return colorMap;
+            }
+            final int packageCount = in.readInt();
+            for (int i = 0; i < packageCount; i++) {
+                final String packageName = in.readUTF();
+                final Colors colors = new Colors();
+                colors.mLastUpdateTime = in.readLong();
+                colors.mLastUse = in.readInt();
+                final int windowColorCount = in.readInt();
+                for (int j = 0; j < windowColorCount; j++) {
+                    final WindowColor windowColor = new WindowColor(in.readInt() /* hash */,
+                            in.readInt() /* bgColor */);
+                    if (j < CACHE_SIZE) {
+                        colors.mWindowColors[j] = windowColor;
+                    }
+                }
+                final int iconColorCount = in.readInt();
+                for (int j = 0; j < iconColorCount; j++) {
+                    final IconColor iconColor = new IconColor(in.readInt() /* hash */,
+                            in.readInt() /* fgColor */, in.readInt() /* bgColor */,
+                            in.readBoolean() /* isBgComplex */,
+                            in.readBoolean() /* isBgGrayscale */,
+                            in.readFloat() /* fgNonTranslucentRatio */);
+                    if (j < CACHE_SIZE) {
+                        colors.mIconColors[j] = iconColor;
+                    }
+                }
+                colorMap.put(packageName, colors);
+            }
+        } catch (IOException e) {
+            Slog.w(TAG, "Failed to read splash screen colors", e);
+            colorMap.clear();
+        }
+        return colorMap;
+    }
+
+    /**
+     * Replaces the persisted colors with {@code colorMap}.
+     */
+    void write(@NonNull ArrayMap<String, Colors> colorMap) {
+        FileOutputStream fos = null;
+        try {
+            fos = mFile.startWrite();
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+            out.writeInt(VERSION);
+            out.writeInt(colorMap.size());
+            for (int i = 0; i < colorMap.size(); i++) {
+                final Colors colors = colorMap.valueAt(i);
+                out.writeUTF(colorMap.keyAt(i));
+                out.writeLong(colors.mLastUpdateTime);
+                out.writeInt(colors.mLastUse);
+                out.writeInt(countNonNull(colors.mWindowColors));
+                for (WindowColor windowColor : colors.mWindowColors) {
+                    if (windowColor != null) {
+                        out.writeInt(windowColor.mHash);
+                        out.writeInt(windowColor.mBgColor);
+                    }
+                }
+                out.writeInt(countNonNull(colors.mIconColors));
+                for (IconColor iconColor : colors.mIconColors) {
+                    if (iconColor != null) {
+                        out.writeInt(iconColor.mHash);
+                        out.writeInt(iconColor.mFgColor);
+                        out.writeInt(iconColor.mBgColor);
+                        out.writeBoolean(iconColor.mIsBgComplex);
+                        out.writeBoolean(iconColor.mIsBgGrayscale);
+                        out.writeFloat(iconColor.mFgNonTranslucentRatio);
+                    }
+                }
+            }
+            out.flush();
+            mFile.finishWrite(fos);
+        } catch (IOException e) {
+            Slog.w(TAG, "Failed to write splash screen colors", e);
+            if (fos != null) {
+                mFile.failWrite(fos);
+            }
+        }
+    }
+
+    private static int countNonNull(Object[] array) {
+        int count = 0;
+        for (Object item : array) {
+            if (item != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -80,6 +80,9 @@ import com.android.launcher3.icons.IconProvider;
 import com.android.wm.shell.common.TransactionPool;
 import com.android.wm.shell.protolog.ShellProtoLogGroup;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.function.Consumer;
 import java.util.function.IntPredicate;
@@ -1043,24 +1046,53 @@ public class SplashscreenContentDrawer {
         }
     }
 
-    /** Cache the result of {@link DrawableColorTester} to reduce expensive calculation. */
+    /**
+     * Cache the result of {@link DrawableColorTester} to reduce expensive calculation. The colors
+     * of the most recently used packages are persisted, and restored in the background when the
+     * shell starts, so that they are not computed again on the next launch of these packages.
+     */
     @VisibleForTesting
     static class ColorCache extends BroadcastReceiver {
         /**
          * The color may be different according to resource id and configuration (e.g. night mode),
          * so this allows to cache more than one color per package.
          */
-        private static final int CACHE_SIZE = 2;
+        static final int CACHE_SIZE = 2;
+
+        /** The maximum number of packages of which the colors are persisted. */
+        private static final int MAX_PERSISTED_PACKAGES = 32;
+
+        /** The delay to batch the computed colors before persisting them. */
+        private static final long PERSIST_DELAY_MS = 10_000;
+
+        private static final String PERSISTED_FILE_NAME = "splashscreen_colors";
 
         /** The computed colors of packages. */
         private final ArrayMap<String, Colors> mColorMap = new ArrayMap<>();
 
-        private static class Colors {
+        private final Context mContext;
+        private final Handler mHandler;
+        private final SplashscreenColorStore mStore;
+        private final Runnable mPersistRunnable = this::persist;
+
+        /** Whether the persisted colors were restored in {@link #mColorMap}. */
+        private boolean mIsRestored;
+
+        /** The sequence number of the last use of the colors of any package. */
+        private int mUseSequence;
+
+        static class Colors {
             final WindowColor[] mWindowColors = new WindowColor[CACHE_SIZE];
             final IconColor[] mIconColors = new IconColor[CACHE_SIZE];
+
+            /** The last update time of the package, to not restore colors of an older version. */
+            long mLastUpdateTime;
+
+            /** The sequence number of the last use of these colors. */
+            int mLastUse;
         }
 
-        private static class Cache {
+        static class Cache {
             /** The hash used to check whether this cache is hit. */
             final int mHash;
 
@@ -1100,6 +1132,16 @@ public class SplashscreenContentDrawer {
         }
 
         ColorCache(Context context, Handler handler) {
+            this(context, handler, new File(context.getCacheDir(), PERSISTED_FILE_NAME));
+        }
+
+        @VisibleForTesting
+        ColorCache(Context context, Handler handler, File persistedFile) {
+            mContext = context;
+            mHandler = handler;
+            mStore = new SplashscreenColorStore(persistedFile);
+            // Restores the colors of the recently launched packages before they are needed.
+            handler.post(this::restore);
             // This includes reinstall and uninstall.
             final IntentFilter filter = new IntentFilter(Intent.ACTION_PACKAGE_REMOVED);
             filter.addDataScheme(IntentFilter.SCHEME_PACKAGE);
@@ -1108,10 +1150,79 @@ public class SplashscreenContentDrawer {
         }
 
         @Override
-        public void onReceive(Context context, Intent intent) {
+        public synchronized void onReceive(Context context, Intent intent) {
             final Uri packageUri = intent.getData();
             if (packageUri != null) {
-                mColorMap.remove(packageUri.getEncodedSchemeSpecificPart());
+                restore();
+                if (mColorMap.remove(packageUri.getEncodedSchemeSpecificPart()) != null) {
+                    // Persists immediately, so that the colors are not restored after a restart.
+                    mHandler.removeCallbacks(mPersistRunnable);
+                    mHandler.post(mPersistRunnable);
+                }
+            }
+        }
+
+        /**
+         * Restores the persisted colors of the packages which were not updated since, if not
+         * already done.
+         */
+        private synchronized void restore() {
+            if (mIsRestored) {
+                return;
+            }
+            mIsRestored = true;
+            Trace.traceBegin(TRACE_TAG_WINDOW_MANAGER, "ColorCache#restore");
+            final ArrayMap<String, Colors> persistedColors = mStore.read();
+            final PackageManager pm = mContext.getPackageManager();
+            for (int i = persistedColors.size() - 1; i >= 0; i--) {
+                final String packageName = persistedColors.keyAt(i);
+                final Colors colors = persistedColors.valueAt(i);
+                if (!mColorMap.containsKey(packageName)
+                        && colors.mLastUpdateTime == getLastUpdateTime(pm, packageName)) {
+                    mColorMap.put(packageName, colors);
+                    mUseSequence = Math.max(mUseSequence, colors.mLastUse);
+                }
+            }
+            Trace.traceEnd(TRACE_TAG_WINDOW_MANAGER);
+            ProtoLog.v(ShellProtoLogGroup.WM_SHELL_STARTING_WINDOW,
+                    "ColorCache: restored colors of %d packages", mColorMap.size());
+        }
+
+        /**
+         * Persists the colors of the most recently used packages.
+         */
+        @VisibleForTesting
+        synchronized void persist() {
+            mHandler.removeCallbacks(mPersistRunnable);
+            final ArrayList<String> packageNames = new ArrayList<>(mColorMap.keySet());
+            packageNames.sort(Comparator.comparingInt(
+                    (String packageName) -> mColorMap.get(packageName).mLastUse).reversed());
+            final PackageManager pm = mContext.getPackageManager();
+            final ArrayMap<String, Colors> persistedColors = new ArrayMap<>();
+            for (int i = 0; i < packageNames.size()
+                    && persistedColors.size() < MAX_PERSISTED_PACKAGES; i++) {
+                final String packageName = packageNames.get(i);
+                final Colors colors = mColorMap.get(packageName);
+                if (colors.mLastUpdateTime == 0) {
+                    colors.mLastUpdateTime = getLastUpdateTime(pm, packageName);
+                }
+                if (colors.mLastUpdateTime > 0) {
+                    persistedColors.put(packageName, colors);
+                }
+            }
+            mStore.write(persistedColors);
+        }
+
+        private void schedulePersist() {
+            mHandler.removeCallbacks(mPersistRunnable);
+            mHandler.postDelayed(mPersistRunnable, PERSIST_DELAY_MS);
+        }
+
+        private static long getLastUpdateTime(PackageManager pm, String packageName) {
+            try {
+                return pm.getPackageInfo(packageName, 0 /* flags */).lastUpdateTime;
+            } catch (PackageManager.NameNotFoundException e) {
+                return -1;
             }
         }
 
@@ -1141,13 +1252,15 @@ public class SplashscreenContentDrawer {
             return null;
         }
 
-        @NonNull WindowColor getWindowColor(String packageName, int configHash, int windowBgColor,
-                int windowBgResId, IntSupplier windowBgColorSupplier) {
+        @NonNull synchronized WindowColor getWindowColor(String packageName, int configHash,
+                int windowBgColor, int windowBgResId, IntSupplier windowBgColorSupplier) {
+            restore();
             Colors colors = mColorMap.get(packageName);
             int hash = 31 * configHash + windowBgColor;
             hash = 31 * hash + windowBgResId;
             final int[] leastUsedIndex = { 0 };
             if (colors != null) {
+                colors.mLastUse = ++mUseSequence;
                 final WindowColor windowColor = getCache(colors.mWindowColors, hash,
                         leastUsedIndex);
                 if (windowColor != null) {
@@ -1155,26 +1268,31 @@ public class SplashscreenContentDrawer {
                 }
             } else {
                 colors = new Colors();
+                colors.mLastUse = ++mUseSequence;
                 mColorMap.put(packageName, colors);
             }
             final WindowColor windowColor = new WindowColor(hash, windowBgColorSupplier.getAsInt());
             colors.mWindowColors[leastUsedIndex[0]] = windowColor;
+            schedulePersist();
             return windowColor;
         }
 
-        @NonNull IconColor getIconColor(String packageName, int configHash, int iconResId,
-                Supplier<DrawableColorTester> fgColorTesterSupplier,
+        @NonNull synchronized IconColor getIconColor(String packageName, int configHash,
+                int iconResId, Supplier<DrawableColorTester> fgColorTesterSupplier,
                 Supplier<DrawableColorTester> bgColorTesterSupplier) {
+            restore();
             Colors colors = mColorMap.get(packageName);
             final int hash = configHash * 31 + iconResId;
             final int[] leastUsedIndex = { 0 };
             if (colors != null) {
+                colors.mLastUse = ++mUseSequence;
                 final IconColor iconColor = getCache(colors.mIconColors, hash, leastUsedIndex);
                 if (iconColor != null) {
                     return iconColor;
                 }
             } else {
                 colors = new Colors();
+                colors.mLastUse = ++mUseSequence;
                 mColorMap.put(packageName, colors);
             }
             final DrawableColorTester fgTester = fgColorTesterSupplier.get();
@@ -1183,6 +1301,7 @@ public class SplashscreenContentDrawer {
                     bgTester.getDominateColor(), bgTester.isComplexColor(), bgTester.isGrayscale(),
                     fgTester.passFilterRatio());
             colors.mIconColors[leastUsedIndex[0]] = iconColor;
+            schedulePersist();
             return iconColor;
         }
     }
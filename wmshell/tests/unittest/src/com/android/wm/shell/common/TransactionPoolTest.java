@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.wm.shell.common;
+
+import static com.android.wm.shell.common.TransactionPool.MAX_POOL_SIZE;
+import static com.android.wm.shell.common.TransactionPool.MIN_POOL_SIZE;
+import static com.android.wm.shell.common.TransactionPool.THREAD_CACHE_SIZE;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import android.view.SurfaceControl;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.wm.shell.ShellTestCase;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+/**
+ * Tests for {@link TransactionPool}.
+ *
+ * Build/Install/Run:
+ *  atest WMShellUnitTests:TransactionPoolTest
+ */
+@SmallTest
+public class TransactionPoolTest extends ShellTestCase {
+    private final TransactionPool mPool = new TransactionPool();
+
+    @Test
+    public void testReleasedTransactionIsReused() {
+        final SurfaceControl.Transaction t = mock(SurfaceControl.Transaction.class);
+        mPool.release(t);
+
+        assertSame(t, mPool.acquire());
+        assertEquals(1, mPool.getPoolHits());
+        assertEquals(0, mPool.getAllocations());
+        verify(t, never()).close();
+    }
+
+    @Test
+    public void testPoolSizeFollowsPeakAcquiredCount() {
+        assertEquals(MIN_POOL_SIZE, mPool.getPoolSize());
+
+        final int peakCount = MIN_POOL_SIZE + 2;
+        releaseAll(acquire(peakCount));
+        assertEquals(peakCount, mPool.getPoolSize());
+        assertEquals(peakCount, mPool.getAllocations());
+        assertEquals(0, mPool.getClosed());
+
+        releaseAll(acquire(peakCount));
+        assertEquals(peakCount, mPool.getPoolHits());
+        assertEquals(peakCount, mPool.getAllocations());
+
+        releaseAll(acquire(MAX_POOL_SIZE + 2));
+        assertEquals(MAX_POOL_SIZE, mPool.getPoolSize());
+        assertEquals(2, mPool.getClosed());
+    }
+
+    @Test
+    public void testThreadCache() {
+        mPool.enableThreadCache();
+        final ArrayList<SurfaceControl.Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < THREAD_CACHE_SIZE + 1; i++) {
+            transactions.add(mock(SurfaceControl.Transaction.class));
+        }
+        releaseAll(transactions);
+
+        acquire(THREAD_CACHE_SIZE + 1);
+        assertEquals(THREAD_CACHE_SIZE, mPool.getThreadCacheHits());
+        assertEquals(1, mPool.getPoolHits());
+        assertEquals(0, mPool.getAllocations());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testReleaseTwice_throws() {
+        final SurfaceControl.Transaction t = mock(SurfaceControl.Transaction.class);
+        mPool.release(t);
+        mPool.release(t);
+    }
+
+    private ArrayList<SurfaceControl.Transaction> acquire(int count) {
+        final ArrayList<SurfaceControl.Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            transactions.add(mPool.acquire());
+        }
+        return transactions;
+    }
+
+    private void releaseAll(ArrayList<SurfaceControl.Transaction> transactions) {
+        for (SurfaceControl.Transaction t : transactions) {
+            mPool.release(t);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.wm.shell.pip.phone;
+
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Rect;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.ArraySet;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+
+import com.android.wm.shell.ShellTestCase;
+import com.android.wm.shell.common.pip.PhonePipKeepClearAlgorithm;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Microbenchmark of {@link PhonePipKeepClearAlgorithm#findUnoccludedPosition} with many keep clear
+ * areas colliding with PiP, either unchanged or with one area moving between calls as apps report
+ * new areas. Allocations and timings per call are reported in logcat under {@link #TAG}.
+ *
+ * Build/Install/Run:
+ *  atest WMShellUnitTests:PhonePipKeepClearAlgorithmBenchmark
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class PhonePipKeepClearAlgorithmBenchmark extends ShellTestCase {
+
+    private static final String TAG = "PhonePipKeepClearAlgorithmBenchmark";
+
+    private static final int CALL_COUNT = 1000;
+    private static final int AREA_COUNT = 64;
+
+    private static final Rect DISPLAY_BOUNDS = new Rect(0, 0, 1080, 2400);
+    private static final Rect PIP_BOUNDS = new Rect(440, 1100, 640, 1300);
+
+    @Test
+    public void benchmarkFindUnoccludedPosition() {
+        final PhonePipKeepClearAlgorithm algorithm = new PhonePipKeepClearAlgorithm(mContext);
+        final ArraySet<Rect> keepClearAreas = createKeepClearAreas();
+
+        // Warm up
+        findUnoccludedPositions(algorithm, keepClearAreas, null);
+
+        final long[] result =
+                measure(() -> findUnoccludedPositions(algorithm, keepClearAreas, null));
+        Log.d(TAG, CALL_COUNT + " calls with " + AREA_COUNT + " areas: "
+                + result[0] + "ns/call, "
+                + (float) result[1] / CALL_COUNT + " allocations/call");
+
+        // Only the returned bounds are allocated
+        assertTrue("Unchanged keep clear areas should not be copied",
+                result[1] <= CALL_COUNT);
+    }
+
+    @Test
+    public void benchmarkFindUnoccludedPositionWithMovingArea() {
+        final PhonePipKeepClearAlgorithm algorithm = new PhonePipKeepClearAlgorithm(mContext);
+        final ArraySet<Rect> keepClearAreas = createKeepClearAreas();
+        // Moves an area by a pixel before every call, so that the index is rebuilt each time
+        final Rect movingArea = keepClearAreas.valueAt(keepClearAreas.size() - 1);
+
+        // Warm up
+        findUnoccludedPositions(algorithm, keepClearAreas, movingArea);
+
+        final long[] result =
+                measure(() -> findUnoccludedPositions(algorithm, keepClearAreas, movingArea));
+        Log.d(TAG, CALL_COUNT + " calls with " + AREA_COUNT + " areas, one moving: "
+                + result[0] + "ns/call, "
+                + (float) result[1] / CALL_COUNT + " allocations/call");
+    }
+
+    private static ArraySet<Rect> createKeepClearAreas() {
+        final ArraySet<Rect> keepClearAreas = new ArraySet<>();
+        final Random random = new Random(0);
+        // Makes sure PiP collides with an area
+        keepClearAreas.add(new Rect(500, 1150, 580, 1250));
+        while (keepClearAreas.size() < AREA_COUNT) {
+            final int left = random.nextInt(DISPLAY_BOUNDS.width() - 100);
+            final int top = random.nextInt(DISPLAY_BOUNDS.height() - 100);
+            keepClearAreas.add(new Rect(left, top, left + 20 + random.nextInt(80),
+                    top + 20 + random.nextInt(80)));
+        }
+        return keepClearAreas;
+    }
+
+    /**
+     * Returns the time per call and the number of allocations of {@param calls}.
+     */
+    @SuppressWarnings("deprecation")
+    private static long[] measure(Runnable calls) {
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        final long startTime = SystemClock.elapsedRealtimeNanos();
+        calls.run();
+        final long time = SystemClock.elapsedRealtimeNanos() - startTime;
+        Debug.stopAllocCounting();
+        return new long[] {time / CALL_COUNT, Debug.getThreadAllocCount()};
+    }
+
+    /**
+     * Finds the position of PiP {@link #CALL_COUNT} times, moving {@param movingArea} by a pixel
+     * before each call if it is not null.
+     */
+    private static void findUnoccludedPositions(PhonePipKeepClearAlgorithm algorithm,
+            ArraySet<Rect> keepClearAreas, @Nullable Rect movingArea) {
+        for (int i = 0; i < CALL_COUNT; i++) {
+            if (movingArea != null) {
+                movingArea.offset(i % 2 == 0 ? 1 : -1, 0);
+            }
+            algorithm.findUnoccludedPosition(PIP_BOUNDS, keepClearAreas, Set.of(),
+                    DISPLAY_BOUNDS);
+        }
+    }
+}
@@ -18,6 +18,8 @@ package com.android.wm.shell.pip.phone;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.when;
@@ -25,9 +27,11 @@ import static org.mockito.Mockito.when;
 import android.graphics.Rect;
 import android.testing.AndroidTestingRunner;
 import android.testing.TestableLooper;
+import android.util.ArraySet;
 
 import androidx.test.filters.SmallTest;
 
+import com.android.wm.shell.R;
 import com.android.wm.shell.ShellTestCase;
 import com.android.wm.shell.common.pip.PhonePipKeepClearAlgorithm;
 import com.android.wm.shell.common.pip.PipBoundsAlgorithm;
@@ -104,6 +108,75 @@ public class PhonePipKeepClearAlgorithmTest extends ShellTestCase {
         assertEquals(inBounds, outBounds);
     }
 
+    @Test
+    public void findUnoccludedPosition_withCollidingKeepClearArea_movesToNearestPosition() {
+        final int padding = getKeepClearAreasPadding();
+        final Rect inBounds = new Rect(400, 400, 500, 500);
+        final Rect keepClearRect = new Rect(450, 480, 1000, 1000);
+
+        final Rect outBounds = mPipKeepClearAlgorithm.findUnoccludedPosition(inBounds,
+                Set.of(keepClearRect), Set.of(), DISPLAY_BOUNDS);
+
+        assertEquals(new Rect(400, 380 - padding, 500, 480 - padding), outBounds);
+    }
+
+    @Test
+    public void findUnoccludedPosition_withManyKeepClearAreas_avoidsAllAreas() {
+        final int padding = getKeepClearAreasPadding();
+        final Rect inBounds = new Rect(450, 450, 550, 550);
+        final ArraySet<Rect> keepClearRects = new ArraySet<>();
+        for (int x = 0; x < 1000; x += 200) {
+            for (int y = 0; y < 1000; y += 200) {
+                keepClearRects.add(new Rect(x, y, x + 100, y + 100));
+            }
+        }
+        keepClearRects.add(new Rect(480, 480, 520, 520));
+
+        final Rect outBounds = mPipKeepClearAlgorithm.findUnoccludedPosition(inBounds,
+                keepClearRects, Set.of(), DISPLAY_BOUNDS);
+
+        assertNotEquals(inBounds, outBounds);
+        assertTrue(DISPLAY_BOUNDS.contains(outBounds));
+        for (Rect keepClearRect : keepClearRects) {
+            final Rect paddedRect = new Rect(keepClearRect);
+            paddedRect.inset(-padding, -padding);
+            assertFalse(Rect.intersects(paddedRect, outBounds));
+        }
+    }
+
+    @Test
+    public void findUnoccludedPosition_withUpdatedKeepClearArea_avoidsUpdatedArea() {
+        final Rect inBounds = new Rect(0, 0, 100, 100);
+        final Rect keepClearRect = new Rect(50, 50, 150, 150);
+        final ArraySet<Rect> keepClearRects = new ArraySet<>();
+        keepClearRects.add(keepClearRect);
+
+        final Rect outBounds = mPipKeepClearAlgorithm.findUnoccludedPosition(inBounds,
+                keepClearRects, Set.of(), DISPLAY_BOUNDS);
+        assertNotEquals(inBounds, outBounds);
+
+        // Moves the same area away, which must not reuse the previous position
+        keepClearRect.offsetTo(800, 800);
+        assertEquals(inBounds, mPipKeepClearAlgorithm.findUnoccludedPosition(inBounds,
+                keepClearRects, Set.of(), DISPLAY_BOUNDS));
+
+        // Moves it back over the bounds
+        keepClearRect.offsetTo(50, 50);
+        assertEquals(outBounds, mPipKeepClearAlgorithm.findUnoccludedPosition(inBounds,
+                keepClearRects, Set.of(), DISPLAY_BOUNDS));
+    }
+
+    @Test
+    public void findUnoccludedPosition_withoutFreePosition_boundsUnchanged() {
+        final Rect inBounds = new Rect(0, 0, 100, 100);
+        final Rect keepClearRect = new Rect(DISPLAY_BOUNDS);
+
+        final Rect outBounds = mPipKeepClearAlgorithm.findUnoccludedPosition(inBounds,
+                Set.of(keepClearRect), Set.of(), DISPLAY_BOUNDS);
+
+        assertEquals(inBounds, outBounds);
+    }
+
     @Test
     public void adjust_withCollidingRestrictedKeepClearArea_moveBounds() {
         final Rect pipBounds = new Rect(0, 0, 100, 100);
@@ -301,4 +374,9 @@ public class PhonePipKeepClearAlgorithmTest extends ShellTestCase {
 
         assertEquals(expected, outBounds);
     }
+
+    private int getKeepClearAreasPadding() {
+        return mContext.getResources().getDimensionPixelSize(
+                R.dimen.pip_keep_clear_areas_padding);
+    }
 }
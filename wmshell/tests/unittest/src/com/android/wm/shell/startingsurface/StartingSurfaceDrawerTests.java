@@ -56,6 +56,7 @@ import android.os.IBinder;
 import android.os.Looper;
 import android.os.UserHandle;
 import android.testing.TestableContext;
+import android.util.AtomicFile;
 import android.view.IWindowSession;
 import android.view.InsetsState;
 import android.view.Surface;
@@ -83,6 +84,7 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.MockitoSession;
 
+import java.io.File;
 import java.util.function.IntSupplier;
 
 /**
@@ -191,6 +193,11 @@ public class StartingSurfaceDrawerTests extends ShellTestCase {
         final IntSupplier windowBgColorSupplier = () -> windowBgColor;
         final SplashscreenContentDrawer.ColorCache colorCache =
                 mStartingSurfaceDrawer.mSplashscreenContentDrawer.mColorCache;
+        final Intent packageRemoved = new Intent(Intent.ACTION_PACKAGE_REMOVED);
+        packageRemoved.setData(Uri.parse("package:" + packageName));
+        // Clears the colors which may have been persisted by a previous run.
+        colorCache.onReceive(mTestContext, packageRemoved);
+
         final SplashscreenContentDrawer.ColorCache.WindowColor windowColor1 =
                 colorCache.getWindowColor(packageName, configHash, windowBgColor, windowBgResId,
                         windowBgColorSupplier);
@@ -203,8 +210,6 @@ public class StartingSurfaceDrawerTests extends ShellTestCase {
         assertEquals(windowColor1, windowColor2);
         assertEquals(1, windowColor1.mReuseCount);
 
-        final Intent packageRemoved = new Intent(Intent.ACTION_PACKAGE_REMOVED);
-        packageRemoved.setData(Uri.parse("package:" + packageName));
         colorCache.onReceive(mTestContext, packageRemoved);
 
         final SplashscreenContentDrawer.ColorCache.WindowColor windowColor3 =
@@ -213,6 +218,47 @@ public class StartingSurfaceDrawerTests extends ShellTestCase {
         assertEquals(0, windowColor3.mReuseCount);
     }
 
+    @Test
+    public void testColorCachePersistence() {
+        final String packageName = mTestContext.getPackageName();
+        final int configHash = 1;
+        final int windowBgColor = 0xff000000;
+        final int otherWindowBgColor = 0xffffffff;
+        final int windowBgResId = 1;
+        final File file = new File(mTestContext.getCacheDir(), "test_splashscreen_colors");
+        new AtomicFile(file).delete();
+        try {
+            final SplashscreenContentDrawer.ColorCache colorCache =
+                    new SplashscreenContentDrawer.ColorCache(mTestContext, mTestHandler, file);
+            colorCache.getWindowColor(packageName, configHash, windowBgColor, windowBgResId,
+                    () -> windowBgColor);
+            colorCache.persist();
+
+            final SplashscreenContentDrawer.ColorCache restoredCache =
+                    new SplashscreenContentDrawer.ColorCache(mTestContext, mTestHandler, file);
+            final SplashscreenContentDrawer.ColorCache.WindowColor restoredColor =
+                    restoredCache.getWindowColor(packageName, configHash, windowBgColor,
+                            windowBgResId, () -> otherWindowBgColor);
+            assertEquals(windowBgColor, restoredColor.mBgColor);
+            assertEquals(1, restoredColor.mReuseCount);
+
+            final Intent packageRemoved = new Intent(Intent.ACTION_PACKAGE_REMOVED);
+            packageRemoved.setData(Uri.parse("package:" + packageName));
+            restoredCache.onReceive(mTestContext, packageRemoved);
+            restoredCache.persist();
+
+            final SplashscreenContentDrawer.ColorCache clearedCache =
+                    new SplashscreenContentDrawer.ColorCache(mTestContext, mTestHandler, file);
+            final SplashscreenContentDrawer.ColorCache.WindowColor computedColor =
+                    clearedCache.getWindowColor(packageName, configHash, windowBgColor,
+                            windowBgResId, () -> otherWindowBgColor);
+            assertEquals(otherWindowBgColor, computedColor.mBgColor);
+            assertEquals(0, computedColor.mReuseCount);
+        } finally {
+            new AtomicFile(file).delete();
+        }
+    }
+
     @Test
     public void testRemoveTaskSnapshotWithImeSurfaceWhenOnImeDrawn() throws Exception {
         final int taskId = 1;